@@ -14,15 +14,20 @@
  */
 package com.microsoft.windowsazure.serviceruntime;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 
+/**
+ * Reads goal state documents from a stream of chunks, each made of a hexadecimal byte length, CRLF, the document
+ * and a trailing CRLF. Each document is parsed directly from the underlying stream, so no chunk is ever copied into
+ * an intermediate buffer or string.
+ */
 class ChunkedGoalStateDeserializer implements GoalStateDeserializer {
+    private static final int MAX_LENGTH_LINE = 16;
+
     private final XmlGoalStateDeserializer deserializer;
-    private BufferedReader reader;
+    private InputStream stream;
 
     public ChunkedGoalStateDeserializer() {
         this.deserializer = new XmlGoalStateDeserializer();
@@ -30,31 +35,26 @@ class ChunkedGoalStateDeserializer implements GoalStateDeserializer {
 
     @Override
     public void initialize(InputStream inputStream) {
-        try {
-            reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-        }
-        catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
+        stream = new BufferedInputStream(inputStream);
     }
 
     @Override
     public GoalState deserialize() {
         try {
-            String lengthString = reader.readLine();
+            String lengthString = readLine();
 
             if (lengthString == null) {
                 return null;
             }
 
-            int length = Integer.parseInt(lengthString.toString(), 16);
-            char chunkData[] = new char[length];
+            long length = Long.parseLong(lengthString.trim(), 16);
+            ChunkInputStream chunk = new ChunkInputStream(stream, length);
 
-            reader.read(chunkData, 0, length);
+            GoalState goalState = deserializer.deserialize(chunk);
 
-            GoalState goalState = deserializer.deserialize(new String(chunkData));
+            chunk.skipRemaining();
 
-            reader.readLine();
+            readLine();
 
             return goalState;
         }
@@ -64,4 +64,103 @@ class ChunkedGoalStateDeserializer implements GoalStateDeserializer {
             return null;
         }
     }
+
+    /**
+     * Reads a CRLF or LF terminated ASCII line from the stream.
+     * 
+     * @return the line without its terminator, or <code>null</code> if the stream ended before any character was
+     *         read.
+     */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(MAX_LENGTH_LINE);
+        int c = stream.read();
+
+        if (c == -1) {
+            return null;
+        }
+
+        while (c != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+
+            c = stream.read();
+        }
+
+        return line.toString();
+    }
+
+    /**
+     * Exposes exactly one chunk of the underlying stream. Closing the chunk does not close the underlying stream, so
+     * the XML parser may release it freely.
+     */
+    private static class ChunkInputStream extends InputStream {
+        private final InputStream stream;
+        private long remaining;
+
+        public ChunkInputStream(InputStream stream, long length) {
+            this.stream = stream;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int b = stream.read();
+
+            if (b == -1) {
+                throw new IOException("Goal state stream ended in the middle of a chunk.");
+            }
+
+            remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int count = stream.read(buffer, offset, (int) Math.min(length, remaining));
+
+            if (count == -1) {
+                throw new IOException("Goal state stream ended in the middle of a chunk.");
+            }
+
+            remaining -= count;
+
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(stream.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream carries the following chunks
+        }
+
+        public void skipRemaining() throws IOException {
+            while (remaining > 0) {
+                long skipped = stream.skip(remaining);
+
+                if (skipped <= 0) {
+                    if (stream.read() == -1) {
+                        throw new IOException("Goal state stream ended in the middle of a chunk.");
+                    }
+
+                    skipped = 1;
+                }
+
+                remaining -= skipped;
+            }
+        }
+    }
 }
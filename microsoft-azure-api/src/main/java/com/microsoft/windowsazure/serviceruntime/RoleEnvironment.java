@@ -16,11 +16,9 @@ package com.microsoft.windowsazure.serviceruntime;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -196,117 +194,7 @@ public final class RoleEnvironment {
             throw new RoleEnvironmentNotAvailableException(e);
         }
 
-        Map<String, String> currentConfig = current.getConfigurationSettings();
-        Map<String, String> newConfig = newData.getConfigurationSettings();
-        Map<String, Role> currentRoles = current.getRoles();
-        Map<String, Role> newRoles = newData.getRoles();
-
-        for (String setting : currentConfig.keySet()) {
-            if (newConfig.containsKey(setting)) {
-                if (!newConfig.get(setting).equals(currentConfig.get(setting))) {
-                    changes.add(new RoleEnvironmentConfigurationSettingChange(setting));
-                }
-            }
-            else {
-                changes.add(new RoleEnvironmentConfigurationSettingChange(setting));
-            }
-        }
-
-        for (String setting : newConfig.keySet()) {
-            if (!currentConfig.containsKey(setting)) {
-                changes.add(new RoleEnvironmentConfigurationSettingChange(setting));
-            }
-        }
-
-        Set<String> changedRoleSet = new HashSet<String>();
-
-        for (String role : currentRoles.keySet()) {
-            if (newRoles.containsKey(role)) {
-                Role currentRole = currentRoles.get(role);
-                Role newRole = newRoles.get(role);
-
-                for (String instance : currentRole.getInstances().keySet()) {
-                    if (newRole.getInstances().containsKey(instance)) {
-                        RoleInstance currentInstance = currentRole.getInstances().get(instance);
-                        RoleInstance newInstance = newRole.getInstances().get(instance);
-
-                        if (currentInstance.getUpdateDomain() == newInstance.getUpdateDomain()
-                                && currentInstance.getFaultDomain() == newInstance.getFaultDomain()) {
-                            for (String endpoint : currentInstance.getInstanceEndpoints().keySet()) {
-                                if (newInstance.getInstanceEndpoints().containsKey(endpoint)) {
-                                    RoleInstanceEndpoint currentEndpoint = currentInstance.getInstanceEndpoints().get(
-                                            endpoint);
-                                    RoleInstanceEndpoint newEndpoint = newInstance.getInstanceEndpoints().get(endpoint);
-
-                                    if (!currentEndpoint.getProtocol().equals(newEndpoint.getProtocol())
-                                            || !currentEndpoint.getIpEndPoint().equals(newEndpoint.getIpEndPoint())) {
-                                        changedRoleSet.add(role);
-                                    }
-                                }
-                                else {
-                                    changedRoleSet.add(role);
-                                }
-                            }
-                        }
-                        else {
-                            changedRoleSet.add(role);
-                        }
-                    }
-                    else {
-                        changedRoleSet.add(role);
-                    }
-                }
-            }
-            else {
-                changedRoleSet.add(role);
-            }
-        }
-
-        for (String role : newRoles.keySet()) {
-            if (currentRoles.containsKey(role)) {
-                Role currentRole = currentRoles.get(role);
-                Role newRole = newRoles.get(role);
-
-                for (String instance : newRole.getInstances().keySet()) {
-                    if (currentRole.getInstances().containsKey(instance)) {
-                        RoleInstance currentInstance = currentRole.getInstances().get(instance);
-                        RoleInstance newInstance = newRole.getInstances().get(instance);
-
-                        if (currentInstance.getUpdateDomain() == newInstance.getUpdateDomain()
-                                && currentInstance.getFaultDomain() == newInstance.getFaultDomain()) {
-                            for (String endpoint : newInstance.getInstanceEndpoints().keySet()) {
-                                if (currentInstance.getInstanceEndpoints().containsKey(endpoint)) {
-                                    RoleInstanceEndpoint currentEndpoint = currentInstance.getInstanceEndpoints().get(
-                                            endpoint);
-                                    RoleInstanceEndpoint newEndpoint = newInstance.getInstanceEndpoints().get(endpoint);
-
-                                    if (!currentEndpoint.getProtocol().equals(newEndpoint.getProtocol())
-                                            || !currentEndpoint.getIpEndPoint().equals(newEndpoint.getIpEndPoint())) {
-                                        changedRoleSet.add(role);
-                                    }
-                                }
-                                else {
-                                    changedRoleSet.add(role);
-                                }
-                            }
-                        }
-                        else {
-                            changedRoleSet.add(role);
-                        }
-                    }
-                    else {
-                        changedRoleSet.add(role);
-                    }
-                }
-            }
-            else {
-                changedRoleSet.add(role);
-            }
-        }
-
-        for (String role : changedRoleSet) {
-            changes.add(new RoleEnvironmentTopologyChange(role));
-        }
+        RoleEnvironmentChangeCalculator.calculateChanges(current, newData, changes);
     }
 
     private static synchronized void raiseStoppingEvent() {
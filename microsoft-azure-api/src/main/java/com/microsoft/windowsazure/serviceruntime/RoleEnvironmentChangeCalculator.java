@@ -0,0 +1,207 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.serviceruntime;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the set of {@link RoleEnvironmentChange}s between two {@link RoleEnvironmentData} snapshots.
+ * <p>
+ * Each role is reduced to a 64-bit structural fingerprint covering its instance ids, fault and update domains, and
+ * the name, protocol and address of every instance endpoint. Fingerprints are computed once per snapshot and cached
+ * on the {@link RoleEnvironmentData}, so a goal state change only walks the topology of the new snapshot and
+ * compares a single value per role instead of every instance and endpoint of both snapshots.
+ */
+final class RoleEnvironmentChangeCalculator {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RoleEnvironmentChangeCalculator() {
+    }
+
+    /**
+     * Appends the configuration setting changes, followed by the topology changes, between the two snapshots.
+     * 
+     * @param current
+     *            the snapshot currently exposed by {@link RoleEnvironment}
+     * @param newData
+     *            the snapshot for the new goal state incarnation
+     * @param changes
+     *            the list to which the changes are appended
+     */
+    public static void calculateChanges(RoleEnvironmentData current, RoleEnvironmentData newData,
+            List<RoleEnvironmentChange> changes) {
+        if (current == newData) {
+            return;
+        }
+
+        calculateConfigurationChanges(current.getConfigurationSettings(), newData.getConfigurationSettings(), changes);
+        calculateTopologyChanges(current.getRoleFingerprints(), newData.getRoleFingerprints(), changes);
+    }
+
+    private static void calculateConfigurationChanges(Map<String, String> currentConfig,
+            Map<String, String> newConfig, List<RoleEnvironmentChange> changes) {
+        if (currentConfig == newConfig) {
+            return;
+        }
+
+        int retained = 0;
+
+        for (Map.Entry<String, String> entry : currentConfig.entrySet()) {
+            String newValue = newConfig.get(entry.getKey());
+
+            if (newValue == null) {
+                changes.add(new RoleEnvironmentConfigurationSettingChange(entry.getKey()));
+            }
+            else {
+                retained++;
+
+                if (!newValue.equals(entry.getValue())) {
+                    changes.add(new RoleEnvironmentConfigurationSettingChange(entry.getKey()));
+                }
+            }
+        }
+
+        if (retained != newConfig.size()) {
+            for (String setting : newConfig.keySet()) {
+                if (!currentConfig.containsKey(setting)) {
+                    changes.add(new RoleEnvironmentConfigurationSettingChange(setting));
+                }
+            }
+        }
+    }
+
+    private static void calculateTopologyChanges(Map<String, Long> currentRoles, Map<String, Long> newRoles,
+            List<RoleEnvironmentChange> changes) {
+        for (Map.Entry<String, Long> entry : currentRoles.entrySet()) {
+            Long newFingerprint = newRoles.get(entry.getKey());
+
+            if (newFingerprint == null || newFingerprint.longValue() != entry.getValue().longValue()) {
+                changes.add(new RoleEnvironmentTopologyChange(entry.getKey()));
+            }
+        }
+
+        for (String role : newRoles.keySet()) {
+            if (!currentRoles.containsKey(role)) {
+                changes.add(new RoleEnvironmentTopologyChange(role));
+            }
+        }
+    }
+
+    /**
+     * Computes the structural fingerprint of every role in the given map.
+     * 
+     * @param roles
+     *            the roles to fingerprint
+     * @return a map from role name to fingerprint
+     */
+    public static Map<String, Long> fingerprintRoles(Map<String, Role> roles) {
+        Map<String, Long> fingerprints = new HashMap<String, Long>(roles.size() * 2);
+
+        for (Map.Entry<String, Role> entry : roles.entrySet()) {
+            fingerprints.put(entry.getKey(), fingerprintRole(entry.getValue()));
+        }
+
+        return fingerprints;
+    }
+
+    static long fingerprintRole(Role role) {
+        // Instances and endpoints live in hash maps, so their fingerprints are combined with an order
+        // independent sum.
+        long fingerprint = role.getInstances().size();
+
+        for (Map.Entry<String, RoleInstance> entry : role.getInstances().entrySet()) {
+            RoleInstance instance = entry.getValue();
+
+            long hash = hash(FNV_OFFSET_BASIS, entry.getKey());
+            hash = hash(hash, instance.getFaultDomain());
+            hash = hash(hash, instance.getUpdateDomain());
+            hash = hash(hash, fingerprintEndpoints(instance.getInstanceEndpoints()));
+
+            fingerprint += mix(hash);
+        }
+
+        return fingerprint;
+    }
+
+    private static long fingerprintEndpoints(Map<String, RoleInstanceEndpoint> endpoints) {
+        long fingerprint = endpoints.size();
+
+        for (Map.Entry<String, RoleInstanceEndpoint> entry : endpoints.entrySet()) {
+            RoleInstanceEndpoint endpoint = entry.getValue();
+            InetSocketAddress address = endpoint.getIpEndPoint();
+
+            long hash = hash(FNV_OFFSET_BASIS, entry.getKey());
+            hash = hash(hash, endpoint.getProtocol());
+
+            if (address != null) {
+                InetAddress inetAddress = address.getAddress();
+
+                if (inetAddress != null) {
+                    for (byte b : inetAddress.getAddress()) {
+                        hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+                    }
+                }
+                else {
+                    hash = hash(hash, address.getHostName());
+                }
+
+                hash = hash(hash, address.getPort());
+            }
+
+            fingerprint += mix(hash);
+        }
+
+        return fingerprint;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash * FNV_PRIME;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        // Terminate the string so that adjacent values cannot be shifted into each other.
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -26,6 +26,7 @@ class RoleEnvironmentData {
     private final RoleInstance currentInstance;
     private final Map<String, Role> roles;
     private final boolean isEmulated;
+    private volatile Map<String, Long> roleFingerprints;
 
     public RoleEnvironmentData(String deploymentId, Map<String, String> configurationSettings,
             Map<String, LocalResource> localResources, RoleInstance currentInstance, Map<String, Role> roles,
@@ -61,4 +62,15 @@ class RoleEnvironmentData {
     public boolean isEmulated() {
         return isEmulated;
     }
+
+    public Map<String, Long> getRoleFingerprints() {
+        Map<String, Long> fingerprints = roleFingerprints;
+
+        if (fingerprints == null) {
+            fingerprints = RoleEnvironmentChangeCalculator.fingerprintRoles(roles);
+            roleFingerprints = fingerprints;
+        }
+
+        return fingerprints;
+    }
 }
@@ -14,38 +14,86 @@
  */
 package com.microsoft.windowsazure.serviceruntime;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.Calendar;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.xml.sax.InputSource;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 
 /**
- * 
+ * Reads a <code>GoalState</code> document with StAX, without materializing the document or binding it through JAXB.
+ * Readers are created through the shared {@link XMLFactoryProvider}, which guards its factory for concurrent use.
  */
 class XmlGoalStateDeserializer {
     public XmlGoalStateDeserializer() {
     }
 
     public GoalState deserialize(String document) {
+        return deserialize(new StringReader(document));
+    }
+
+    public GoalState deserialize(Reader reader) {
+        try {
+            return deserialize(XMLFactoryProvider.createXMLStreamReader(reader));
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public GoalState deserialize(InputStream stream) {
         try {
-            JAXBContext context = JAXBContext.newInstance(GoalStateInfo.class.getPackage().getName());
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            InputSource source = new InputSource(new StringReader(document));
+            return deserialize(XMLFactoryProvider.createXMLStreamReader(stream));
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            @SuppressWarnings("unchecked")
-            GoalStateInfo goalStateInfo = ((JAXBElement<GoalStateInfo>) unmarshaller.unmarshal(source)).getValue();
+    private GoalState deserialize(XMLStreamReader xmlr) throws XMLStreamException {
+        try {
+            BigInteger incarnation = null;
+            ExpectedState expectedState = null;
+            String environmentPath = null;
+            Calendar deadline = null;
+            String currentStateEndpoint = null;
 
-            return new GoalState(goalStateInfo.incarnation, Enum.valueOf(ExpectedState.class,
-                    goalStateInfo.expectedState.toString()), goalStateInfo.getRoleEnvironmentPath(),
-                    goalStateInfo.getDeadline(), goalStateInfo.getCurrentStateEndpoint());
+            xmlr.nextTag();
+            xmlr.require(XMLStreamConstants.START_ELEMENT, null, "GoalState");
 
+            while (xmlr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = xmlr.getLocalName();
+                String value = xmlr.getElementText().trim();
+
+                if (name.equals("Incarnation")) {
+                    incarnation = new BigInteger(value);
+                }
+                else if (name.equals("ExpectedState")) {
+                    expectedState = Enum.valueOf(ExpectedState.class, ExpectedStateEnum.fromValue(value).toString());
+                }
+                else if (name.equals("RoleEnvironmentPath")) {
+                    environmentPath = value;
+                }
+                else if (name.equals("CurrentStateEndpoint")) {
+                    currentStateEndpoint = value;
+                }
+                else if (name.equals("Deadline")) {
+                    deadline = javax.xml.bind.DatatypeConverter.parseDateTime(value);
+                }
+            }
+
+            xmlr.require(XMLStreamConstants.END_ELEMENT, null, "GoalState");
+
+            return new GoalState(incarnation, expectedState, environmentPath, deadline, currentStateEndpoint);
         }
-        catch (JAXBException e) {
-            throw new RuntimeException(e);
+        finally {
+            xmlr.close();
         }
     }
 }
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents a bounded, least-recently-used cache of blob properties and metadata, keyed by blob URI and snapshot.
+ * <p>
+ * Entries are populated from flat listings that include metadata and copy state, from attribute requests and from
+ * full downloads. Blobs with a pending copy are not cached, so that their copy state is always read from the service.
+ * Within the time to live of an entry, {@link CloudBlob#downloadAttributes()} and {@link CloudBlob#exists()} are served
+ * without a request; once an entry expires, it is revalidated with a conditional request on its ETag, and the cached
+ * values are reused if the service reports that the blob has not been modified. Changes made through other clients are
+ * therefore only observed once the entry expires. Entries are removed when the blob is modified or deleted through
+ * this client.
+ * 
+ * @see CloudBlobClient#enableAttributeCache(int, long)
+ */
+public final class BlobAttributeCache {
+    /**
+     * Represents the cached attributes of one blob.
+     */
+    static final class Entry {
+        /**
+         * Holds the blob's properties.
+         */
+        private final BlobProperties properties;
+
+        /**
+         * Holds the blob's metadata.
+         */
+        private final HashMap<String, String> metadata;
+
+        /**
+         * Holds the blob's copy state, which may be <code>null</code>.
+         */
+        private final CopyState copyState;
+
+        /**
+         * Holds the time, in nanoseconds, at which the entry expires.
+         */
+        private final long expiryNanos;
+
+        /**
+         * Creates an entry from the current attributes of the specified blob.
+         * 
+         * @param blob
+         *            the blob to copy the attributes of.
+         * @param expiryNanos
+         *            the time, in nanoseconds, at which the entry expires.
+         */
+        Entry(final CloudBlob blob, final long expiryNanos) {
+            this.properties = new BlobProperties(blob.properties);
+            this.metadata = new HashMap<String, String>(blob.metadata);
+            this.copyState = blob.copyState;
+            this.expiryNanos = expiryNanos;
+        }
+
+        /**
+         * Copies the cached attributes to the specified blob.
+         * 
+         * @param blob
+         *            the blob to populate.
+         */
+        void applyTo(final CloudBlob blob) {
+            blob.properties = new BlobProperties(this.properties);
+            blob.metadata = new HashMap<String, String>(this.metadata);
+            blob.copyState = this.copyState;
+        }
+
+        /**
+         * @return the cached blob type.
+         */
+        BlobType getBlobType() {
+            return this.properties.getBlobType();
+        }
+
+        /**
+         * @return the cached copy status, or <code>null</code> if the blob has no copy state.
+         */
+        CopyStatus getCopyStatus() {
+            return this.copyState == null ? null : this.copyState.getStatus();
+        }
+
+        /**
+         * @return the cached ETag.
+         */
+        String getEtag() {
+            return this.properties.getEtag();
+        }
+
+        /**
+         * @return <code>true</code> if the entry has not yet expired.
+         */
+        boolean isFresh() {
+            return System.nanoTime() - this.expiryNanos < 0;
+        }
+    }
+
+    /**
+     * Holds the maximum number of entries to keep.
+     */
+    private final int maxEntries;
+
+    /**
+     * Holds the time to live of an entry, in milliseconds.
+     */
+    private final long timeToLiveInMs;
+
+    /**
+     * Holds the entries, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Creates an instance of the <code>BlobAttributeCache</code> class.
+     * 
+     * @param maxEntries
+     *            the maximum number of entries to keep.
+     * @param timeToLiveInMs
+     *            the time, in milliseconds, during which an entry is used without revalidation.
+     */
+    BlobAttributeCache(final int maxEntries, final long timeToLiveInMs) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries");
+        }
+
+        if (timeToLiveInMs < 0) {
+            throw new IllegalArgumentException("timeToLiveInMs");
+        }
+
+        this.maxEntries = maxEntries;
+        this.timeToLiveInMs = timeToLiveInMs;
+        this.entries = new LinkedHashMap<String, BlobAttributeCache.Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, BlobAttributeCache.Entry> eldest) {
+                return this.size() > BlobAttributeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the cached attributes of the specified blob, whether or not they have expired.
+     * 
+     * @param blob
+     *            the blob to look up.
+     * @return the cached entry, or <code>null</code> if the blob is not cached.
+     */
+    synchronized Entry get(final CloudBlob blob) {
+        return this.entries.get(getKey(blob.getUri(), blob.snapshotID));
+    }
+
+    /**
+     * @return the maximum number of entries to keep.
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * @return the time, in milliseconds, during which an entry is used without revalidation.
+     */
+    public long getTimeToLiveInMs() {
+        return this.timeToLiveInMs;
+    }
+
+    /**
+     * Removes the entry of the specified blob, so that its attributes are next read from the service.
+     * 
+     * @param blobUri
+     *            A <code>java.net.URI</code> object that represents the URI of the blob.
+     * @param snapshotID
+     *            A <code>String</code> that represents the snapshot ID of the blob, or <code>null</code> for the base
+     *            blob.
+     */
+    public synchronized void invalidate(final URI blobUri, final String snapshotID) {
+        this.entries.remove(getKey(blobUri, snapshotID));
+    }
+
+    /**
+     * Stores the current attributes of the specified blob, replacing any previous entry. A blob that is the destination
+     * of a pending copy is not cached, and its previous entry is removed, so that callers polling its copy state always
+     * reach the service.
+     * 
+     * @param blob
+     *            the blob whose attributes to store.
+     */
+    void put(final CloudBlob blob) {
+        if (blob.copyState != null && blob.copyState.getStatus() == CopyStatus.PENDING) {
+            this.remove(blob);
+            return;
+        }
+
+        final Entry entry = new Entry(blob, System.nanoTime() + this.timeToLiveInMs * 1000000L);
+        synchronized (this) {
+            this.entries.put(getKey(blob.getUri(), blob.snapshotID), entry);
+        }
+    }
+
+    /**
+     * Removes the entry of the specified blob.
+     * 
+     * @param blob
+     *            the blob whose entry to remove.
+     */
+    void remove(final CloudBlob blob) {
+        this.invalidate(blob.getUri(), blob.snapshotID);
+    }
+
+    /**
+     * @return the number of entries in the cache.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the key under which the attributes of a blob are cached.
+     * 
+     * @param blobUri
+     *            the URI of the blob.
+     * @param snapshotID
+     *            the snapshot ID of the blob, or <code>null</code>.
+     * @return the key.
+     */
+    private static String getKey(final URI blobUri, final String snapshotID) {
+        return snapshotID == null ? blobUri.toString() : blobUri.toString() + "?snapshot=" + snapshotID;
+    }
+}
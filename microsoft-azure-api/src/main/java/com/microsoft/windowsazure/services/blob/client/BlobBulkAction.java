@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.util.HashMap;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+
+/**
+ * Represents an operation applied to each blob of a container by a {@link BlobBulkOperation}. Static methods create
+ * the common actions; other actions can be supplied by extending this class.
+ */
+public abstract class BlobBulkAction {
+    /**
+     * Applies the action to a blob. This method is called concurrently for different blobs.
+     * 
+     * @param blob
+     *            A {@link CloudBlob} object that represents the blob, with the properties returned by the listing.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies the options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the operation on this blob.
+     * 
+     * @throws Exception
+     *             If the action failed. The exception is recorded in the {@link BlobBulkReport}.
+     */
+    public abstract void execute(CloudBlob blob, BlobRequestOptions options, OperationContext opContext)
+            throws Exception;
+
+    /**
+     * Creates an action that deletes each blob.
+     * 
+     * @param deleteSnapshotsOption
+     *            A {@link DeleteSnapshotsOption} object that indicates whether to delete only the blob, only its
+     *            snapshots, or both.
+     * 
+     * @return A {@link BlobBulkAction} object that deletes blobs.
+     */
+    public static BlobBulkAction delete(final DeleteSnapshotsOption deleteSnapshotsOption) {
+        Utility.assertNotNull("deleteSnapshotsOption", deleteSnapshotsOption);
+        return new BlobBulkAction() {
+            @Override
+            public void execute(final CloudBlob blob, final BlobRequestOptions options,
+                    final OperationContext opContext) throws Exception {
+                blob.delete(deleteSnapshotsOption, null, options, opContext);
+            }
+        };
+    }
+
+    /**
+     * Creates an action that replaces the metadata of each blob.
+     * 
+     * @param metadata
+     *            A <code>java.util.HashMap</code> object that represents the metadata to set on each blob.
+     * 
+     * @return A {@link BlobBulkAction} object that sets blob metadata.
+     */
+    public static BlobBulkAction setMetadata(final HashMap<String, String> metadata) {
+        Utility.assertNotNull("metadata", metadata);
+        final HashMap<String, String> metadataRef = new HashMap<String, String>(metadata);
+        return new BlobBulkAction() {
+            @Override
+            public void execute(final CloudBlob blob, final BlobRequestOptions options,
+                    final OperationContext opContext) throws Exception {
+                blob.setMetadata(new HashMap<String, String>(metadataRef));
+                blob.uploadMetadata(null, options, opContext);
+            }
+        };
+    }
+
+    /**
+     * Creates an action that updates the properties of each blob. The cache control, content encoding, content
+     * language and content type values that are set on the specified properties replace those of each blob; values
+     * that are <code>null</code> are left as they are.
+     * 
+     * @param properties
+     *            A {@link BlobProperties} object that holds the property values to set.
+     * 
+     * @return A {@link BlobBulkAction} object that sets blob properties.
+     */
+    public static BlobBulkAction setProperties(final BlobProperties properties) {
+        Utility.assertNotNull("properties", properties);
+        final BlobProperties propertiesRef = new BlobProperties(properties);
+        return new BlobBulkAction() {
+            @Override
+            public void execute(final CloudBlob blob, final BlobRequestOptions options,
+                    final OperationContext opContext) throws Exception {
+                final BlobProperties blobProperties = blob.getProperties();
+                if (propertiesRef.getCacheControl() != null) {
+                    blobProperties.setCacheControl(propertiesRef.getCacheControl());
+                }
+
+                if (propertiesRef.getContentEncoding() != null) {
+                    blobProperties.setContentEncoding(propertiesRef.getContentEncoding());
+                }
+
+                if (propertiesRef.getContentLanguage() != null) {
+                    blobProperties.setContentLanguage(propertiesRef.getContentLanguage());
+                }
+
+                if (propertiesRef.getContentType() != null) {
+                    blobProperties.setContentType(propertiesRef.getContentType());
+                }
+
+                blob.uploadProperties(null, options, opContext);
+            }
+        };
+    }
+
+    /**
+     * Creates an action that starts copying each blob to a blob of the same name and type in another container.
+     * 
+     * @param destination
+     *            A {@link CloudBlobContainer} object that represents the container to copy to.
+     * 
+     * @return A {@link BlobBulkAction} object that copies blobs.
+     */
+    public static BlobBulkAction copyTo(final CloudBlobContainer destination) {
+        Utility.assertNotNull("destination", destination);
+        return new BlobBulkAction() {
+            @Override
+            public void execute(final CloudBlob blob, final BlobRequestOptions options,
+                    final OperationContext opContext) throws Exception {
+                final CloudBlob target = blob.getProperties().getBlobType() == BlobType.PAGE_BLOB ? destination
+                        .getPageBlobReference(blob.getName()) : destination.getBlockBlobReference(blob.getName());
+                target.copyFromBlob(blob, null, null, options, opContext);
+            }
+        };
+    }
+
+    /**
+     * Creates an action that creates a snapshot of each blob.
+     * 
+     * @return A {@link BlobBulkAction} object that snapshots blobs.
+     */
+    public static BlobBulkAction snapshot() {
+        return new BlobBulkAction() {
+            @Override
+            public void execute(final CloudBlob blob, final BlobRequestOptions options,
+                    final OperationContext opContext) throws Exception {
+                blob.createSnapshot(null, options, opContext);
+            }
+        };
+    }
+}
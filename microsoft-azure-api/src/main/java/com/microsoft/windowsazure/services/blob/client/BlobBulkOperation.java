@@ -0,0 +1,324 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.microsoft.windowsazure.services.core.storage.DoesServiceRequest;
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.ResultContinuation;
+import com.microsoft.windowsazure.services.core.storage.ResultSegment;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+
+/**
+ * Applies a {@link BlobBulkAction} to every blob in a container, or every blob whose name starts with a prefix.
+ * <p>
+ * The container is listed flat one segment at a time, and the action for each listed blob is run on a pool of
+ * {@link BlobRequestOptions#getConcurrentRequestCount()} threads. Listing stops reading ahead when enough actions are
+ * queued, so memory use does not grow with the size of the container. The rate at which actions are started can be
+ * limited, and a failed action does not stop the operation: it is recorded in the returned {@link BlobBulkReport}
+ * and reported to the progress listener.
+ */
+public final class BlobBulkOperation {
+    /**
+     * The default maximum number of failures recorded in the report.
+     */
+    public static final int DEFAULT_MAX_RECORDED_FAILURES = 1000;
+
+    /**
+     * Holds the container whose blobs are processed.
+     */
+    private final CloudBlobContainer container;
+
+    /**
+     * Holds the action to apply to each blob.
+     */
+    private final BlobBulkAction action;
+
+    /**
+     * Holds the prefix blob names must start with, or <code>null</code> for all blobs.
+     */
+    private String prefix;
+
+    /**
+     * Holds the maximum number of actions started per second, or zero for no limit.
+     */
+    private double maxOperationsPerSecond;
+
+    /**
+     * Holds the maximum number of failures recorded in the report.
+     */
+    private int maxRecordedFailures = DEFAULT_MAX_RECORDED_FAILURES;
+
+    /**
+     * Holds the listener notified as each blob is processed, or <code>null</code>.
+     */
+    private StorageEvent<BlobBulkProgressEvent> progressListener;
+
+    /**
+     * Creates an instance of the <code>BlobBulkOperation</code> class.
+     * 
+     * @param container
+     *            A {@link CloudBlobContainer} object that represents the container whose blobs are processed.
+     * @param action
+     *            A {@link BlobBulkAction} object that represents the action to apply to each blob.
+     */
+    public BlobBulkOperation(final CloudBlobContainer container, final BlobBulkAction action) {
+        Utility.assertNotNull("container", container);
+        Utility.assertNotNull("action", action);
+        this.container = container;
+        this.action = action;
+    }
+
+    /**
+     * Applies the action to each blob.
+     * 
+     * @return A {@link BlobBulkReport} object that describes the outcome.
+     * 
+     * @throws StorageException
+     *             If the container could not be listed.
+     */
+    @DoesServiceRequest
+    public BlobBulkReport execute() throws StorageException {
+        return this.execute(null, null);
+    }
+
+    /**
+     * Applies the action to each blob using the specified request options and operation context.
+     * <p>
+     * The operation context is used to list the container. Each action runs with its own operation context, which
+     * shares the request event handlers of <code>opContext</code>, so that request results do not accumulate across
+     * millions of blobs.
+     * 
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link BlobBulkReport} object that describes the outcome.
+     * 
+     * @throws StorageException
+     *             If the container could not be listed.
+     */
+    @DoesServiceRequest
+    public BlobBulkReport execute(BlobRequestOptions options, OperationContext opContext) throws StorageException {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.container.getServiceClient());
+
+        final BlobBulkReport report = new BlobBulkReport(this.maxRecordedFailures);
+        final ExecutorService threadExecutor = Executors.newFixedThreadPool(options.getConcurrentRequestCount());
+        try {
+            final CompletionService<Void> completionService = new ExecutorCompletionService<Void>(threadExecutor);
+            final int maxOutstanding = options.getConcurrentRequestCount() * 2;
+            final long intervalNanos = this.maxOperationsPerSecond > 0 ? (long) (1000000000L
+                    / this.maxOperationsPerSecond) : 0;
+            long nextStartNanos = System.nanoTime();
+            int outstanding = 0;
+
+            ResultContinuation continuationToken = null;
+            do {
+                final ResultSegment<ListBlobItem> segment = this.container.listBlobsSegmented(this.prefix, true,
+                        EnumSet.noneOf(BlobListingDetails.class), -1, continuationToken, options, opContext);
+
+                for (final ListBlobItem item : segment.getResults()) {
+                    if (!(item instanceof CloudBlob)) {
+                        continue;
+                    }
+
+                    if (outstanding >= maxOutstanding) {
+                        CloudBlob.waitForTransferTask(completionService);
+                        outstanding--;
+                    }
+
+                    if (intervalNanos > 0) {
+                        final long delayNanos = nextStartNanos - System.nanoTime();
+                        if (delayNanos > 0) {
+                            Thread.sleep(delayNanos / 1000000L, (int) (delayNanos % 1000000L));
+                        }
+                        nextStartNanos = Math.max(nextStartNanos, System.nanoTime() - intervalNanos) + intervalNanos;
+                    }
+
+                    completionService.submit(this.createTask((CloudBlob) item, report, options, opContext));
+                    outstanding++;
+                }
+
+                continuationToken = segment.getContinuationToken();
+            } while (continuationToken != null);
+
+            for (; outstanding > 0; outstanding--) {
+                CloudBlob.waitForTransferTask(completionService);
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+        catch (final IOException e) {
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+        finally {
+            threadExecutor.shutdownNow();
+        }
+
+        return report;
+    }
+
+    /**
+     * Creates the task that applies the action to one blob and records its outcome.
+     * 
+     * @param blob
+     *            the blob to process.
+     * @param report
+     *            the report to record the outcome in.
+     * @param options
+     *            the request options.
+     * @param opContext
+     *            the operation context whose event handlers the action shares.
+     * @return a <code>Callable</code> that processes the blob.
+     */
+    private Callable<Void> createTask(final CloudBlob blob, final BlobBulkReport report,
+            final BlobRequestOptions options, final OperationContext opContext) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() {
+                final OperationContext blobContext = new OperationContext();
+                blobContext.setSendingRequestEventHandler(opContext.getSendingRequestEventHandler());
+                blobContext.setResponseReceivedEventHandler(opContext.getResponseReceivedEventHandler());
+
+                Exception failure = null;
+                try {
+                    BlobBulkOperation.this.action.execute(blob, new BlobRequestOptions(options), blobContext);
+                }
+                catch (final Exception e) {
+                    failure = e;
+                }
+
+                String blobName;
+                try {
+                    blobName = blob.getName();
+                }
+                catch (final Exception e) {
+                    blobName = blob.getUri().toString();
+                }
+
+                final BlobBulkProgressEvent event = report.record(blobName, failure, blob);
+                final StorageEvent<BlobBulkProgressEvent> listener = BlobBulkOperation.this.progressListener;
+                if (listener != null) {
+                    try {
+                        listener.eventOccurred(event);
+                    }
+                    catch (final RuntimeException e) {
+                        // A failing listener must not abort the operation; the outcome is already in the report.
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @return the maximum number of actions started per second, or zero if the rate is not limited.
+     */
+    public double getMaxOperationsPerSecond() {
+        return this.maxOperationsPerSecond;
+    }
+
+    /**
+     * @return the maximum number of failures recorded in the report.
+     */
+    public int getMaxRecordedFailures() {
+        return this.maxRecordedFailures;
+    }
+
+    /**
+     * @return the prefix blob names must start with, or <code>null</code> if every blob is processed.
+     */
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    /**
+     * @return the listener notified as each blob is processed, or <code>null</code>.
+     */
+    public StorageEvent<BlobBulkProgressEvent> getProgressListener() {
+        return this.progressListener;
+    }
+
+    /**
+     * Sets the maximum number of actions started per second.
+     * 
+     * @param maxOperationsPerSecond
+     *            The maximum rate, or zero to not limit the rate.
+     */
+    public void setMaxOperationsPerSecond(final double maxOperationsPerSecond) {
+        if (maxOperationsPerSecond < 0) {
+            throw new IllegalArgumentException("The maximum operation rate must not be negative.");
+        }
+        this.maxOperationsPerSecond = maxOperationsPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of failures recorded in the report. Failures beyond this number are counted but their
+     * exceptions are not kept.
+     * 
+     * @param maxRecordedFailures
+     *            The maximum number of failures to record.
+     */
+    public void setMaxRecordedFailures(final int maxRecordedFailures) {
+        Utility.assertInBounds("maxRecordedFailures", maxRecordedFailures, 0, Integer.MAX_VALUE);
+        this.maxRecordedFailures = maxRecordedFailures;
+    }
+
+    /**
+     * Sets the prefix blob names must start with.
+     * 
+     * @param prefix
+     *            The prefix, or <code>null</code> to process every blob in the container.
+     */
+    public void setPrefix(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Sets the listener notified as each blob is processed. The listener is called on the worker threads, so it may be
+     * called concurrently. Exceptions thrown by the listener are ignored, so that they do not stop the operation.
+     * 
+     * @param progressListener
+     *            The listener, or <code>null</code> for none.
+     */
+    public void setProgressListener(final StorageEvent<BlobBulkProgressEvent> progressListener) {
+        this.progressListener = progressListener;
+    }
+}
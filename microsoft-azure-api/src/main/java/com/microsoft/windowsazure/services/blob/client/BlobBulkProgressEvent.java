@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+/**
+ * Represents an event that is fired by a {@link BlobBulkOperation} each time the action on a blob completes.
+ */
+public final class BlobBulkProgressEvent {
+    /**
+     * Holds the blob the action was applied to.
+     */
+    private final CloudBlob blob;
+
+    /**
+     * Holds the exception the action failed with, or <code>null</code> if it succeeded.
+     */
+    private final Exception exception;
+
+    /**
+     * Holds the number of blobs processed so far.
+     */
+    private final long processedCount;
+
+    /**
+     * Holds the number of blobs that failed so far.
+     */
+    private final long failedCount;
+
+    /**
+     * Creates an instance of the <code>BlobBulkProgressEvent</code> class.
+     * 
+     * @param blob
+     *            the blob the action was applied to.
+     * @param exception
+     *            the exception the action failed with, or <code>null</code>.
+     * @param processedCount
+     *            the number of blobs processed so far.
+     * @param failedCount
+     *            the number of blobs that failed so far.
+     */
+    BlobBulkProgressEvent(final CloudBlob blob, final Exception exception, final long processedCount,
+            final long failedCount) {
+        this.blob = blob;
+        this.exception = exception;
+        this.processedCount = processedCount;
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * @return the blob the action was applied to.
+     */
+    public CloudBlob getBlob() {
+        return this.blob;
+    }
+
+    /**
+     * @return the exception the action failed with, or <code>null</code> if it succeeded.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+
+    /**
+     * @return the number of blobs processed so far, including this one.
+     */
+    public long getProcessedCount() {
+        return this.processedCount;
+    }
+
+    /**
+     * @return the number of blobs that failed so far.
+     */
+    public long getFailedCount() {
+        return this.failedCount;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents the outcome of a {@link BlobBulkOperation} or {@link BlobCopyOrchestrator}: how many blobs were processed
+ * and which of them failed.
+ */
+public final class BlobBulkReport {
+    /**
+     * Holds the maximum number of failures to record.
+     */
+    private final int maxRecordedFailures;
+
+    /**
+     * Holds the recorded failures, keyed by blob name, in the order they occurred.
+     */
+    private final LinkedHashMap<String, Exception> failures = new LinkedHashMap<String, Exception>();
+
+    /**
+     * Holds the number of blobs processed.
+     */
+    private long processedCount;
+
+    /**
+     * Holds the number of blobs that failed.
+     */
+    private long failedCount;
+
+    /**
+     * Creates an instance of the <code>BlobBulkReport</code> class.
+     * 
+     * @param maxRecordedFailures
+     *            the maximum number of failures to record.
+     */
+    BlobBulkReport(final int maxRecordedFailures) {
+        this.maxRecordedFailures = maxRecordedFailures;
+    }
+
+    /**
+     * Records the outcome of the action on one blob.
+     * 
+     * @param blobName
+     *            the name of the blob.
+     * @param exception
+     *            the exception the action failed with, or <code>null</code> if it succeeded.
+     * @param blob
+     *            the blob the action was applied to.
+     * @return the progress event describing the outcome.
+     */
+    synchronized BlobBulkProgressEvent record(final String blobName, final Exception exception, final CloudBlob blob) {
+        this.processedCount++;
+        if (exception != null) {
+            this.failedCount++;
+            if (this.failures.size() < this.maxRecordedFailures) {
+                this.failures.put(blobName, exception);
+            }
+        }
+
+        return new BlobBulkProgressEvent(blob, exception, this.processedCount, this.failedCount);
+    }
+
+    /**
+     * Returns the failures that were recorded. Only up to the configured maximum number of failures are kept, so this
+     * may hold fewer entries than {@link #getFailedCount()}.
+     * 
+     * @return A <code>java.util.Map</code> object that maps the name of each failed blob to its exception, in the
+     *         order the failures occurred.
+     */
+    public synchronized Map<String, Exception> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Exception>(this.failures));
+    }
+
+    /**
+     * @return the number of blobs that failed.
+     */
+    public synchronized long getFailedCount() {
+        return this.failedCount;
+    }
+
+    /**
+     * @return the number of blobs processed, whether or not the action succeeded.
+     */
+    public synchronized long getProcessedCount() {
+        return this.processedCount;
+    }
+
+    /**
+     * @return the number of blobs the action succeeded on.
+     */
+    public synchronized long getSucceededCount() {
+        return this.processedCount - this.failedCount;
+    }
+}
@@ -164,6 +164,16 @@ final class BlobConstants {
      */
     public static final String LATEST_ELEMENT = "Latest";
 
+    /**
+     * The maximum number of blocks that can be committed to a block blob.
+     */
+    public static final int MAX_BLOCK_COUNT = 50000;
+
+    /**
+     * The maximum number of items the service returns in response to one listing request.
+     */
+    public static final int MAX_LISTING_RESULTS = 5000;
+
     /**
      * The maximum size, in bytes, of a blob before it must be separated into blocks
      */
@@ -0,0 +1,749 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.microsoft.windowsazure.services.core.storage.Constants;
+import com.microsoft.windowsazure.services.core.storage.DoesServiceRequest;
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+
+/**
+ * Runs many server-side blob copies, keeping a bounded number in flight and tracking them until they finish.
+ * <p>
+ * Copies are added with {@link #add(CloudBlob, CloudBlob)} and run by {@link #execute(BlobRequestOptions,
+ * OperationContext)}, which starts copies with {@link CloudBlob#copyFromBlob} until
+ * {@link #getMaxConcurrentCopies()} are pending and polls their {@link CopyState} until each completes. Copy starts
+ * and polls are issued in batches on {@link BlobRequestOptions#getConcurrentRequestCount()} threads. Each copy is
+ * polled at an interval derived from its observed copy rate, bounded by the minimum and maximum poll intervals. A copy
+ * that fails, is aborted, or makes no progress for the stall timeout is aborted and started again, up to
+ * {@link #getMaxAttempts()} times. The aggregate number of bytes copied and the copy throughput can be read from
+ * another thread while the copies run.
+ */
+public final class BlobCopyOrchestrator {
+    /**
+     * Holds the state of one copy.
+     */
+    static final class CopyTask {
+        /**
+         * Holds the blob to copy from.
+         */
+        final CloudBlob source;
+
+        /**
+         * Holds the blob to copy to.
+         */
+        final CloudBlob destination;
+
+        /**
+         * Holds the number of times the copy has been started.
+         */
+        int attempts;
+
+        /**
+         * Holds the number of consecutive polls that failed.
+         */
+        int pollErrors;
+
+        /**
+         * Holds the ID of a copy that must be aborted before the copy is started again, or <code>null</code>.
+         */
+        String abortCopyId;
+
+        /**
+         * Holds the current poll interval.
+         */
+        long pollIntervalInMs;
+
+        /**
+         * Holds the time the copy is next polled.
+         */
+        long nextPollNanos;
+
+        /**
+         * Holds the time of the last successful poll, or zero.
+         */
+        long lastPollNanos;
+
+        /**
+         * Holds the number of bytes copied at the last poll.
+         */
+        long lastBytesCopied;
+
+        /**
+         * Holds the last time the number of bytes copied changed.
+         */
+        long lastProgressNanos;
+
+        /**
+         * Creates an instance of the <code>CopyTask</code> class.
+         * 
+         * @param source
+         *            the blob to copy from.
+         * @param destination
+         *            the blob to copy to.
+         */
+        CopyTask(final CloudBlob source, final CloudBlob destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+    }
+
+    /**
+     * The default maximum number of copies pending at once.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_COPIES = 100;
+
+    /**
+     * The default minimum poll interval.
+     */
+    public static final long DEFAULT_MIN_POLL_INTERVAL_IN_MS = 1000;
+
+    /**
+     * The default maximum poll interval.
+     */
+    public static final long DEFAULT_MAX_POLL_INTERVAL_IN_MS = 60 * 1000;
+
+    /**
+     * The default number of times a copy is started before it is reported as failed.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Holds the copies that have not been started yet, or must be started again.
+     */
+    private final LinkedList<CopyTask> queued = new LinkedList<CopyTask>();
+
+    /**
+     * Holds the number of bytes copied by copies that have completed.
+     */
+    private final AtomicLong completedBytes = new AtomicLong();
+
+    /**
+     * Holds the number of bytes copied so far by pending copies, as of their last poll.
+     */
+    private volatile long pendingBytes;
+
+    /**
+     * Holds the time <code>execute</code> started, or zero.
+     */
+    private volatile long startNanos;
+
+    /**
+     * Holds the maximum number of copies pending at once.
+     */
+    private int maxConcurrentCopies = DEFAULT_MAX_CONCURRENT_COPIES;
+
+    /**
+     * Holds the minimum poll interval.
+     */
+    private long minPollIntervalInMs = DEFAULT_MIN_POLL_INTERVAL_IN_MS;
+
+    /**
+     * Holds the maximum poll interval.
+     */
+    private long maxPollIntervalInMs = DEFAULT_MAX_POLL_INTERVAL_IN_MS;
+
+    /**
+     * Holds the number of times a copy is started before it is reported as failed.
+     */
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    /**
+     * Holds the time after which a copy that makes no progress is restarted, or zero to never restart stalled copies.
+     */
+    private long stallTimeoutInMs;
+
+    /**
+     * Holds the maximum number of failures recorded in the report.
+     */
+    private int maxRecordedFailures = BlobBulkOperation.DEFAULT_MAX_RECORDED_FAILURES;
+
+    /**
+     * Holds the listener notified as each copy finishes, or <code>null</code>.
+     */
+    private StorageEvent<BlobBulkProgressEvent> progressListener;
+
+    /**
+     * Adds a copy to run.
+     * 
+     * @param source
+     *            A {@link CloudBlob} object that represents the blob to copy from.
+     * @param destination
+     *            A {@link CloudBlob} object that represents the blob to copy to.
+     */
+    public synchronized void add(final CloudBlob source, final CloudBlob destination) {
+        Utility.assertNotNull("source", source);
+        Utility.assertNotNull("destination", destination);
+        this.queued.add(new CopyTask(source, destination));
+    }
+
+    /**
+     * Runs the copies that have been added and waits for them to finish.
+     * 
+     * @return A {@link BlobBulkReport} object that describes the outcome, with failures keyed by destination name.
+     * 
+     * @throws StorageException
+     *             If the wait was interrupted.
+     */
+    @DoesServiceRequest
+    public BlobBulkReport execute() throws StorageException {
+        return this.execute(null, null);
+    }
+
+    /**
+     * Runs the copies that have been added and waits for them to finish, using the specified request options and
+     * operation context. Each request is made with its own operation context, which shares the request event handlers
+     * of <code>opContext</code>.
+     * 
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}) of each destination blob.
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link BlobBulkReport} object that describes the outcome, with failures keyed by destination name.
+     * 
+     * @throws StorageException
+     *             If the wait was interrupted.
+     */
+    @DoesServiceRequest
+    public BlobBulkReport execute(BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        final BlobBulkReport report = new BlobBulkReport(this.maxRecordedFailures);
+        final ArrayList<CopyTask> pending = new ArrayList<CopyTask>();
+        final int threadCount = options.getConcurrentRequestCount() != null ? options.getConcurrentRequestCount()
+                : BlobConstants.DEFAULT_CONCURRENT_REQUEST_COUNT;
+        final ExecutorService threadExecutor = Executors.newFixedThreadPool(threadCount);
+
+        this.completedBytes.set(0);
+        this.pendingBytes = 0;
+        this.startNanos = System.nanoTime();
+
+        try {
+            while (true) {
+                final ArrayList<CopyTask> toStart = new ArrayList<CopyTask>();
+                synchronized (this) {
+                    while (pending.size() + toStart.size() < this.maxConcurrentCopies && !this.queued.isEmpty()) {
+                        toStart.add(this.queued.removeFirst());
+                    }
+
+                    if (toStart.isEmpty() && pending.isEmpty()) {
+                        break;
+                    }
+                }
+
+                if (!toStart.isEmpty()) {
+                    final List<Exception> errors = runBatch(threadExecutor,
+                            this.createStartCalls(toStart, options, opContext));
+                    for (int i = 0; i < toStart.size(); i++) {
+                        final CopyTask task = toStart.get(i);
+                        if (errors.get(i) != null) {
+                            this.restartOrFail(task, errors.get(i), report);
+                        }
+                        else {
+                            pending.add(task);
+                            this.processCopyState(task, System.nanoTime(), report);
+                        }
+                    }
+                }
+
+                final long now = System.nanoTime();
+                final ArrayList<CopyTask> toPoll = new ArrayList<CopyTask>();
+                long nextPollNanos = Long.MAX_VALUE;
+                for (final CopyTask task : pending) {
+                    if (task.nextPollNanos == 0) {
+                        // Already finished.
+                        continue;
+                    }
+                    else if (task.nextPollNanos - now <= 0) {
+                        toPoll.add(task);
+                    }
+                    else {
+                        nextPollNanos = Math.min(nextPollNanos, task.nextPollNanos);
+                    }
+                }
+
+                if (!toPoll.isEmpty()) {
+                    final List<Exception> errors = runBatch(threadExecutor,
+                            this.createPollCalls(toPoll, options, opContext));
+                    final long polledNanos = System.nanoTime();
+                    for (int i = 0; i < toPoll.size(); i++) {
+                        final CopyTask task = toPoll.get(i);
+                        if (errors.get(i) == null) {
+                            task.pollErrors = 0;
+                            this.processCopyState(task, polledNanos, report);
+                        }
+                        else if (++task.pollErrors >= this.maxAttempts) {
+                            task.nextPollNanos = 0;
+                            this.record(task, errors.get(i), report);
+                        }
+                        else {
+                            this.schedulePoll(task, polledNanos, this.minPollIntervalInMs);
+                        }
+                    }
+                }
+
+                long copiedByPending = 0;
+                for (int i = pending.size() - 1; i >= 0; i--) {
+                    if (pending.get(i).nextPollNanos == 0) {
+                        pending.remove(i);
+                    }
+                    else {
+                        copiedByPending += pending.get(i).lastBytesCopied;
+                    }
+                }
+                this.pendingBytes = copiedByPending;
+
+                synchronized (this) {
+                    if (toPoll.isEmpty() && (this.queued.isEmpty() || pending.size() >= this.maxConcurrentCopies)
+                            && nextPollNanos != Long.MAX_VALUE) {
+                        final long waitNanos = nextPollNanos - System.nanoTime();
+                        if (waitNanos > 0) {
+                            this.wait(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+                        }
+                    }
+                }
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+        finally {
+            threadExecutor.shutdownNow();
+        }
+
+        return report;
+    }
+
+    /**
+     * Creates the calls that start copies, aborting the previous attempt of a copy first where required.
+     * 
+     * @param tasks
+     *            the copies to start.
+     * @param options
+     *            the request options.
+     * @param opContext
+     *            the operation context whose event handlers the requests share, or <code>null</code>.
+     * @return the calls.
+     */
+    private List<Callable<Void>> createStartCalls(final List<CopyTask> tasks, final BlobRequestOptions options,
+            final OperationContext opContext) {
+        final ArrayList<Callable<Void>> calls = new ArrayList<Callable<Void>>(tasks.size());
+        for (final CopyTask task : tasks) {
+            calls.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (task.abortCopyId != null) {
+                        try {
+                            task.destination.abortCopy(task.abortCopyId, null, new BlobRequestOptions(options),
+                                    createContext(opContext));
+                        }
+                        catch (final StorageException e) {
+                            // The copy may have ended since it was last polled, start it again regardless.
+                        }
+                        task.abortCopyId = null;
+                    }
+
+                    task.attempts++;
+                    task.destination.copyFromBlob(task.source, null, null, new BlobRequestOptions(options),
+                            createContext(opContext));
+                    return null;
+                }
+            });
+        }
+        return calls;
+    }
+
+    /**
+     * Creates the calls that refresh the copy state of copies.
+     * 
+     * @param tasks
+     *            the copies to poll.
+     * @param options
+     *            the request options.
+     * @param opContext
+     *            the operation context whose event handlers the requests share, or <code>null</code>.
+     * @return the calls.
+     */
+    private List<Callable<Void>> createPollCalls(final List<CopyTask> tasks, final BlobRequestOptions options,
+            final OperationContext opContext) {
+        final ArrayList<Callable<Void>> calls = new ArrayList<Callable<Void>>(tasks.size());
+        for (final CopyTask task : tasks) {
+            calls.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    task.destination.downloadAttributes(null, new BlobRequestOptions(options),
+                            createContext(opContext));
+                    return null;
+                }
+            });
+        }
+        return calls;
+    }
+
+    /**
+     * Acts on the copy state of a copy after it has been started or polled.
+     * 
+     * @param task
+     *            the copy.
+     * @param now
+     *            the current time.
+     * @param report
+     *            the report to record finished copies in.
+     */
+    void processCopyState(final CopyTask task, final long now, final BlobBulkReport report) {
+        final CopyState state = task.destination.getCopyState();
+        final CopyStatus status = state == null || state.getStatus() == null ? CopyStatus.UNSPECIFIED : state
+                .getStatus();
+
+        if (status == CopyStatus.SUCCESS) {
+            task.nextPollNanos = 0;
+            this.completedBytes.addAndGet(state.getBytesCopied() != null ? state.getBytesCopied() : task.destination
+                    .getProperties().getLength());
+            this.record(task, null, report);
+            return;
+        }
+        else if (status == CopyStatus.FAILED || status == CopyStatus.ABORTED) {
+            task.nextPollNanos = 0;
+            this.restartOrFail(task, new StorageException(status.toString(), String.format(
+                    "The copy from %s ended with status %s: %s", task.source.getUri(), status,
+                    state.getStatusDescription()), Constants.HeaderConstants.HTTP_UNUSED_306, null, null), report);
+            return;
+        }
+
+        final long copied = state != null && state.getBytesCopied() != null ? state.getBytesCopied() : 0;
+        if (task.lastPollNanos == 0 || copied != task.lastBytesCopied) {
+            task.lastProgressNanos = now;
+        }
+        else if (this.stallTimeoutInMs > 0 && (now - task.lastProgressNanos) / 1000000L >= this.stallTimeoutInMs) {
+            task.nextPollNanos = 0;
+            task.abortCopyId = state != null ? state.getCopyId() : null;
+            this.restartOrFail(task, new StorageException(status.toString(), String.format(
+                    "The copy from %s made no progress for %d ms.", task.source.getUri(), this.stallTimeoutInMs),
+                    Constants.HeaderConstants.HTTP_UNUSED_306, null, null), report);
+            return;
+        }
+
+        // Poll again at about half the estimated time to completion, or back off if there is no estimate.
+        long intervalInMs = task.pollIntervalInMs == 0 ? this.minPollIntervalInMs : task.pollIntervalInMs * 2;
+        if (task.lastPollNanos != 0 && copied > task.lastBytesCopied && state.getTotalBytes() != null) {
+            final double bytesPerMs = (copied - task.lastBytesCopied) / ((now - task.lastPollNanos) / 1000000.0);
+            intervalInMs = (long) ((state.getTotalBytes() - copied) / bytesPerMs / 2);
+        }
+
+        task.lastPollNanos = now;
+        task.lastBytesCopied = copied;
+        this.schedulePoll(task, now, intervalInMs);
+    }
+
+    /**
+     * Schedules the next poll of a copy.
+     * 
+     * @param task
+     *            the copy.
+     * @param now
+     *            the current time.
+     * @param intervalInMs
+     *            the requested interval, which is clamped to the minimum and maximum poll intervals.
+     */
+    private void schedulePoll(final CopyTask task, final long now, final long intervalInMs) {
+        task.pollIntervalInMs = Math.max(this.minPollIntervalInMs, Math.min(this.maxPollIntervalInMs, intervalInMs));
+        task.nextPollNanos = now + task.pollIntervalInMs * 1000000L;
+        if (task.nextPollNanos == 0) {
+            task.nextPollNanos = 1;
+        }
+    }
+
+    /**
+     * Queues a copy to be started again, or reports it as failed if it has used all of its attempts.
+     * 
+     * @param task
+     *            the copy.
+     * @param exception
+     *            the reason the attempt failed.
+     * @param report
+     *            the report to record the failure in.
+     */
+    void restartOrFail(final CopyTask task, final Exception exception, final BlobBulkReport report) {
+        if (task.attempts < this.maxAttempts) {
+            task.pollIntervalInMs = 0;
+            task.lastPollNanos = 0;
+            task.lastBytesCopied = 0;
+            synchronized (this) {
+                this.queued.add(task);
+            }
+        }
+        else {
+            this.record(task, exception, report);
+        }
+    }
+
+    /**
+     * Records the outcome of a copy and notifies the progress listener.
+     * 
+     * @param task
+     *            the copy.
+     * @param exception
+     *            the reason it failed, or <code>null</code> if it succeeded.
+     * @param report
+     *            the report to record the outcome in.
+     */
+    private void record(final CopyTask task, final Exception exception, final BlobBulkReport report) {
+        String name;
+        try {
+            name = task.destination.getName();
+        }
+        catch (final Exception e) {
+            name = task.destination.getUri().toString();
+        }
+
+        final BlobBulkProgressEvent event = report.record(name, exception, task.destination);
+        final StorageEvent<BlobBulkProgressEvent> listener = this.progressListener;
+        if (listener != null) {
+            try {
+                listener.eventOccurred(event);
+            }
+            catch (final RuntimeException e) {
+                // A failing listener must not abort the orchestration; the outcome is already in the report.
+            }
+        }
+    }
+
+    /**
+     * Creates the operation context for one request.
+     * 
+     * @param opContext
+     *            the operation context whose event handlers are shared, or <code>null</code>.
+     * @return the new operation context.
+     */
+    private static OperationContext createContext(final OperationContext opContext) {
+        final OperationContext requestContext = new OperationContext();
+        if (opContext != null) {
+            requestContext.setSendingRequestEventHandler(opContext.getSendingRequestEventHandler());
+            requestContext.setResponseReceivedEventHandler(opContext.getResponseReceivedEventHandler());
+        }
+        return requestContext;
+    }
+
+    /**
+     * Runs a batch of calls and waits for all of them.
+     * 
+     * @param executor
+     *            the executor to run the calls on.
+     * @param calls
+     *            the calls.
+     * @return the exception each call failed with, or <code>null</code> for calls that succeeded, in call order.
+     * @throws InterruptedException
+     *             If the wait was interrupted.
+     */
+    private static List<Exception> runBatch(final ExecutorService executor, final List<Callable<Void>> calls)
+            throws InterruptedException {
+        final ArrayList<Exception> errors = new ArrayList<Exception>(calls.size());
+        for (final Future<Void> future : executor.invokeAll(calls)) {
+            try {
+                future.get();
+                errors.add(null);
+            }
+            catch (final ExecutionException e) {
+                errors.add(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return the number of bytes copied so far, counting pending copies as of their last poll.
+     */
+    public long getBytesCopied() {
+        return this.completedBytes.get() + this.pendingBytes;
+    }
+
+    /**
+     * @return the average number of bytes copied per second since the copies were started, or zero if they have not
+     *         been started.
+     */
+    public double getBytesPerSecond() {
+        final long start = this.startNanos;
+        if (start == 0) {
+            return 0;
+        }
+
+        final double seconds = (System.nanoTime() - start) / 1000000000.0;
+        return seconds > 0 ? this.getBytesCopied() / seconds : 0;
+    }
+
+    /**
+     * @return the number of times a copy is started before it is reported as failed.
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * @return the maximum number of copies pending at once.
+     */
+    public int getMaxConcurrentCopies() {
+        return this.maxConcurrentCopies;
+    }
+
+    /**
+     * @return the maximum poll interval, in milliseconds.
+     */
+    public long getMaxPollIntervalInMs() {
+        return this.maxPollIntervalInMs;
+    }
+
+    /**
+     * @return the maximum number of failures recorded in the report.
+     */
+    public int getMaxRecordedFailures() {
+        return this.maxRecordedFailures;
+    }
+
+    /**
+     * @return the minimum poll interval, in milliseconds.
+     */
+    public long getMinPollIntervalInMs() {
+        return this.minPollIntervalInMs;
+    }
+
+    /**
+     * @return the listener notified as each copy finishes, or <code>null</code>.
+     */
+    public StorageEvent<BlobBulkProgressEvent> getProgressListener() {
+        return this.progressListener;
+    }
+
+    /**
+     * @return the number of copies waiting to be started or restarted.
+     */
+    synchronized int getQueuedCount() {
+        return this.queued.size();
+    }
+
+    /**
+     * @return the time, in milliseconds, after which a copy that makes no progress is restarted, or zero if stalled
+     *         copies are not restarted.
+     */
+    public long getStallTimeoutInMs() {
+        return this.stallTimeoutInMs;
+    }
+
+    /**
+     * Sets the number of times a copy is started before it is reported as failed.
+     * 
+     * @param maxAttempts
+     *            The number of attempts, at least one.
+     */
+    public void setMaxAttempts(final int maxAttempts) {
+        Utility.assertInBounds("maxAttempts", maxAttempts, 1, Integer.MAX_VALUE);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Sets the maximum number of copies pending at once.
+     * 
+     * @param maxConcurrentCopies
+     *            The maximum number of copies, at least one.
+     */
+    public void setMaxConcurrentCopies(final int maxConcurrentCopies) {
+        Utility.assertInBounds("maxConcurrentCopies", maxConcurrentCopies, 1, Integer.MAX_VALUE);
+        this.maxConcurrentCopies = maxConcurrentCopies;
+    }
+
+    /**
+     * Sets the maximum poll interval.
+     * 
+     * @param maxPollIntervalInMs
+     *            The maximum interval, in milliseconds, which must not be less than the minimum poll interval.
+     */
+    public void setMaxPollIntervalInMs(final long maxPollIntervalInMs) {
+        if (maxPollIntervalInMs < this.minPollIntervalInMs) {
+            throw new IllegalArgumentException("The maximum poll interval must not be less than the minimum.");
+        }
+        this.maxPollIntervalInMs = maxPollIntervalInMs;
+    }
+
+    /**
+     * Sets the maximum number of failures recorded in the report.
+     * 
+     * @param maxRecordedFailures
+     *            The maximum number of failures to record.
+     */
+    public void setMaxRecordedFailures(final int maxRecordedFailures) {
+        Utility.assertInBounds("maxRecordedFailures", maxRecordedFailures, 0, Integer.MAX_VALUE);
+        this.maxRecordedFailures = maxRecordedFailures;
+    }
+
+    /**
+     * Sets the minimum poll interval.
+     * 
+     * @param minPollIntervalInMs
+     *            The minimum interval, in milliseconds, which must be positive and not greater than the maximum poll
+     *            interval.
+     */
+    public void setMinPollIntervalInMs(final long minPollIntervalInMs) {
+        if (minPollIntervalInMs <= 0 || minPollIntervalInMs > this.maxPollIntervalInMs) {
+            throw new IllegalArgumentException(
+                    "The minimum poll interval must be positive and not greater than the maximum.");
+        }
+        this.minPollIntervalInMs = minPollIntervalInMs;
+    }
+
+    /**
+     * Sets the listener notified as each copy finishes. The listener is called on the thread that runs
+     * {@link #execute()}. Exceptions thrown by the listener are ignored, so that they do not stop the copies that are
+     * still pending.
+     * 
+     * @param progressListener
+     *            The listener, or <code>null</code> for none.
+     */
+    public void setProgressListener(final StorageEvent<BlobBulkProgressEvent> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Sets the time after which a copy that makes no progress is aborted and started again.
+     * 
+     * @param stallTimeoutInMs
+     *            The time, in milliseconds, or zero to never restart stalled copies.
+     */
+    public void setStallTimeoutInMs(final long stallTimeoutInMs) {
+        if (stallTimeoutInMs < 0) {
+            throw new IllegalArgumentException("The stall timeout must not be negative.");
+        }
+        this.stallTimeoutInMs = stallTimeoutInMs;
+    }
+}
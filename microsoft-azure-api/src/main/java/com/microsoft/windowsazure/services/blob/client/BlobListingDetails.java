@@ -17,8 +17,8 @@ package com.microsoft.windowsazure.services.blob.client;
 /**
  * Specifies which items to include when listing a set of blobs.
  * <p>
- * By default, committed blocks are always returned. Use the values in this enum to include snapshots, metadata, and/or
- * uncommitted blocks.
+ * By default, committed blocks are always returned. Use the values in this enum to include snapshots, metadata,
+ * uncommitted blocks, and/or copy state.
  * <p>
  */
 public enum BlobListingDetails {
@@ -35,7 +35,12 @@ public enum BlobListingDetails {
     /**
      * Specifies listing uncommitted blobs.
      */
-    UNCOMMITTED_BLOBS(4);
+    UNCOMMITTED_BLOBS(4),
+
+    /**
+     * Specifies listing the copy state of each blob returned in the listing.
+     */
+    COPY(8);
 
     /**
      * Returns the value of this enum.
@@ -351,7 +351,8 @@ public final class BlobOutputStream extends OutputStream {
             this.waitForTaskToComplete();
         }
 
-        final ByteArrayInputStream bufferRef = new ByteArrayInputStream(this.outBuffer.toByteArray());
+        final byte[] bufferData = this.outBuffer.toByteArray();
+        final ByteArrayInputStream bufferRef = new ByteArrayInputStream(bufferData);
 
         if (this.streamType == BlobType.BLOCK_BLOB) {
             final CloudBlockBlob blobRef = (CloudBlockBlob) this.parentBlobRef;
@@ -362,8 +363,18 @@ public final class BlobOutputStream extends OutputStream {
                 @Override
                 public Void call() {
                     try {
-                        blobRef.uploadBlock(blockID, bufferRef, writeLength, BlobOutputStream.this.accessCondition,
-                                BlobOutputStream.this.options, BlobOutputStream.this.opContext);
+                        // The block is already in memory, so hash it directly rather than having uploadBlock scan
+                        // the stream again.
+                        String md5 = null;
+                        if (BlobOutputStream.this.options.getUseTransactionalContentMD5()) {
+                            final MessageDigest blockDigest = Utility.getMD5Digest();
+                            blockDigest.update(bufferData, 0, writeLength);
+                            md5 = Base64.encode(blockDigest.digest());
+                        }
+
+                        blobRef.uploadBlockInternal(blockID, md5, bufferRef, writeLength,
+                                BlobOutputStream.this.accessCondition, BlobOutputStream.this.options,
+                                BlobOutputStream.this.opContext);
                     }
                     catch (final IOException e) {
                         synchronized (BlobOutputStream.this.lastErrorLock) {
@@ -22,7 +22,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
@@ -32,6 +31,7 @@ import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.utils.UriQueryBuilder;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.BaseRequest;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.LeaseAction;
 
@@ -622,6 +622,17 @@ final class BlobRequest {
                     sb.append("metadata");
                 }
 
+                if (listingContext.getListingDetails().contains(BlobListingDetails.COPY)) {
+                    if (!started) {
+                        started = true;
+                    }
+                    else {
+                        sb.append(",");
+                    }
+
+                    sb.append("copy");
+                }
+
                 builder.add("include", sb.toString());
             }
         }
@@ -997,8 +1008,7 @@ final class BlobRequest {
             throws XMLStreamException, StorageException {
 
         final StringWriter outWriter = new StringWriter();
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        final XMLStreamWriter xmlw = xmlOutFactoryInst.createXMLStreamWriter(outWriter);
+        final XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(outWriter);
 
         // default is UTF8
         xmlw.writeStartDocument();
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+
+/**
+ * Records the blocks of a file upload that have been uploaded, so that an interrupted upload can be resumed without
+ * uploading them again.
+ * <p>
+ * The checkpoint is a small text file. The first line identifies the source file by its length, last modified time
+ * and the block size used, and each following line holds the index and MD5 of one uploaded block. Lines are appended
+ * and flushed as blocks complete, and a checkpoint whose header does not match the source file is discarded.
+ */
+final class BlockUploadCheckpoint {
+    /**
+     * The version tag that starts the header line.
+     */
+    private static final String VERSION = "v1";
+
+    /**
+     * Holds the checkpoint file.
+     */
+    private final File checkpointFile;
+
+    /**
+     * Holds the MD5 of each recorded block, keyed by block index.
+     */
+    private final HashMap<Integer, String> blockMD5s = new HashMap<Integer, String>();
+
+    /**
+     * Holds the writer that appends records to the checkpoint file.
+     */
+    private Writer writer;
+
+    /**
+     * Opens the checkpoint for an upload, loading the blocks it records if it was written for the same source file and
+     * block size, and starting a new checkpoint otherwise.
+     * 
+     * @param checkpointFile
+     *            the file that holds the checkpoint.
+     * @param sourceFile
+     *            the file being uploaded.
+     * @param blockSize
+     *            the size of each block, in bytes.
+     * @return the opened checkpoint.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    static BlockUploadCheckpoint open(final File checkpointFile, final File sourceFile, final int blockSize)
+            throws IOException {
+        final String header = String.format("%s %d %d %d", VERSION, sourceFile.length(), sourceFile.lastModified(),
+                blockSize);
+        final BlockUploadCheckpoint checkpoint = new BlockUploadCheckpoint(checkpointFile);
+
+        boolean resumed = false;
+        if (checkpointFile.exists()) {
+            resumed = checkpoint.load(header);
+        }
+
+        checkpoint.writer = new OutputStreamWriter(new FileOutputStream(checkpointFile, resumed), "UTF8");
+        if (!resumed) {
+            checkpoint.writer.write(header);
+        }
+
+        // Start on a new line, so a record torn by an earlier interruption is not joined to the next one.
+        checkpoint.writer.write('\n');
+        checkpoint.writer.flush();
+
+        return checkpoint;
+    }
+
+    /**
+     * Creates an instance of the <code>BlockUploadCheckpoint</code> class.
+     * 
+     * @param checkpointFile
+     *            the file that holds the checkpoint.
+     */
+    private BlockUploadCheckpoint(final File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Reads the block records from the checkpoint file.
+     * 
+     * @param expectedHeader
+     *            the header the file must start with.
+     * @return <code>true</code> if the file matched the header and its records were loaded; otherwise,
+     *         <code>false</code>.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    private boolean load(final String expectedHeader) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(
+                this.checkpointFile), "UTF8"));
+        try {
+            if (!expectedHeader.equals(reader.readLine())) {
+                return false;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf(' ');
+                if (separator <= 0 || separator == line.length() - 1) {
+                    // A torn record from an interrupted write, the block will simply be uploaded again.
+                    continue;
+                }
+
+                try {
+                    this.blockMD5s.put(Integer.parseInt(line.substring(0, separator)), line.substring(separator + 1));
+                }
+                catch (final NumberFormatException e) {
+                    continue;
+                }
+            }
+
+            return true;
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the MD5 recorded for a block.
+     * 
+     * @param blockIndex
+     *            the index of the block.
+     * @return the Base64 encoded MD5 of the block, or <code>null</code> if the block has not been recorded.
+     */
+    synchronized String getBlockMD5(final int blockIndex) {
+        return this.blockMD5s.get(blockIndex);
+    }
+
+    /**
+     * @return <code>true</code> if the checkpoint records at least one uploaded block, so that the upload is being
+     *         resumed.
+     */
+    synchronized boolean hasRecordedBlocks() {
+        return !this.blockMD5s.isEmpty();
+    }
+
+    /**
+     * Records that a block has been uploaded and flushes the record to the checkpoint file.
+     * 
+     * @param blockIndex
+     *            the index of the block.
+     * @param md5
+     *            the Base64 encoded MD5 of the block.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    synchronized void recordBlock(final int blockIndex, final String md5) throws IOException {
+        this.blockMD5s.put(blockIndex, md5);
+        this.writer.write(blockIndex + " " + md5 + "\n");
+        this.writer.flush();
+    }
+
+    /**
+     * Closes the checkpoint file, leaving it in place so the upload can be resumed.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    synchronized void close() throws IOException {
+        if (this.writer != null) {
+            this.writer.close();
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the checkpoint file once the upload has been committed.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    synchronized void delete() throws IOException {
+        this.close();
+        if (this.checkpointFile.exists() && !this.checkpointFile.delete()) {
+            throw new IOException("Could not delete the upload checkpoint " + this.checkpointFile.getPath());
+        }
+    }
+}
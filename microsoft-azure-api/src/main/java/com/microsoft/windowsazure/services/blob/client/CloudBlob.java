@@ -26,6 +26,8 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
 
 import com.microsoft.windowsazure.services.blob.core.storage.SharedAccessSignatureHelper;
 import com.microsoft.windowsazure.services.core.storage.AccessCondition;
@@ -39,6 +41,7 @@ import com.microsoft.windowsazure.services.core.storage.StorageCredentialsShared
 import com.microsoft.windowsazure.services.core.storage.StorageErrorCodeStrings;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.StorageExtendedErrorInformation;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
 import com.microsoft.windowsazure.services.core.storage.utils.Base64;
 import com.microsoft.windowsazure.services.core.storage.utils.PathUtility;
 import com.microsoft.windowsazure.services.core.storage.utils.StreamMd5AndLength;
@@ -630,6 +633,10 @@ public abstract class CloudBlob implements ListBlobItem {
                     return null;
                 }
 
+                if (client.getAttributeCache() != null) {
+                    client.getAttributeCache().remove(blob);
+                }
+
                 return null;
             }
         };
@@ -774,6 +781,68 @@ public abstract class CloudBlob implements ListBlobItem {
         opContext.initialize();
         options.applyDefaults(this.blobServiceClient);
 
+        final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = this.deleteImpl(deleteSnapshotsOption,
+                accessCondition, options);
+
+        ExecutionEngine
+                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Deletes the blob asynchronously using the specified snapshot and request options, and operation context. Retries
+     * are scheduled on a timer rather than blocking a thread during their back-off interval.
+     * 
+     * @param deleteSnapshotsOption
+     *            A {@link DeleteSnapshotsOption} object that indicates whether to delete only blobs, only snapshots, or
+     *            both.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes when the blob has been deleted.
+     */
+    @DoesServiceRequest
+    public final StorageFuture<Void> deleteAsync(final DeleteSnapshotsOption deleteSnapshotsOption,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext) {
+        Utility.assertNotNull("deleteSnapshotsOption", deleteSnapshotsOption);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.blobServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.deleteImpl(deleteSnapshotsOption, accessCondition, options), options.getRetryPolicyFactory(),
+                opContext);
+    }
+
+    /**
+     * Creates the operation that deletes the blob.
+     * 
+     * @param deleteSnapshotsOption
+     *            the snapshots to delete along with the blob
+     * @param accessCondition
+     *            the access conditions for the blob
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudBlobClient, CloudBlob, Void> deleteImpl(
+            final DeleteSnapshotsOption deleteSnapshotsOption, final AccessCondition accessCondition,
+            final BlobRequestOptions options) {
         final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = new StorageOperation<CloudBlobClient, CloudBlob, Void>(
                 options) {
             @Override
@@ -794,12 +863,15 @@ public abstract class CloudBlob implements ListBlobItem {
                     return null;
                 }
 
+                if (client.getAttributeCache() != null) {
+                    client.getAttributeCache().remove(blob);
+                }
+
                 return null;
             }
         };
 
-        ExecutionEngine
-                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
@@ -880,11 +952,13 @@ public abstract class CloudBlob implements ListBlobItem {
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
-                if (this.getResult().getStatusCode() == HttpURLConnection.HTTP_ACCEPTED) {
-                    return true;
-                }
-                else if (this.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
-                    return false;
+                if (this.getResult().getStatusCode() == HttpURLConnection.HTTP_ACCEPTED
+                        || this.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    if (client.getAttributeCache() != null) {
+                        client.getAttributeCache().remove(blob);
+                    }
+
+                    return this.getResult().getStatusCode() == HttpURLConnection.HTTP_ACCEPTED;
                 }
                 else {
                     this.setNonExceptionedRetryableFailure(true);
@@ -983,6 +1057,10 @@ public abstract class CloudBlob implements ListBlobItem {
                     return null;
                 }
 
+                if (client.getAttributeCache() != null) {
+                    client.getAttributeCache().put(blob);
+                }
+
                 final StreamMd5AndLength descriptor = Utility.writeToOutputStream(streamRef, outStream, -1, false,
                         validateMD5, this.getResult(), opContext);
 
@@ -1127,6 +1205,70 @@ public abstract class CloudBlob implements ListBlobItem {
 
         options.applyDefaults(this.blobServiceClient);
 
+        if (this.applyFreshCachedAttributes(accessCondition)) {
+            return;
+        }
+
+        final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = this.downloadAttributesImpl(accessCondition,
+                options);
+
+        ExecutionEngine
+                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Populates a blob's properties and metadata asynchronously using the specified request options and operation
+     * context. Retries are scheduled on a timer rather than blocking a thread during their back-off interval.
+     * 
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes when the blob's properties and metadata have been
+     *         populated.
+     */
+    @DoesServiceRequest
+    public final StorageFuture<Void> downloadAttributesAsync(final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.blobServiceClient);
+
+        if (this.applyFreshCachedAttributes(accessCondition)) {
+            final StorageFuture<Void> future = new StorageFuture<Void>();
+            future.setResult(null);
+            return future;
+        }
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.downloadAttributesImpl(accessCondition, options), options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Creates the operation that populates the blob's properties and metadata.
+     * 
+     * @param accessCondition
+     *            the access conditions for the blob
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudBlobClient, CloudBlob, Void> downloadAttributesImpl(
+            final AccessCondition accessCondition, final BlobRequestOptions options) {
         final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = new StorageOperation<CloudBlobClient, CloudBlob, Void>(
                 options) {
             @Override
@@ -1135,14 +1277,24 @@ public abstract class CloudBlob implements ListBlobItem {
 
                 final BlobRequestOptions blobOptions = (BlobRequestOptions) this.getRequestOptions();
 
+                final BlobAttributeCache cache = client.getAttributeCache();
+                final BlobAttributeCache.Entry cached = blob.getCachedAttributes(cache, accessCondition);
+
                 final HttpURLConnection request = BlobRequest.getProperties(blob.getTransformedAddress(opContext), this
-                        .getRequestOptions().getTimeoutIntervalInMs(), blob.snapshotID, accessCondition, blobOptions,
-                        opContext);
+                        .getRequestOptions().getTimeoutIntervalInMs(), blob.snapshotID,
+                        cached != null ? AccessCondition.generateIfNoneMatchCondition(cached.getEtag())
+                                : accessCondition, blobOptions, opContext);
 
                 client.getCredentials().signRequest(request, -1L);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
+                if (cached != null && this.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    cached.applyTo(blob);
+                    cache.put(blob);
+                    return null;
+                }
+
                 if (this.getResult().getStatusCode() != HttpURLConnection.HTTP_OK) {
                     this.setNonExceptionedRetryableFailure(true);
                     return null;
@@ -1165,12 +1317,15 @@ public abstract class CloudBlob implements ListBlobItem {
                 blob.metadata = retrievedAttributes.getMetadata();
                 blob.copyState = retrievedAttributes.getCopyState();
 
+                if (cache != null) {
+                    cache.put(blob);
+                }
+
                 return null;
             }
         };
 
-        ExecutionEngine
-                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
@@ -1281,6 +1436,94 @@ public abstract class CloudBlob implements ListBlobItem {
                     "Cannot specify x-ms-range-get-content-md5 header on ranges larger than 4 MB. Either use a BlobReadStream via openRead, or disable TransactionalMD5 checking via the BlobRequestOptions.");
         }
 
+        final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = this.downloadRangeImpl(blobOffset, length,
+                buffer, bufferOffset, accessCondition, options);
+
+        ExecutionEngine
+                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Downloads a range of bytes from the blob to the given byte buffer asynchronously, using the specified request
+     * options and operation context. Retries are scheduled on a timer rather than blocking a thread during their
+     * back-off interval.
+     * 
+     * @param offset
+     *            The byte offset to use as the starting point for the source.
+     * @param length
+     *            The number of bytes to read.
+     * @param buffer
+     *            The byte buffer, as an array of bytes, to which the blob bytes are downloaded.
+     * @param bufferOffset
+     *            The byte offset to use as the starting point for the target.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes when the range has been written to the buffer.
+     */
+    @DoesServiceRequest
+    public final StorageFuture<Void> downloadRangeAsync(final long offset, final int length, final byte[] buffer,
+            final int bufferOffset, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) {
+        if (offset < 0 || length <= 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        Utility.assertNotNull("buffer", buffer);
+
+        if (length + bufferOffset > buffer.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.blobServiceClient);
+
+        if (options.getUseTransactionalContentMD5() && length > 4 * Constants.MB) {
+            throw new IllegalArgumentException(
+                    "Cannot specify x-ms-range-get-content-md5 header on ranges larger than 4 MB. Either use a BlobReadStream via openRead, or disable TransactionalMD5 checking via the BlobRequestOptions.");
+        }
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.downloadRangeImpl(offset, length, buffer, bufferOffset, accessCondition, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Creates the operation that downloads a range of bytes from the blob to the given byte buffer.
+     * 
+     * @param blobOffset
+     *            the offset of the blob to begin downloading at
+     * @param length
+     *            the number of bytes to read
+     * @param buffer
+     *            the byte buffer to write to.
+     * @param bufferOffset
+     *            the offset in the byte buffer to begin writing.
+     * @param accessCondition
+     *            the access conditions for the blob
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudBlobClient, CloudBlob, Void> downloadRangeImpl(final long blobOffset,
+            final int length, final byte[] buffer, final int bufferOffset, final AccessCondition accessCondition,
+            final BlobRequestOptions options) {
         final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = new StorageOperation<CloudBlobClient, CloudBlob, Void>(
                 options) {
             @Override
@@ -1369,8 +1612,7 @@ public abstract class CloudBlob implements ListBlobItem {
             }
         };
 
-        ExecutionEngine
-                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
@@ -1419,6 +1661,69 @@ public abstract class CloudBlob implements ListBlobItem {
         opContext.initialize();
         options.applyDefaults(this.blobServiceClient);
 
+        if (this.applyFreshCachedAttributes(accessCondition)) {
+            return true;
+        }
+
+        final StorageOperation<CloudBlobClient, CloudBlob, Boolean> impl = this.existsImpl(accessCondition, options);
+
+        return ExecutionEngine.executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(),
+                opContext);
+    }
+
+    /**
+     * Checks asynchronously whether the blob exists, using the specified request options and operation context.
+     * Retries are scheduled on a timer rather than blocking a thread during their back-off interval.
+     * 
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes with <code>true</code> if the blob exists, otherwise
+     *         <code>false</code>.
+     */
+    @DoesServiceRequest
+    public final StorageFuture<Boolean> existsAsync(final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.blobServiceClient);
+
+        if (this.applyFreshCachedAttributes(accessCondition)) {
+            final StorageFuture<Boolean> future = new StorageFuture<Boolean>();
+            future.setResult(Boolean.TRUE);
+            return future;
+        }
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.existsImpl(accessCondition, options), options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Creates the operation that checks whether the blob exists.
+     * 
+     * @param accessCondition
+     *            the access conditions for the blob
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudBlobClient, CloudBlob, Boolean> existsImpl(final AccessCondition accessCondition,
+            final BlobRequestOptions options) {
         final StorageOperation<CloudBlobClient, CloudBlob, Boolean> impl = new StorageOperation<CloudBlobClient, CloudBlob, Boolean>(
                 options) {
 
@@ -1427,23 +1732,38 @@ public abstract class CloudBlob implements ListBlobItem {
                     throws Exception {
                 final BlobRequestOptions blobOptions = (BlobRequestOptions) this.getRequestOptions();
 
+                final BlobAttributeCache cache = client.getAttributeCache();
+                final BlobAttributeCache.Entry cached = blob.getCachedAttributes(cache, accessCondition);
+
                 final HttpURLConnection request = BlobRequest.getProperties(blob.getTransformedAddress(opContext), this
-                        .getRequestOptions().getTimeoutIntervalInMs(), blob.snapshotID, accessCondition, blobOptions,
-                        opContext);
+                        .getRequestOptions().getTimeoutIntervalInMs(), blob.snapshotID,
+                        cached != null ? AccessCondition.generateIfNoneMatchCondition(cached.getEtag())
+                                : accessCondition, blobOptions, opContext);
 
                 client.getCredentials().signRequest(request, -1L);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
-                if (this.getResult().getStatusCode() == HttpURLConnection.HTTP_OK) {
+                if (cached != null && this.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    cached.applyTo(blob);
+                    cache.put(blob);
+                    return Boolean.valueOf(true);
+                }
+                else if (this.getResult().getStatusCode() == HttpURLConnection.HTTP_OK) {
                     final BlobAttributes retrievedAttributes = BlobResponse.getAttributes(request, blob.getUri(),
                             blob.snapshotID, opContext);
                     blob.properties = retrievedAttributes.getProperties();
                     blob.metadata = retrievedAttributes.getMetadata();
                     blob.copyState = retrievedAttributes.getCopyState();
+                    if (cache != null) {
+                        cache.put(blob);
+                    }
                     return Boolean.valueOf(true);
                 }
                 else if (this.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    if (cache != null) {
+                        cache.remove(blob);
+                    }
                     return Boolean.valueOf(false);
                 }
                 else {
@@ -1455,8 +1775,7 @@ public abstract class CloudBlob implements ListBlobItem {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(),
-                opContext);
+        return impl;
     }
 
     /**
@@ -1836,7 +2155,58 @@ public abstract class CloudBlob implements ListBlobItem {
         }
     }
 
+    /**
+     * Populates the blob's properties and metadata from the client's attribute cache, if no access condition is
+     * specified and the cached attributes have not expired.
+     * 
+     * @param accessCondition
+     *            the access conditions for the blob
+     * @return <code>true</code> if the attributes were populated from the cache
+     */
+    private boolean applyFreshCachedAttributes(final AccessCondition accessCondition) {
+        final BlobAttributeCache.Entry cached = this.getCachedAttributes(this.blobServiceClient.getAttributeCache(),
+                accessCondition);
+        if (cached == null || !cached.isFresh()) {
+            return false;
+        }
+
+        cached.applyTo(this);
+        return true;
+    }
+
+    /**
+     * Returns the cached attributes that may be used for the blob. Attributes are only used when no access condition
+     * is specified, so that conditional requests always reach the service, and when they describe a blob of the same
+     * type with a known ETag.
+     * 
+     * @param cache
+     *            the attribute cache, or <code>null</code> if attribute caching is disabled
+     * @param accessCondition
+     *            the access conditions for the blob
+     * @return the cached attributes, or <code>null</code> if there are none that may be used
+     */
+    BlobAttributeCache.Entry getCachedAttributes(final BlobAttributeCache cache,
+            final AccessCondition accessCondition) {
+        if (cache == null || accessCondition != null) {
+            return null;
+        }
+
+        final BlobAttributeCache.Entry cached = cache.get(this);
+        if (cached == null || Utility.isNullOrEmpty(cached.getEtag())
+                || cached.getBlobType() != this.properties.getBlobType()) {
+            return null;
+        }
+
+        return cached;
+    }
+
     void updateEtagAndLastModifiedFromResponse(HttpURLConnection request) {
+        // The blob was modified, so any cached attributes are no longer current.
+        final BlobAttributeCache cache = this.blobServiceClient.getAttributeCache();
+        if (cache != null) {
+            cache.remove(this);
+        }
+
         String tempStr = request.getHeaderField(Constants.HeaderConstants.ETAG);
 
         // ETag
@@ -2361,7 +2731,7 @@ public abstract class CloudBlob implements ListBlobItem {
                 client.getCredentials().signRequest(request, length);
 
                 final StreamMd5AndLength descriptor = Utility.writeToOutputStream(sourceStream,
-                        request.getOutputStream(), length, true, false, null, opContext);
+                        ExecutionEngine.getOutputStream(request, opContext), length, true, false, null, opContext);
 
                 if (length != descriptor.getLength()) {
                     throw new StorageException(
@@ -2386,6 +2756,44 @@ public abstract class CloudBlob implements ListBlobItem {
                 .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Waits for one of the upload or download tasks submitted to a completion service to complete, rethrowing the
+     * exception it failed with, if any.
+     * 
+     * @param completionService
+     *            the service the tasks were submitted to.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred, or the wait was interrupted.
+     */
+    static void waitForTransferTask(final CompletionService<Void> completionService) throws StorageException,
+            IOException {
+        try {
+            completionService.take().get();
+        }
+        catch (final InterruptedException e) {
+            throw Utility.initIOException(e);
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof StorageException) {
+                throw (StorageException) cause;
+            }
+            else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw Utility.generateNewUnexpectedStorageException((Exception) cause);
+        }
+    }
+
     /**
      * Uploads the blob's metadata to the storage service.
      * 
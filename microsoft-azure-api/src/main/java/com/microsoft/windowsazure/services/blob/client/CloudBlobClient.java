@@ -37,6 +37,7 @@ import com.microsoft.windowsazure.services.core.storage.utils.PathUtility;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ExecutionEngine;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.LazySegmentedIterable;
+import com.microsoft.windowsazure.services.core.storage.utils.implementation.SegmentSizer;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ListingContext;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.SegmentedStorageOperation;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.StorageOperation;
@@ -79,6 +80,11 @@ public final class CloudBlobClient extends ServiceClient {
      */
     private String directoryDelimiter = BlobConstants.DEFAULT_DELIMITER;
 
+    /**
+     * Holds the cache of blob attributes, or <code>null</code> if attribute caching is disabled.
+     */
+    private BlobAttributeCache attributeCache;
+
     /**
      * Creates an instance of the <code>CloudBlobClient</code> class using the specified Blob service endpoint.
      * 
@@ -106,6 +112,48 @@ public final class CloudBlobClient extends ServiceClient {
         this.streamMinimumReadSizeInBytes = BlobConstants.DEFAULT_MINIMUM_READ_SIZE_IN_BYTES;
     }
 
+    /**
+     * Disables the caching of blob properties and metadata, discarding any cached attributes.
+     */
+    public synchronized void disableAttributeCache() {
+        this.attributeCache = null;
+    }
+
+    /**
+     * Enables the caching of blob properties and metadata for blobs accessed via this client. Cached attributes are
+     * used by {@link CloudBlob#downloadAttributes()} and {@link CloudBlob#exists()} without a request to the service
+     * during their time to live, and are revalidated with a conditional request on their ETag after it. Blobs with a
+     * pending copy are not cached. Calling this method while attribute caching is already enabled replaces the existing
+     * cache.
+     * 
+     * @param maxEntries
+     *            The maximum number of blobs whose attributes are cached; the least recently used entries are evicted
+     *            beyond it.
+     * @param timeToLiveInMs
+     *            The time, in milliseconds, during which cached attributes are used without revalidation. Specify 0 to
+     *            revalidate on every use.
+     * 
+     * @return A {@link BlobAttributeCache} object that represents the cache.
+     * 
+     * @throws IllegalArgumentException
+     *             If <code>maxEntries</code> is less than 1 or <code>timeToLiveInMs</code> is negative.
+     */
+    public synchronized BlobAttributeCache enableAttributeCache(final int maxEntries, final long timeToLiveInMs) {
+        this.attributeCache = new BlobAttributeCache(maxEntries, timeToLiveInMs);
+        return this.attributeCache;
+    }
+
+    /**
+     * Returns the cache of blob properties and metadata used by this client.
+     * 
+     * @return A {@link BlobAttributeCache} object, or <code>null</code> if attribute caching is not enabled.
+     * 
+     * @see #enableAttributeCache(int, long)
+     */
+    public synchronized BlobAttributeCache getAttributeCache() {
+        return this.attributeCache;
+    }
+
     /**
      * Returns a reference to a {@link CloudBlockBlob} object that represents a block blob.
      * 
@@ -524,7 +572,8 @@ public final class CloudBlobClient extends ServiceClient {
                     final OperationContext opContext) throws Exception {
 
                 final ResultSegment<CloudBlobContainer> result = CloudBlobClient.this.listContainersCore(prefix,
-                        detailsIncluded, -1, this.getToken(), this.getRequestOptions(), this, opContext);
+                        detailsIncluded, this.getSegmentSize() == null ? -1 : this.getSegmentSize(), this.getToken(),
+                        this.getRequestOptions(), this, opContext);
 
                 // Note, setting the token on the SegmentedStorageOperation is
                 // key, this is how the iterator
@@ -535,7 +584,9 @@ public final class CloudBlobClient extends ServiceClient {
         };
 
         return new LazySegmentedIterable<CloudBlobClient, Void, CloudBlobContainer>(impl, this, null,
-                options.getRetryPolicyFactory(), opContext);
+                options.getRetryPolicyFactory(), opContext,
+                options.getUseAdaptiveSegmentSizing() ? new SegmentSizer(SegmentSizer.DEFAULT_INITIAL_SEGMENT_SIZE,
+                        BlobConstants.MAX_LISTING_RESULTS, null) : null);
     }
 
     /**
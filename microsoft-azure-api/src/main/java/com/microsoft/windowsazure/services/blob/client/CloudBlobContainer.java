@@ -21,6 +21,7 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.EnumSet;
@@ -45,6 +46,7 @@ import com.microsoft.windowsazure.services.core.storage.utils.UriQueryBuilder;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ExecutionEngine;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.LazySegmentedIterable;
+import com.microsoft.windowsazure.services.core.storage.utils.implementation.SegmentSizer;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.LeaseAction;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.SegmentedStorageOperation;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.StorageOperation;
@@ -1033,7 +1035,8 @@ public final class CloudBlobContainer {
                     final CloudBlobContainer container, final OperationContext opContext) throws Exception {
 
                 final ResultSegment<ListBlobItem> result = CloudBlobContainer.this.listBlobsCore(prefix,
-                        useFlatBlobListing, listingDetails, -1, this.getToken(),
+                        useFlatBlobListing, listingDetails, this.getSegmentSize() == null ? -1 : this.getSegmentSize(),
+                        this.getToken(),
                         (BlobRequestOptions) this.getRequestOptions(), this, opContext);
 
                 // Note, setting the token on the SegmentedStorageOperation is
@@ -1047,7 +1050,9 @@ public final class CloudBlobContainer {
         };
 
         return new LazySegmentedIterable<CloudBlobClient, CloudBlobContainer, ListBlobItem>(impl,
-                this.blobServiceClient, this, options.getRetryPolicyFactory(), opContext);
+                this.blobServiceClient, this, options.getRetryPolicyFactory(), opContext,
+                options.getUseAdaptiveSegmentSizing() ? new SegmentSizer(SegmentSizer.DEFAULT_INITIAL_SEGMENT_SIZE,
+                        BlobConstants.MAX_LISTING_RESULTS, null) : null);
     }
 
     /**
@@ -1126,12 +1131,66 @@ public final class CloudBlobContainer {
             newToken.setContinuationType(ResultContinuationType.BLOB);
         }
 
-        final ResultSegment<ListBlobItem> resSegment = new ResultSegment<ListBlobItem>(response.getBlobs(
-                this.blobServiceClient, this), maxResults, newToken);
+        final ArrayList<ListBlobItem> blobs = response.getBlobs(this.blobServiceClient, this);
+
+        // Only listings that include metadata and copy state describe all of a blob's attributes.
+        final BlobAttributeCache cache = this.blobServiceClient.getAttributeCache();
+        if (cache != null && listingDetails.contains(BlobListingDetails.METADATA)
+                && listingDetails.contains(BlobListingDetails.COPY)) {
+            for (final ListBlobItem item : blobs) {
+                if (item instanceof CloudBlob) {
+                    cache.put((CloudBlob) item);
+                }
+            }
+        }
+
+        final ResultSegment<ListBlobItem> resSegment = new ResultSegment<ListBlobItem>(blobs, maxResults, newToken);
 
         return resSegment;
     }
 
+    /**
+     * Returns an enumerable collection of the blobs whose names begin with the specified prefix, listed by walking the
+     * virtual directory tree in parallel, using the specified listing details options, request options, and operation
+     * context.
+     * <p>
+     * Each virtual directory found under the prefix is listed independently, on up to
+     * {@link BlobRequestOptions#getConcurrentRequestCount()} threads, so containers whose blobs are spread over many
+     * directories are listed much faster than with a flat listing. Blobs are returned in no particular order, and the
+     * directories themselves are not returned. See {@link ParallelBlobListing} for details.
+     * 
+     * @param prefix
+     *            A <code>String</code> that represents the blob name prefix, which should be empty or end with the
+     *            directory delimiter.
+     * @param listingDetails
+     *            A <code>java.util.EnumSet</code> object that contains {@link BlobListingDetails} values that indicate
+     *            whether metadata and/or uncommitted blocks are returned. Snapshots cannot be listed hierarchically.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object whose request event handlers are shared by the listing requests.
+     * 
+     * @return A {@link ParallelBlobListing} object that lists the blobs.
+     */
+    @DoesServiceRequest
+    public ParallelBlobListing listBlobsParallel(final String prefix, final EnumSet<BlobListingDetails> listingDetails,
+            BlobRequestOptions options, final OperationContext opContext) {
+        if (listingDetails != null && listingDetails.contains(BlobListingDetails.SNAPSHOTS)) {
+            throw new IllegalArgumentException("Listing snapshots is only supported in flat mode (no delimiter).");
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        options.applyDefaults(this.blobServiceClient);
+
+        return new ParallelBlobListing(this, prefix == null ? Constants.EMPTY_STRING : prefix, listingDetails,
+                options, opContext);
+    }
+
     /**
      * Returns a result segment of an enumerable collection of blob items in the container.
      * 
@@ -1610,7 +1669,7 @@ public final class CloudBlobContainer {
 
                 final byte[] aclBytes = outBuffer.toString().getBytes("UTF8");
                 client.getCredentials().signRequest(request, aclBytes.length);
-                final OutputStream outStreamRef = request.getOutputStream();
+                final OutputStream outStreamRef = ExecutionEngine.getOutputStream(request, opContext);
                 outStreamRef.write(aclBytes);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
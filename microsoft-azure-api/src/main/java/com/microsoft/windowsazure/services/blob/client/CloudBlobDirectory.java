@@ -381,6 +381,35 @@ public final class CloudBlobDirectory implements ListBlobItem {
                 options, opContext);
     }
 
+    /**
+     * Returns an enumerable collection of the blobs in this directory and all of its subdirectories, listed by walking
+     * the directory tree in parallel, using the specified listing details options, request options, and operation
+     * context. See {@link CloudBlobContainer#listBlobsParallel} for details.
+     * 
+     * @param listingDetails
+     *            A <code>java.util.EnumSet</code> object that contains {@link BlobListingDetails} values that indicate
+     *            whether metadata and/or uncommitted blocks are returned. Snapshots cannot be listed hierarchically.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object whose request event handlers are shared by the listing requests.
+     * 
+     * @return A {@link ParallelBlobListing} object that lists the blobs.
+     * 
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws URISyntaxException
+     *             If the resource URI is invalid.
+     */
+    @DoesServiceRequest
+    public ParallelBlobListing listBlobsParallel(final EnumSet<BlobListingDetails> listingDetails,
+            final BlobRequestOptions options, final OperationContext opContext) throws StorageException,
+            URISyntaxException {
+        return this.getContainer().listBlobsParallel(this.getPrefix(), listingDetails, options, opContext);
+    }
+
     /**
      * Returns a result segment of an enumerable collection of blob items in the directory.
      * 
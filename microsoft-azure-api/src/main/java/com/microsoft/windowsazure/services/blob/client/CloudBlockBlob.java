@@ -16,17 +16,32 @@ package com.microsoft.windowsazure.services.blob.client;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.microsoft.windowsazure.services.core.storage.AccessCondition;
 import com.microsoft.windowsazure.services.core.storage.Constants;
 import com.microsoft.windowsazure.services.core.storage.DoesServiceRequest;
 import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.RequestResult;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
 import com.microsoft.windowsazure.services.core.storage.utils.Base64;
 import com.microsoft.windowsazure.services.core.storage.utils.StreamMd5AndLength;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
@@ -37,6 +52,10 @@ import com.microsoft.windowsazure.services.core.storage.utils.implementation.Sto
  * Represents a blob that is uploaded as a set of blocks.
  */
 public final class CloudBlockBlob extends CloudBlob {
+    /**
+     * Holds the random number generator used to create starting blockIDs for file uploads.
+     */
+    private static Random blockSequenceGenerator = new Random();
 
     /**
      * Creates an instance of the <code>CloudBlockBlob</code> class using the specified relative URI and storage service
@@ -201,8 +220,8 @@ public final class CloudBlockBlob extends CloudBlob {
                 request.setRequestProperty(Constants.HeaderConstants.CONTENT_MD5, descriptor.getMd5());
 
                 client.getCredentials().signRequest(request, descriptor.getLength());
-                Utility.writeToOutputStream(blockListInputStream, request.getOutputStream(), descriptor.getLength(),
-                        false, false, null, opContext);
+                Utility.writeToOutputStream(blockListInputStream, ExecutionEngine.getOutputStream(request, opContext),
+                        descriptor.getLength(), false, false, null, opContext);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
@@ -425,46 +444,472 @@ public final class CloudBlockBlob extends CloudBlob {
         opContext.initialize();
         options.applyDefaults(this.blobServiceClient);
 
-        StreamMd5AndLength descriptor = new StreamMd5AndLength();
-        descriptor.setLength(length);
+        final long threshold = this.blobServiceClient.getSingleBlobPutThresholdInBytes();
 
-        if (sourceStream.markSupported()) {
-            // Mark sourceStream for current position.
-            sourceStream.mark(Constants.MAX_MARK_LENGTH);
-        }
+        // A rewindable stream of known length whose MD5 is not stored can be sent as is.
+        if (sourceStream.markSupported() && length >= 0 && !options.getStoreBlobContentMD5()) {
+            if (length < threshold) {
+                sourceStream.mark(Constants.MAX_MARK_LENGTH);
+                this.uploadFullBlob(sourceStream, length, accessCondition, options, opContext);
+            }
+            else {
+                final BlobOutputStream writeStream = this.openOutputStream(accessCondition, options, opContext);
+                writeStream.write(sourceStream, length);
+                writeStream.close();
+            }
 
-        // If the stream is rewindable and the length is unknown or we need to
-        // set md5, then analyze the stream.
-        // Note this read will abort at
-        // serviceClient.getSingleBlobPutThresholdInBytes() bytes and return
-        // -1 as length in which case we will revert to using a stream as it is
-        // over the single put threshold.
-        if (sourceStream.markSupported() && (length < 0 || options.getStoreBlobContentMD5())) {
-            // If the stream is of unknown length or we need to calculate
-            // the MD5, then we we need to read the stream contents first
+            return;
+        }
 
-            descriptor = Utility.analyzeStream(sourceStream, length,
-                    this.blobServiceClient.getSingleBlobPutThresholdInBytes(), true /* rewindSourceStream */,
-                    options.getStoreBlobContentMD5());
+        // Otherwise read up to the single put threshold once, hashing the data as it is buffered. The Content-MD5
+        // header has to be sent ahead of the body, so the buffered copy is what gets uploaded rather than reading the
+        // source a second time.
+        final MessageDigest digest = options.getStoreBlobContentMD5() ? Utility.getMD5Digest() : null;
+        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        final long bytesRead = Utility.readToBuffer(sourceStream, byteStream, length, threshold - 1, digest);
 
-            if (descriptor.getMd5() != null && options.getStoreBlobContentMD5()) {
-                this.properties.setContentMD5(descriptor.getMd5());
+        if (bytesRead < threshold) {
+            if (digest != null) {
+                this.properties.setContentMD5(Base64.encode(digest.digest()));
             }
-        }
 
-        // If the stream is rewindable, and the length is known and less than
-        // threshold the upload in a single put, otherwise use a stream.
-        if (sourceStream.markSupported() && descriptor.getLength() != -1
-                && descriptor.getLength() < this.blobServiceClient.getSingleBlobPutThresholdInBytes()) {
-            this.uploadFullBlob(sourceStream, descriptor.getLength(), accessCondition, options, opContext);
+            this.uploadFullBlob(new ByteArrayInputStream(byteStream.toByteArray()), bytesRead, accessCondition,
+                    options, opContext);
         }
         else {
+            // Over the threshold, so hand the data read so far and the rest of the source to a blob stream which
+            // computes the blob MD5 as it uploads the blocks.
             final BlobOutputStream writeStream = this.openOutputStream(accessCondition, options, opContext);
-            writeStream.write(sourceStream, length);
+            writeStream.write(byteStream.toByteArray());
+            writeStream.write(sourceStream, length < 0 ? -1 : length - bytesRead);
             writeStream.close();
         }
     }
 
+    /**
+     * Uploads the contents of a file to the block blob, uploading blocks in parallel.
+     * 
+     * @param sourceFile
+     *            A <code>File</code> object that represents the file to upload.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final File sourceFile) throws StorageException, IOException {
+        this.uploadFromFile(sourceFile, null, null, null);
+    }
+
+    /**
+     * Uploads the contents of a file to the block blob, using the specified lease ID, request options, and operation
+     * context.
+     * <p>
+     * Files smaller than the single blob put threshold of the service client are uploaded with a single request.
+     * Larger files are divided into blocks of the client's write block size, and each block is read from the file
+     * with a positional read by the worker thread that uploads it, so no single thread has to read the whole file.
+     * When {@link BlobRequestOptions#getStoreBlobContentMD5()} is set, the blocks are instead read in order by the
+     * calling thread, which computes the blob MD5 in the same pass, so the file is still read only once. Up to
+     * {@link BlobRequestOptions#getConcurrentRequestCount()} blocks are uploaded at once, and the block list is
+     * committed in file order once every block has been uploaded.
+     * 
+     * @param sourceFile
+     *            A <code>File</code> object that represents the file to upload.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final File sourceFile, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException, IOException {
+        Utility.assertNotNull("sourceFile", sourceFile);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.blobServiceClient);
+
+        final long length = sourceFile.length();
+        if (length < this.blobServiceClient.getSingleBlobPutThresholdInBytes()) {
+            final FileInputStream sourceStream = new FileInputStream(sourceFile);
+            try {
+                this.upload(sourceStream, length, accessCondition, options, opContext);
+            }
+            finally {
+                sourceStream.close();
+            }
+            return;
+        }
+
+        this.uploadFileBlocks(sourceFile, length, null, accessCondition, options, opContext);
+    }
+
+    /**
+     * Uploads the contents of a file to the block blob, recording progress in a checkpoint file so that an interrupted
+     * upload can be resumed.
+     * 
+     * @param sourceFile
+     *            A <code>File</code> object that represents the file to upload.
+     * @param checkpointFile
+     *            A <code>File</code> object that represents the file in which upload progress is recorded.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final File sourceFile, final File checkpointFile) throws StorageException, IOException {
+        this.uploadFromFile(sourceFile, checkpointFile, null, null, null);
+    }
+
+    /**
+     * Uploads the contents of a file to the block blob, recording progress in a checkpoint file so that an interrupted
+     * upload can be resumed, using the specified lease ID, request options, and operation context.
+     * <p>
+     * Block IDs are derived from the offset of each block in the file, so a restarted upload produces the same IDs.
+     * As each block is uploaded its index and MD5 are appended to the checkpoint file. When the upload is started again
+     * with the same checkpoint file, and the source file still has the same length and last modified time, the
+     * uncommitted block list of the blob is downloaded and every block that is recorded in the checkpoint, present on
+     * the service with the expected size, and still matches its recorded MD5 in the file is skipped. The block list is
+     * not downloaded when the checkpoint records no blocks. The checkpoint file is deleted once the block list has been
+     * committed.
+     * 
+     * @param sourceFile
+     *            A <code>File</code> object that represents the file to upload.
+     * @param checkpointFile
+     *            A <code>File</code> object that represents the file in which upload progress is recorded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final File sourceFile, final File checkpointFile, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException, IOException {
+        Utility.assertNotNull("sourceFile", sourceFile);
+        Utility.assertNotNull("checkpointFile", checkpointFile);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.blobServiceClient);
+
+        this.uploadFileBlocks(sourceFile, sourceFile.length(), checkpointFile, accessCondition, options, opContext);
+    }
+
+    /**
+     * Uploads a file as a list of blocks read and uploaded in parallel, then commits the block list.
+     * 
+     * @param sourceFile
+     *            the file to upload.
+     * @param length
+     *            the length of the file.
+     * @param checkpointFile
+     *            the file in which upload progress is recorded, or <code>null</code> if the upload is not resumable.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            An object that specifies any additional options for the request
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    private void uploadFileBlocks(final File sourceFile, final long length, final File checkpointFile,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException, IOException {
+        final int blockSize = this.blobServiceClient.getWriteBlockSizeInBytes();
+        final int blockCount = getBlockCount(length, blockSize);
+
+        BlockUploadCheckpoint checkpoint = null;
+        HashMap<String, Long> uploadedBlocks = new HashMap<String, Long>();
+        if (checkpointFile != null) {
+            checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, blockSize);
+
+            // A fresh checkpoint has nothing to skip, so the service is only asked for its blocks when resuming.
+            if (checkpoint.hasRecordedBlocks()) {
+                uploadedBlocks = this.getUncommittedBlockSizes(accessCondition, options, opContext);
+            }
+        }
+
+        final RandomAccessFile file = new RandomAccessFile(sourceFile, "r");
+        final ExecutorService threadExecutor = Executors.newFixedThreadPool(options.getConcurrentRequestCount());
+        try {
+            final FileChannel channel = file.getChannel();
+            final CompletionService<Void> completionService = new ExecutorCompletionService<Void>(threadExecutor);
+            final ArrayList<BlockEntry> blockList = new ArrayList<BlockEntry>(blockCount);
+            final long blockIdSequenceNumber = checkpoint != null ? 0
+                    : (long) (blockSequenceGenerator.nextInt(Integer.MAX_VALUE))
+                            + blockSequenceGenerator.nextInt(Integer.MAX_VALUE - 100000);
+
+            // The whole blob MD5 has to be computed in file order. When it is stored, this thread reads the blocks in
+            // order and hashes them in the same pass, handing each one to a worker; otherwise each worker reads its
+            // own block. Bounding the blocks in flight bounds the memory held by blocks read ahead.
+            final MessageDigest fileDigest = options.getStoreBlobContentMD5() ? Utility.getMD5Digest() : null;
+            final int maxOutstanding = options.getConcurrentRequestCount() * 2;
+            int outstanding = 0;
+            for (int i = 0; i < blockCount; i++) {
+                final long offset = (long) i * blockSize;
+                final int blockLength = (int) Math.min(blockSize, length - offset);
+
+                // Resumable uploads name blocks by offset, so a restarted upload looks for the same IDs.
+                final String blockId = Base64.encode(Utility.getBytesFromLong(checkpoint != null ? offset
+                        : blockIdSequenceNumber + i));
+                blockList.add(new BlockEntry(blockId, BlockSearchMode.UNCOMMITTED));
+
+                byte[] data = null;
+                if (fileDigest != null) {
+                    data = readFileBlock(channel, offset, blockLength);
+                    fileDigest.update(data);
+                }
+
+                if (checkpoint != null && checkpoint.getBlockMD5(i) != null
+                        && uploadedBlocks.containsKey(blockId) && uploadedBlocks.get(blockId) == blockLength) {
+                    // Only skip the block if the file still holds what was uploaded; the length and modified time
+                    // the checkpoint was opened with do not catch every change to the file.
+                    if (data == null) {
+                        data = readFileBlock(channel, offset, blockLength);
+                    }
+
+                    if (checkpoint.getBlockMD5(i).equals(getBlockMD5(data))) {
+                        continue;
+                    }
+                }
+
+                if (outstanding >= maxOutstanding) {
+                    waitForTransferTask(completionService);
+                    outstanding--;
+                }
+
+                completionService.submit(this.uploadFileBlockTask(channel, data, blockId, offset, blockLength, i,
+                        checkpoint, accessCondition, options, opContext));
+                outstanding++;
+            }
+
+            for (; outstanding > 0; outstanding--) {
+                waitForTransferTask(completionService);
+            }
+
+            if (fileDigest != null) {
+                this.properties.setContentMD5(Base64.encode(fileDigest.digest()));
+            }
+
+            this.commitBlockList(blockList, accessCondition, options, opContext);
+
+            if (checkpoint != null) {
+                checkpoint.delete();
+            }
+        }
+        finally {
+            threadExecutor.shutdownNow();
+            file.close();
+
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the sizes of the uncommitted blocks of the blob, keyed by block ID.
+     * 
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            An object that specifies any additional options for the request
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return the uncommitted block sizes, which is empty if the blob does not exist yet.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    private HashMap<String, Long> getUncommittedBlockSizes(final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) throws StorageException {
+        final HashMap<String, Long> blockSizes = new HashMap<String, Long>();
+        try {
+            for (final BlockEntry block : this.downloadBlockList(BlockListingFilter.UNCOMMITTED, accessCondition,
+                    options, opContext)) {
+                blockSizes.put(block.getId(), block.getSize());
+            }
+        }
+        catch (final StorageException e) {
+            if (e.getHttpStatusCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw e;
+            }
+        }
+
+        return blockSizes;
+    }
+
+    /**
+     * Creates a task that reads a block from a file and uploads it.
+     * 
+     * @param channel
+     *            the channel to read the block from.
+     * @param blockData
+     *            the contents of the block, or <code>null</code> to read it from the channel.
+     * @param blockId
+     *            the Base64 Encoded Block ID
+     * @param offset
+     *            the offset of the block in the file.
+     * @param blockLength
+     *            the length of the block.
+     * @param blockIndex
+     *            the index of the block in the file.
+     * @param checkpoint
+     *            the checkpoint to record the block in once it is uploaded, or <code>null</code>.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            An object that specifies any additional options for the request
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return a <code>Callable</code> that uploads the block.
+     */
+    private Callable<Void> uploadFileBlockTask(final FileChannel channel, final byte[] blockData,
+            final String blockId, final long offset, final int blockLength, final int blockIndex,
+            final BlockUploadCheckpoint checkpoint, final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                final byte[] data = blockData != null ? blockData : readFileBlock(channel, offset, blockLength);
+
+                String md5 = null;
+                if (options.getUseTransactionalContentMD5() || checkpoint != null) {
+                    md5 = getBlockMD5(data);
+                }
+
+                // Each block is tracked in its own context, since an operation context is not safe for concurrent
+                // use; its request results are added to the caller's context once the block is done.
+                final OperationContext blockContext = new OperationContext();
+                blockContext.setSendingRequestEventHandler(opContext.getSendingRequestEventHandler());
+                blockContext.setResponseReceivedEventHandler(opContext.getResponseReceivedEventHandler());
+                try {
+                    CloudBlockBlob.this.uploadBlockInternal(blockId, md5, new ByteArrayInputStream(data),
+                            blockLength, accessCondition, options, blockContext);
+                }
+                finally {
+                    synchronized (opContext) {
+                        for (final RequestResult result : blockContext.getRequestResults()) {
+                            opContext.appendRequestResult(result);
+                        }
+                    }
+                }
+
+                if (checkpoint != null) {
+                    checkpoint.recordBlock(blockIndex, md5);
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Reads a block of a file with positional reads.
+     * 
+     * @param channel
+     *            the channel to read from.
+     * @param offset
+     *            the offset of the block in the file.
+     * @param blockLength
+     *            the length of the block.
+     * @return the contents of the block.
+     * @throws IOException
+     *             If an I/O error occurred, or the file is shorter than expected.
+     */
+    private static byte[] readFileBlock(final FileChannel channel, final long offset, final int blockLength)
+            throws IOException {
+        final byte[] data = new byte[blockLength];
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                throw new IOException("The file was truncated while it was being uploaded.");
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Computes the MD5 hash of a block.
+     * 
+     * @param data
+     *            the contents of the block.
+     * @return the Base64 encoded MD5 hash.
+     * @throws StorageException
+     *             If the MD5 algorithm is not available.
+     */
+    private static String getBlockMD5(final byte[] data) throws StorageException {
+        final MessageDigest digest = Utility.getMD5Digest();
+        digest.update(data);
+        return Base64.encode(digest.digest());
+    }
+
+    /**
+     * Returns the number of blocks a file is divided into.
+     * 
+     * @param length
+     *            the length of the file.
+     * @param blockSize
+     *            the size of each block but the last.
+     * @return the number of blocks.
+     * @throws IllegalArgumentException
+     *             If the file would need more blocks than a blob may have.
+     */
+    static int getBlockCount(final long length, final int blockSize) {
+        final long blockCount = (length + blockSize - 1) / blockSize;
+        if (blockCount > BlobConstants.MAX_BLOCK_COUNT) {
+            throw new IllegalArgumentException(String.format(
+                    "The file is too large to upload with a block size of %d bytes.", blockSize));
+        }
+
+        return (int) blockCount;
+    }
+
     /**
      * Uploads a block to the block blob, using the specified block ID and lease ID.
      * 
@@ -518,18 +963,57 @@ public final class CloudBlockBlob extends CloudBlob {
     public void uploadBlock(final String blockId, final InputStream sourceStream, final long length,
             final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
             throws StorageException, IOException {
-        if (length < -1) {
-            throw new IllegalArgumentException(
-                    "Invalid stream length, specify -1 for unkown length stream, or a positive number of bytes");
+        if (opContext == null) {
+            opContext = new OperationContext();
         }
 
-        if (length > 4 * Constants.MB) {
-            throw new IllegalArgumentException(
-                    "Invalid stream length, length must be less than or equal to 4 MB in size.");
+        if (options == null) {
+            options = new BlobRequestOptions();
         }
 
-        assertNoWriteOperationForSnapshot();
+        options.applyDefaults(this.blobServiceClient);
 
+        final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = this.prepareUploadBlock(blockId,
+                sourceStream, length, accessCondition, options);
+
+        ExecutionEngine
+                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Uploads a block to the block blob asynchronously, using the specified block ID, lease ID, request options, and
+     * operation context. The source stream is read before this method returns, unless it is a rewindable stream of
+     * known length; retries are scheduled on a timer rather than blocking a thread during their back-off interval.
+     * 
+     * @param blockId
+     *            A <code>String</code> that represents the Base-64 encoded block ID. Note for a given blob the length
+     *            of all Block IDs must be identical.
+     * @param sourceStream
+     *            An <code>InputStream</code> object that represents the input stream to write to the block blob.
+     * @param length
+     *            The length, in bytes, of the stream data, or -1 if unknown.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes when the block has been uploaded.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred reading the source stream.
+     * @throws StorageException
+     *             If the block could not be prepared for upload.
+     */
+    @DoesServiceRequest
+    public StorageFuture<Void> uploadBlockAsync(final String blockId, final InputStream sourceStream,
+            final long length, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException, IOException {
         if (opContext == null) {
             opContext = new OperationContext();
         }
@@ -538,45 +1022,73 @@ public final class CloudBlockBlob extends CloudBlob {
             options = new BlobRequestOptions();
         }
 
+        opContext.initialize();
         options.applyDefaults(this.blobServiceClient);
 
-        // Assert block length
-        if (Utility.isNullOrEmpty(blockId) || !Base64.validateIsBase64String(blockId)) {
-            throw new IllegalArgumentException("Invalid blockID, BlockID must be a valid Base64 String.");
-        }
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.prepareUploadBlock(blockId, sourceStream, length, accessCondition, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
 
-        if (sourceStream.markSupported()) {
-            // Mark sourceStream for current position.
-            sourceStream.mark(Constants.MAX_MARK_LENGTH);
+    /**
+     * Validates a block and creates the operation that uploads it, buffering the source stream unless it can be
+     * uploaded directly.
+     * 
+     * @param blockId
+     *            the Base64 Encoded Block ID
+     * @param sourceStream
+     *            the InputStream to read from
+     * @param length
+     *            the length of the stream data, or -1 if unknown.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     * @throws IOException
+     *             If an I/O error occurred reading the source stream.
+     * @throws StorageException
+     *             If the MD5 digest could not be created.
+     */
+    private StorageOperation<CloudBlobClient, CloudBlob, Void> prepareUploadBlock(final String blockId,
+            final InputStream sourceStream, final long length, final AccessCondition accessCondition,
+            final BlobRequestOptions options) throws StorageException, IOException {
+        if (length < -1) {
+            throw new IllegalArgumentException(
+                    "Invalid stream length, specify -1 for unkown length stream, or a positive number of bytes");
         }
 
-        InputStream bufferedStreamReference = sourceStream;
-        StreamMd5AndLength descriptor = new StreamMd5AndLength();
-        descriptor.setLength(length);
+        if (length > 4 * Constants.MB) {
+            throw new IllegalArgumentException(
+                    "Invalid stream length, length must be less than or equal to 4 MB in size.");
+        }
 
-        if (!sourceStream.markSupported()) {
-            // needs buffering
-            final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            descriptor = Utility.writeToOutputStream(sourceStream, byteStream, length, false /* rewindSourceStream */,
-                    options.getUseTransactionalContentMD5(), null, opContext);
+        assertNoWriteOperationForSnapshot();
 
-            bufferedStreamReference = new ByteArrayInputStream(byteStream.toByteArray());
+        // Assert block length
+        if (Utility.isNullOrEmpty(blockId) || !Base64.validateIsBase64String(blockId)) {
+            throw new IllegalArgumentException("Invalid blockID, BlockID must be a valid Base64 String.");
         }
-        else if (length < 0 || options.getUseTransactionalContentMD5()) {
-            // If the stream is of unknown length or we need to calculate the
-            // MD5, then we we need to read the stream contents first
 
-            descriptor = Utility.analyzeStream(sourceStream, length, -1L, true /* rewindSourceStream */,
-                    options.getUseTransactionalContentMD5());
+        if (sourceStream.markSupported() && length >= 0 && !options.getUseTransactionalContentMD5()) {
+            // Rewindable stream of known length without a transactional MD5, upload it directly.
+            sourceStream.mark(Constants.MAX_MARK_LENGTH);
+            return this.uploadBlockImpl(blockId, null, sourceStream, length, accessCondition, options);
         }
 
-        if (descriptor.getLength() > 4 * Constants.MB) {
+        // Buffer the block once, hashing it in the same pass when a transactional MD5 is required.
+        final MessageDigest digest = options.getUseTransactionalContentMD5() ? Utility.getMD5Digest() : null;
+        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        final long bytesRead = Utility.readToBuffer(sourceStream, byteStream, length, 4 * Constants.MB, digest);
+
+        if (bytesRead > 4 * Constants.MB) {
             throw new IllegalArgumentException(
                     "Invalid stream length, length must be less than or equal to 4 MB in size.");
         }
 
-        this.uploadBlockInternal(blockId, descriptor.getMd5(), bufferedStreamReference, descriptor.getLength(),
-                accessCondition, options, opContext);
+        final String md5 = digest == null ? null : Base64.encode(digest.digest());
+        return this.uploadBlockImpl(blockId, md5, new ByteArrayInputStream(byteStream.toByteArray()), bytesRead,
+                accessCondition, options);
     }
 
     /**
@@ -601,10 +1113,36 @@ public final class CloudBlockBlob extends CloudBlob {
      * @throws IOException
      */
     @DoesServiceRequest
-    private void uploadBlockInternal(final String blockId, final String md5, final InputStream sourceStream,
+    void uploadBlockInternal(final String blockId, final String md5, final InputStream sourceStream,
             final long length, final AccessCondition accessCondition, final BlobRequestOptions options,
             final OperationContext opContext) throws StorageException, IOException {
+        final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = this.uploadBlockImpl(blockId, md5,
+                sourceStream, length, accessCondition, options);
+
+        ExecutionEngine
+                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
+    }
 
+    /**
+     * Creates the operation that uploads a block of the blob.
+     * 
+     * @param blockId
+     *            the Base64 Encoded Block ID
+     * @param md5
+     *            the MD5 to use if it will be set.
+     * @param sourceStream
+     *            the InputStream to read from
+     * @param length
+     *            the length of the stream data.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudBlobClient, CloudBlob, Void> uploadBlockImpl(final String blockId,
+            final String md5, final InputStream sourceStream, final long length,
+            final AccessCondition accessCondition, final BlobRequestOptions options) {
         final StorageOperation<CloudBlobClient, CloudBlob, Void> impl = new StorageOperation<CloudBlobClient, CloudBlob, Void>(
                 options) {
 
@@ -621,7 +1159,7 @@ public final class CloudBlockBlob extends CloudBlob {
                 }
 
                 client.getCredentials().signRequest(request, length);
-                Utility.writeToOutputStream(sourceStream, request.getOutputStream(), length,
+                Utility.writeToOutputStream(sourceStream, ExecutionEngine.getOutputStream(request, opContext), length,
                         true /* rewindSourceStream */, false /* calculateMD5 */, null, opContext);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
@@ -636,8 +1174,6 @@ public final class CloudBlockBlob extends CloudBlob {
             }
         };
 
-        ExecutionEngine
-                .executeWithRetry(this.blobServiceClient, this, impl, options.getRetryPolicyFactory(), opContext);
-
+        return impl;
     }
 }
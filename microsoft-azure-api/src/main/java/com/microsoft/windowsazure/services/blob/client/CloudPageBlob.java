@@ -14,19 +14,29 @@
  */
 package com.microsoft.windowsazure.services.blob.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.microsoft.windowsazure.services.core.storage.AccessCondition;
 import com.microsoft.windowsazure.services.core.storage.Constants;
 import com.microsoft.windowsazure.services.core.storage.DoesServiceRequest;
 import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.RequestResult;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.utils.Base64;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
@@ -369,6 +379,200 @@ public final class CloudPageBlob extends CloudBlob {
                 opContext);
     }
 
+    /**
+     * Downloads the valid page ranges of the page blob into a local file, updating a file that already holds an
+     * earlier snapshot of the blob.
+     * 
+     * @param targetFile
+     *            A <code>File</code> object that represents the file to write to.
+     * @param previousSnapshot
+     *            A {@link CloudPageBlob} object that represents the snapshot the file already holds, or
+     *            <code>null</code> if the file should be written from scratch.
+     * 
+     * @throws IOException
+     *             If an I/O exception occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void downloadToFile(final File targetFile, final CloudPageBlob previousSnapshot) throws StorageException,
+            IOException {
+        this.downloadToFile(targetFile, previousSnapshot, null, null, null);
+    }
+
+    /**
+     * Downloads the valid page ranges of the page blob into a local file, updating a file that already holds an
+     * earlier snapshot of the blob, using the specified lease ID, request options, and operation context.
+     * <p>
+     * Only pages that hold data are transferred; empty pages are left as zeros in the file. When a previous snapshot is
+     * given, the file is assumed to hold its contents: the page ranges of both blobs are compared, pages that were
+     * valid in the previous snapshot but have since been cleared are zeroed locally, and the file is resized to the
+     * current length. The page ranges of this version of the storage service do not record which pages were
+     * rewritten, so every currently valid range is downloaded. Ranges are downloaded in parallel, up to
+     * {@link BlobRequestOptions#getConcurrentRequestCount()} at a time, and written at their offsets with positional
+     * writes.
+     * <p>
+     * To take consistent backups, call this on a snapshot created with {@link CloudBlob#createSnapshot()} rather than
+     * on a blob that is being written to.
+     * 
+     * @param targetFile
+     *            A <code>File</code> object that represents the file to write to.
+     * @param previousSnapshot
+     *            A {@link CloudPageBlob} object that represents the snapshot the file already holds, or
+     *            <code>null</code> if the file should be written from scratch.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @throws IOException
+     *             If an I/O exception occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void downloadToFile(final File targetFile, final CloudPageBlob previousSnapshot,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        Utility.assertNotNull("targetFile", targetFile);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        options.applyDefaults(this.blobServiceClient);
+
+        this.downloadAttributes(accessCondition, options, opContext);
+        final long length = this.properties.getLength();
+        final ArrayList<PageRange> ranges = this.downloadPageRanges(accessCondition, options, opContext);
+
+        ArrayList<PageRange> clearedRanges = new ArrayList<PageRange>();
+        if (previousSnapshot != null) {
+            clearedRanges = PageRangeDiff.difference(previousSnapshot.downloadPageRanges(null, options, opContext),
+                    ranges);
+        }
+
+        final RandomAccessFile file = new RandomAccessFile(targetFile, "rw");
+        final ExecutorService threadExecutor = Executors.newFixedThreadPool(options.getConcurrentRequestCount());
+        try {
+            if (previousSnapshot == null) {
+                // Start from an empty file so that every page not downloaded reads as zero.
+                file.setLength(0);
+            }
+            file.setLength(length);
+
+            final FileChannel channel = file.getChannel();
+            final byte[] zeros = new byte[BlobConstants.DEFAULT_MINIMUM_READ_SIZE_IN_BYTES];
+            for (final PageRange cleared : clearedRanges) {
+                final long clearedEnd = Math.min(cleared.getEndOffset() + 1, length);
+                for (long offset = cleared.getStartOffset(); offset < clearedEnd; offset += zeros.length) {
+                    writeFully(channel, ByteBuffer.wrap(zeros, 0, (int) Math.min(zeros.length, clearedEnd - offset)),
+                            offset);
+                }
+            }
+
+            final CompletionService<Void> completionService = new ExecutorCompletionService<Void>(threadExecutor);
+            final int maxOutstanding = options.getConcurrentRequestCount() * 2;
+            int outstanding = 0;
+
+            for (final PageRange range : PageRangeDiff.split(ranges, 4 * Constants.MB)) {
+                if (outstanding >= maxOutstanding) {
+                    waitForTransferTask(completionService);
+                    outstanding--;
+                }
+
+                completionService.submit(this.downloadFilePagesTask(channel, range.getStartOffset(),
+                        (int) (range.getEndOffset() - range.getStartOffset() + 1), accessCondition, options,
+                        opContext));
+                outstanding++;
+            }
+
+            for (; outstanding > 0; outstanding--) {
+                waitForTransferTask(completionService);
+            }
+        }
+        finally {
+            threadExecutor.shutdownNow();
+            file.close();
+        }
+    }
+
+    /**
+     * Creates a task that downloads a range of pages and writes them to a file at the same offset.
+     * 
+     * @param channel
+     *            the channel to write the pages to.
+     * @param offset
+     *            the offset of the pages in the blob and the file.
+     * @param length
+     *            the length of the range, at most 4 MB.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            An object that specifies any additional options for the request
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return a <code>Callable</code> that downloads the pages.
+     */
+    private Callable<Void> downloadFilePagesTask(final FileChannel channel, final long offset, final int length,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                final byte[] data = new byte[length];
+
+                // Each range is read in its own context, since an operation context is not safe for concurrent use;
+                // its request results are added to the caller's context once the range is done.
+                final OperationContext pagesContext = new OperationContext();
+                pagesContext.setSendingRequestEventHandler(opContext.getSendingRequestEventHandler());
+                pagesContext.setResponseReceivedEventHandler(opContext.getResponseReceivedEventHandler());
+                try {
+                    CloudPageBlob.this.downloadRangeInternal(offset, length, data, 0, accessCondition, options,
+                            pagesContext);
+                }
+                finally {
+                    synchronized (opContext) {
+                        for (final RequestResult result : pagesContext.getRequestResults()) {
+                            opContext.appendRequestResult(result);
+                        }
+                    }
+                }
+                writeFully(channel, ByteBuffer.wrap(data), offset);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a file channel at the specified position.
+     * 
+     * @param channel
+     *            the channel to write to.
+     * @param buffer
+     *            the data to write.
+     * @param position
+     *            the file position to write at.
+     * @throws IOException
+     *             If an I/O exception occurred.
+     */
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        final long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
     /**
      * Opens an input stream object to write data to the page blob.
      * 
@@ -476,7 +680,7 @@ public final class CloudPageBlob extends CloudBlob {
                     }
 
                     client.getCredentials().signRequest(request, length);
-                    request.getOutputStream().write(data);
+                    ExecutionEngine.getOutputStream(request, opContext).write(data);
                 }
                 else {
                     client.getCredentials().signRequest(request, 0L);
@@ -670,10 +874,12 @@ public final class CloudPageBlob extends CloudBlob {
         final byte[] data = new byte[(int) length];
         String md5 = null;
 
-        int count = 0;
-        long total = 0;
+        int total = 0;
         while (total < length) {
-            count = sourceStream.read(data, 0, (int) Math.min(length - total, Integer.MAX_VALUE));
+            final int count = sourceStream.read(data, total, (int) length - total);
+            if (count == -1) {
+                throw new IllegalArgumentException("The source stream ended before the specified length was read.");
+            }
             total += count;
         }
 
@@ -691,4 +897,198 @@ public final class CloudPageBlob extends CloudBlob {
 
         this.putPagesInternal(pageProps, data, length, md5, accessCondition, options, opContext);
     }
+
+    /**
+     * Uploads the contents of a file to the page blob, skipping pages that contain only zeros.
+     * 
+     * @param sourceFile
+     *            A <code>File</code> object that represents the file to upload. Its length must be a multiple of 512.
+     * 
+     * @throws IOException
+     *             If an I/O exception occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final File sourceFile) throws StorageException, IOException {
+        this.uploadFromFile(sourceFile, null, null, null, null);
+    }
+
+    /**
+     * Uploads the contents of a file to the page blob, skipping pages that contain only zeros, using the specified
+     * extent map, lease ID, request options, and operation context.
+     * <p>
+     * The page blob is created with the length of the file and only the extents of the file that hold data are
+     * written, which suits sparse images such as VHDs. If no extents are specified the file is scanned a page at a time
+     * for non-zero data, and runs of adjacent non-zero pages are coalesced into writes of up to 4 MB. Each write is
+     * read from the file with a positional read by the worker that uploads it, and up to
+     * {@link BlobRequestOptions#getConcurrentRequestCount()} writes are in flight at once.
+     * 
+     * @param sourceFile
+     *            A <code>File</code> object that represents the file to upload. Its length must be a multiple of 512.
+     * @param extents
+     *            The {@link PageRange} extents of the file that hold data, with inclusive end offsets that are aligned
+     *            to 512-byte pages, or <code>null</code> to scan the file for them. Extents larger than 4 MB are split.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @throws IOException
+     *             If an I/O exception occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final File sourceFile, final Iterable<PageRange> extents,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        Utility.assertNotNull("sourceFile", sourceFile);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new BlobRequestOptions();
+        }
+
+        options.applyDefaults(this.blobServiceClient);
+
+        final long length = sourceFile.length();
+        if (length <= 0 || length % BlobConstants.PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("Page data must be multiple of 512!");
+        }
+
+        if (options.getStoreBlobContentMD5()) {
+            throw new IllegalArgumentException("Blob Level MD5 is not supported for PageBlob");
+        }
+
+        this.create(length, accessCondition, options, opContext);
+
+        final RandomAccessFile file = new RandomAccessFile(sourceFile, "r");
+        final ExecutorService threadExecutor = Executors.newFixedThreadPool(options.getConcurrentRequestCount());
+        try {
+            final FileChannel channel = file.getChannel();
+            final CompletionService<Void> completionService = new ExecutorCompletionService<Void>(threadExecutor);
+            final int maxOutstanding = options.getConcurrentRequestCount() * 2;
+            int outstanding = 0;
+
+            if (extents == null) {
+                final PageExtentScanner scanner = new PageExtentScanner(channel, length, 4 * Constants.MB);
+                for (PageRange extent = scanner.next(); extent != null; extent = scanner.next()) {
+                    if (outstanding >= maxOutstanding) {
+                        waitForTransferTask(completionService);
+                        outstanding--;
+                    }
+
+                    completionService.submit(this.uploadFilePagesTask(channel, extent.getStartOffset(),
+                            (int) (extent.getEndOffset() - extent.getStartOffset() + 1), accessCondition, options,
+                            opContext));
+                    outstanding++;
+                }
+            }
+            else {
+                for (final PageRange extent : extents) {
+                    final long extentEnd = extent.getEndOffset() + 1;
+                    if (extent.getStartOffset() % BlobConstants.PAGE_SIZE != 0
+                            || extentEnd % BlobConstants.PAGE_SIZE != 0 || extent.getStartOffset() < 0
+                            || extentEnd > length || extentEnd <= extent.getStartOffset()) {
+                        throw new IllegalArgumentException(String.format(
+                                "The extent %s is not page aligned or does not lie within the file.", extent));
+                    }
+
+                    for (long offset = extent.getStartOffset(); offset < extentEnd; offset += 4 * Constants.MB) {
+                        if (outstanding >= maxOutstanding) {
+                            waitForTransferTask(completionService);
+                            outstanding--;
+                        }
+
+                        completionService.submit(this.uploadFilePagesTask(channel, offset,
+                                (int) Math.min(4 * Constants.MB, extentEnd - offset), accessCondition, options,
+                                opContext));
+                        outstanding++;
+                    }
+                }
+            }
+
+            for (; outstanding > 0; outstanding--) {
+                waitForTransferTask(completionService);
+            }
+        }
+        finally {
+            threadExecutor.shutdownNow();
+            file.close();
+        }
+    }
+
+    /**
+     * Creates a task that reads a range of pages from a file and writes them to the page blob.
+     * 
+     * @param channel
+     *            the channel to read the pages from.
+     * @param offset
+     *            the offset of the pages in the file and the blob.
+     * @param length
+     *            the length of the range, at most 4 MB.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            An object that specifies any additional options for the request
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return a <code>Callable</code> that uploads the pages.
+     */
+    private Callable<Void> uploadFilePagesTask(final FileChannel channel, final long offset, final int length,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                final byte[] data = new byte[length];
+                final ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) == -1) {
+                        throw new IOException("The file was truncated while it was being uploaded.");
+                    }
+                }
+
+                String md5 = null;
+                if (options.getUseTransactionalContentMD5()) {
+                    final MessageDigest digest = Utility.getMD5Digest();
+                    digest.update(data);
+                    md5 = Base64.encode(digest.digest());
+                }
+
+                final PageProperties pageProps = new PageProperties();
+                pageProps.setPageOperation(PageOperationType.UPDATE);
+                pageProps.getRange().setStartOffset(offset);
+                pageProps.getRange().setEndOffset(offset + length - 1);
+
+                // Each range is written in its own context, since an operation context is not safe for concurrent
+                // use; its request results are added to the caller's context once the range is done.
+                final OperationContext pagesContext = new OperationContext();
+                pagesContext.setSendingRequestEventHandler(opContext.getSendingRequestEventHandler());
+                pagesContext.setResponseReceivedEventHandler(opContext.getResponseReceivedEventHandler());
+                try {
+                    CloudPageBlob.this.putPagesInternal(pageProps, data, length, md5, accessCondition, options,
+                            pagesContext);
+                }
+                finally {
+                    synchronized (opContext) {
+                        for (final RequestResult result : pagesContext.getRequestResults()) {
+                            opContext.appendRequestResult(result);
+                        }
+                    }
+                }
+                return null;
+            }
+        };
+    }
 }
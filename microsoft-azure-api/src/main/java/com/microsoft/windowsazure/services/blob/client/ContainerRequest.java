@@ -23,7 +23,6 @@ import java.security.InvalidKeyException;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
@@ -34,6 +33,7 @@ import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.utils.UriQueryBuilder;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.BaseRequest;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.LeaseAction;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ListingContext;
@@ -406,8 +406,7 @@ final class ContainerRequest {
         Utility.assertNotNull("sharedAccessPolicies", sharedAccessPolicies);
         Utility.assertNotNull("outWriter", outWriter);
 
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        final XMLStreamWriter xmlw = xmlOutFactoryInst.createXMLStreamWriter(outWriter);
+        final XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(outWriter);
 
         if (sharedAccessPolicies.keySet().size() > Constants.MAX_SHARED_ACCESS_POLICY_IDENTIFIERS) {
             final String errorMessage = String
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scans a file at page granularity for extents of pages that contain non-zero data, so that a sparse image can be
+ * uploaded to a page blob without sending the empty pages. Adjacent non-zero pages are coalesced into a single extent
+ * up to a maximum size, and extents are returned in file order as the scan progresses.
+ */
+final class PageExtentScanner {
+    /**
+     * The number of bytes read from the file at a time.
+     */
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Holds the channel being scanned.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Holds the number of bytes to scan.
+     */
+    private final long length;
+
+    /**
+     * Holds the maximum size of an extent, in bytes.
+     */
+    private final long maxExtentSize;
+
+    /**
+     * Holds the buffer the file is scanned through.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+    /**
+     * Holds the file offset of the first byte in the buffer.
+     */
+    private long bufferOffset = 0;
+
+    /**
+     * Holds the file offset of the next page to examine.
+     */
+    private long position = 0;
+
+    /**
+     * Holds the start of the extent being built, or -1 if there is none.
+     */
+    private long extentStart = -1;
+
+    /**
+     * Creates an instance of the <code>PageExtentScanner</code> class.
+     * 
+     * @param channel
+     *            the channel to scan.
+     * @param length
+     *            the number of bytes to scan, which must be a multiple of the page size.
+     * @param maxExtentSize
+     *            the maximum size of an extent in bytes, which must be a multiple of the page size.
+     */
+    PageExtentScanner(final FileChannel channel, final long length, final long maxExtentSize) {
+        this.channel = channel;
+        this.length = length;
+        this.maxExtentSize = maxExtentSize;
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Returns the next extent of non-zero pages.
+     * 
+     * @return A {@link PageRange} object that represents the extent, with an inclusive end offset, or
+     *         <code>null</code> if the rest of the file is empty.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    PageRange next() throws IOException {
+        while (this.position < this.length) {
+            if (this.position - this.bufferOffset >= this.buffer.limit()) {
+                this.fill();
+            }
+
+            final long pageStart = this.position;
+            final boolean empty = isEmptyPage(this.buffer, (int) (pageStart - this.bufferOffset));
+            this.position += BlobConstants.PAGE_SIZE;
+
+            if (empty) {
+                if (this.extentStart != -1) {
+                    return this.takeExtent(pageStart);
+                }
+            }
+            else {
+                if (this.extentStart == -1) {
+                    this.extentStart = pageStart;
+                }
+
+                if (this.position - this.extentStart == this.maxExtentSize) {
+                    return this.takeExtent(this.position);
+                }
+            }
+        }
+
+        return this.extentStart == -1 ? null : this.takeExtent(this.position);
+    }
+
+    /**
+     * Reads the next part of the file into the buffer.
+     * 
+     * @throws IOException
+     *             If an I/O error occurred, or the file is shorter than expected.
+     */
+    private void fill() throws IOException {
+        this.buffer.clear();
+        this.buffer.limit((int) Math.min(this.buffer.capacity(), this.length - this.position));
+        this.bufferOffset = this.position;
+
+        while (this.buffer.hasRemaining()) {
+            if (this.channel.read(this.buffer, this.bufferOffset + this.buffer.position()) == -1) {
+                throw new IOException("The file was truncated while it was being scanned.");
+            }
+        }
+
+        this.buffer.flip();
+    }
+
+    /**
+     * Ends the current extent.
+     * 
+     * @param end
+     *            the exclusive end offset of the extent.
+     * @return the extent.
+     */
+    private PageRange takeExtent(final long end) {
+        final PageRange extent = new PageRange(this.extentStart, end - 1);
+        this.extentStart = -1;
+        return extent;
+    }
+
+    /**
+     * Returns a value that indicates whether a page of the buffer is all zeros.
+     * 
+     * @param buffer
+     *            the buffer holding the page.
+     * @param offset
+     *            the offset of the page in the buffer.
+     * @return <code>true</code> if every byte of the page is zero; otherwise, <code>false</code>.
+     */
+    private static boolean isEmptyPage(final ByteBuffer buffer, final int offset) {
+        for (int i = offset; i < offset + BlobConstants.PAGE_SIZE; i += 8) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
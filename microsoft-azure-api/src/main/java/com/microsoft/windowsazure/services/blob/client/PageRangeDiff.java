@@ -0,0 +1,122 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compares and reshapes lists of page ranges, such as those returned by {@link CloudPageBlob#downloadPageRanges()} for
+ * two snapshots of a page blob. All ranges use inclusive end offsets.
+ */
+final class PageRangeDiff {
+    /**
+     * Orders page ranges by their start offset.
+     */
+    private static final Comparator<PageRange> START_ORDER = new Comparator<PageRange>() {
+        @Override
+        public int compare(final PageRange left, final PageRange right) {
+            return left.getStartOffset() < right.getStartOffset() ? -1
+                    : (left.getStartOffset() == right.getStartOffset() ? 0 : 1);
+        }
+    };
+
+    /**
+     * Private Default Ctor.
+     */
+    private PageRangeDiff() {
+        // No op
+    }
+
+    /**
+     * Returns the parts of a set of ranges that are not covered by a second set of ranges.
+     * 
+     * @param ranges
+     *            the ranges to subtract from.
+     * @param subtracted
+     *            the ranges to subtract.
+     * @return the remaining ranges, in offset order.
+     */
+    static ArrayList<PageRange> difference(final List<PageRange> ranges, final List<PageRange> subtracted) {
+        final ArrayList<PageRange> sortedRanges = sorted(ranges);
+        final ArrayList<PageRange> sortedSubtracted = sorted(subtracted);
+        final ArrayList<PageRange> result = new ArrayList<PageRange>();
+
+        int next = 0;
+        for (final PageRange range : sortedRanges) {
+            long start = range.getStartOffset();
+            final long end = range.getEndOffset();
+
+            // Skip subtracted ranges that end before this range starts.
+            while (next < sortedSubtracted.size() && sortedSubtracted.get(next).getEndOffset() < start) {
+                next++;
+            }
+
+            for (int i = next; i < sortedSubtracted.size() && start <= end; i++) {
+                final PageRange cut = sortedSubtracted.get(i);
+                if (cut.getStartOffset() > end) {
+                    break;
+                }
+
+                if (cut.getStartOffset() > start) {
+                    result.add(new PageRange(start, cut.getStartOffset() - 1));
+                }
+
+                start = Math.max(start, cut.getEndOffset() + 1);
+            }
+
+            if (start <= end) {
+                result.add(new PageRange(start, end));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Splits ranges so that none is larger than the specified size.
+     * 
+     * @param ranges
+     *            the ranges to split.
+     * @param maxSize
+     *            the maximum size of a range, in bytes.
+     * @return the split ranges, in the order of the original ranges.
+     */
+    static ArrayList<PageRange> split(final List<PageRange> ranges, final long maxSize) {
+        final ArrayList<PageRange> result = new ArrayList<PageRange>();
+        for (final PageRange range : ranges) {
+            for (long start = range.getStartOffset(); start <= range.getEndOffset(); start += maxSize) {
+                result.add(new PageRange(start, Math.min(start + maxSize - 1, range.getEndOffset())));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a copy of a list of ranges sorted by start offset.
+     * 
+     * @param ranges
+     *            the ranges to sort.
+     * @return the sorted copy.
+     */
+    private static ArrayList<PageRange> sorted(final List<PageRange> ranges) {
+        final ArrayList<PageRange> copy = new ArrayList<PageRange>(ranges);
+        Collections.sort(copy, START_ORDER);
+        return copy;
+    }
+}
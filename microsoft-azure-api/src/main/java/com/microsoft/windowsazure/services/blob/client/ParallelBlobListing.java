@@ -0,0 +1,409 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import java.io.Closeable;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.windowsazure.services.core.storage.DoesServiceRequest;
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.ResultContinuation;
+import com.microsoft.windowsazure.services.core.storage.ResultSegment;
+
+/**
+ * Represents an enumerable collection of the blobs under a prefix that is listed by walking the virtual directory
+ * tree in parallel.
+ * <p>
+ * A flat listing has to follow one chain of continuation tokens. This listing instead lists hierarchically, using the
+ * directory delimiter of the service client, and lists each {@link CloudBlobDirectory} it finds as a separate unit of
+ * work. Units of work are held in a shared deque that {@link BlobRequestOptions#getConcurrentRequestCount()} worker
+ * threads take from; subdirectories are pushed to the front so the walk stays depth first, while the next segment of a
+ * directory is queued at the back. Blobs are returned as they are listed, so their order is not defined. Only blobs
+ * are returned, not the directories that contain them.
+ * <p>
+ * Each call to {@link #iterator()} starts a new walk. An iterator that is not read to the end should be closed, so its
+ * worker threads stop.
+ */
+public final class ParallelBlobListing implements Iterable<ListBlobItem> {
+    /**
+     * Represents a unit of work: one segment of the listing of a prefix.
+     */
+    private static final class ListingWork {
+        /**
+         * Holds the prefix to list.
+         */
+        private final String prefix;
+
+        /**
+         * Holds the continuation token of the segment, or <code>null</code> for the first segment.
+         */
+        private final ResultContinuation continuationToken;
+
+        /**
+         * Creates an instance of the <code>ListingWork</code> class.
+         * 
+         * @param prefix
+         *            the prefix to list.
+         * @param continuationToken
+         *            the continuation token of the segment, or <code>null</code>.
+         */
+        ListingWork(final String prefix, final ResultContinuation continuationToken) {
+            this.prefix = prefix;
+            this.continuationToken = continuationToken;
+        }
+    }
+
+    /**
+     * Iterates over the blobs returned by a parallel walk.
+     */
+    public static final class ParallelBlobIterator implements Iterator<ListBlobItem>, Closeable {
+        /**
+         * Marks the end of the results in the output queue.
+         */
+        private static final Object END = new Object();
+
+        /**
+         * The number of results buffered before the workers wait for the reader.
+         */
+        private static final int OUTPUT_CAPACITY = 10000;
+
+        /**
+         * Counts the worker threads created, to name them.
+         */
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+        /**
+         * Holds the listing being walked.
+         */
+        private final ParallelBlobListing listing;
+
+        /**
+         * Holds the units of work that have not been taken by a worker.
+         */
+        private final LinkedBlockingDeque<ListingWork> work = new LinkedBlockingDeque<ListingWork>();
+
+        /**
+         * Holds the number of units of work queued or in progress.
+         */
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        /**
+         * Holds the blobs listed but not yet returned, followed by the end marker.
+         */
+        private final BlockingQueue<Object> output = new ArrayBlockingQueue<Object>(OUTPUT_CAPACITY);
+
+        /**
+         * Holds the worker threads.
+         */
+        private final ExecutorService threadExecutor;
+
+        /**
+         * Holds the exception or error that stopped the walk, or <code>null</code>.
+         */
+        private volatile Throwable failure;
+
+        /**
+         * Holds whether the walk has stopped.
+         */
+        private volatile boolean stopped;
+
+        /**
+         * Holds the next blob to return, or <code>null</code>.
+         */
+        private ListBlobItem nextItem;
+
+        /**
+         * Holds whether the end marker has been read.
+         */
+        private boolean finished;
+
+        /**
+         * Creates an instance of the <code>ParallelBlobIterator</code> class and starts the walk.
+         * 
+         * @param listing
+         *            the listing to walk.
+         */
+        private ParallelBlobIterator(final ParallelBlobListing listing) {
+            this.listing = listing;
+            final int threadCount = listing.options.getConcurrentRequestCount();
+            this.threadExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    // An enumeration that is abandoned without being closed must not keep the JVM alive.
+                    final Thread thread = new Thread(runnable, "blob-listing-" + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            this.outstanding.incrementAndGet();
+            this.work.add(new ListingWork(listing.prefix, null));
+
+            for (int i = 0; i < threadCount; i++) {
+                this.threadExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ParallelBlobIterator.this.runWorker();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Takes units of work from the deque and lists them until the walk stops.
+         */
+        private void runWorker() {
+            try {
+                while (!this.stopped) {
+                    final ListingWork item = this.work.pollFirst(100, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        continue;
+                    }
+
+                    this.listSegment(item);
+
+                    if (this.outstanding.decrementAndGet() == 0) {
+                        this.stop(null);
+                    }
+                }
+            }
+            catch (final InterruptedException e) {
+                // Closed, exit.
+            }
+            catch (final Throwable e) {
+                // Report errors as well as exceptions, so that the reader is never left waiting for the end marker.
+                this.stop(e);
+            }
+        }
+
+        /**
+         * Lists one segment, queuing the subdirectories and the next segment as new units of work.
+         * 
+         * @param item
+         *            the unit of work.
+         * @throws Exception
+         *             If the listing failed.
+         */
+        @DoesServiceRequest
+        private void listSegment(final ListingWork item) throws Exception {
+            final OperationContext segmentContext = new OperationContext();
+            if (this.listing.opContext != null) {
+                segmentContext.setSendingRequestEventHandler(this.listing.opContext.getSendingRequestEventHandler());
+                segmentContext.setResponseReceivedEventHandler(this.listing.opContext
+                        .getResponseReceivedEventHandler());
+            }
+
+            final ResultSegment<ListBlobItem> segment = this.listing.container.listBlobsSegmented(item.prefix, false,
+                    this.listing.listingDetails, -1, item.continuationToken, new BlobRequestOptions(
+                            this.listing.options), segmentContext);
+
+            if (segment.getContinuationToken() != null) {
+                this.outstanding.incrementAndGet();
+                this.work.addLast(new ListingWork(item.prefix, segment.getContinuationToken()));
+            }
+
+            for (final ListBlobItem result : segment.getResults()) {
+                if (result instanceof CloudBlobDirectory) {
+                    this.outstanding.incrementAndGet();
+                    this.work.addFirst(new ListingWork(((CloudBlobDirectory) result).getPrefix(), null));
+                }
+                else {
+                    while (!this.output.offer(result, 100, TimeUnit.MILLISECONDS)) {
+                        if (this.stopped) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stops the walk and queues the end marker.
+         * 
+         * @param exception
+         *            the exception or error that stopped the walk, or <code>null</code> if it completed.
+         */
+        private synchronized void stop(final Throwable exception) {
+            if (this.stopped) {
+                return;
+            }
+
+            this.failure = exception;
+            this.stopped = true;
+            this.threadExecutor.shutdown();
+
+            // Make room for the end marker if the reader has fallen behind or gone away.
+            while (!this.output.offer(END)) {
+                if (exception == null) {
+                    try {
+                        this.output.put(END);
+                        break;
+                    }
+                    catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                this.output.clear();
+            }
+        }
+
+        /**
+         * Stops the walk. Blobs that have already been listed can still be read.
+         */
+        @Override
+        public void close() {
+            this.threadExecutor.shutdownNow();
+            synchronized (this) {
+                if (!this.stopped) {
+                    this.stopped = true;
+                    this.output.clear();
+                    this.output.offer(END);
+                }
+            }
+        }
+
+        /**
+         * Indicates if the iterator has another element, waiting for the workers if necessary.
+         */
+        @Override
+        @DoesServiceRequest
+        public boolean hasNext() {
+            if (this.nextItem != null) {
+                return true;
+            }
+            else if (this.finished) {
+                return false;
+            }
+
+            final Object result;
+            try {
+                result = this.output.take();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                final NoSuchElementException ex = new NoSuchElementException(
+                        "The enumeration was interrupted while waiting for results.");
+                ex.initCause(e);
+                throw ex;
+            }
+
+            if (result == END) {
+                this.finished = true;
+                if (this.failure != null) {
+                    final NoSuchElementException ex = new NoSuchElementException("An error occurred while enumerating "
+                            + "the result, check the original exception for details.");
+                    ex.initCause(this.failure);
+                    throw ex;
+                }
+                return false;
+            }
+
+            this.nextItem = (ListBlobItem) result;
+            return true;
+        }
+
+        /**
+         * Returns the next element.
+         */
+        @Override
+        public ListBlobItem next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final ListBlobItem result = this.nextItem;
+            this.nextItem = null;
+            return result;
+        }
+
+        /**
+         * Removes an element, not supported
+         */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Holds the container to list.
+     */
+    private final CloudBlobContainer container;
+
+    /**
+     * Holds the prefix of the blobs to list.
+     */
+    private final String prefix;
+
+    /**
+     * Holds the listing details.
+     */
+    private final EnumSet<BlobListingDetails> listingDetails;
+
+    /**
+     * Holds the request options.
+     */
+    private final BlobRequestOptions options;
+
+    /**
+     * Holds the operation context whose event handlers the listing requests share, or <code>null</code>.
+     */
+    private final OperationContext opContext;
+
+    /**
+     * Creates an instance of the <code>ParallelBlobListing</code> class.
+     * 
+     * @param container
+     *            the container to list.
+     * @param prefix
+     *            the prefix of the blobs to list, which should be empty or end with the directory delimiter.
+     * @param listingDetails
+     *            the listing details.
+     * @param options
+     *            the request options, with defaults applied.
+     * @param opContext
+     *            the operation context whose event handlers the listing requests share, or <code>null</code>.
+     */
+    ParallelBlobListing(final CloudBlobContainer container, final String prefix,
+            final EnumSet<BlobListingDetails> listingDetails, final BlobRequestOptions options,
+            final OperationContext opContext) {
+        this.container = container;
+        this.prefix = prefix;
+        this.listingDetails = listingDetails;
+        this.options = options;
+        this.opContext = opContext;
+    }
+
+    /**
+     * Starts a new walk of the directory tree.
+     * 
+     * @return A {@link ParallelBlobIterator} object that returns the blobs as they are listed.
+     */
+    @Override
+    @DoesServiceRequest
+    public ParallelBlobIterator iterator() {
+        return new ParallelBlobIterator(this);
+    }
+}
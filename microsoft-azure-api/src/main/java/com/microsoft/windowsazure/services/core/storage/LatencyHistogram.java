@@ -0,0 +1,201 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Represents a concurrent latency histogram with bounded relative error, in the style of an HDR histogram. Latencies
+ * are recorded in microseconds into log-linear buckets: each power of two is divided into 32 linear sub-buckets, so
+ * any reported percentile is within about 3% of the recorded value. Recording is lock-free and does not allocate.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of bits used to index the linear sub-buckets of each power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of linear sub-buckets per power of two.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest power of two tracked, in microseconds. Larger values are recorded in the last bucket.
+     */
+    private static final int MAX_SHIFT = 36;
+
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /**
+     * Holds the number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_SHIFT + 2) * SUB_BUCKET_COUNT);
+
+    /**
+     * Holds the total number of values recorded.
+     */
+    private final AtomicLong totalCount = new AtomicLong();
+
+    /**
+     * Holds the sum of the recorded values, in microseconds.
+     */
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    /**
+     * Holds the largest recorded value, in microseconds.
+     */
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency.
+     * 
+     * @param nanos
+     *            The latency, in nanoseconds.
+     */
+    public void recordNanos(final long nanos) {
+        final long micros = Math.max(0, nanos / NANOS_PER_MICRO);
+
+        this.counts.incrementAndGet(getBucketIndex(micros));
+        this.totalCount.incrementAndGet();
+        this.totalMicros.addAndGet(micros);
+
+        long currentMax = this.maxMicros.get();
+        while (micros > currentMax && !this.maxMicros.compareAndSet(currentMax, micros)) {
+            currentMax = this.maxMicros.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     * 
+     * @return The number of recorded latencies.
+     */
+    public long getCount() {
+        return this.totalCount.get();
+    }
+
+    /**
+     * Returns the largest recorded latency.
+     * 
+     * @return The largest recorded latency, in microseconds.
+     */
+    public long getMaxMicros() {
+        return this.maxMicros.get();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies.
+     * 
+     * @return The mean latency, in microseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanMicros() {
+        final long count = this.totalCount.get();
+        return count == 0 ? 0 : (double) this.totalMicros.get() / count;
+    }
+
+    /**
+     * Returns the latency at the given percentile. The returned value is the upper bound of the bucket containing the
+     * percentile, capped at the largest recorded latency.
+     * 
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return The latency at the percentile, in microseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(final double percentile) {
+        long count = 0;
+        final int length = this.counts.length();
+        final long[] snapshot = new long[length];
+
+        for (int i = 0; i < length; i++) {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+
+        for (int i = 0; i < length; i++) {
+            seen += snapshot[i];
+
+            if (seen >= target) {
+                return Math.min(getBucketUpperBound(i), this.maxMicros.get());
+            }
+        }
+
+        return this.maxMicros.get();
+    }
+
+    /**
+     * Clears all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+
+        this.totalCount.set(0);
+        this.totalMicros.set(0);
+        this.maxMicros.set(0);
+    }
+
+    /**
+     * Gets the bucket holding a value.
+     * 
+     * @param micros
+     *            the value, in microseconds
+     * @return the index of the bucket
+     */
+    static int getBucketIndex(final long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+
+        final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+
+        if (shift > MAX_SHIFT) {
+            return (MAX_SHIFT + 2) * SUB_BUCKET_COUNT - 1;
+        }
+
+        final int subBucket = (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Gets the largest value held by a bucket.
+     * 
+     * @param index
+     *            the index of the bucket
+     * @return the largest value of the bucket, in microseconds
+     */
+    static long getBucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+/**
+ * Represents an event that is fired when a logical operation completes, successfully or not, after any retries. The
+ * event carries a snapshot of the operation's timings so that it can be safely consumed after the
+ * {@link OperationContext} has been reused for another operation.
+ */
+public final class OperationCompletedEvent {
+
+    /**
+     * Represents a context for the current operation. This object is used to track requests to the storage service, and
+     * to provide additional runtime information about the operation.
+     */
+    private final OperationContext opContext;
+
+    /**
+     * Represents the name of the operation, in the form <code>ClassName.methodName</code> of the client method that
+     * issued it, for example <code>CloudBlob.download</code>.
+     */
+    private final String operationName;
+
+    /**
+     * Represents the value of <code>System.nanoTime()</code> when the operation started.
+     */
+    private final long startNanoTime;
+
+    /**
+     * Represents the elapsed time of the operation, in nanoseconds, including all retries.
+     */
+    private final long totalNanos;
+
+    /**
+     * Represents the number of times the operation was retried.
+     */
+    private final int retryCount;
+
+    /**
+     * Represents the number of request body bytes sent to the storage service by the last request.
+     */
+    private final long bytesSent;
+
+    /**
+     * Represents the number of bytes received from the storage service in response to the last request, as reported
+     * by its Content-Length.
+     */
+    private final long bytesReceived;
+
+    /**
+     * Represents the result of the last physical request made by the operation. This field may be <code>null</code>.
+     */
+    private final RequestResult lastResult;
+
+    /**
+     * Represents the exception that failed the operation, or <code>null</code> if the operation succeeded.
+     */
+    private final StorageException exception;
+
+    /**
+     * Creates an instance of the <code>OperationCompletedEvent</code> class.
+     * 
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation.
+     * @param operationName
+     *            The name of the operation.
+     * @param startNanoTime
+     *            The value of <code>System.nanoTime()</code> when the operation started.
+     * @param totalNanos
+     *            The elapsed time of the operation, in nanoseconds.
+     * @param retryCount
+     *            The number of times the operation was retried.
+     * @param bytesSent
+     *            The number of request body bytes sent by the last request.
+     * @param bytesReceived
+     *            The number of bytes received in response to the last request.
+     * @param lastResult
+     *            A {@link RequestResult} object that represents the last physical request.
+     * @param exception
+     *            A {@link StorageException} object that represents the failure, or <code>null</code>.
+     */
+    public OperationCompletedEvent(final OperationContext opContext, final String operationName,
+            final long startNanoTime, final long totalNanos, final int retryCount, final long bytesSent,
+            final long bytesReceived, final RequestResult lastResult, final StorageException exception) {
+        this.opContext = opContext;
+        this.operationName = operationName;
+        this.startNanoTime = startNanoTime;
+        this.totalNanos = totalNanos;
+        this.retryCount = retryCount;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.lastResult = lastResult;
+        this.exception = exception;
+    }
+
+    /**
+     * @return the bytesReceived
+     */
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    /**
+     * @return the bytesSent
+     */
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    /**
+     * @return the exception
+     */
+    public StorageException getException() {
+        return this.exception;
+    }
+
+    /**
+     * @return the lastResult
+     */
+    public RequestResult getLastResult() {
+        return this.lastResult;
+    }
+
+    /**
+     * @return the operationName
+     */
+    public String getOperationName() {
+        return this.operationName;
+    }
+
+    /**
+     * @return the opContext
+     */
+    public OperationContext getOpContext() {
+        return this.opContext;
+    }
+
+    /**
+     * @return the retryCount
+     */
+    public int getRetryCount() {
+        return this.retryCount;
+    }
+
+    /**
+     * @return the startNanoTime
+     */
+    public long getStartNanoTime() {
+        return this.startNanoTime;
+    }
+
+    /**
+     * @return the HTTP status code of the last request, or -1 if no response was received
+     */
+    public int getStatusCode() {
+        return this.lastResult == null ? -1 : this.lastResult.getStatusCode();
+    }
+
+    /**
+     * @return the totalNanos
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * @return <code>true</code> if the operation succeeded; otherwise, <code>false</code>
+     */
+    public boolean isSuccessful() {
+        return this.exception == null;
+    }
+}
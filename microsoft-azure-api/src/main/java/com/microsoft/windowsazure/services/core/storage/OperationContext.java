@@ -19,6 +19,7 @@ package com.microsoft.windowsazure.services.core.storage;
 
 import java.net.HttpURLConnection;
 import java.security.MessageDigest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.UUID;
 import java.util.logging.Logger;
@@ -48,10 +49,29 @@ public final class OperationContext {
     private Logger logger;
 
     /**
-     * Represents request results, in the form of an <code>ArrayList</code> object that contains the
-     * {@link RequestResult} objects, for each physical request that is made.
+     * Represents request results, in the form of an <code>ArrayDeque</code> object that contains the
+     * {@link RequestResult} objects, for each physical request that is made. A deque lets the oldest result be
+     * discarded in constant time once the maximum number of request results is reached.
      */
-    private ArrayList<RequestResult> requestResults;
+    private ArrayDeque<RequestResult> requestResults;
+
+    /**
+     * Represents the maximum number of {@link RequestResult} objects retained by the operation, or 0 to retain all of
+     * them.
+     */
+    private int maxRequestResults;
+
+    /**
+     * Reserved for internal use. Represents the value of <code>System.nanoTime()</code> when the current request
+     * attempt started.
+     */
+    private long currentRequestStartNanoTime;
+
+    /**
+     * Reserved for internal use. Represents the number of request body bytes written during the current request
+     * attempt.
+     */
+    private long currentRequestBytesSent;
 
     /**
      * Represents an event that is triggered before sending a request.
@@ -99,7 +119,24 @@ public final class OperationContext {
      */
     public OperationContext() {
         this.clientTraceID = UUID.randomUUID().toString();
-        this.requestResults = new ArrayList<RequestResult>();
+        this.requestResults = new ArrayDeque<RequestResult>();
+    }
+
+    /**
+     * Reserved for internal use. Appends the result of a physical request to the operation. When a maximum number of
+     * request results has been set, the oldest results are discarded so that the list never exceeds it.
+     * 
+     * @param result
+     *            the {@link RequestResult} to append
+     */
+    public void appendRequestResult(final RequestResult result) {
+        if (this.maxRequestResults > 0) {
+            while (this.requestResults.size() >= this.maxRequestResults) {
+                this.requestResults.removeFirst();
+            }
+        }
+
+        this.requestResults.addLast(result);
     }
 
     /**
@@ -116,6 +153,24 @@ public final class OperationContext {
         return this.currentOperationByteCount;
     }
 
+    /**
+     * Reserved for internal use.
+     * 
+     * @return the number of request body bytes written during the current request attempt
+     */
+    public long getCurrentRequestBytesSent() {
+        return this.currentRequestBytesSent;
+    }
+
+    /**
+     * Reserved for internal use.
+     * 
+     * @return the value of <code>System.nanoTime()</code> when the current request attempt started
+     */
+    public long getCurrentRequestStartNanoTime() {
+        return this.currentRequestStartNanoTime;
+    }
+
     /**
      * @return the currentRequestObject
      */
@@ -136,12 +191,16 @@ public final class OperationContext {
      * @return A {@link RequestResult} object that represents the last request result.
      */
     public RequestResult getLastResult() {
-        if (this.requestResults == null || this.requestResults.size() == 0) {
-            return null;
-        }
-        else {
-            return this.requestResults.get(this.requestResults.size() - 1);
-        }
+        return this.requestResults == null ? null : this.requestResults.peekLast();
+    }
+
+    /**
+     * Returns the maximum number of request results retained by the operation.
+     * 
+     * @return the maximum number of {@link RequestResult} objects retained, or 0 if all of them are retained
+     */
+    public int getMaxRequestResults() {
+        return this.maxRequestResults;
     }
 
     /**
@@ -156,13 +215,18 @@ public final class OperationContext {
     }
 
     /**
-     * Returns the set of request results that the current operation has created.
+     * Returns the set of request results that the current operation has created, oldest first.
+     * <p>
+     * The returned list is a snapshot, not the list the operation records its results in: results made after this
+     * call are not added to it, and changing it does not change the results of the operation. Callers that held the
+     * list to observe later requests should call this method again, or use {@link #getLastResult()}; results are
+     * added with {@link #appendRequestResult(RequestResult)}.
      * 
      * @return An <code>ArrayList</code> object that contains {@link RequestResult} objects that represent the request
      *         results created by the current operation.
      */
     public ArrayList<RequestResult> getRequestResults() {
-        return this.requestResults;
+        return new ArrayList<RequestResult>(this.requestResults);
     }
 
     /**
@@ -189,6 +253,8 @@ public final class OperationContext {
         this.setIntermediateMD5(null);
         this.operationState = null;
         this.setCurrentRequestObject(null);
+        this.setCurrentRequestStartNanoTime(0);
+        this.setCurrentRequestBytesSent(0);
     }
 
     /**
@@ -207,6 +273,26 @@ public final class OperationContext {
         this.currentOperationByteCount = currentOperationByteCount;
     }
 
+    /**
+     * Reserved for internal use.
+     * 
+     * @param currentRequestBytesSent
+     *            the number of request body bytes written during the current request attempt
+     */
+    public void setCurrentRequestBytesSent(final long currentRequestBytesSent) {
+        this.currentRequestBytesSent = currentRequestBytesSent;
+    }
+
+    /**
+     * Reserved for internal use.
+     * 
+     * @param currentRequestStartNanoTime
+     *            the value of <code>System.nanoTime()</code> when the current request attempt started
+     */
+    public void setCurrentRequestStartNanoTime(final long currentRequestStartNanoTime) {
+        this.currentRequestStartNanoTime = currentRequestStartNanoTime;
+    }
+
     /**
      * @param currentRequestObject
      *            the currentRequestObject to set
@@ -223,6 +309,23 @@ public final class OperationContext {
         this.intermediateMD5 = intermediateMD5;
     }
 
+    /**
+     * Sets the maximum number of request results retained by the operation. Operations that are retried many times,
+     * or contexts that are reused across long running work such as paged listings, otherwise accumulate one
+     * {@link RequestResult} per physical request. When set, only the most recent results are kept, and
+     * {@link #getLastResult()} continues to return the latest one.
+     * 
+     * @param maxRequestResults
+     *            the maximum number of {@link RequestResult} objects to retain, or 0 to retain all of them
+     */
+    public void setMaxRequestResults(final int maxRequestResults) {
+        if (maxRequestResults < 0) {
+            throw new IllegalArgumentException("The maximum number of request results cannot be negative.");
+        }
+
+        this.maxRequestResults = maxRequestResults;
+    }
+
     /**
      * Sets the <code>Logger</code> for this operation.
      * 
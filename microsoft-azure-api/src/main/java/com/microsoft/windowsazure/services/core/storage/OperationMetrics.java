@@ -0,0 +1,166 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents the metrics recorded for one operation and HTTP status code by an {@link OperationMetricsRegistry}.
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+    /**
+     * The number of microseconds in a millisecond.
+     */
+    private static final double MICROS_PER_MILLI = 1000d;
+
+    /**
+     * Holds the name of the operation.
+     */
+    private final String operationName;
+
+    /**
+     * Holds the HTTP status code of the operations.
+     */
+    private final int statusCode;
+
+    /**
+     * Holds the latencies of the operations, including retries.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Holds the number of failed operations.
+     */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Holds the total number of retries.
+     */
+    private final AtomicLong retryCount = new AtomicLong();
+
+    /**
+     * Holds the total number of request body bytes sent.
+     */
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    /**
+     * Holds the total number of response bytes received.
+     */
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * Creates an instance of the <code>OperationMetrics</code> class.
+     * 
+     * @param operationName
+     *            The name of the operation.
+     * @param statusCode
+     *            The HTTP status code of the operations.
+     */
+    OperationMetrics(final String operationName, final int statusCode) {
+        this.operationName = operationName;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Records a completed operation.
+     * 
+     * @param event
+     *            An {@link OperationCompletedEvent} object that describes the operation.
+     */
+    void record(final OperationCompletedEvent event) {
+        this.latency.recordNanos(event.getTotalNanos());
+        this.retryCount.addAndGet(event.getRetryCount());
+        this.bytesSent.addAndGet(event.getBytesSent());
+        this.bytesReceived.addAndGet(event.getBytesReceived());
+
+        if (!event.isSuccessful()) {
+            this.failureCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return this.bytesReceived.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    @Override
+    public long getCount() {
+        return this.latency.getCount();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return this.failureCount.get();
+    }
+
+    /**
+     * Returns the latency histogram of the operations, for percentiles not exposed as attributes.
+     * 
+     * @return A {@link LatencyHistogram} object.
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    @Override
+    public double getMaxLatencyInMs() {
+        return this.latency.getMaxMicros() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanLatencyInMs() {
+        return this.latency.getMeanMicros() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public String getOperationName() {
+        return this.operationName;
+    }
+
+    @Override
+    public double getP50LatencyInMs() {
+        return this.latency.getPercentileMicros(50) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99LatencyInMs() {
+        return this.latency.getPercentileMicros(99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public long getRetryCount() {
+        return this.retryCount.get();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    @Override
+    public void reset() {
+        this.latency.reset();
+        this.failureCount.set(0);
+        this.retryCount.set(0);
+        this.bytesSent.set(0);
+        this.bytesReceived.set(0);
+    }
+}
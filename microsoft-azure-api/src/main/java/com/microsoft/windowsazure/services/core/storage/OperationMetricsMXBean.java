@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+/**
+ * Represents the management interface through which {@link OperationMetrics} are exported over JMX.
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * @return the name of the operation, for example <code>CloudBlob.download</code>
+     */
+    String getOperationName();
+
+    /**
+     * @return the HTTP status code of the operations, or -1 for operations that did not receive a response
+     */
+    int getStatusCode();
+
+    /**
+     * @return the number of completed operations
+     */
+    long getCount();
+
+    /**
+     * @return the number of failed operations
+     */
+    long getFailureCount();
+
+    /**
+     * @return the total number of retries
+     */
+    long getRetryCount();
+
+    /**
+     * @return the total number of request body bytes sent
+     */
+    long getBytesSent();
+
+    /**
+     * @return the total number of response bytes received
+     */
+    long getBytesReceived();
+
+    /**
+     * @return the mean latency, in milliseconds
+     */
+    double getMeanLatencyInMs();
+
+    /**
+     * @return the median latency, in milliseconds
+     */
+    double getP50LatencyInMs();
+
+    /**
+     * @return the 99th percentile latency, in milliseconds
+     */
+    double getP99LatencyInMs();
+
+    /**
+     * @return the largest latency, in milliseconds
+     */
+    double getMaxLatencyInMs();
+
+    /**
+     * Clears the recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Represents a registry of {@link OperationMetrics}, keyed by operation name and HTTP status code, that is fed by the
+ * {@link OperationCompletedEvent}s of a service client. Metrics can be pulled with {@link #getMetrics()} or exported as
+ * MXBeans with {@link #registerMBeans(MBeanServer, String)}.
+ * 
+ * @see ServiceClient#enableOperationMetrics()
+ */
+public final class OperationMetricsRegistry extends StorageEvent<OperationCompletedEvent> {
+
+    /**
+     * The JMX domain under which metrics are registered.
+     */
+    public static final String JMX_DOMAIN = "com.microsoft.windowsazure.services.core.storage";
+
+    /**
+     * Holds the metrics, by operation name and then by status code.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, OperationMetrics>> metrics = new ConcurrentHashMap<String, ConcurrentHashMap<Integer, OperationMetrics>>();
+
+    /**
+     * Holds the MBean server metrics are exported to, or <code>null</code> if they are not exported.
+     */
+    private MBeanServer mbeanServer;
+
+    /**
+     * Holds the client name used in the object names of exported metrics.
+     */
+    private String clientName;
+
+    /**
+     * Records a completed operation.
+     * 
+     * @param eventArg
+     *            An {@link OperationCompletedEvent} object that describes the operation.
+     */
+    @Override
+    public void eventOccurred(final OperationCompletedEvent eventArg) {
+        this.getOrCreateMetrics(eventArg.getOperationName(), eventArg.getStatusCode()).record(eventArg);
+    }
+
+    /**
+     * Returns the metrics recorded for an operation and status code.
+     * 
+     * @param operationName
+     *            The name of the operation, for example <code>CloudBlob.download</code>.
+     * @param statusCode
+     *            The HTTP status code, or -1 for operations that did not receive a response.
+     * @return An {@link OperationMetrics} object, or <code>null</code> if no such operation was recorded.
+     */
+    public OperationMetrics getMetrics(final String operationName, final int statusCode) {
+        final ConcurrentHashMap<Integer, OperationMetrics> byStatus = this.metrics.get(operationName);
+        return byStatus == null ? null : byStatus.get(statusCode);
+    }
+
+    /**
+     * Returns all recorded metrics.
+     * 
+     * @return A list of {@link OperationMetrics} objects, one per operation name and status code.
+     */
+    public List<OperationMetrics> getMetrics() {
+        final List<OperationMetrics> list = new ArrayList<OperationMetrics>();
+
+        for (final ConcurrentHashMap<Integer, OperationMetrics> byStatus : this.metrics.values()) {
+            list.addAll(byStatus.values());
+        }
+
+        return list;
+    }
+
+    /**
+     * Clears all recorded metrics, keeping the registered keys and MBeans.
+     */
+    public void reset() {
+        for (final OperationMetrics operationMetrics : this.getMetrics()) {
+            operationMetrics.reset();
+        }
+    }
+
+    /**
+     * Exports the recorded metrics, and any metrics recorded later, as MXBeans named
+     * <code>com.microsoft.windowsazure.services.core.storage:type=OperationMetrics,client=...,operation=...,status=...</code>.
+     * 
+     * @param server
+     *            The <code>MBeanServer</code> with which to register the metrics.
+     * @param clientName
+     *            A name that distinguishes the client in the object names.
+     * @throws JMException
+     *             If an MBean could not be registered.
+     */
+    public synchronized void registerMBeans(final MBeanServer server, final String clientName) throws JMException {
+        if (this.mbeanServer != null) {
+            this.unregisterMBeans();
+        }
+
+        this.mbeanServer = server;
+        this.clientName = clientName;
+
+        for (final OperationMetrics operationMetrics : this.getMetrics()) {
+            server.registerMBean(operationMetrics, this.getObjectName(operationMetrics));
+        }
+    }
+
+    /**
+     * Removes the MBeans registered by {@link #registerMBeans(MBeanServer, String)}.
+     * 
+     * @throws JMException
+     *             If an MBean could not be unregistered.
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        if (this.mbeanServer == null) {
+            return;
+        }
+
+        for (final OperationMetrics operationMetrics : this.getMetrics()) {
+            final ObjectName name = this.getObjectName(operationMetrics);
+
+            if (this.mbeanServer.isRegistered(name)) {
+                this.mbeanServer.unregisterMBean(name);
+            }
+        }
+
+        this.mbeanServer = null;
+        this.clientName = null;
+    }
+
+    /**
+     * Gets the metrics for an operation and status code, creating and exporting them if needed.
+     * 
+     * @param operationName
+     *            the name of the operation
+     * @param statusCode
+     *            the HTTP status code
+     * @return the metrics for the operation and status code
+     */
+    private OperationMetrics getOrCreateMetrics(final String operationName, final int statusCode) {
+        ConcurrentHashMap<Integer, OperationMetrics> byStatus = this.metrics.get(operationName);
+
+        if (byStatus == null) {
+            this.metrics.putIfAbsent(operationName, new ConcurrentHashMap<Integer, OperationMetrics>());
+            byStatus = this.metrics.get(operationName);
+        }
+
+        OperationMetrics operationMetrics = byStatus.get(statusCode);
+
+        if (operationMetrics == null) {
+            final OperationMetrics newMetrics = new OperationMetrics(operationName, statusCode);
+            operationMetrics = byStatus.putIfAbsent(statusCode, newMetrics);
+
+            if (operationMetrics == null) {
+                operationMetrics = newMetrics;
+                this.registerMBean(newMetrics);
+            }
+        }
+
+        return operationMetrics;
+    }
+
+    /**
+     * Exports newly created metrics if the registry is exported.
+     * 
+     * @param operationMetrics
+     *            the metrics to export
+     */
+    private synchronized void registerMBean(final OperationMetrics operationMetrics) {
+        if (this.mbeanServer == null) {
+            return;
+        }
+
+        try {
+            this.mbeanServer.registerMBean(operationMetrics, this.getObjectName(operationMetrics));
+        }
+        catch (final JMException e) {
+            // The metrics are still recorded and available through getMetrics; a failure to export them must not fail
+            // the storage operation that reported them.
+        }
+    }
+
+    /**
+     * Gets the object name under which metrics are exported.
+     * 
+     * @param operationMetrics
+     *            the metrics to name
+     * @return the object name
+     * @throws JMException
+     *             if the name is malformed
+     */
+    private ObjectName getObjectName(final OperationMetrics operationMetrics) throws JMException {
+        return new ObjectName(String.format("%s:type=OperationMetrics,client=%s,operation=%s,status=%d", JMX_DOMAIN,
+                ObjectName.quote(this.clientName), ObjectName.quote(operationMetrics.getOperationName()),
+                operationMetrics.getStatusCode()));
+    }
+}
@@ -32,6 +32,12 @@ public class RequestOptions {
      */
     private Integer timeoutIntervalInMs;
 
+    /**
+     * Indicates whether lazily enumerated listings and queries size each segment from the rate at which its results
+     * are retrieved and consumed, rather than requesting the service maximum. The default value is <code>false</code>.
+     */
+    private boolean useAdaptiveSegmentSizing;
+
     /**
      * Creates an instance of the <code>RequestOptions</code> class.
      */
@@ -49,6 +55,7 @@ public class RequestOptions {
     public RequestOptions(final RequestOptions other) {
         this.setTimeoutIntervalInMs(other.getTimeoutIntervalInMs());
         this.setRetryPolicyFactory(other.getRetryPolicyFactory());
+        this.setUseAdaptiveSegmentSizing(other.getUseAdaptiveSegmentSizing());
     }
 
     /**
@@ -81,6 +88,13 @@ public class RequestOptions {
         return this.timeoutIntervalInMs;
     }
 
+    /**
+     * @return the useAdaptiveSegmentSizing
+     */
+    public final boolean getUseAdaptiveSegmentSizing() {
+        return this.useAdaptiveSegmentSizing;
+    }
+
     /**
      * @param retryPolicyFactory
      *            the retryPolicyFactory to set
@@ -96,4 +110,16 @@ public class RequestOptions {
     public final void setTimeoutIntervalInMs(final Integer timeoutIntervalInMs) {
         this.timeoutIntervalInMs = timeoutIntervalInMs;
     }
+
+    /**
+     * Sets whether lazily enumerated listings and queries adapt the size of each segment. When enabled, the first
+     * segment requests a small number of results, so that they arrive quickly, and each following segment is sized
+     * from the rate at which the previous one was retrieved and consumed, up to the service maximum.
+     * 
+     * @param useAdaptiveSegmentSizing
+     *            the useAdaptiveSegmentSizing to set
+     */
+    public final void setUseAdaptiveSegmentSizing(final boolean useAdaptiveSegmentSizing) {
+        this.useAdaptiveSegmentSizing = useAdaptiveSegmentSizing;
+    }
 }
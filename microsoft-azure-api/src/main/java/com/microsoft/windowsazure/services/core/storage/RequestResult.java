@@ -48,9 +48,43 @@ public final class RequestResult {
     private String etag;
 
     /**
-     * Represents the start date of the operation.
+     * Represents the start time of the request, in milliseconds since the epoch, or 0 if it was not recorded. Kept as
+     * a primitive so that no <code>Date</code> is allocated unless the start date is actually read.
      */
-    private Date startDate;
+    private long startTimeInMs;
+
+    /**
+     * Represents the value of <code>System.nanoTime()</code> when the request attempt started.
+     */
+    private long startNanoTime;
+
+    /**
+     * Represents the elapsed time, in nanoseconds, from the start of the attempt until the request was handed over
+     * for a response. This covers connection setup and sending the request body.
+     */
+    private long connectNanos = -1;
+
+    /**
+     * Represents the elapsed time, in nanoseconds, from the start of the attempt until the response headers were
+     * received.
+     */
+    private long firstByteNanos = -1;
+
+    /**
+     * Represents the elapsed time, in nanoseconds, from the start of the attempt until the operation finished
+     * processing the response.
+     */
+    private long totalNanos = -1;
+
+    /**
+     * Represents the number of request body bytes sent to the storage service.
+     */
+    private long bytesSent;
+
+    /**
+     * Represents the Content-Length returned by the storage service, or -1 if it was not supplied.
+     */
+    private long responseContentLength = -1;
 
     /**
      * Represents the HTTP status code for the request.
@@ -63,9 +97,23 @@ public final class RequestResult {
     private String statusMessage;
 
     /**
-     * Represents the stop date of the operation.
+     * Represents the stop time of the request, in milliseconds since the epoch, or 0 if it was not recorded.
      */
-    private Date stopDate;
+    private long stopTimeInMs;
+
+    /**
+     * @return the number of request body bytes sent
+     */
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    /**
+     * @return the elapsed nanoseconds until the request was sent, or -1 if it was not recorded
+     */
+    public long getConnectNanos() {
+        return this.connectNanos;
+    }
 
     /**
      * @return the contentMD5
@@ -88,6 +136,13 @@ public final class RequestResult {
         return this.exception;
     }
 
+    /**
+     * @return the elapsed nanoseconds until the response headers were received, or -1 if it was not recorded
+     */
+    public long getFirstByteNanos() {
+        return this.firstByteNanos;
+    }
+
     /**
      * @return the requestDate
      */
@@ -106,7 +161,21 @@ public final class RequestResult {
      * @return the startDate
      */
     public Date getStartDate() {
-        return this.startDate;
+        return this.startTimeInMs == 0 ? null : new Date(this.startTimeInMs);
+    }
+
+    /**
+     * @return the value of <code>System.nanoTime()</code> when the request attempt started
+     */
+    public long getStartNanoTime() {
+        return this.startNanoTime;
+    }
+
+    /**
+     * @return the Content-Length of the response, or -1 if it was not supplied
+     */
+    public long getResponseContentLength() {
+        return this.responseContentLength;
     }
 
     /**
@@ -127,7 +196,30 @@ public final class RequestResult {
      * @return the stopDate
      */
     public Date getStopDate() {
-        return this.stopDate;
+        return this.stopTimeInMs == 0 ? null : new Date(this.stopTimeInMs);
+    }
+
+    /**
+     * @return the elapsed nanoseconds until the response was processed, or -1 if it was not recorded
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * @param bytesSent
+     *            the bytesSent to set
+     */
+    public void setBytesSent(final long bytesSent) {
+        this.bytesSent = bytesSent;
+    }
+
+    /**
+     * @param connectNanos
+     *            the connectNanos to set
+     */
+    public void setConnectNanos(final long connectNanos) {
+        this.connectNanos = connectNanos;
     }
 
     /**
@@ -154,6 +246,14 @@ public final class RequestResult {
         this.exception = exception;
     }
 
+    /**
+     * @param firstByteNanos
+     *            the firstByteNanos to set
+     */
+    public void setFirstByteNanos(final long firstByteNanos) {
+        this.firstByteNanos = firstByteNanos;
+    }
+
     /**
      * @param requestDate
      *            the date to set
@@ -175,7 +275,31 @@ public final class RequestResult {
      *            the startDate to set
      */
     public void setStartDate(final Date startDate) {
-        this.startDate = startDate;
+        this.startTimeInMs = startDate == null ? 0 : startDate.getTime();
+    }
+
+    /**
+     * @param startTimeInMs
+     *            the start time, in milliseconds since the epoch, to set
+     */
+    public void setStartTimeInMs(final long startTimeInMs) {
+        this.startTimeInMs = startTimeInMs;
+    }
+
+    /**
+     * @param startNanoTime
+     *            the startNanoTime to set
+     */
+    public void setStartNanoTime(final long startNanoTime) {
+        this.startNanoTime = startNanoTime;
+    }
+
+    /**
+     * @param responseContentLength
+     *            the responseContentLength to set
+     */
+    public void setResponseContentLength(final long responseContentLength) {
+        this.responseContentLength = responseContentLength;
     }
 
     /**
@@ -199,6 +323,22 @@ public final class RequestResult {
      *            the stopDate to set
      */
     public void setStopDate(final Date stopDate) {
-        this.stopDate = stopDate;
+        this.stopTimeInMs = stopDate == null ? 0 : stopDate.getTime();
+    }
+
+    /**
+     * @param stopTimeInMs
+     *            the stop time, in milliseconds since the epoch, to set
+     */
+    public void setStopTimeInMs(final long stopTimeInMs) {
+        this.stopTimeInMs = stopTimeInMs;
+    }
+
+    /**
+     * @param totalNanos
+     *            the totalNanos to set
+     */
+    public void setTotalNanos(final long totalNanos) {
+        this.totalNanos = totalNanos;
     }
 }
@@ -17,6 +17,7 @@ package com.microsoft.windowsazure.services.core.storage;
 import java.io.ByteArrayInputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.concurrent.Executor;
 
 import com.microsoft.windowsazure.services.blob.client.CloudBlobClient;
 import com.microsoft.windowsazure.services.core.storage.utils.StreamMd5AndLength;
@@ -57,6 +58,30 @@ public abstract class ServiceClient {
      */
     protected int timeoutInMs = Constants.DEFAULT_TIMEOUT_IN_MS;
 
+    /**
+     * Represents an event that is triggered when an operation made via the service client completes. Listeners receive
+     * the timings, retry count and bytes received of every operation, and may be dispatched asynchronously by setting
+     * an executor on the multi-caster. Exceptions thrown by listeners are ignored, so that they do not replace the
+     * result or the exception of the operation.
+     * 
+     * @see StorageEvent
+     * @see StorageEventMultiCaster
+     * @see OperationCompletedEvent
+     */
+    private StorageEventMultiCaster<OperationCompletedEvent, StorageEvent<OperationCompletedEvent>> operationCompletedEventHandler = new StorageEventMultiCaster<OperationCompletedEvent, StorageEvent<OperationCompletedEvent>>();
+
+    /**
+     * Holds the registry recording the metrics of the operations made via the service client, or <code>null</code> if
+     * metrics are disabled.
+     */
+    private OperationMetricsRegistry operationMetrics;
+
+    /**
+     * Holds the executor on which the attempts of asynchronous operations run, or <code>null</code> to use a shared
+     * pool of daemon threads.
+     */
+    private volatile Executor asyncExecutor;
+
     /**
      * Creates an instance of the <code>ServiceClient</code> class using the specified service endpoint.
      * 
@@ -158,6 +183,41 @@ public abstract class ServiceClient {
         return ExecutionEngine.executeWithRetry(this, null, impl, options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Disables the recording of operation metrics. Metrics already recorded remain available from the registry that
+     * was returned by {@link #enableOperationMetrics()}.
+     */
+    public final synchronized void disableOperationMetrics() {
+        if (this.operationMetrics != null) {
+            this.operationCompletedEventHandler.removeListener(this.operationMetrics);
+            this.operationMetrics = null;
+        }
+    }
+
+    /**
+     * Enables the recording of latency histograms, retry counts and bytes transferred for every operation made via
+     * the service client, keyed by operation name and HTTP status code.
+     * 
+     * @return An {@link OperationMetricsRegistry} object from which the metrics can be read or exported over JMX.
+     */
+    public final synchronized OperationMetricsRegistry enableOperationMetrics() {
+        if (this.operationMetrics == null) {
+            this.operationMetrics = new OperationMetricsRegistry();
+            this.operationCompletedEventHandler.addListener(this.operationMetrics);
+        }
+
+        return this.operationMetrics;
+    }
+
+    /**
+     * Returns the executor on which the attempts of asynchronous operations made via the service client run.
+     * 
+     * @return An <code>Executor</code> object, or <code>null</code> if a shared pool of daemon threads is used.
+     */
+    public final Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
     /**
      * Returns the storage credentials associated with this service client.
      * 
@@ -176,6 +236,24 @@ public abstract class ServiceClient {
         return this.endpoint;
     }
 
+    /**
+     * Returns the registry recording the metrics of the operations made via the service client.
+     * 
+     * @return An {@link OperationMetricsRegistry} object, or <code>null</code> if metrics are not enabled.
+     * 
+     * @see #enableOperationMetrics()
+     */
+    public final synchronized OperationMetricsRegistry getOperationMetrics() {
+        return this.operationMetrics;
+    }
+
+    /**
+     * @return the operationCompletedEventHandler
+     */
+    public final StorageEventMultiCaster<OperationCompletedEvent, StorageEvent<OperationCompletedEvent>> getOperationCompletedEventHandler() {
+        return this.operationCompletedEventHandler;
+    }
+
     /**
      * Returns the retry policy currently in effect for this Blob service client.
      * 
@@ -229,6 +307,26 @@ public abstract class ServiceClient {
         this.credentials = credentials;
     }
 
+    /**
+     * Sets the executor on which the attempts of asynchronous operations made via the service client run. Retries are
+     * scheduled on a shared timer and only occupy a thread of the executor while an attempt is in progress.
+     * 
+     * @param asyncExecutor
+     *            An <code>Executor</code> object, or <code>null</code> to use a shared pool of daemon threads.
+     */
+    public final void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * @param operationCompletedEventHandler
+     *            the operationCompletedEventHandler to set
+     */
+    public final void setOperationCompletedEventHandler(
+            final StorageEventMultiCaster<OperationCompletedEvent, StorageEvent<OperationCompletedEvent>> operationCompletedEventHandler) {
+        this.operationCompletedEventHandler = operationCompletedEventHandler;
+    }
+
     /**
      * Sets the RetryPolicyFactory object to use when making service requests.
      * 
@@ -327,8 +425,9 @@ public abstract class ServiceClient {
                 request.setRequestProperty(Constants.HeaderConstants.CONTENT_MD5, descriptor.getMd5());
 
                 client.getCredentials().signRequest(request, descriptor.getLength());
-                Utility.writeToOutputStream(dataInputStream, request.getOutputStream(), descriptor.getLength(),
-                        false /* rewindSourceStream */, false /* calculateMD5 */, null, opContext);
+                Utility.writeToOutputStream(dataInputStream, ExecutionEngine.getOutputStream(request, opContext),
+                        descriptor.getLength(), false /* rewindSourceStream */, false /* calculateMD5 */, null,
+                        opContext);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
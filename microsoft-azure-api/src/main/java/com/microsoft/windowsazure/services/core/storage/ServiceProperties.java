@@ -18,13 +18,13 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 
 /**
  * Represents the analytics properties for the service.
@@ -365,8 +365,7 @@ public final class ServiceProperties {
         Utility.assertNotNull("Merics.Configuration", this.getMetrics().getMetricsLevel());
 
         final StringWriter outWriter = new StringWriter();
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        final XMLStreamWriter xmlw = xmlOutFactoryInst.createXMLStreamWriter(outWriter);
+        final XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(outWriter);
 
         // default is UTF8
         xmlw.writeStartDocument();
@@ -14,7 +14,8 @@
  */
 package com.microsoft.windowsazure.services.core.storage;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Represents a generic event multi-caster that allows event listeners to be dynamically added and removed.
@@ -27,9 +28,15 @@ import java.util.ArrayList;
 public final class StorageEventMultiCaster<EVENT_TYPE, EVENT_LISTENTER_TYPE extends StorageEvent<EVENT_TYPE>> {
 
     /**
-     * Holds the list of listeners.
+     * Holds the list of listeners. Listeners are rarely added or removed compared to how often events fire, so a
+     * copy-on-write list lets events be dispatched without taking a lock.
      */
-    private final ArrayList<EVENT_LISTENTER_TYPE> listeners = new ArrayList<EVENT_LISTENTER_TYPE>();
+    private final CopyOnWriteArrayList<EVENT_LISTENTER_TYPE> listeners = new CopyOnWriteArrayList<EVENT_LISTENTER_TYPE>();
+
+    /**
+     * Holds the executor used to dispatch events, or <code>null</code> to dispatch on the calling thread.
+     */
+    private volatile Executor executor;
 
     /**
      * Adds a listener to the event chain.
@@ -37,29 +44,54 @@ public final class StorageEventMultiCaster<EVENT_TYPE, EVENT_LISTENTER_TYPE exte
      * @param listener
      *            An <code>EventListenerType</code> object that represents the listener to add.
      */
-    public synchronized void addListener(final EVENT_LISTENTER_TYPE listener) {
+    public void addListener(final EVENT_LISTENTER_TYPE listener) {
         this.listeners.add(listener);
     }
 
     /**
-     * Fires the event to all subscribed event listeners.
+     * Fires the event to all subscribed event listeners. If an executor has been set, the listeners are invoked on it
+     * and this method returns without waiting for them.
      * 
      * @param event
      *            An <code>EVENTTYPE</code>object that represents the event being multi-casted.
      */
-    public synchronized void fireEvent(final EVENT_TYPE event) {
-        for (final StorageEvent<EVENT_TYPE> listener : this.listeners) {
-            listener.eventOccurred(event);
+    public void fireEvent(final EVENT_TYPE event) {
+        final Executor currentExecutor = this.executor;
+
+        if (currentExecutor == null) {
+            for (final StorageEvent<EVENT_TYPE> listener : this.listeners) {
+                listener.eventOccurred(event);
+            }
+        }
+        else {
+            for (final StorageEvent<EVENT_TYPE> listener : this.listeners) {
+                currentExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.eventOccurred(event);
+                    }
+                });
+            }
         }
     }
 
+    /**
+     * Returns the executor used to dispatch events.
+     * 
+     * @return An <code>Executor</code> object, or <code>null</code> if events are dispatched on the thread that fires
+     *         them.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
     /**
      * Returns a value that indicates whether any event listeners are registered for events.
      * 
      * @return <code>true</code> if any event listeners are registered; otherwise, <code>false</code>.
      */
-    public synchronized boolean hasListeners() {
-        return this.listeners.size() > 0;
+    public boolean hasListeners() {
+        return !this.listeners.isEmpty();
     }
 
     /**
@@ -68,7 +100,19 @@ public final class StorageEventMultiCaster<EVENT_TYPE, EVENT_LISTENTER_TYPE exte
      * @param listener
      *            An <code>EventListenerType</code> object that represents the listener to remove.
      */
-    public synchronized void removeListener(final EVENT_LISTENTER_TYPE listener) {
+    public void removeListener(final EVENT_LISTENTER_TYPE listener) {
         this.listeners.remove(listener);
     }
+
+    /**
+     * Sets the executor used to dispatch events. Listeners that need to act on the request before it is sent, such as
+     * those adding headers from a {@link SendingRequestEvent}, must be dispatched synchronously.
+     * 
+     * @param executor
+     *            An <code>Executor</code> object on which to invoke the listeners, or <code>null</code> to invoke them
+     *            on the thread that fires the event.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
 }
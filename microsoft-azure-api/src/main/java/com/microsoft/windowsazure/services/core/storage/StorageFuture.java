@@ -0,0 +1,261 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Represents the pending result of a storage operation that is executed asynchronously. Retries of the operation are
+ * scheduled after their back-off interval elapses rather than blocking a thread while waiting.
+ * <p>
+ * The result can be retrieved by blocking on {@link #get()} or {@link #getResult()}, or by registering a listener with
+ * {@link #addCompletionListener(StorageEvent)} that is invoked once the operation completes, fails or is cancelled.
+ * 
+ * @param <T>
+ *            The type of the result of the operation.
+ */
+public final class StorageFuture<T> implements Future<T> {
+
+    /**
+     * Released when the operation completes.
+     */
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    /**
+     * Holds the listeners to invoke on completion, or <code>null</code> once they have been invoked.
+     */
+    private List<StorageEvent<StorageFuture<T>>> listeners = new ArrayList<StorageEvent<StorageFuture<T>>>();
+
+    /**
+     * Holds the result of the operation.
+     */
+    private volatile T result;
+
+    /**
+     * Holds the exception that failed the operation.
+     */
+    private volatile StorageException exception;
+
+    /**
+     * Indicates whether the operation was cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Registers a listener to invoke when the operation completes. If the operation has already completed, the listener
+     * is invoked immediately on the calling thread; otherwise it is invoked on the thread that completes the operation.
+     * 
+     * @param listener
+     *            A {@link StorageEvent} object that receives this future.
+     */
+    public void addCompletionListener(final StorageEvent<StorageFuture<T>> listener) {
+        synchronized (this) {
+            if (this.listeners != null) {
+                this.listeners.add(listener);
+                return;
+            }
+        }
+
+        listener.eventOccurred(this);
+    }
+
+    /**
+     * Attempts to cancel the operation. An attempt that is already in progress runs to completion, but no further
+     * retries are made and its result is discarded.
+     * 
+     * @param mayInterruptIfRunning
+     *            Ignored; a request in progress is never interrupted.
+     * @return <code>true</code> if the operation was cancelled, otherwise <code>false</code> if it had already
+     *         completed.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return this.complete(null, null, true);
+    }
+
+    /**
+     * Waits for the operation to complete and returns its result.
+     * 
+     * @return The result of the operation.
+     * 
+     * @throws InterruptedException
+     *             If the current thread was interrupted while waiting.
+     * @throws ExecutionException
+     *             If the operation failed. The cause is the {@link StorageException} that failed it.
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        this.completion.await();
+        return this.report();
+    }
+
+    /**
+     * Waits at most the given time for the operation to complete and returns its result.
+     * 
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the <code>timeout</code> argument.
+     * @return The result of the operation.
+     * 
+     * @throws InterruptedException
+     *             If the current thread was interrupted while waiting.
+     * @throws ExecutionException
+     *             If the operation failed. The cause is the {@link StorageException} that failed it.
+     * @throws TimeoutException
+     *             If the operation did not complete in time.
+     */
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+            TimeoutException {
+        if (!this.completion.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+
+        return this.report();
+    }
+
+    /**
+     * Returns the exception that failed the operation.
+     * 
+     * @return A {@link StorageException} object, or <code>null</code> if the operation has not failed.
+     */
+    public StorageException getException() {
+        return this.exception;
+    }
+
+    /**
+     * Waits for the operation to complete and returns its result, rethrowing the exception that failed it.
+     * 
+     * @return The result of the operation.
+     * 
+     * @throws StorageException
+     *             If the operation failed.
+     * @throws InterruptedException
+     *             If the current thread was interrupted while waiting.
+     */
+    public T getResult() throws StorageException, InterruptedException {
+        this.completion.await();
+
+        if (this.cancelled) {
+            throw new CancellationException();
+        }
+
+        if (this.exception != null) {
+            throw this.exception;
+        }
+
+        return this.result;
+    }
+
+    /**
+     * @return <code>true</code> if the operation was cancelled before it completed
+     */
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return <code>true</code> if the operation completed, failed or was cancelled
+     */
+    @Override
+    public boolean isDone() {
+        return this.completion.getCount() == 0;
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Completes the operation with a result.
+     * 
+     * @param result
+     *            the result of the operation
+     * @return <code>true</code> if the operation was completed by this call
+     */
+    public boolean setResult(final T result) {
+        return this.complete(result, null, false);
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Completes the operation with an exception.
+     * 
+     * @param exception
+     *            the exception that failed the operation
+     * @return <code>true</code> if the operation was completed by this call
+     */
+    public boolean setException(final StorageException exception) {
+        return this.complete(null, exception, false);
+    }
+
+    /**
+     * Completes the operation once and invokes the registered listeners.
+     * 
+     * @param result
+     *            the result of the operation
+     * @param exception
+     *            the exception that failed the operation, if any
+     * @param cancelled
+     *            whether the operation was cancelled
+     * @return <code>true</code> if the operation was completed by this call
+     */
+    private boolean complete(final T result, final StorageException exception, final boolean cancelled) {
+        final List<StorageEvent<StorageFuture<T>>> toNotify;
+
+        synchronized (this) {
+            if (this.listeners == null) {
+                return false;
+            }
+
+            this.result = result;
+            this.exception = exception;
+            this.cancelled = cancelled;
+            toNotify = this.listeners;
+            this.listeners = null;
+        }
+
+        this.completion.countDown();
+
+        for (final StorageEvent<StorageFuture<T>> listener : toNotify) {
+            listener.eventOccurred(this);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reports the outcome of the completed operation.
+     * 
+     * @return the result of the operation
+     * @throws ExecutionException
+     *             if the operation failed
+     */
+    private T report() throws ExecutionException {
+        if (this.cancelled) {
+            throw new CancellationException();
+        }
+
+        if (this.exception != null) {
+            throw new ExecutionException(this.exception);
+        }
+
+        return this.result;
+    }
+}
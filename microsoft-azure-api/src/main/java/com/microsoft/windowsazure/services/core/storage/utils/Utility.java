@@ -14,6 +14,7 @@
  */
 package com.microsoft.windowsazure.services.core.storage.utils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,7 +36,6 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.TimeZone;
 
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -314,17 +314,7 @@ public final class Utility {
      */
     public static XMLStreamReader createXMLStreamReaderFromStream(final InputStream streamRef)
             throws XMLStreamException {
-        // TODO optimization keep this static
-        XMLInputFactory xmlif = null;
-
-        xmlif = XMLInputFactory.newInstance();
-        xmlif.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
-        xmlif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
-        // set the IS_COALESCING property to true , if application desires to
-        // get whole text data as one event.
-        xmlif.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-
-        return xmlif.createXMLStreamReader(streamRef);
+        return XMLFactoryProvider.createXMLStreamReader(streamRef);
     }
 
     /**
@@ -340,17 +330,7 @@ public final class Utility {
      *             If the XML stream reader could not be created.
      */
     public static XMLStreamReader createXMLStreamReaderFromReader(final Reader reader) throws XMLStreamException {
-        // TODO optimization keep this static
-        XMLInputFactory xmlif = null;
-
-        xmlif = XMLInputFactory.newInstance();
-        xmlif.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
-        xmlif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
-        // set the IS_COALESCING property to true , if application desires to
-        // get whole text data as one event.
-        xmlif.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-
-        return xmlif.createXMLStreamReader(reader);
+        return XMLFactoryProvider.createXMLStreamReader(reader);
     }
 
     /**
@@ -484,6 +464,24 @@ public final class Utility {
         return rfc1123Format.format(inDate);
     }
 
+    /**
+     * Returns a new <code>MessageDigest</code> that calculates MD5 hashes.
+     * 
+     * @return A <code>MessageDigest</code> object for the MD5 algorithm.
+     * 
+     * @throws StorageException
+     *             If the MD5 algorithm is not available.
+     */
+    public static MessageDigest getMD5Digest() throws StorageException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // This wont happen, throw fatal.
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+    }
+
     /**
      * Returns the standard header value from the specified connection request, or an empty string if no header value
      * has been specified for the request.
@@ -721,6 +719,52 @@ public final class Utility {
         }
     }
 
+    /**
+     * Reads data from a stream into a buffer, optionally updating an MD5 digest with each chunk as it is read so that
+     * the data only has to be read once. Reading stops at the end of the stream, after <code>readLength</code> bytes,
+     * or as soon as more than <code>maxLength</code> bytes have been read, whichever comes first.
+     * 
+     * @param sourceStream
+     *            An <code>InputStream</code> object that represents the stream to read from.
+     * @param buffer
+     *            A <code>ByteArrayOutputStream</code> object that receives the data.
+     * @param readLength
+     *            The number of bytes to read, or <code>-1</code> to read to the end of the stream.
+     * @param maxLength
+     *            The largest number of bytes the caller can accept. At most one byte beyond this value is read, so a
+     *            return value greater than <code>maxLength</code> indicates that the stream holds more data.
+     * @param digest
+     *            A <code>MessageDigest</code> object to update with the data read, or <code>null</code>.
+     * 
+     * @return The number of bytes read into the buffer.
+     * 
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    public static long readToBuffer(final InputStream sourceStream, final ByteArrayOutputStream buffer,
+            final long readLength, final long maxLength, final MessageDigest digest) throws IOException {
+        final long limit = readLength < 0 ? maxLength + 1 : Math.min(readLength, maxLength + 1);
+        final byte[] retrievedBuff = new byte[Constants.BUFFER_COPY_LENGTH];
+        long totalRead = 0;
+
+        while (totalRead < limit) {
+            final int count = sourceStream.read(retrievedBuff, 0,
+                    (int) Math.min(retrievedBuff.length, limit - totalRead));
+            if (count == -1) {
+                break;
+            }
+
+            buffer.write(retrievedBuff, 0, count);
+            if (digest != null) {
+                digest.update(retrievedBuff, 0, count);
+            }
+
+            totalRead += count;
+        }
+
+        return totalRead;
+    }
+
     /**
      * Performs safe decoding of the specified string, taking care to preserve each <code>+</code> character, rather
      * than replacing it with a space character.
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage.utils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * RESERVED FOR INTERNAL USE. Provides the StAX factories used to read and write every storage request and response
+ * body.
+ * <p>
+ * Looking up a factory walks the classpath through the service loader, so the factories are created once, on first use,
+ * and shared. The implementation is chosen by the standard StAX lookup, which picks up a faster parser such as Woodstox
+ * or Aalto when it is on the classpath or named by the <code>javax.xml.stream.XMLInputFactory</code> and
+ * <code>javax.xml.stream.XMLOutputFactory</code> system properties. A specific implementation can also be installed
+ * with {@link #setInputFactory(XMLInputFactory)} and {@link #setOutputFactory(XMLOutputFactory)}.
+ * <p>
+ * StAX does not require factories to be thread-safe, so readers and writers are created while holding the lock of the
+ * factory. Parsing and writing happen outside of the lock.
+ */
+public final class XMLFactoryProvider {
+    /**
+     * Holds the shared input factory, or <code>null</code> until it is first used.
+     */
+    private static volatile XMLInputFactory inputFactory;
+
+    /**
+     * Holds the shared output factory, or <code>null</code> until it is first used.
+     */
+    private static volatile XMLOutputFactory outputFactory;
+
+    /**
+     * Creates an XML stream reader from the specified input stream.
+     * 
+     * @param streamRef
+     *            An <code>InputStream</code> object that represents the input stream to use as the source.
+     * @return A <code>XMLStreamReader</code> object that reads the specified input stream.
+     * @throws XMLStreamException
+     *             If the XML stream reader could not be created.
+     */
+    public static XMLStreamReader createXMLStreamReader(final InputStream streamRef) throws XMLStreamException {
+        final XMLInputFactory factory = getInputFactory();
+
+        synchronized (factory) {
+            return factory.createXMLStreamReader(streamRef);
+        }
+    }
+
+    /**
+     * Creates an XML stream reader from the specified reader.
+     * 
+     * @param reader
+     *            A <code>Reader</code> object that represents the reader to use as the source.
+     * @return A <code>XMLStreamReader</code> object that reads the specified reader.
+     * @throws XMLStreamException
+     *             If the XML stream reader could not be created.
+     */
+    public static XMLStreamReader createXMLStreamReader(final Reader reader) throws XMLStreamException {
+        final XMLInputFactory factory = getInputFactory();
+
+        synchronized (factory) {
+            return factory.createXMLStreamReader(reader);
+        }
+    }
+
+    /**
+     * Creates an XML stream writer on the specified output stream.
+     * 
+     * @param outStream
+     *            An <code>OutputStream</code> object to write to.
+     * @param encoding
+     *            The character encoding to write with, for example <code>UTF-8</code>.
+     * @return A <code>XMLStreamWriter</code> object that writes to the specified output stream.
+     * @throws XMLStreamException
+     *             If the XML stream writer could not be created.
+     */
+    public static XMLStreamWriter createXMLStreamWriter(final OutputStream outStream, final String encoding)
+            throws XMLStreamException {
+        final XMLOutputFactory factory = getOutputFactory();
+
+        synchronized (factory) {
+            return factory.createXMLStreamWriter(outStream, encoding);
+        }
+    }
+
+    /**
+     * Creates an XML stream writer on the specified writer.
+     * 
+     * @param writer
+     *            A <code>Writer</code> object to write to.
+     * @return A <code>XMLStreamWriter</code> object that writes to the specified writer.
+     * @throws XMLStreamException
+     *             If the XML stream writer could not be created.
+     */
+    public static XMLStreamWriter createXMLStreamWriter(final Writer writer) throws XMLStreamException {
+        final XMLOutputFactory factory = getOutputFactory();
+
+        synchronized (factory) {
+            return factory.createXMLStreamWriter(writer);
+        }
+    }
+
+    /**
+     * Returns the shared input factory, creating it on first use.
+     * 
+     * @return The <code>XMLInputFactory</code> used to read response bodies.
+     */
+    public static XMLInputFactory getInputFactory() {
+        XMLInputFactory factory = inputFactory;
+
+        if (factory == null) {
+            synchronized (XMLFactoryProvider.class) {
+                factory = inputFactory;
+
+                if (factory == null) {
+                    factory = configure(XMLInputFactory.newInstance());
+                    inputFactory = factory;
+                }
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * Returns the shared output factory, creating it on first use.
+     * 
+     * @return The <code>XMLOutputFactory</code> used to write request bodies.
+     */
+    public static XMLOutputFactory getOutputFactory() {
+        XMLOutputFactory factory = outputFactory;
+
+        if (factory == null) {
+            synchronized (XMLFactoryProvider.class) {
+                factory = outputFactory;
+
+                if (factory == null) {
+                    factory = XMLOutputFactory.newInstance();
+                    outputFactory = factory;
+                }
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * Installs the input factory used to read response bodies. Entity replacement and coalescing are enabled, and
+     * external entities disabled, on the factory.
+     * 
+     * @param factory
+     *            The <code>XMLInputFactory</code> to use, or <code>null</code> to restore the default lookup.
+     */
+    public static void setInputFactory(final XMLInputFactory factory) {
+        synchronized (XMLFactoryProvider.class) {
+            inputFactory = factory == null ? null : configure(factory);
+        }
+    }
+
+    /**
+     * Installs the output factory used to write request bodies.
+     * 
+     * @param factory
+     *            The <code>XMLOutputFactory</code> to use, or <code>null</code> to restore the default lookup.
+     */
+    public static void setOutputFactory(final XMLOutputFactory factory) {
+        synchronized (XMLFactoryProvider.class) {
+            outputFactory = factory;
+        }
+    }
+
+    /**
+     * Applies the properties required to read storage responses to an input factory.
+     * 
+     * @param factory
+     *            the factory to configure
+     * @return the configured factory
+     */
+    private static XMLInputFactory configure(final XMLInputFactory factory) {
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        // set the IS_COALESCING property to true, so whole text data is returned as one event.
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Private Default Ctor.
+     */
+    private XMLFactoryProvider() {
+        // No op
+    }
+}
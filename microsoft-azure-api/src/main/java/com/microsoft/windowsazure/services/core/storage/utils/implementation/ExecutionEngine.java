@@ -15,17 +15,30 @@
 
 package com.microsoft.windowsazure.services.core.storage.utils.implementation;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
-import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.stream.XMLStreamException;
 
+import com.microsoft.windowsazure.services.core.storage.Constants;
+import com.microsoft.windowsazure.services.core.storage.OperationCompletedEvent;
 import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.RequestResult;
 import com.microsoft.windowsazure.services.core.storage.ResponseReceivedEvent;
@@ -34,8 +47,10 @@ import com.microsoft.windowsazure.services.core.storage.RetryPolicy;
 import com.microsoft.windowsazure.services.core.storage.RetryPolicyFactory;
 import com.microsoft.windowsazure.services.core.storage.RetryResult;
 import com.microsoft.windowsazure.services.core.storage.SendingRequestEvent;
+import com.microsoft.windowsazure.services.core.storage.ServiceClient;
 import com.microsoft.windowsazure.services.core.storage.StorageErrorCodeStrings;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
 import com.microsoft.windowsazure.services.table.client.TableServiceException;
 
 /**
@@ -43,6 +58,21 @@ import com.microsoft.windowsazure.services.table.client.TableServiceException;
  */
 public final class ExecutionEngine {
 
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The suffix of the methods that create the StorageOperation shared by a synchronous and an asynchronous method.
+     */
+    private static final String IMPL_SUFFIX = "Impl";
+
+    /**
+     * Holds the operation names already derived from StorageOperation classes.
+     */
+    private static final ConcurrentHashMap<Class<?>, String> OPERATION_NAMES = new ConcurrentHashMap<Class<?>, String>();
+
     /**
      * Executes an operation without a retry policy.
      * 
@@ -98,113 +128,210 @@ public final class ExecutionEngine {
             final RetryPolicyFactory policyFactory, final OperationContext opContext) throws StorageException {
 
         final RetryPolicy policy = policyFactory.createInstance(opContext);
+        final AttemptOutcome<RESULT_TYPE> outcome = new AttemptOutcome<RESULT_TYPE>();
         RetryResult retryRes;
         int currentRetryCount = 0;
-        StorageException translatedException = null;
-        final long startTime = new Date().getTime();
+        StorageException failure = null;
+        boolean succeeded = false;
+        final long startTime = System.nanoTime();
 
-        while (true) {
-            try {
-                // reset result flags
-                task.initialize();
-
-                final RESULT_TYPE result = task.execute(client, parentObject, opContext);
+        try {
+            while (true) {
+                executeAttempt(client, parentObject, task, opContext, startTime, outcome);
 
-                opContext.setClientTimeInMs(new Date().getTime() - startTime);
+                if (outcome.retryableException == null) {
+                    succeeded = true;
+                    return outcome.result;
+                }
 
-                if (!task.isNonExceptionedRetryableFailure()) {
-                    // Success return result, the rest of the return paths throw.
-                    return result;
+                // Evaluate Retry Policy
+                retryRes = policy.shouldRetry(currentRetryCount, task.getResult().getStatusCode(), opContext
+                        .getLastResult().getException(), opContext);
+                if (!retryRes.isShouldRetry()) {
+                    throw outcome.retryableException;
                 }
                 else {
-                    // The task may have already parsed an exception.
-                    translatedException = task.materializeException(getLastRequestObject(opContext), opContext);
-                    setLastException(opContext, translatedException);
-
-                    // throw on non retryable status codes: 501, 505, blob type
-                    // mismatch
-                    if (task.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_IMPLEMENTED
-                            || task.getResult().getStatusCode() == HttpURLConnection.HTTP_VERSION
-                            || translatedException.getErrorCode().equals(StorageErrorCodeStrings.INVALID_BLOB_TYPE)) {
-                        throw translatedException;
-                    }
+                    retryRes.doSleep();
+                    currentRetryCount++;
                 }
             }
-            catch (final TimeoutException e) {
-                // Retryable
-                translatedException = StorageException
-                        .translateException(getLastRequestObject(opContext), e, opContext);
-                setLastException(opContext, translatedException);
-            }
-            catch (final SocketTimeoutException e) {
-                // Retryable
-                translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
-                        "The operation did not complete in the specified time.", -1, null, e);
-                setLastException(opContext, translatedException);
-            }
-            catch (final IOException e) {
-                // Retryable
-                translatedException = StorageException
-                        .translateException(getLastRequestObject(opContext), e, opContext);
-                setLastException(opContext, translatedException);
-            }
-            catch (final XMLStreamException e) {
-                // Non Retryable, just throw
-                translatedException = StorageException
-                        .translateException(getLastRequestObject(opContext), e, opContext);
-                setLastException(opContext, translatedException);
-                throw translatedException;
+        }
+        catch (final StorageException e) {
+            failure = e;
+            throw e;
+        }
+        finally {
+            if (client instanceof ServiceClient && (succeeded || failure != null)) {
+                fireOperationCompletedEvent((ServiceClient) client, task, opContext, startTime, currentRetryCount,
+                        failure);
             }
-            catch (final InvalidKeyException e) {
-                // Non Retryable, just throw
-                translatedException = StorageException
-                        .translateException(getLastRequestObject(opContext), e, opContext);
-                setLastException(opContext, translatedException);
-                throw translatedException;
+        }
+    }
+
+    /**
+     * Executes an operation asynchronously and enforces a retry policy to handle any potential errors. Attempts run on
+     * the executor of the service client, or on a shared pool of daemon threads if the client has none, and retries
+     * are scheduled on a timer once their back-off interval elapses, so no thread is held while waiting to retry.
+     * 
+     * @param <CLIENT_TYPE>
+     *            The service client type
+     * @param <PARENT_TYPE>
+     *            The type of the parent object, i.e. CloudBlobContainer for downloadAttributes etc.
+     * @param <RESULT_TYPE>
+     *            The type of the expected result
+     * @param client
+     *            the service client associated with the request
+     * @param parentObject
+     *            the parent object
+     * @param task
+     *            the StorageOperation to execute
+     * @param policyFactory
+     *            the factory used to generate a new retry policy instance
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return a future that completes with the result of the operation
+     */
+    public static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> StorageFuture<RESULT_TYPE> executeWithRetryAsync(
+            final CLIENT_TYPE client, final PARENT_TYPE parentObject,
+            final StorageOperation<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, final RetryPolicyFactory policyFactory,
+            final OperationContext opContext) {
+        Executor executor = null;
+
+        if (client instanceof ServiceClient) {
+            executor = ((ServiceClient) client).getAsyncExecutor();
+        }
+
+        if (executor == null) {
+            executor = AsyncResources.DEFAULT_EXECUTOR;
+        }
+
+        final AsyncExecution<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> execution = new AsyncExecution<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE>(
+                client, parentObject, task, policyFactory.createInstance(opContext), opContext, executor);
+        execution.schedule(0);
+        return execution.future;
+    }
+
+    /**
+     * Executes a single attempt of an operation. On success the result is stored in the outcome; on a retryable
+     * failure the translated exception is stored instead, and non retryable failures are thrown.
+     * 
+     * @param <CLIENT_TYPE>
+     *            The service client type
+     * @param <PARENT_TYPE>
+     *            The type of the parent object
+     * @param <RESULT_TYPE>
+     *            The type of the expected result
+     * @param client
+     *            the service client associated with the request
+     * @param parentObject
+     *            the parent object
+     * @param task
+     *            the StorageOperation to execute
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @param startTime
+     *            the value of <code>System.nanoTime()</code> when the operation started
+     * @param outcome
+     *            receives the result or the retryable exception of the attempt
+     * @throws StorageException
+     *             an exception representing a non retryable error which occurred during the attempt.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> void executeAttempt(final CLIENT_TYPE client,
+            final PARENT_TYPE parentObject, final StorageOperation<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task,
+            final OperationContext opContext, final long startTime, final AttemptOutcome<RESULT_TYPE> outcome)
+            throws StorageException {
+        StorageException translatedException;
+        outcome.result = null;
+        outcome.retryableException = null;
+
+        try {
+            // reset result flags
+            task.initialize();
+            opContext.setCurrentRequestStartNanoTime(System.nanoTime());
+            opContext.setCurrentRequestBytesSent(0);
+
+            final RESULT_TYPE result = task.execute(client, parentObject, opContext);
+
+            setLastAttemptTime(opContext);
+            opContext.setClientTimeInMs((System.nanoTime() - startTime) / NANOS_PER_MILLI);
+
+            if (!task.isNonExceptionedRetryableFailure()) {
+                // Success return result, the rest of the return paths throw.
+                outcome.result = result;
+                return;
             }
-            catch (final URISyntaxException e) {
-                // Non Retryable, just throw
-                translatedException = StorageException
-                        .translateException(getLastRequestObject(opContext), e, opContext);
+            else {
+                // The task may have already parsed an exception.
+                translatedException = task.materializeException(getLastRequestObject(opContext), opContext);
                 setLastException(opContext, translatedException);
-                throw translatedException;
-            }
-            catch (final TableServiceException e) {
-                task.getResult().setStatusCode(e.getHttpStatusCode());
-                task.getResult().setStatusMessage(e.getMessage());
-                setLastException(opContext, e);
-                if (!e.isRetryable()) {
-                    throw e;
-                }
-                else {
-                    translatedException = e;
+
+                // throw on non retryable status codes: 501, 505, blob type mismatch
+                if (task.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_IMPLEMENTED
+                        || task.getResult().getStatusCode() == HttpURLConnection.HTTP_VERSION
+                        || translatedException.getErrorCode().equals(StorageErrorCodeStrings.INVALID_BLOB_TYPE)) {
+                    throw translatedException;
                 }
             }
-            catch (final StorageException e) {
-                // Non Retryable, just throw
-                // do not translate StorageException
-                setLastException(opContext, e);
+        }
+        catch (final TimeoutException e) {
+            // Retryable
+            translatedException = StorageException.translateException(getLastRequestObject(opContext), e, opContext);
+            setLastException(opContext, translatedException);
+        }
+        catch (final SocketTimeoutException e) {
+            // Retryable
+            translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
+                    "The operation did not complete in the specified time.", -1, null, e);
+            setLastException(opContext, translatedException);
+        }
+        catch (final IOException e) {
+            // Retryable
+            translatedException = StorageException.translateException(getLastRequestObject(opContext), e, opContext);
+            setLastException(opContext, translatedException);
+        }
+        catch (final XMLStreamException e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(getLastRequestObject(opContext), e, opContext);
+            setLastException(opContext, translatedException);
+            throw translatedException;
+        }
+        catch (final InvalidKeyException e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(getLastRequestObject(opContext), e, opContext);
+            setLastException(opContext, translatedException);
+            throw translatedException;
+        }
+        catch (final URISyntaxException e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(getLastRequestObject(opContext), e, opContext);
+            setLastException(opContext, translatedException);
+            throw translatedException;
+        }
+        catch (final TableServiceException e) {
+            task.getResult().setStatusCode(e.getHttpStatusCode());
+            task.getResult().setStatusMessage(e.getMessage());
+            setLastException(opContext, e);
+            if (!e.isRetryable()) {
                 throw e;
             }
-            catch (final Exception e) {
-                // Non Retryable, just throw
-                translatedException = StorageException
-                        .translateException(getLastRequestObject(opContext), e, opContext);
-                setLastException(opContext, translatedException);
-                throw translatedException;
-            }
-
-            // Evaluate Retry Policy
-            retryRes = policy.shouldRetry(currentRetryCount, task.getResult().getStatusCode(), opContext
-                    .getLastResult().getException(), opContext);
-            if (!retryRes.isShouldRetry()) {
-                throw translatedException;
-            }
             else {
-                retryRes.doSleep();
-                currentRetryCount++;
+                translatedException = e;
             }
         }
+        catch (final StorageException e) {
+            // Non Retryable, just throw
+            // do not translate StorageException
+            setLastException(opContext, e);
+            throw e;
+        }
+        catch (final Exception e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(getLastRequestObject(opContext), e, opContext);
+            setLastException(opContext, translatedException);
+            throw translatedException;
+        }
+
+        outcome.retryableException = translatedException;
     }
 
     /**
@@ -220,10 +347,8 @@ public final class ExecutionEngine {
      */
     public static InputStream getInputStream(final HttpURLConnection request, final OperationContext opContext)
             throws IOException {
-        final RequestResult currResult = new RequestResult();
+        final RequestResult currResult = startRequestResult(opContext);
         opContext.setCurrentRequestObject(request);
-        currResult.setStartDate(new Date());
-        opContext.getRequestResults().add(currResult);
 
         if (opContext.getSendingRequestEventHandler().hasListeners()) {
             opContext.getSendingRequestEventHandler().fireEvent(new SendingRequestEvent(opContext, request));
@@ -238,6 +363,23 @@ public final class ExecutionEngine {
         }
     }
 
+    /**
+     * Gets the output stream from the request. The bytes written to the stream are counted towards the request result
+     * of the current attempt.
+     * 
+     * @param request
+     *            the request to process
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return the output stream from the request
+     * @throws IOException
+     *             if there is an error making the connection
+     */
+    public static OutputStream getOutputStream(final HttpURLConnection request, final OperationContext opContext)
+            throws IOException {
+        return new CountingOutputStream(request.getOutputStream(), opContext);
+    }
+
     /**
      * Gets the last request object in a safe way, returns null if there was not last request result.
      * 
@@ -269,9 +411,11 @@ public final class ExecutionEngine {
             final OperationContext opContext) throws IOException {
         // Send the request
         currResult.setStatusCode(request.getResponseCode());
+        currResult.setFirstByteNanos(System.nanoTime() - currResult.getStartNanoTime());
         currResult.setStatusMessage(request.getResponseMessage());
 
-        currResult.setStopDate(new Date());
+        currResult.setStopTimeInMs(System.currentTimeMillis());
+        currResult.setResponseContentLength(getContentLength(request));
         currResult.setServiceRequestID(BaseResponse.getRequestId(request));
         currResult.setEtag(BaseResponse.getEtag(request));
         currResult.setRequestDate(BaseResponse.getDate(request));
@@ -296,9 +440,7 @@ public final class ExecutionEngine {
      */
     public static RequestResult processRequest(final HttpURLConnection request, final OperationContext opContext)
             throws IOException {
-        final RequestResult currResult = new RequestResult();
-        currResult.setStartDate(new Date());
-        opContext.getRequestResults().add(currResult);
+        final RequestResult currResult = startRequestResult(opContext);
         opContext.setCurrentRequestObject(request);
 
         if (opContext.getSendingRequestEventHandler().hasListeners()) {
@@ -307,9 +449,11 @@ public final class ExecutionEngine {
 
         // Send the request
         currResult.setStatusCode(request.getResponseCode());
+        currResult.setFirstByteNanos(System.nanoTime() - currResult.getStartNanoTime());
         currResult.setStatusMessage(request.getResponseMessage());
 
-        currResult.setStopDate(new Date());
+        currResult.setStopTimeInMs(System.currentTimeMillis());
+        currResult.setResponseContentLength(getContentLength(request));
         currResult.setServiceRequestID(BaseResponse.getRequestId(request));
         currResult.setEtag(BaseResponse.getEtag(request));
         currResult.setRequestDate(BaseResponse.getDate(request));
@@ -332,9 +476,182 @@ public final class ExecutionEngine {
      */
     private static void setLastException(final OperationContext opContext, final Exception exceptionToSet) {
         if (opContext.getLastResult() == null) {
-            opContext.getRequestResults().add(new RequestResult());
+            opContext.appendRequestResult(new RequestResult());
         }
         opContext.getLastResult().setException(exceptionToSet);
+        setLastAttemptTime(opContext);
+    }
+
+    /**
+     * Creates the result for a physical request and appends it to the operation. The attempt start time recorded by
+     * {@link #executeWithRetry} is used to compute the time spent connecting and sending the request.
+     * 
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return the new RequestResult
+     */
+    private static RequestResult startRequestResult(final OperationContext opContext) {
+        final long now = System.nanoTime();
+        final RequestResult currResult = new RequestResult();
+
+        currResult.setStartTimeInMs(System.currentTimeMillis());
+        currResult.setBytesSent(opContext.getCurrentRequestBytesSent());
+
+        if (opContext.getCurrentRequestStartNanoTime() != 0) {
+            currResult.setStartNanoTime(opContext.getCurrentRequestStartNanoTime());
+            currResult.setConnectNanos(now - opContext.getCurrentRequestStartNanoTime());
+        }
+        else {
+            currResult.setStartNanoTime(now);
+        }
+
+        opContext.appendRequestResult(currResult);
+        return currResult;
+    }
+
+    /**
+     * Records the total time of the current attempt on the last request result, if it has not been recorded yet.
+     * 
+     * @param opContext
+     *            an object used to track the execution of the operation
+     */
+    private static void setLastAttemptTime(final OperationContext opContext) {
+        final RequestResult lastResult = opContext.getLastResult();
+
+        if (lastResult != null && lastResult.getTotalNanos() == -1 && lastResult.getStartNanoTime() != 0) {
+            lastResult.setTotalNanos(System.nanoTime() - lastResult.getStartNanoTime());
+        }
+    }
+
+    /**
+     * Gets the Content-Length of the response in a safe way.
+     * 
+     * @param request
+     *            the request to process
+     * @return the Content-Length of the response, or -1 if it is missing or invalid
+     */
+    private static long getContentLength(final HttpURLConnection request) {
+        final String contentLength = request.getHeaderField(Constants.HeaderConstants.CONTENT_LENGTH);
+
+        if (contentLength == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentLength);
+        }
+        catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Fires the operation completed event of the service client, if it has listeners.
+     * 
+     * @param client
+     *            the service client associated with the operation
+     * @param task
+     *            the StorageOperation that was executed
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @param startNanoTime
+     *            the value of <code>System.nanoTime()</code> when the operation started
+     * @param retryCount
+     *            the number of times the operation was retried
+     * @param exception
+     *            the exception that failed the operation, or <code>null</code> if it succeeded
+     */
+    private static void fireOperationCompletedEvent(final ServiceClient client, final StorageOperation<?, ?, ?> task,
+            final OperationContext opContext, final long startNanoTime, final int retryCount,
+            final StorageException exception) {
+        if (!client.getOperationCompletedEventHandler().hasListeners()) {
+            return;
+        }
+
+        final long totalNanos = System.nanoTime() - startNanoTime;
+        final RequestResult lastResult = opContext.getLastResult();
+        final long bytesSent = lastResult == null ? 0 : lastResult.getBytesSent();
+        final long bytesReceived = lastResult == null ? 0 : Math.max(0, lastResult.getResponseContentLength());
+
+        try {
+            client.getOperationCompletedEventHandler().fireEvent(
+                    new OperationCompletedEvent(opContext, getOperationName(task), startNanoTime, totalNanos,
+                            retryCount, bytesSent, bytesReceived, lastResult, exception));
+        }
+        catch (final RuntimeException e) {
+            // The event is raised from a finally block; a failing listener must not replace the operation's outcome.
+        }
+    }
+
+    /**
+     * Gets the name of an operation from the client method that declares its StorageOperation, for example
+     * <code>CloudBlob.download</code>. Names are derived once per StorageOperation class.
+     * 
+     * @param task
+     *            the StorageOperation to name
+     * @return the name of the operation
+     */
+    private static String getOperationName(final StorageOperation<?, ?, ?> task) {
+        final Class<?> taskClass = task.getClass();
+        String name = OPERATION_NAMES.get(taskClass);
+
+        if (name == null) {
+            final Method enclosingMethod = taskClass.getEnclosingMethod();
+
+            if (enclosingMethod != null) {
+                String methodName = enclosingMethod.getName();
+
+                // Operations shared by the synchronous and asynchronous variants of a method are created by a
+                // xxxImpl method; report them under the public method name.
+                if (methodName.endsWith(IMPL_SUFFIX) && methodName.length() > IMPL_SUFFIX.length()) {
+                    methodName = methodName.substring(0, methodName.length() - IMPL_SUFFIX.length());
+                }
+
+                name = enclosingMethod.getDeclaringClass().getSimpleName() + "." + methodName;
+            }
+            else {
+                name = taskClass.getName().substring(taskClass.getName().lastIndexOf('.') + 1);
+            }
+
+            OPERATION_NAMES.putIfAbsent(taskClass, name);
+        }
+
+        return name;
+    }
+
+    /**
+     * Counts the bytes written to a request body into the current request attempt of an operation.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        /**
+         * Holds the operation context to update.
+         */
+        private final OperationContext opContext;
+
+        /**
+         * Creates an instance of the <code>CountingOutputStream</code> class.
+         * 
+         * @param outStream
+         *            the request body stream
+         * @param opContext
+         *            an object used to track the execution of the operation
+         */
+        public CountingOutputStream(final OutputStream outStream, final OperationContext opContext) {
+            super(outStream);
+            this.opContext = opContext;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.out.write(b);
+            this.opContext.setCurrentRequestBytesSent(this.opContext.getCurrentRequestBytesSent() + 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            this.out.write(b, off, len);
+            this.opContext.setCurrentRequestBytesSent(this.opContext.getCurrentRequestBytesSent() + len);
+        }
     }
 
     /**
@@ -343,4 +660,192 @@ public final class ExecutionEngine {
     private ExecutionEngine() {
         // private ctor
     }
+
+    /**
+     * Holds the outcome of a single attempt of an operation.
+     * 
+     * @param <RESULT_TYPE>
+     *            The type of the expected result
+     */
+    private static final class AttemptOutcome<RESULT_TYPE> {
+        /**
+         * Holds the result of a successful attempt.
+         */
+        private RESULT_TYPE result;
+
+        /**
+         * Holds the exception of an attempt that failed and may be retried.
+         */
+        private StorageException retryableException;
+    }
+
+    /**
+     * Drives the attempts of an operation executed asynchronously. Each attempt runs on the executor; when the retry
+     * policy asks for a retry, the next attempt is scheduled on the retry timer after the back-off interval.
+     * 
+     * @param <CLIENT_TYPE>
+     *            The service client type
+     * @param <PARENT_TYPE>
+     *            The type of the parent object
+     * @param <RESULT_TYPE>
+     *            The type of the expected result
+     */
+    private static final class AsyncExecution<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> implements Runnable {
+        private final CLIENT_TYPE client;
+
+        private final PARENT_TYPE parentObject;
+
+        private final StorageOperation<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task;
+
+        private final RetryPolicy policy;
+
+        private final OperationContext opContext;
+
+        private final Executor executor;
+
+        private final StorageFuture<RESULT_TYPE> future = new StorageFuture<RESULT_TYPE>();
+
+        private final AttemptOutcome<RESULT_TYPE> outcome = new AttemptOutcome<RESULT_TYPE>();
+
+        private final long startTime = System.nanoTime();
+
+        private int currentRetryCount;
+
+        AsyncExecution(final CLIENT_TYPE client, final PARENT_TYPE parentObject,
+                final StorageOperation<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, final RetryPolicy policy,
+                final OperationContext opContext, final Executor executor) {
+            this.client = client;
+            this.parentObject = parentObject;
+            this.task = task;
+            this.policy = policy;
+            this.opContext = opContext;
+            this.executor = executor;
+        }
+
+        /**
+         * Executes one attempt, then completes the future or schedules the next attempt.
+         */
+        @Override
+        public void run() {
+            if (this.future.isCancelled()) {
+                return;
+            }
+
+            try {
+                executeAttempt(this.client, this.parentObject, this.task, this.opContext, this.startTime, this.outcome);
+
+                if (this.outcome.retryableException == null) {
+                    this.complete(this.outcome.result, null);
+                    return;
+                }
+
+                // Evaluate Retry Policy
+                final RetryResult retryRes = this.policy.shouldRetry(this.currentRetryCount, this.task.getResult()
+                        .getStatusCode(), this.opContext.getLastResult().getException(), this.opContext);
+
+                if (!retryRes.isShouldRetry()) {
+                    this.complete(null, this.outcome.retryableException);
+                }
+                else {
+                    this.currentRetryCount++;
+                    this.schedule(retryRes.getBackOffIntervalInMs());
+                }
+            }
+            catch (final StorageException e) {
+                this.complete(null, e);
+            }
+            catch (final RuntimeException e) {
+                this.complete(null,
+                        StorageException.translateException(getLastRequestObject(this.opContext), e, this.opContext));
+            }
+        }
+
+        /**
+         * Schedules the next attempt.
+         * 
+         * @param backOffInMs
+         *            the time to wait before the attempt, in milliseconds
+         */
+        void schedule(final int backOffInMs) {
+            try {
+                if (backOffInMs <= 0) {
+                    this.executor.execute(this);
+                }
+                else {
+                    AsyncResources.RETRY_TIMER.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            AsyncExecution.this.schedule(0);
+                        }
+                    }, backOffInMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (final RejectedExecutionException e) {
+                this.complete(null,
+                        StorageException.translateException(getLastRequestObject(this.opContext), e, this.opContext));
+            }
+        }
+
+        /**
+         * Raises the operation completed event and completes the future.
+         * 
+         * @param result
+         *            the result of the operation
+         * @param failure
+         *            the exception that failed the operation, or <code>null</code> if it succeeded
+         */
+        private void complete(final RESULT_TYPE result, final StorageException failure) {
+            try {
+                if (this.client instanceof ServiceClient) {
+                    fireOperationCompletedEvent((ServiceClient) this.client, this.task, this.opContext, this.startTime,
+                            this.currentRetryCount, failure);
+                }
+            }
+            finally {
+                if (failure == null) {
+                    this.future.setResult(result);
+                }
+                else {
+                    this.future.setException(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds the threads shared by asynchronous operations, created on first use.
+     */
+    private static final class AsyncResources {
+        /**
+         * The executor used by clients that do not specify one.
+         */
+        static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory(
+                "storage-async-"));
+
+        /**
+         * The timer on which retries are scheduled once their back-off interval elapses.
+         */
+        static final ScheduledExecutorService RETRY_TIMER = Executors
+                .newSingleThreadScheduledExecutor(new DaemonThreadFactory("storage-retry-timer-"));
+    }
+
+    /**
+     * Creates named daemon threads, so idle async threads do not keep the JVM alive.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, this.prefix + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -57,20 +57,34 @@ public final class LazySegmentedIterable<CLIENT_TYPE, PARENT_TYPE, ENTITY_TYPE>
      */
     private final OperationContext opContext;
 
+    /**
+     * Holds the SegmentSizer each iterator copies to choose the size of its segments, or null.
+     */
+    private final SegmentSizer sizer;
+
     public LazySegmentedIterable(
             final SegmentedStorageOperation<CLIENT_TYPE, PARENT_TYPE, ResultSegment<ENTITY_TYPE>> segmentGenerator,
             final CLIENT_TYPE client, final PARENT_TYPE parent, final RetryPolicyFactory policyFactory,
             final OperationContext opContext) {
+        this(segmentGenerator, client, parent, policyFactory, opContext, null);
+    }
+
+    public LazySegmentedIterable(
+            final SegmentedStorageOperation<CLIENT_TYPE, PARENT_TYPE, ResultSegment<ENTITY_TYPE>> segmentGenerator,
+            final CLIENT_TYPE client, final PARENT_TYPE parent, final RetryPolicyFactory policyFactory,
+            final OperationContext opContext, final SegmentSizer sizer) {
         this.segmentGenerator = segmentGenerator;
         this.parentObject = parent;
         this.opContext = opContext;
         this.policyFactory = policyFactory;
         this.client = client;
+        this.sizer = sizer;
     }
 
     @Override
     public Iterator<ENTITY_TYPE> iterator() {
         return new LazySegmentedIterator<CLIENT_TYPE, PARENT_TYPE, ENTITY_TYPE>(this.segmentGenerator, this.client,
-                this.parentObject, this.policyFactory, this.opContext);
+                this.parentObject, this.policyFactory, this.opContext, this.sizer == null ? null : new SegmentSizer(
+                        this.sizer));
     }
 }
@@ -15,6 +15,7 @@
 package com.microsoft.windowsazure.services.core.storage.utils.implementation;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.microsoft.windowsazure.services.core.storage.DoesServiceRequest;
@@ -71,6 +72,22 @@ public final class LazySegmentedIterator<CLIENT_TYPE, PARENT_TYPE, ENTITY_TYPE>
      */
     private final OperationContext opContext;
 
+    /**
+     * Holds the SegmentSizer which chooses the size of each segment, or null to use the size chosen by the segment
+     * generator.
+     */
+    private final SegmentSizer sizer;
+
+    /**
+     * Holds the time, in nanoseconds, at which the current segment was retrieved.
+     */
+    private long segmentRetrievedNanos;
+
+    /**
+     * Holds the number of results of the current segment returned by the iterator.
+     */
+    private int segmentResultCount;
+
     /**
      * Initializes the LazySegmentedIterator.
      * 
@@ -89,11 +106,35 @@ public final class LazySegmentedIterator<CLIENT_TYPE, PARENT_TYPE, ENTITY_TYPE>
             final SegmentedStorageOperation<CLIENT_TYPE, PARENT_TYPE, ResultSegment<ENTITY_TYPE>> segmentGenerator,
             final CLIENT_TYPE client, final PARENT_TYPE parent, final RetryPolicyFactory policyFactory,
             final OperationContext opContext) {
+        this(segmentGenerator, client, parent, policyFactory, opContext, null);
+    }
+
+    /**
+     * Initializes the LazySegmentedIterator.
+     * 
+     * @param segmentGenerator
+     *            a SegmentedStorageOperation to execute in order to retrieve the next segment of the result.
+     * @param client
+     *            the service client associated with the request
+     * @param parent
+     *            the parent object
+     * @param policyFactory
+     *            the factory used to generate a new retry policy instance
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @param sizer
+     *            the SegmentSizer which chooses the size of each segment and bounds the number of results, or null
+     */
+    public LazySegmentedIterator(
+            final SegmentedStorageOperation<CLIENT_TYPE, PARENT_TYPE, ResultSegment<ENTITY_TYPE>> segmentGenerator,
+            final CLIENT_TYPE client, final PARENT_TYPE parent, final RetryPolicyFactory policyFactory,
+            final OperationContext opContext, final SegmentSizer sizer) {
         this.segmentGenerator = segmentGenerator;
         this.parentObject = parent;
         this.opContext = opContext;
         this.policyFactory = policyFactory;
         this.client = client;
+        this.sizer = sizer;
     }
 
     /**
@@ -105,6 +146,20 @@ public final class LazySegmentedIterator<CLIENT_TYPE, PARENT_TYPE, ENTITY_TYPE>
         while (this.currentSegment == null
                 || (!this.currentSegmentIterator.hasNext() && this.currentSegment != null && this.currentSegment
                         .getHasMoreResults())) {
+            if (this.sizer != null) {
+                if (this.currentSegment != null) {
+                    this.sizer.segmentConsumed(this.segmentResultCount, System.nanoTime()
+                            - this.segmentRetrievedNanos);
+                }
+
+                if (this.sizer.isLimitReached()) {
+                    return false;
+                }
+
+                this.segmentGenerator.setSegmentSize(this.sizer.getNextSegmentSize());
+            }
+
+            final long startNanos = System.nanoTime();
             try {
                 this.currentSegment = ExecutionEngine.executeWithRetry(this.client, this.parentObject,
                         this.segmentGenerator, this.policyFactory, this.opContext);
@@ -115,9 +170,19 @@ public final class LazySegmentedIterator<CLIENT_TYPE, PARENT_TYPE, ENTITY_TYPE>
                 ex.initCause(e);
                 throw ex;
             }
-            this.currentSegmentIterator = this.currentSegment.getResults().iterator();
 
-            if (!this.currentSegmentIterator.hasNext() && !this.currentSegment.getHasMoreResults()) {
+            List<ENTITY_TYPE> results = this.currentSegment.getResults();
+            if (this.sizer != null) {
+                this.segmentRetrievedNanos = System.nanoTime();
+                this.segmentResultCount = this.sizer.segmentRetrieved(results.size(), this.segmentRetrievedNanos
+                        - startNanos);
+                results = results.subList(0, this.segmentResultCount);
+            }
+            this.currentSegmentIterator = results.iterator();
+
+            if (!this.currentSegmentIterator.hasNext()
+                    && (!this.currentSegment.getHasMoreResults() || (this.sizer != null && this.sizer
+                            .isLimitReached()))) {
                 return false;
             }
         }
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage.utils.implementation;
+
+/**
+ * RESERVED FOR INTERNAL USE. Chooses the number of results to request in each segment of a lazily enumerated listing
+ * or query, and bounds the total number of results it returns.
+ * <p>
+ * An adaptive sizer requests a small first segment, so that the first results arrive quickly, and sizes each following
+ * segment from how long the previous one took to retrieve and to consume. A segment is sized so that consuming it
+ * takes at least as long as the round trip that retrieves it: a consumer that processes results quickly gets segments
+ * that double in size up to the service maximum, while a slow consumer gets smaller segments, so that fewer unread
+ * results are transferred if it stops early. A fixed sizer always requests its maximum segment size. In both cases no
+ * segment asks for more results than remain under the limit.
+ */
+public final class SegmentSizer {
+    /**
+     * The number of results requested in the first segment of an adaptive sizer.
+     */
+    public static final int DEFAULT_INITIAL_SEGMENT_SIZE = 100;
+
+    /**
+     * Holds the number of results requested in the first segment.
+     */
+    private final int initialSegmentSize;
+
+    /**
+     * Holds the maximum number of results requested in a segment.
+     */
+    private final int maxSegmentSize;
+
+    /**
+     * Holds the maximum total number of results, or <code>null</code> if the total is not limited.
+     */
+    private final Integer limit;
+
+    /**
+     * Holds the number of results to request in the next segment, before the limit is applied.
+     */
+    private int nextSegmentSize;
+
+    /**
+     * Holds the number of results returned so far.
+     */
+    private int returnedCount;
+
+    /**
+     * Holds the time, in nanoseconds, the last segment took to retrieve.
+     */
+    private long lastRetrieveNanos;
+
+    /**
+     * Creates a sizer that requests segments of the specified size.
+     * 
+     * @param segmentSize
+     *            the number of results to request in each segment.
+     * @param limit
+     *            the maximum total number of results, or <code>null</code> to not limit it.
+     */
+    public SegmentSizer(final int segmentSize, final Integer limit) {
+        this(segmentSize, segmentSize, limit);
+    }
+
+    /**
+     * Creates a sizer that adapts the segment size between the specified bounds.
+     * 
+     * @param initialSegmentSize
+     *            the number of results to request in the first segment.
+     * @param maxSegmentSize
+     *            the maximum number of results to request in a segment.
+     * @param limit
+     *            the maximum total number of results, or <code>null</code> to not limit it.
+     */
+    public SegmentSizer(final int initialSegmentSize, final int maxSegmentSize, final Integer limit) {
+        if (initialSegmentSize < 1 || initialSegmentSize > maxSegmentSize) {
+            throw new IllegalArgumentException("initialSegmentSize");
+        }
+
+        if (limit != null && limit < 0) {
+            throw new IllegalArgumentException("limit");
+        }
+
+        this.initialSegmentSize = initialSegmentSize;
+        this.maxSegmentSize = maxSegmentSize;
+        this.limit = limit;
+        this.nextSegmentSize = initialSegmentSize;
+    }
+
+    /**
+     * Creates a sizer with the same bounds and limit as the specified sizer, for a new enumeration.
+     * 
+     * @param other
+     *            the sizer to copy the bounds and limit of.
+     */
+    public SegmentSizer(final SegmentSizer other) {
+        this(other.initialSegmentSize, other.maxSegmentSize, other.limit);
+    }
+
+    /**
+     * @return the number of results to request in the next segment.
+     */
+    public int getNextSegmentSize() {
+        return this.limit == null ? this.nextSegmentSize : Math.min(this.nextSegmentSize, this.getRemainingCount());
+    }
+
+    /**
+     * @return the number of results that may still be returned, or <code>Integer.MAX_VALUE</code> if the total is not
+     *         limited.
+     */
+    public int getRemainingCount() {
+        return this.limit == null ? Integer.MAX_VALUE : this.limit - this.returnedCount;
+    }
+
+    /**
+     * @return <code>true</code> if the limit has been reached, so that no further segment should be requested.
+     */
+    public boolean isLimitReached() {
+        return this.getRemainingCount() <= 0;
+    }
+
+    /**
+     * Records that a segment was consumed, and sizes the next segment from the rate at which it was consumed.
+     * 
+     * @param resultCount
+     *            the number of results in the segment.
+     * @param consumeNanos
+     *            the time, in nanoseconds, the consumer took to process the segment.
+     */
+    public void segmentConsumed(final int resultCount, final long consumeNanos) {
+        if (this.initialSegmentSize == this.maxSegmentSize || resultCount == 0) {
+            return;
+        }
+
+        // Size the next segment so that consuming it covers the round trip, growing at most twofold per segment.
+        final double nanosPerResult = Math.max(consumeNanos, 1L) / (double) resultCount;
+        final double coveringSize = this.lastRetrieveNanos / nanosPerResult;
+        final long grown = 2L * Math.max(resultCount, this.nextSegmentSize);
+        final long size = (long) Math.min(grown, Math.max(coveringSize, this.initialSegmentSize));
+        this.nextSegmentSize = (int) Math.min(size, this.maxSegmentSize);
+    }
+
+    /**
+     * Records that a segment was retrieved.
+     * 
+     * @param resultCount
+     *            the number of results in the segment.
+     * @param retrieveNanos
+     *            the time, in nanoseconds, the segment took to retrieve.
+     * @return the number of results of the segment to return, which is less than <code>resultCount</code> if returning
+     *         all of them would exceed the limit.
+     */
+    public int segmentRetrieved(final int resultCount, final long retrieveNanos) {
+        this.lastRetrieveNanos = retrieveNanos;
+        final int returned = Math.min(resultCount, this.getRemainingCount());
+        this.returnedCount += returned;
+        return returned;
+    }
+}
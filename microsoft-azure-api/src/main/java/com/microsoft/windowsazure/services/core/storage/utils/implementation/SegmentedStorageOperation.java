@@ -34,6 +34,11 @@ public abstract class SegmentedStorageOperation<C, P, R> extends StorageOperatio
      */
     private ResultContinuation token;
 
+    /**
+     * Holds the number of results to request in the next segment, or <code>null</code> to use the service default.
+     */
+    private Integer segmentSize;
+
     /**
      * Initializes a new instance of the SegmentedStorageOperation class.
      * 
@@ -57,6 +62,13 @@ public abstract class SegmentedStorageOperation<C, P, R> extends StorageOperatio
         this.setToken(token);
     }
 
+    /**
+     * @return the number of results to request in the next segment, or <code>null</code> to use the service default.
+     */
+    protected final Integer getSegmentSize() {
+        return this.segmentSize;
+    }
+
     /**
      * @return the token.
      */
@@ -64,6 +76,15 @@ public abstract class SegmentedStorageOperation<C, P, R> extends StorageOperatio
         return this.token;
     }
 
+    /**
+     * @param segmentSize
+     *            the number of results to request in the next segment, or <code>null</code> to use the service
+     *            default.
+     */
+    protected final void setSegmentSize(final Integer segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
     /**
      * @param token
      *            the token to set.
@@ -31,6 +31,7 @@ import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.StorageCredentialsSharedAccessSignature;
 import com.microsoft.windowsazure.services.core.storage.StorageErrorCodeStrings;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
 import com.microsoft.windowsazure.services.core.storage.StorageExtendedErrorInformation;
 import com.microsoft.windowsazure.services.core.storage.utils.PathUtility;
 import com.microsoft.windowsazure.services.core.storage.utils.UriQueryBuilder;
@@ -203,6 +204,91 @@ public final class CloudQueue {
         opContext.initialize();
         options.applyDefaults(this.queueServiceClient);
 
+        final StorageOperation<CloudQueueClient, CloudQueue, Void> impl = this.addMessageImpl(timeToLiveInSeconds,
+                initialVisibilityDelayInSeconds, stringToSend, options);
+
+        ExecutionEngine.executeWithRetry(this.queueServiceClient, this, impl, options.getRetryPolicyFactory(),
+                opContext);
+    }
+
+    /**
+     * Adds a message to the back of the queue asynchronously with the specified options. Retries are scheduled on a
+     * timer rather than blocking a thread during their back-off interval.
+     * 
+     * @param message
+     *            A {@link CloudQueueMessage} object that specifies the message to add.
+     * 
+     * @param timeToLiveInSeconds
+     *            The maximum time to allow the message to be in the queue. A value of zero will set the time-to-live to
+     *            the service default value of seven days.
+     * 
+     * @param initialVisibilityDelayInSeconds
+     *            The length of time during which the message will be invisible, starting when it is added to the queue,
+     *            or 0 to make the message visible immediately. This value must be greater than or equal to zero and
+     *            less than or equal to the time-to-live value.
+     * 
+     * @param options
+     *            A {@link QueueRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudQueueClient}).
+     * 
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes when the message has been added.
+     * 
+     * @throws StorageException
+     *             If the message content could not be encoded for transfer.
+     */
+    @DoesServiceRequest
+    public StorageFuture<Void> addMessageAsync(final CloudQueueMessage message, final int timeToLiveInSeconds,
+            final int initialVisibilityDelayInSeconds, QueueRequestOptions options, OperationContext opContext)
+            throws StorageException {
+        Utility.assertNotNull("message", message);
+        Utility.assertNotNull("messageContent", message.getMessageContentAsByte());
+        Utility.assertInBounds("timeToLiveInSeconds", timeToLiveInSeconds, 0,
+                QueueConstants.MAX_TIME_TO_LIVE_IN_SECONDS);
+
+        final int realTimeToLiveInSeconds = timeToLiveInSeconds == 0 ? QueueConstants.MAX_TIME_TO_LIVE_IN_SECONDS
+                : timeToLiveInSeconds;
+        Utility.assertInBounds("initialVisibilityDelayInSeconds", initialVisibilityDelayInSeconds, 0,
+                realTimeToLiveInSeconds - 1);
+
+        final String stringToSend = message.getMessageContentForTransfer(this.shouldEncodeMessage);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new QueueRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.queueServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.queueServiceClient, this,
+                this.addMessageImpl(timeToLiveInSeconds, initialVisibilityDelayInSeconds, stringToSend, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Creates the operation that adds a message to the back of the queue.
+     * 
+     * @param timeToLiveInSeconds
+     *            the time-to-live of the message, or zero for the service default
+     * @param initialVisibilityDelayInSeconds
+     *            the time during which the message is invisible
+     * @param stringToSend
+     *            the message content, encoded for transfer
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudQueueClient, CloudQueue, Void> addMessageImpl(final int timeToLiveInSeconds,
+            final int initialVisibilityDelayInSeconds, final String stringToSend, final QueueRequestOptions options) {
         final StorageOperation<CloudQueueClient, CloudQueue, Void> impl = new StorageOperation<CloudQueueClient, CloudQueue, Void>(
                 options) {
 
@@ -217,7 +303,7 @@ public final class CloudQueue {
                 final byte[] messageBytes = QueueRequest.generateMessageRequestBody(stringToSend);
 
                 client.getCredentials().signRequest(request, messageBytes.length);
-                final OutputStream outStreamRef = request.getOutputStream();
+                final OutputStream outStreamRef = ExecutionEngine.getOutputStream(request, opContext);
                 outStreamRef.write(messageBytes);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
@@ -231,8 +317,7 @@ public final class CloudQueue {
             }
         };
 
-        ExecutionEngine.executeWithRetry(this.queueServiceClient, this, impl, options.getRetryPolicyFactory(),
-                opContext);
+        return impl;
     }
 
     /**
@@ -654,6 +739,68 @@ public final class CloudQueue {
         final String messageId = message.getId();
         final String messagePopReceipt = message.getPopReceipt();
 
+        final StorageOperation<CloudQueueClient, CloudQueue, Void> impl = this.deleteMessageImpl(messageId,
+                messagePopReceipt, options);
+
+        ExecutionEngine.executeWithRetry(this.queueServiceClient, this, impl, options.getRetryPolicyFactory(),
+                opContext);
+    }
+
+    /**
+     * Deletes the specified message from the queue asynchronously, using the specified request options and operation
+     * context. Retries are scheduled on a timer rather than blocking a thread during their back-off interval.
+     * 
+     * @param message
+     *            A {@link CloudQueueMessage} object that specifies the message to delete.
+     * 
+     * @param options
+     *            A {@link QueueRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudQueueClient}).
+     * 
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes when the message has been deleted.
+     */
+    @DoesServiceRequest
+    public StorageFuture<Void> deleteMessageAsync(final CloudQueueMessage message, QueueRequestOptions options,
+            OperationContext opContext) {
+        Utility.assertNotNull("message", message);
+        Utility.assertNotNullOrEmpty("messageId", message.id);
+        Utility.assertNotNullOrEmpty("popReceipt", message.popReceipt);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new QueueRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.queueServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.queueServiceClient, this,
+                this.deleteMessageImpl(message.getId(), message.getPopReceipt(), options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Creates the operation that deletes a message from the queue.
+     * 
+     * @param messageId
+     *            the ID of the message
+     * @param messagePopReceipt
+     *            the pop receipt of the message
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudQueueClient, CloudQueue, Void> deleteMessageImpl(final String messageId,
+            final String messagePopReceipt, final QueueRequestOptions options) {
         final StorageOperation<CloudQueueClient, CloudQueue, Void> impl = new StorageOperation<CloudQueueClient, CloudQueue, Void>(
                 options) {
 
@@ -677,8 +824,7 @@ public final class CloudQueue {
             }
         };
 
-        ExecutionEngine.executeWithRetry(this.queueServiceClient, this, impl, options.getRetryPolicyFactory(),
-                opContext);
+        return impl;
     }
 
     /**
@@ -1142,6 +1288,72 @@ public final class CloudQueue {
         opContext.initialize();
         options.applyDefaults(this.queueServiceClient);
 
+        final StorageOperation<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>> impl = this.retrieveMessagesImpl(
+                numberOfMessages, visibilityTimeoutInSeconds, options);
+
+        return ExecutionEngine.executeWithRetry(this.queueServiceClient, this, impl, options.getRetryPolicyFactory(),
+                opContext);
+    }
+
+    /**
+     * Retrieves the specified number of messages from the front of the queue asynchronously, using the specified
+     * request options and operation context. Retries are scheduled on a timer rather than blocking a thread during
+     * their back-off interval.
+     * 
+     * @param numberOfMessages
+     *            The number of messages to retrieve.
+     * 
+     * @param visibilityTimeoutInSeconds
+     *            Specifies the visibility timeout for the retrieved messages, in seconds.
+     * 
+     * @param options
+     *            A {@link QueueRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudQueueClient}).
+     * 
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link StorageFuture} object that completes with the messages retrieved from the queue.
+     */
+    @DoesServiceRequest
+    public StorageFuture<ArrayList<CloudQueueMessage>> retrieveMessagesAsync(final int numberOfMessages,
+            final int visibilityTimeoutInSeconds, QueueRequestOptions options, OperationContext opContext) {
+        Utility.assertInBounds("numberOfMessages", numberOfMessages, 1, QueueConstants.MAX_NUMBER_OF_MESSAGES_TO_PEEK);
+        Utility.assertInBounds("visibilityTimeoutInSeconds", visibilityTimeoutInSeconds, 0,
+                QueueConstants.MAX_TIME_TO_LIVE_IN_SECONDS);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new QueueRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(this.queueServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.queueServiceClient, this,
+                this.retrieveMessagesImpl(numberOfMessages, visibilityTimeoutInSeconds, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Creates the operation that retrieves messages from the front of the queue.
+     * 
+     * @param numberOfMessages
+     *            the number of messages to retrieve
+     * @param visibilityTimeoutInSeconds
+     *            the visibility timeout for the retrieved messages, in seconds
+     * @param options
+     *            the request options, with defaults applied
+     * @return the operation
+     */
+    private StorageOperation<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>> retrieveMessagesImpl(
+            final int numberOfMessages, final int visibilityTimeoutInSeconds, final QueueRequestOptions options) {
         final StorageOperation<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>> impl = new StorageOperation<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>>(
                 options) {
 
@@ -1167,8 +1379,7 @@ public final class CloudQueue {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(this.queueServiceClient, this, impl, options.getRetryPolicyFactory(),
-                opContext);
+        return impl;
     }
 
     /**
@@ -1285,7 +1496,7 @@ public final class CloudQueue {
                     final byte[] messageBytes = QueueRequest.generateMessageRequestBody(stringToSend);
 
                     client.getCredentials().signRequest(request, messageBytes.length);
-                    final OutputStream outStreamRef = request.getOutputStream();
+                    final OutputStream outStreamRef = ExecutionEngine.getOutputStream(request, opContext);
                     outStreamRef.write(messageBytes);
                 }
                 else {
@@ -1442,7 +1653,7 @@ public final class CloudQueue {
 
                 final byte[] aclBytes = outBuffer.toString().getBytes("UTF8");
                 client.getCredentials().signRequest(request, aclBytes.length);
-                final OutputStream outStreamRef = request.getOutputStream();
+                final OutputStream outStreamRef = ExecutionEngine.getOutputStream(request, opContext);
                 outStreamRef.write(aclBytes);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
@@ -24,7 +24,6 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
@@ -33,6 +32,7 @@ import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.utils.UriQueryBuilder;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.BaseRequest;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ListingContext;
 
@@ -258,8 +258,7 @@ final class QueueRequest {
      */
     public static byte[] generateMessageRequestBody(final String message) throws XMLStreamException, StorageException {
         final StringWriter outWriter = new StringWriter();
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        final XMLStreamWriter xmlw = xmlOutFactoryInst.createXMLStreamWriter(outWriter);
+        final XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(outWriter);
 
         // default is UTF8
         xmlw.writeStartDocument();
@@ -653,8 +652,7 @@ final class QueueRequest {
         Utility.assertNotNull("sharedAccessPolicies", sharedAccessPolicies);
         Utility.assertNotNull("outWriter", outWriter);
 
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        final XMLStreamWriter xmlw = xmlOutFactoryInst.createXMLStreamWriter(outWriter);
+        final XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(outWriter);
 
         if (sharedAccessPolicies.keySet().size() > Constants.MAX_SHARED_ACCESS_POLICY_IDENTIFIERS) {
             final String errorMessage = String
@@ -22,6 +22,7 @@ import com.microsoft.windowsazure.services.serviceBus.implementation.EntryModelP
 import com.microsoft.windowsazure.services.serviceBus.implementation.MarshallerProvider;
 import com.microsoft.windowsazure.services.serviceBus.implementation.ServiceBusExceptionProcessor;
 import com.microsoft.windowsazure.services.serviceBus.implementation.ServiceBusRestProxy;
+import com.microsoft.windowsazure.services.serviceBus.implementation.SizedInputStreamProvider;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.json.JSONConfiguration;
 
@@ -49,6 +50,9 @@ public class Exports implements Builder.Exports {
                 // add body reader/writer for EntryModel<?> descendant classes
                 instance.getClasses().add(EntryModelProvider.class);
 
+                // send bodies of known length without buffering them
+                instance.getClasses().add(SizedInputStreamProvider.class);
+
                 return instance;
             }
         });
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus;
+
+import java.io.BufferedInputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.windowsazure.services.core.RetryPolicy;
+import com.microsoft.windowsazure.services.core.RetryPolicyFilter;
+import com.microsoft.windowsazure.services.serviceBus.models.BrokeredMessage;
+
+/**
+ * 
+ * Sends messages through a {@link ServiceBusContract} asynchronously, keeping several sends in flight at once so that
+ * throughput is not bound by the round trip time of each message.
+ * <p>
+ * Messages are accepted into a bounded queue; once it is full, the send methods block until a message completes. Each
+ * message is sent by its own call to the contract, so a retry policy given to the sender is applied to every message
+ * independently, and a message backing off does not hold up the others.
+ * 
+ */
+public class ServiceBusMessageSender {
+    private static final AtomicInteger senderCount = new AtomicInteger();
+
+    private final ServiceBusContract service;
+    private final boolean retrying;
+    private final int maxPending;
+    private final Semaphore capacity;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates an instance of the <code>ServiceBusMessageSender</code> class.
+     * 
+     * @param service
+     *            A <code>ServiceBusContract</code> object that represents the service to send the messages through.
+     * @param maxInFlight
+     *            The maximum number of messages being sent at the same time.
+     * @param maxQueued
+     *            The maximum number of accepted messages waiting to be sent.
+     */
+    public ServiceBusMessageSender(ServiceBusContract service, int maxInFlight, int maxQueued) {
+        this(service, null, maxInFlight, maxQueued);
+    }
+
+    /**
+     * Creates an instance of the <code>ServiceBusMessageSender</code> class that retries each message according to the
+     * specified retry policy.
+     * 
+     * @param service
+     *            A <code>ServiceBusContract</code> object that represents the service to send the messages through.
+     * @param retryPolicy
+     *            A <code>RetryPolicy</code> object that represents the retry policy applied to each message, or
+     *            <code>null</code> to only use the filters of the service.
+     * @param maxInFlight
+     *            The maximum number of messages being sent at the same time.
+     * @param maxQueued
+     *            The maximum number of accepted messages waiting to be sent.
+     */
+    public ServiceBusMessageSender(ServiceBusContract service, RetryPolicy retryPolicy, int maxInFlight,
+            int maxQueued) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued");
+        }
+
+        this.service = retryPolicy == null ? service : service.withFilter(new RetryPolicyFilter(retryPolicy));
+        this.retrying = retryPolicy != null;
+        this.maxPending = maxInFlight + maxQueued;
+        this.capacity = new Semaphore(maxPending);
+
+        final String threadPrefix = "servicebus-sender-" + senderCount.incrementAndGet() + "-";
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        // The semaphore bounds the queue, so the executor's own queue never rejects
+        this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sends a queue message asynchronously, blocking while the sender's queue is full.
+     * 
+     * @param queuePath
+     *            A <code>String</code> object that represents the name of the queue to which the message will be sent.
+     * @param message
+     *            A <code>Message</code> object that represents the message to send.
+     * 
+     * @return A <code>Future</code> object that completes when the message has been sent. If the send failed,
+     *         <code>get</code> throws an <code>ExecutionException</code> whose cause is the
+     *         <code>ServiceException</code>.
+     * 
+     * @exception InterruptedException
+     *                If the thread is interrupted while waiting for room in the queue.
+     */
+    public Future<Void> sendQueueMessage(final String queuePath, final BrokeredMessage message)
+            throws InterruptedException {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                service.sendQueueMessage(queuePath, message);
+                return null;
+            }
+        }, message);
+    }
+
+    /**
+     * Sends a topic message asynchronously, blocking while the sender's queue is full.
+     * 
+     * @param topicPath
+     *            A <code>String</code> object that represents the name of the topic to which the message will be sent.
+     * @param message
+     *            A <code>Message</code> object that represents the message to send.
+     * 
+     * @return A <code>Future</code> object that completes when the message has been sent. If the send failed,
+     *         <code>get</code> throws an <code>ExecutionException</code> whose cause is the
+     *         <code>ServiceException</code>.
+     * 
+     * @exception InterruptedException
+     *                If the thread is interrupted while waiting for room in the queue.
+     */
+    public Future<Void> sendTopicMessage(final String topicPath, final BrokeredMessage message)
+            throws InterruptedException {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                service.sendTopicMessage(topicPath, message);
+                return null;
+            }
+        }, message);
+    }
+
+    /**
+     * Returns the number of accepted messages that have not yet completed.
+     * 
+     * @return The number of messages queued or in flight.
+     */
+    public int getPendingCount() {
+        return maxPending - capacity.availablePermits();
+    }
+
+    /**
+     * Stops accepting messages and waits for the accepted ones to complete.
+     * 
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            A <code>TimeUnit</code> value that represents the unit of the <code>timeout</code> argument.
+     * 
+     * @return <code>true</code> if all accepted messages completed, or <code>false</code> if the timeout elapsed first.
+     * 
+     * @exception InterruptedException
+     *                If the thread is interrupted while waiting.
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private Future<Void> submit(Callable<Void> send, BrokeredMessage message) throws InterruptedException {
+        if (executor.isShutdown()) {
+            throw new IllegalStateException("The sender has been closed.");
+        }
+
+        // A retry has to rewind the body, which RetryPolicyFilter can only do for streams supporting mark
+        if (retrying && message.getBody() != null && !message.getBody().markSupported()) {
+            message.setBody(new BufferedInputStream(message.getBody()));
+        }
+
+        capacity.acquire();
+        try {
+            return executor.submit(new ReleasingCallable(send));
+        }
+        catch (RejectedExecutionException e) {
+            capacity.release();
+            throw new IllegalStateException("The sender has been closed.", e);
+        }
+    }
+
+    private class ReleasingCallable implements Callable<Void> {
+        private final Callable<Void> send;
+
+        public ReleasingCallable(Callable<Void> send) {
+            this.send = send;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            try {
+                return send.call();
+            }
+            finally {
+                capacity.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus.implementation;
+
+import java.text.ParseException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The custom properties of a received message. Header values are kept in their encoded form and only decoded by the
+ * {@link CustomPropertiesMapper} when they are first read, so that a receive does not pay for parsing properties the
+ * application never looks at.
+ */
+class CustomPropertiesMap extends AbstractMap<String, Object> {
+    private final CustomPropertiesMapper mapper;
+    private final HashMap<String, Object> values;
+
+    public CustomPropertiesMap(CustomPropertiesMapper mapper) {
+        this.mapper = mapper;
+        this.values = new HashMap<String, Object>();
+    }
+
+    /**
+     * Adds a property from its header value, which must have been accepted by
+     * {@link CustomPropertiesMapper#isCustomPropertyValue(String)}.
+     */
+    public void putEncoded(String name, String value) {
+        values.put(name, new EncodedValue(value));
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = values.get(key);
+        if (value instanceof EncodedValue) {
+            value = decode((EncodedValue) value);
+            values.put((String) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return decode(values.put(key, value));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return decode(values.remove(key));
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public void clear() {
+        values.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        // Entries expose their values directly, so everything still encoded is decoded first
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() instanceof EncodedValue) {
+                entry.setValue(decode((EncodedValue) entry.getValue()));
+            }
+        }
+        return values.entrySet();
+    }
+
+    private Object decode(Object value) {
+        if (!(value instanceof EncodedValue)) {
+            return value;
+        }
+
+        try {
+            return mapper.fromString(((EncodedValue) value).text);
+        }
+        catch (ParseException e) {
+            // isCustomPropertyValue only admits values that decode without error
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class EncodedValue {
+        private final String text;
+
+        public EncodedValue(String text) {
+            this.text = text;
+        }
+    }
+}
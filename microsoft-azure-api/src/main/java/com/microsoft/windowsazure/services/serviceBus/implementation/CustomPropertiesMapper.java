@@ -16,6 +16,7 @@ package com.microsoft.windowsazure.services.serviceBus.implementation;
 
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -75,11 +76,11 @@ public class CustomPropertiesMapper {
             return null;
         }
 
-        if (value.startsWith("\"") && value.endsWith("\"")) {
+        if (isQuoted(value)) {
             String text = value.substring(1, value.length() - 1);
-            if (isRFC1123(text)) {
-                SimpleDateFormat format = new SimpleDateFormat(RFC_1123);
-                return format.parse(text);
+            Date date = parseRFC1123(text);
+            if (date != null) {
+                return date;
             }
 
             return text;
@@ -90,35 +91,132 @@ public class CustomPropertiesMapper {
         else if ("false".equals(value)) {
             return Boolean.FALSE;
         }
-        else if (isInteger(value)) {
-            return Integer.parseInt(value);
+
+        Integer integer = parseInteger(value);
+        if (integer != null) {
+            return integer;
         }
-        else {
+        else if (isDecimal(value)) {
             return Double.parseDouble(value);
         }
+
+        throw new NumberFormatException("Not a custom property value: " + value);
     }
 
-    private boolean isRFC1123(String text) {
-        if (text.length() != RFC_1123.length()) {
+    /**
+     * Determines, without decoding it, whether a header value is in one of the formats produced by
+     * {@link #toString(Object)}, that is whether {@link #fromString(String)} will decode it rather than throw. Ordinary
+     * HTTP headers such as Content-Type, Date or Location are rejected here at the cost of a character scan.
+     */
+    public boolean isCustomPropertyValue(String value) {
+        if (value == null) {
             return false;
         }
-        try {
-            SimpleDateFormat format = new SimpleDateFormat(RFC_1123);
-            format.parse(text);
-            return true;
+
+        return isQuoted(value) || "true".equals(value) || "false".equals(value) || isDecimal(value);
+    }
+
+    private boolean isQuoted(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"");
+    }
+
+    private Date parseRFC1123(String text) {
+        // Rule out text that cannot match the pattern before paying for a SimpleDateFormat
+        if (text.length() != RFC_1123.length() || text.charAt(3) != ',') {
+            return null;
         }
-        catch (ParseException e) {
-            return false;
+
+        SimpleDateFormat format = new SimpleDateFormat(RFC_1123);
+        return format.parse(text, new ParsePosition(0));
+    }
+
+    private Integer parseInteger(String value) {
+        int length = value.length();
+        int index = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            index = 1;
+        }
+
+        // More than ten digits cannot fit in an int
+        if (index == length || length - index > 10) {
+            return null;
+        }
+
+        long result = 0;
+        for (; index < length; index++) {
+            char c = value.charAt(index);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            result = result * 10 + (c - '0');
+        }
+
+        if (negative) {
+            result = -result;
         }
+
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        return Integer.valueOf((int) result);
     }
 
-    private boolean isInteger(String value) {
-        try {
-            Integer.parseInt(value);
+    private boolean isDecimal(String value) {
+        // Accepts the decimal forms of Double.parseDouble, which ignores surrounding whitespace
+        String text = value.trim();
+        int length = text.length();
+        int index = 0;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            index = 1;
+        }
+
+        String rest = text.substring(index);
+        if ("NaN".equals(rest) || "Infinity".equals(rest)) {
             return true;
         }
-        catch (NumberFormatException e) {
+
+        int digits = 0;
+        while (index < length && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+            index++;
+            digits++;
+        }
+
+        if (index < length && text.charAt(index) == '.') {
+            index++;
+            while (index < length && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+                index++;
+                digits++;
+            }
+        }
+
+        if (digits == 0) {
             return false;
         }
+
+        if (index < length && (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+            index++;
+            if (index < length && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+                index++;
+            }
+
+            int exponentDigits = 0;
+            while (index < length && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+                index++;
+                exponentDigits++;
+            }
+
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+
+        if (index < length && "fFdD".indexOf(text.charAt(index)) >= 0) {
+            index++;
+        }
+
+        return index == length;
     }
 }
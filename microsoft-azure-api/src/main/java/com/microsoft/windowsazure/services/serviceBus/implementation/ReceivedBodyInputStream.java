@@ -0,0 +1,78 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus.implementation;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The body of a received message, read incrementally from the response. The response stream is closed as soon as the
+ * end of the body is reached, so the connection is released for reuse even if the application never closes the body.
+ */
+class ReceivedBodyInputStream extends FilterInputStream {
+    private boolean closed;
+
+    public ReceivedBodyInputStream(InputStream entityStream) {
+        super(entityStream);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (closed) {
+            return -1;
+        }
+        int value = super.read();
+        if (value == -1) {
+            close();
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            return -1;
+        }
+        int count = super.read(b, off, len);
+        if (count == -1) {
+            close();
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return closed ? 0 : super.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed ? 0 : super.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            super.close();
+        }
+    }
+}
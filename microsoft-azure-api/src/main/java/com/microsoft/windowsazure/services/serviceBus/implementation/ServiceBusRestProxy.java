@@ -15,7 +15,6 @@
 package com.microsoft.windowsazure.services.serviceBus.implementation;
 
 import java.io.InputStream;
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -195,7 +194,16 @@ public class ServiceBusRestProxy implements ServiceBusContract {
             brokerProperties.setLockLocation(location);
         }
 
-        BrokeredMessage message = new BrokeredMessage(brokerProperties);
+        // Only headers in a custom property format are kept, and their values are decoded on first read
+        CustomPropertiesMap customProperties = new CustomPropertiesMap(customPropertiesMapper);
+        for (String key : clientResult.getHeaders().keySet()) {
+            String value = clientResult.getHeaders().getFirst(key);
+            if (customPropertiesMapper.isCustomPropertyValue(value)) {
+                customProperties.putEncoded(key, value);
+            }
+        }
+
+        BrokeredMessage message = new BrokeredMessage(brokerProperties, customProperties);
 
         MediaType contentType = clientResult.getType();
         if (contentType != null) {
@@ -209,21 +217,7 @@ public class ServiceBusRestProxy implements ServiceBusContract {
 
         InputStream body = clientResult.getEntityInputStream();
         if (body != null) {
-            message.setBody(body);
-        }
-
-        for (String key : clientResult.getHeaders().keySet()) {
-            Object value = clientResult.getHeaders().getFirst(key);
-            try {
-                value = customPropertiesMapper.fromString(value.toString());
-                message.setProperty(key, value);
-            }
-            catch (ParseException e) {
-                //log.warn("Unable to parse custom header", e);
-            }
-            catch (NumberFormatException e) {
-                //log.warn("Unable to parse custom header", e);
-            }
+            message.setBody(new ReceivedBodyInputStream(body));
         }
 
         return message;
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus.implementation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An input stream over a message body whose length is known up front, read from a <code>ByteBuffer</code> or a file.
+ * <p>
+ * Bodies of this type are sent with a fixed Content-Length, straight from the buffer or file to the connection,
+ * instead of being copied into an intermediate buffer to find their length. They support <code>mark</code> and
+ * <code>reset</code> at any distance, so a retry policy can rewind them without buffering either.
+ */
+public class SizedInputStream extends InputStream {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private final RandomAccessFile file;
+    private final long length;
+    private long position;
+    private long markPosition;
+
+    private SizedInputStream(ByteBuffer buffer, RandomAccessFile file, long length) {
+        this.buffer = buffer;
+        this.file = file;
+        this.length = length;
+    }
+
+    /**
+     * Creates a stream over the remaining bytes of a buffer. The buffer's content is not copied, and its position is
+     * left unchanged.
+     * 
+     * @param body
+     *            A <code>ByteBuffer</code> object that contains the body.
+     * @return A <code>SizedInputStream</code> object that reads the body.
+     */
+    public static SizedInputStream fromByteBuffer(ByteBuffer body) {
+        ByteBuffer slice = body.slice();
+        return new SizedInputStream(slice, null, slice.remaining());
+    }
+
+    /**
+     * Creates a stream over the contents of a file. The file is read as the body is sent, and closed with the stream.
+     * 
+     * @param body
+     *            A <code>File</code> object that represents the file that contains the body.
+     * @return A <code>SizedInputStream</code> object that reads the body.
+     * @throws FileNotFoundException
+     *             If the file cannot be opened for reading.
+     */
+    public static SizedInputStream fromFile(File body) throws FileNotFoundException {
+        RandomAccessFile file = new RandomAccessFile(body, "r");
+        try {
+            return new SizedInputStream(null, file, file.length());
+        }
+        catch (IOException e) {
+            try {
+                file.close();
+            }
+            catch (IOException ignored) {
+            }
+            FileNotFoundException error = new FileNotFoundException(body.getPath());
+            error.initCause(e);
+            throw error;
+        }
+    }
+
+    /**
+     * @return the total length of the body, in bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+
+        int value;
+        if (buffer != null) {
+            value = buffer.get((int) position) & 0xFF;
+        }
+        else {
+            file.seek(position);
+            value = file.read();
+            if (value == -1) {
+                return -1;
+            }
+        }
+
+        position++;
+        return value;
+    }
+
+    /**
+     * @return the number of bytes of the body that have not been read yet.
+     */
+    long getRemainingLength() {
+        return length - position;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+
+        int count = (int) Math.min(len, length - position);
+        if (buffer != null) {
+            buffer.position((int) position);
+            buffer.get(b, off, count);
+        }
+        else {
+            file.seek(position);
+            count = file.read(b, off, count);
+            if (count == -1) {
+                return -1;
+            }
+        }
+
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        markPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = markPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the rest of the body to an output stream, directly from the buffer's backing array or the file channel.
+     * 
+     * @param out
+     *            The <code>OutputStream</code> to write to.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        if (buffer != null && buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + (int) position, (int) (length - position));
+            position = length;
+        }
+        else if (file != null) {
+            FileChannel channel = file.getChannel();
+            WritableByteChannel target = Channels.newChannel(out);
+            while (position < length) {
+                long transferred = channel.transferTo(position, length - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("The file ended before the expected length of the body.");
+                }
+                position += transferred;
+            }
+        }
+        else {
+            byte[] copyBuffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(1, length - position))];
+            int count;
+            while ((count = read(copyBuffer, 0, copyBuffer.length)) != -1) {
+                out.write(copyBuffer, 0, count);
+            }
+        }
+    }
+}
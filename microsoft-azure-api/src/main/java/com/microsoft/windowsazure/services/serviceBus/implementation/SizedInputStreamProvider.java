@@ -0,0 +1,50 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus.implementation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+/**
+ * Writes {@link SizedInputStream} bodies. Reporting their length lets the client handler send them in fixed length
+ * streaming mode rather than buffering them, which it has to do for an <code>InputStream</code> of unknown length.
+ */
+public class SizedInputStreamProvider implements MessageBodyWriter<SizedInputStream> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return SizedInputStream.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(SizedInputStream t, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return t.getRemainingLength();
+    }
+
+    @Override
+    public void writeTo(SizedInputStream t, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        t.writeTo(entityStream);
+    }
+}
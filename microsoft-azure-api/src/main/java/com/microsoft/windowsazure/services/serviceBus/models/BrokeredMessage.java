@@ -14,13 +14,14 @@
  */
 package com.microsoft.windowsazure.services.serviceBus.models;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.microsoft.windowsazure.services.serviceBus.implementation.BrokerProperties;
+import com.microsoft.windowsazure.services.serviceBus.implementation.SizedInputStream;
 
 /**
  * Represents a service bus message.
@@ -40,7 +41,9 @@ public class BrokeredMessage {
     }
 
     /**
-     * Creates an instance of the <code>Message</code> class using the specified <code>InputStream</code>.
+     * Creates an instance of the <code>Message</code> class using the specified <code>InputStream</code>. A body
+     * created with {@link SizedInputStream#fromFile(java.io.File)} is streamed from the file as it is sent, without
+     * being buffered in memory.
      * 
      * @param body
      *            An <code>InputStream</code> object that represents the body of the message.
@@ -58,7 +61,19 @@ public class BrokeredMessage {
      */
     public BrokeredMessage(byte[] body) {
         this(new BrokerProperties());
-        this.body = (body == null) ? null : new ByteArrayInputStream(body);
+        this.body = (body == null) ? null : SizedInputStream.fromByteBuffer(ByteBuffer.wrap(body));
+    }
+
+    /**
+     * Creates an instance of the <code>Message</code> class using the remaining bytes of the specified
+     * <code>ByteBuffer</code>. The bytes are sent straight from the buffer, without being copied.
+     * 
+     * @param body
+     *            A <code>ByteBuffer</code> object that contains the body of the message.
+     */
+    public BrokeredMessage(ByteBuffer body) {
+        this(new BrokerProperties());
+        this.body = (body == null) ? null : SizedInputStream.fromByteBuffer(body);
     }
 
     /**
@@ -70,7 +85,7 @@ public class BrokeredMessage {
      */
     public BrokeredMessage(String body) {
         this(new BrokerProperties());
-        this.body = (body == null) ? null : new ByteArrayInputStream(body.getBytes());
+        this.body = (body == null) ? null : SizedInputStream.fromByteBuffer(ByteBuffer.wrap(body.getBytes()));
     }
 
     /**
@@ -79,8 +94,18 @@ public class BrokeredMessage {
      * @param properties
      */
     public BrokeredMessage(BrokerProperties properties) {
+        this(properties, new HashMap<String, Object>());
+    }
+
+    /**
+     * Internal
+     * 
+     * @param properties
+     * @param customProperties
+     */
+    public BrokeredMessage(BrokerProperties properties, Map<String, Object> customProperties) {
         this.brokerProperties = properties;
-        this.customProperties = new HashMap<String, Object>();
+        this.customProperties = customProperties;
     }
 
     /**
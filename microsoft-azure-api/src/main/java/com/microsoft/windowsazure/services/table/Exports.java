@@ -16,10 +16,9 @@ package com.microsoft.windowsazure.services.table;
 
 import com.microsoft.windowsazure.services.core.Builder;
 import com.microsoft.windowsazure.services.table.implementation.AtomReaderWriter;
+import com.microsoft.windowsazure.services.table.implementation.BatchReaderWriter;
 import com.microsoft.windowsazure.services.table.implementation.DefaultEdmValueConterter;
 import com.microsoft.windowsazure.services.table.implementation.DefaultXMLStreamFactory;
-import com.microsoft.windowsazure.services.table.implementation.HttpReaderWriter;
-import com.microsoft.windowsazure.services.table.implementation.MimeReaderWriter;
 import com.microsoft.windowsazure.services.table.implementation.SharedKeyFilter;
 import com.microsoft.windowsazure.services.table.implementation.SharedKeyLiteFilter;
 import com.microsoft.windowsazure.services.table.implementation.TableExceptionProcessor;
@@ -36,8 +35,7 @@ public class Exports implements Builder.Exports {
         registry.add(SharedKeyFilter.class);
         registry.add(XMLStreamFactory.class, DefaultXMLStreamFactory.class);
         registry.add(AtomReaderWriter.class);
-        registry.add(MimeReaderWriter.class);
-        registry.add(HttpReaderWriter.class);
+        registry.add(BatchReaderWriter.class);
         registry.add(EdmValueConverter.class, DefaultEdmValueConterter.class);
     }
 }
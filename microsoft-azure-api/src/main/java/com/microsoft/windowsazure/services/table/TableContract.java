@@ -498,6 +498,28 @@ public interface TableContract extends FilterableService<TableContract> {
      */
     QueryEntitiesResult queryEntities(String table, QueryEntitiesOptions options) throws ServiceException;
 
+    /**
+     * Lists the entities in a table that match the specified options, following the continuation tokens in the server
+     * responses until all matching entities have been returned.
+     * <p>
+     * Entities are parsed from each response as the iteration reaches them, and each page of results is only requested
+     * once the previous one has been consumed, unless {@link QueryEntitiesOptions#setPrefetchNextPage(boolean)} is set.
+     * The next partition key and next row key set in the options are used to resume the first request, and a top count
+     * limits the total number of entities returned. Errors that occur while iterating are thrown as a
+     * <code>RuntimeException</code> whose cause is the {@link ServiceException}. The iterators implement
+     * <code>java.io.Closeable</code>, to release the connections of an iteration that is abandoned before its end.
+     * 
+     * @param table
+     *            A {@link String} containing the name of the table to retrieve the list of entities from.
+     * @param options
+     *            A {@link QueryEntitiesOptions} instance containing options for the request.
+     * @return
+     *         An {@link Iterable} of the {@link Entity} instances that match the options.
+     * @throws ServiceException
+     *             if an error occurs accessing the storage service.
+     */
+    Iterable<Entity> iterateEntities(String table, QueryEntitiesOptions options) throws ServiceException;
+
     /**
      * Submits multiple entity operations in the same table and partition group as a single transaction. Multiple insert
      * entity, update entity, merge entity, delete entity, insert or replace entity, and insert or merge entity
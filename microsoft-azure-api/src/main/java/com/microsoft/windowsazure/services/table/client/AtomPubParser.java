@@ -22,7 +22,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -34,6 +33,7 @@ import com.microsoft.windowsazure.services.core.storage.Constants;
 import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 
 /**
  * Reserved for internal use. A class used to read and write Table entities in OData AtomPub format requests and
@@ -44,6 +44,11 @@ import com.microsoft.windowsazure.services.core.storage.utils.Utility;
  * href="http://www.odata.org/developers/protocols/atom-format">OData Protocol Atom Format</a>.
  */
 class AtomPubParser {
+    /**
+     * Holds the text of a property element that has no character content.
+     */
+    private static final char[] EMPTY_TEXT = new char[0];
+
     /**
      * Reserved for internal use. A static factory method to construct an <code>XMLStreamWriter</code> instance based on
      * the specified <code>OutputStream</code>.
@@ -56,8 +61,7 @@ class AtomPubParser {
      *             if an error occurs while creating the stream.
      */
     protected static XMLStreamWriter generateTableWriter(final OutputStream outStream) throws XMLStreamException {
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        return xmlOutFactoryInst.createXMLStreamWriter(outStream, "UTF-8");
+        return XMLFactoryProvider.createXMLStreamWriter(outStream, "UTF-8");
     }
 
     /**
@@ -119,6 +123,10 @@ class AtomPubParser {
                     if (resolver == null && clazzType == null) {
                         return res;
                     }
+                    else if (resolver instanceof ColumnarResolver) {
+                        readColumns(xmlr, (ColumnarResolver) resolver);
+                        break;
+                    }
                     else {
                         res.setProperties(readProperties(xmlr, opContext));
                         break;
@@ -141,6 +149,11 @@ class AtomPubParser {
 
         xmlr.require(XMLStreamConstants.END_ELEMENT, null, ODataConstants.ENTRY);
 
+        if (resolver instanceof ColumnarResolver) {
+            // The properties were written into the columns while reading
+            return res;
+        }
+
         String rowKey = null;
         String partitionKey = null;
         Date timestamp = null;
@@ -389,6 +402,67 @@ class AtomPubParser {
         return properties;
     }
 
+    /**
+     * Reserved for internal use. Reads the properties of an entity from the stream directly into the columns of the
+     * specified {@link ColumnarResolver}, adding one row to each column. Properties without a registered column are
+     * skipped, and no property map or {@link EntityProperty} objects are created.
+     * 
+     * @param xmlr
+     *            The <code>XMLStreamReader</code> to read the data from.
+     * @param resolver
+     *            The {@link ColumnarResolver} whose columns to write the properties into.
+     * 
+     * @throws XMLStreamException
+     *             if an error occurs accessing the stream.
+     */
+    protected static void readColumns(final XMLStreamReader xmlr, final ColumnarResolver resolver)
+            throws XMLStreamException {
+        int eventType = xmlr.getEventType();
+        xmlr.require(XMLStreamConstants.START_ELEMENT, null, ODataConstants.PROPERTIES);
+
+        while (xmlr.hasNext()) {
+            eventType = xmlr.next();
+            if (eventType == XMLStreamConstants.CHARACTERS) {
+                continue;
+            }
+
+            if (eventType == XMLStreamConstants.START_ELEMENT
+                    && xmlr.getNamespaceURI().equals(ODataConstants.DATA_SERVICES_NS)) {
+                final ColumnarResolver.Column column = resolver.getColumn(xmlr.getLocalName());
+                final boolean isNull = xmlr.getAttributeCount() > 0
+                        && Constants.TRUE.equals(xmlr.getAttributeValue(ODataConstants.DATA_SERVICES_METADATA_NS,
+                                ODataConstants.NULL));
+
+                // move to chars
+                eventType = xmlr.next();
+
+                if (eventType == XMLStreamConstants.CHARACTERS) {
+                    if (column != null && !isNull) {
+                        column.append(xmlr.getTextCharacters(), xmlr.getTextStart(), xmlr.getTextLength());
+                    }
+
+                    // end element
+                    eventType = xmlr.next();
+                }
+                else if (column != null && !isNull) {
+                    // An element without text holds an empty value, as in readProperties; only m:null marks a null.
+                    column.append(EMPTY_TEXT, 0, 0);
+                }
+
+                xmlr.require(XMLStreamConstants.END_ELEMENT, ODataConstants.DATA_SERVICES_NS, null);
+            }
+            else if (eventType == XMLStreamConstants.END_ELEMENT
+                    && xmlr.getName().toString()
+                            .equals(ODataConstants.BRACKETED_DATA_SERVICES_METADATA_NS + ODataConstants.PROPERTIES)) {
+                // End read properties
+                break;
+            }
+        }
+
+        xmlr.require(XMLStreamConstants.END_ELEMENT, null, ODataConstants.PROPERTIES);
+        resolver.endRow();
+    }
+
     /**
      * Reserved for internal use. Writes an entity to the stream as an AtomPub Entry Resource, leaving the stream open
      * for additional writing.
@@ -490,7 +490,7 @@ public final class CloudTable {
 
                 final byte[] aclBytes = outBuffer.toString().getBytes("UTF8");
                 client.getCredentials().signRequestLite(request, aclBytes.length, opContext);
-                final OutputStream outStreamRef = request.getOutputStream();
+                final OutputStream outStreamRef = ExecutionEngine.getOutputStream(request, opContext);
                 outStreamRef.write(aclBytes);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
@@ -25,6 +25,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -36,9 +37,11 @@ import com.microsoft.windowsazure.services.core.storage.ResultSegment;
 import com.microsoft.windowsazure.services.core.storage.ServiceClient;
 import com.microsoft.windowsazure.services.core.storage.StorageCredentials;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ExecutionEngine;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.LazySegmentedIterable;
+import com.microsoft.windowsazure.services.core.storage.utils.implementation.SegmentSizer;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.SegmentedStorageOperation;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.StorageOperation;
 import com.microsoft.windowsazure.services.queue.client.CloudQueue;
@@ -77,6 +80,11 @@ public final class CloudTableClient extends ServiceClient {
         }
     };
 
+    /**
+     * Holds the cache of retrieved entities, or <code>null</code> if entity caching is disabled.
+     */
+    private TableEntityCache entityCache;
+
     /**
      * Initializes an instance of the {@link CloudTableClient} class using a Table service endpoint.
      * <p>
@@ -107,6 +115,48 @@ public final class CloudTableClient extends ServiceClient {
         this.setTimeoutInMs(TableConstants.TABLE_DEFAULT_TIMEOUT_IN_MS);
     }
 
+    /**
+     * Disables the caching of retrieved entities, discarding any cached entities.
+     */
+    public synchronized void disableEntityCache() {
+        this.entityCache = null;
+    }
+
+    /**
+     * Enables the caching of entities retrieved via this client. Cached entities are returned by retrieve operations
+     * executed synchronously through this client without a request to the service during their time to live, and
+     * concurrent retrieves of the same entity share a single request. Entries are invalidated by the operations that
+     * modify the entity through this client. Calling this method while entity caching is already enabled replaces the
+     * existing cache.
+     * 
+     * @param maxEntries
+     *            The maximum number of entities that are cached; the least recently used entries are evicted beyond
+     *            it.
+     * @param timeToLiveInMs
+     *            The time, in milliseconds, during which a cached entity is returned. Specify 0 to only coalesce
+     *            concurrent retrieves.
+     * 
+     * @return A {@link TableEntityCache} object that represents the cache.
+     * 
+     * @throws IllegalArgumentException
+     *             If <code>maxEntries</code> is less than 1 or <code>timeToLiveInMs</code> is negative.
+     */
+    public synchronized TableEntityCache enableEntityCache(final int maxEntries, final long timeToLiveInMs) {
+        this.entityCache = new TableEntityCache(maxEntries, timeToLiveInMs);
+        return this.entityCache;
+    }
+
+    /**
+     * Returns the cache of retrieved entities used by this client.
+     * 
+     * @return A {@link TableEntityCache} object, or <code>null</code> if entity caching is not enabled.
+     * 
+     * @see #enableEntityCache(int, long)
+     */
+    public synchronized TableEntityCache getEntityCache() {
+        return this.entityCache;
+    }
+
     /**
      * Gets a {@link CloudTable} object that represents the storage service
      * queue for the specified address.
@@ -262,6 +312,106 @@ public final class CloudTableClient extends ServiceClient {
         return operation.execute(this, tableName, options, opContext);
     }
 
+    /**
+     * Executes the operation on a table asynchronously, using the specified {@link TableRequestOptions} and
+     * {@link OperationContext}.
+     * <p>
+     * The attempts of the operation run on the executor returned by {@link #getAsyncExecutor()}, and retries are
+     * scheduled on a timer once their back-off interval elapses rather than blocking a thread while waiting.
+     * 
+     * @param tableName
+     *            A <code>String</code> containing the name of the table to execute the operation on.
+     * @param operation
+     *            The {@link TableOperation} object representing the operation to execute on the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation. Specify <code>null</code> to use the request options specified on the
+     *            {@link CloudTableClient}.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation. Specify <code>null</code> to
+     *            safely ignore operation context.
+     * 
+     * @return
+     *         A {@link StorageFuture} that completes with the {@link TableResult} of executing the
+     *         {@link TableOperation} on the table.
+     * 
+     * @throws StorageException
+     *             if the operation could not be prepared.
+     */
+    @DoesServiceRequest
+    public StorageFuture<TableResult> executeAsync(final String tableName, final TableOperation operation,
+            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("operation", operation);
+        return operation.executeAsync(this, tableName, options, opContext);
+    }
+
+    /**
+     * Retrieves multiple entities from a table, possibly from several partitions.
+     * <p>
+     * This method groups the entities by partition and sends as few requests as possible: adjacent row keys of a
+     * partition, which only differ in their last character, are retrieved together with a query whose filter bounds
+     * their range and lists the keys, and any other row key is retrieved with a point request, which is served from
+     * the entity cache when it is enabled.
+     * The requests are sent concurrently, up to the concurrent request count of the request options.
+     * 
+     * @param tableName
+     *            A <code>String</code> containing the name of the table to retrieve the entities from.
+     * @param retrieveOperations
+     *            A <code>java.util.List</code> of retrieve {@link TableOperation} objects, created with
+     *            {@link TableOperation#retrieve}, that each specify a row key.
+     * 
+     * @return
+     *         A <code>java.util.ArrayList</code> of {@link TableResult} objects containing the result of each retrieve
+     *         operation, in the order of the operations. The result of an entity that does not exist has the HTTP
+     *         status code 404 and no entity.
+     * 
+     * @throws StorageException
+     *             if an error occurs accessing the storage service, or a request fails.
+     */
+    @DoesServiceRequest
+    public ArrayList<TableResult> retrieveMultiple(final String tableName,
+            final List<TableOperation> retrieveOperations) throws StorageException {
+        return this.retrieveMultiple(tableName, retrieveOperations, null, null);
+    }
+
+    /**
+     * Retrieves multiple entities from a table, possibly from several partitions, using the specified
+     * {@link TableRequestOptions} and {@link OperationContext}.
+     * <p>
+     * This method groups the entities by partition and sends as few requests as possible: adjacent row keys of a
+     * partition, which only differ in their last character, are retrieved together with a query whose filter bounds
+     * their range and lists the keys, and any other row key is retrieved with a point request, which is served from
+     * the entity cache when it is enabled.
+     * The requests are sent concurrently, up to the concurrent request count of the request options.
+     * 
+     * @param tableName
+     *            A <code>String</code> containing the name of the table to retrieve the entities from.
+     * @param retrieveOperations
+     *            A <code>java.util.List</code> of retrieve {@link TableOperation} objects, created with
+     *            {@link TableOperation#retrieve}, that each specify a row key.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy, timeout
+     *            and concurrent request count settings for the operation. Specify <code>null</code> to use the request
+     *            options specified on the {@link CloudTableClient}.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation. Specify <code>null</code> to
+     *            safely ignore operation context.
+     * 
+     * @return
+     *         A <code>java.util.ArrayList</code> of {@link TableResult} objects containing the result of each retrieve
+     *         operation, in the order of the operations. The result of an entity that does not exist has the HTTP
+     *         status code 404 and no entity.
+     * 
+     * @throws StorageException
+     *             if an error occurs accessing the storage service, or a request fails.
+     */
+    @DoesServiceRequest
+    public ArrayList<TableResult> retrieveMultiple(final String tableName,
+            final List<TableOperation> retrieveOperations, final TableRequestOptions options,
+            final OperationContext opContext) throws StorageException {
+        return MultiRetrieveOperation.execute(this, tableName, retrieveOperations, options, opContext);
+    }
+
     /**
      * Executes a query, applying the specified {@link EntityResolver} to the result.
      * <p>
@@ -757,6 +907,8 @@ public final class CloudTableClient extends ServiceClient {
      * @param continuationToken
      *            The {@link ResultContinuation} to pass with the operation to resume a query, if any. Pass
      *            <code>null</code> for an initial query.
+     * @param top
+     *            The number of entities to request, or <code>null</code> to use the service default.
      * @param taskReference
      *            A reference to the {@link StorageOperation} implementing the segmented operation.
      * @param options
@@ -786,7 +938,7 @@ public final class CloudTableClient extends ServiceClient {
      */
     @SuppressWarnings("unchecked")
     protected <T extends TableEntity, R> ResultSegment<?> executeQuerySegmentedCore(final TableQuery<T> queryToExecute,
-            final EntityResolver<R> resolver, final ResultContinuation continuationToken,
+            final EntityResolver<R> resolver, final ResultContinuation continuationToken, final Integer top,
             final StorageOperation<?, ?, ?> taskReference, final TableRequestOptions options,
             final OperationContext opContext) throws StorageException, IOException, URISyntaxException,
             XMLStreamException, ParseException, InstantiationException, IllegalAccessException, InvalidKeyException {
@@ -796,7 +948,7 @@ public final class CloudTableClient extends ServiceClient {
 
         final HttpURLConnection queryRequest = TableRequest.query(this.getTransformedEndPoint(opContext),
                 queryToExecute.getSourceTableName(), null/* identity */, options.getTimeoutIntervalInMs(),
-                queryToExecute.generateQueryBuilder(), continuationToken, options, opContext);
+                queryToExecute.generateQueryBuilder(top), continuationToken, options, opContext);
 
         this.getCredentials().signRequestLite(queryRequest, -1L, opContext);
 
@@ -887,8 +1039,8 @@ public final class CloudTableClient extends ServiceClient {
             public ResultSegment<?> execute(final CloudTableClient client, final TableQuery<T> queryRef,
                     final OperationContext opContext) throws Exception {
 
-                return CloudTableClient.this.executeQuerySegmentedCore(queryRef, resolver, continuationToken, this,
-                        (TableRequestOptions) this.getRequestOptions(), opContext);
+                return CloudTableClient.this.executeQuerySegmentedCore(queryRef, resolver, continuationToken,
+                        queryRef.getTakeCount(), this, (TableRequestOptions) this.getRequestOptions(), opContext);
             }
         };
         return ExecutionEngine.executeWithRetry(this, queryToExecute, impl, options.getRetryPolicyFactory(), opContext);
@@ -944,6 +1096,16 @@ public final class CloudTableClient extends ServiceClient {
         opContext.initialize();
         options.applyDefaults(this);
 
+        // Size each request from the limit and, if enabled, from the rate the results are consumed at
+        SegmentSizer sizer = null;
+        if (queryRef.getLimit() != null || options.getUseAdaptiveSegmentSizing()) {
+            final int maxTakeCount = queryRef.getTakeCount() == null ? TableConstants.MAX_TAKE_COUNT : queryRef
+                    .getTakeCount();
+            sizer = options.getUseAdaptiveSegmentSizing() ? new SegmentSizer(Math.min(
+                    SegmentSizer.DEFAULT_INITIAL_SEGMENT_SIZE, maxTakeCount), maxTakeCount, queryRef.getLimit())
+                    : new SegmentSizer(maxTakeCount, queryRef.getLimit());
+        }
+
         if (resolver == null) {
             final SegmentedStorageOperation<CloudTableClient, TableQuery<T>, ResultSegment<T>> impl = new SegmentedStorageOperation<CloudTableClient, TableQuery<T>, ResultSegment<T>>(
                     options, null) {
@@ -953,7 +1115,8 @@ public final class CloudTableClient extends ServiceClient {
 
                     @SuppressWarnings("unchecked")
                     final ResultSegment<T> result = (ResultSegment<T>) CloudTableClient.this.executeQuerySegmentedCore(
-                            queryToExecute, null, this.getToken(), this,
+                            queryToExecute, null, this.getToken(), this.getSegmentSize() == null ? queryToExecute
+                                    .getTakeCount() : this.getSegmentSize(), this,
                             (TableRequestOptions) this.getRequestOptions(), opContext);
 
                     // Note, setting the token on the SegmentedStorageOperation is
@@ -967,7 +1130,7 @@ public final class CloudTableClient extends ServiceClient {
             };
 
             return new LazySegmentedIterable<CloudTableClient, TableQuery<T>, T>(impl, this, queryRef,
-                    options.getRetryPolicyFactory(), opContext);
+                    options.getRetryPolicyFactory(), opContext, sizer);
         }
         else {
             final SegmentedStorageOperation<CloudTableClient, TableQuery<T>, ResultSegment<R>> impl = new SegmentedStorageOperation<CloudTableClient, TableQuery<T>, ResultSegment<R>>(
@@ -978,7 +1141,8 @@ public final class CloudTableClient extends ServiceClient {
 
                     @SuppressWarnings("unchecked")
                     final ResultSegment<R> result = (ResultSegment<R>) CloudTableClient.this.executeQuerySegmentedCore(
-                            queryToExecute, resolver, this.getToken(), this,
+                            queryToExecute, resolver, this.getToken(), this.getSegmentSize() == null ? queryToExecute
+                                    .getTakeCount() : this.getSegmentSize(), this,
                             (TableRequestOptions) this.getRequestOptions(), opContext);
 
                     // Note, setting the token on the SegmentedStorageOperation is
@@ -991,7 +1155,7 @@ public final class CloudTableClient extends ServiceClient {
                 }
             };
             return new LazySegmentedIterable<CloudTableClient, TableQuery<T>, R>(impl, this, queryRef,
-                    options.getRetryPolicyFactory(), opContext);
+                    options.getRetryPolicyFactory(), opContext, sizer);
         }
     }
 }
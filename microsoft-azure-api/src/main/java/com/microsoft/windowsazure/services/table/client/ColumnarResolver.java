@@ -0,0 +1,532 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+
+/**
+ * An {@link EntityResolver} that collects selected properties of the entities returned by a query into typed columns,
+ * rather than projecting each entity into an object.
+ * <p>
+ * When a query is executed with a <code>ColumnarResolver</code>, the response parser writes each registered property
+ * directly into its column, without creating a property map or {@link EntityProperty} objects for the entity, and
+ * skips every other property. Numeric columns store their values in primitive arrays. Each entity returned by the
+ * query adds one row to every column; a property the entity does not have, or that the response marks as null, is
+ * stored as a null value of its column, while an empty string property is stored as an empty string.
+ * The query results themselves are <code>null</code>, so the columns are read once the query has been iterated, or
+ * once every segment has been retrieved with <code>executeSegmented</code>.
+ * <p>
+ * To avoid transferring the other properties, restrict the query to the registered columns with
+ * <code>query.select(resolver.getColumnNames())</code>. The PartitionKey, RowKey and Timestamp properties may be
+ * registered as string columns like any other property.
+ * <p>
+ * A <code>ColumnarResolver</code> is not thread-safe, and should be used by a single query at a time.
+ */
+public final class ColumnarResolver implements EntityResolver<Void> {
+    /**
+     * Represents a column of property values, one per row.
+     */
+    public abstract static class Column {
+        /**
+         * Holds the name of the property stored in the column.
+         */
+        private final String name;
+
+        /**
+         * Holds the rows whose value is null.
+         */
+        private final BitSet nulls = new BitSet();
+
+        /**
+         * Holds the number of rows in the column.
+         */
+        int size;
+
+        /**
+         * Creates a column.
+         * 
+         * @param name
+         *            the name of the property stored in the column.
+         */
+        Column(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the name of the property stored in the column.
+         */
+        public final String getName() {
+            return this.name;
+        }
+
+        /**
+         * Indicates whether the value of the specified row is null, because the entity does not have the property.
+         * 
+         * @param row
+         *            The index of the row.
+         * @return <code>true</code> if the value is null.
+         */
+        public final boolean isNull(final int row) {
+            this.checkRow(row);
+            return this.nulls.get(row);
+        }
+
+        /**
+         * @return the number of rows in the column.
+         */
+        public final int size() {
+            return this.size;
+        }
+
+        /**
+         * Appends a value parsed from the specified characters.
+         * 
+         * @param text
+         *            the array holding the characters of the value.
+         * @param start
+         *            the index of the first character.
+         * @param length
+         *            the number of characters.
+         */
+        abstract void append(char[] text, int start, int length);
+
+        /**
+         * Appends the value of the specified property.
+         * 
+         * @param property
+         *            the property.
+         */
+        abstract void append(EntityProperty property);
+
+        /**
+         * Appends the value the column stores for a null value.
+         */
+        abstract void appendDefault();
+
+        /**
+         * Appends a null value.
+         */
+        final void appendNull() {
+            this.nulls.set(this.size);
+            this.appendDefault();
+        }
+
+        /**
+         * Throws if the specified row is not in the column.
+         * 
+         * @param row
+         *            the index of the row.
+         */
+        final void checkRow(final int row) {
+            if (row < 0 || row >= this.size) {
+                throw new IndexOutOfBoundsException(Integer.toString(row));
+            }
+        }
+
+        /**
+         * Removes every row.
+         */
+        void clear() {
+            this.nulls.clear();
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Represents a column of <code>long</code> values, for properties of type <code>Edm.Int64</code> or
+     * <code>Edm.Int32</code>. Null values are stored as zero.
+     */
+    public static final class LongColumn extends Column {
+        /**
+         * Holds the values.
+         */
+        private long[] values = new long[16];
+
+        /**
+         * Creates a column.
+         * 
+         * @param name
+         *            the name of the property stored in the column.
+         */
+        LongColumn(final String name) {
+            super(name);
+        }
+
+        /**
+         * Returns the value of the specified row.
+         * 
+         * @param row
+         *            The index of the row.
+         * @return The value, or zero if the value is null.
+         */
+        public long get(final int row) {
+            this.checkRow(row);
+            return this.values[row];
+        }
+
+        /**
+         * @return a <code>long</code> array containing the value of each row, with zero for null values.
+         */
+        public long[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+
+        @Override
+        void append(final char[] text, final int start, final int length) {
+            this.add(parseLong(text, start, length));
+        }
+
+        @Override
+        void append(final EntityProperty property) {
+            this.add(property.getValueAsLong());
+        }
+
+        @Override
+        void appendDefault() {
+            this.add(0L);
+        }
+
+        /**
+         * Appends the specified value.
+         * 
+         * @param value
+         *            the value.
+         */
+        private void add(final long value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+
+        /**
+         * Parses a decimal <code>long</code> value from the specified characters without creating a string.
+         * 
+         * @param text
+         *            the array holding the characters of the value.
+         * @param start
+         *            the index of the first character.
+         * @param length
+         *            the number of characters.
+         * @return the value.
+         */
+        private static long parseLong(final char[] text, final int start, final int length) {
+            final boolean negative = length > 0 && text[start] == '-';
+            int i = negative || (length > 0 && text[start] == '+') ? start + 1 : start;
+            final int end = start + length;
+
+            // Eighteen digits always fit in a long; longer or malformed values take the checked path.
+            if (i == end || end - i > 18) {
+                return Long.parseLong(new String(text, start, length));
+            }
+
+            long value = 0;
+            for (; i < end; i++) {
+                final char digit = text[i];
+                if (digit < '0' || digit > '9') {
+                    return Long.parseLong(new String(text, start, length));
+                }
+                value = value * 10 + (digit - '0');
+            }
+            return negative ? -value : value;
+        }
+    }
+
+    /**
+     * Represents a column of <code>double</code> values, for properties of type <code>Edm.Double</code>,
+     * <code>Edm.Int64</code> or <code>Edm.Int32</code>. Null values are stored as <code>NaN</code>.
+     */
+    public static final class DoubleColumn extends Column {
+        /**
+         * Holds the values.
+         */
+        private double[] values = new double[16];
+
+        /**
+         * Creates a column.
+         * 
+         * @param name
+         *            the name of the property stored in the column.
+         */
+        DoubleColumn(final String name) {
+            super(name);
+        }
+
+        /**
+         * Returns the value of the specified row.
+         * 
+         * @param row
+         *            The index of the row.
+         * @return The value, or <code>NaN</code> if the value is null.
+         */
+        public double get(final int row) {
+            this.checkRow(row);
+            return this.values[row];
+        }
+
+        /**
+         * @return a <code>double</code> array containing the value of each row, with <code>NaN</code> for null values.
+         */
+        public double[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+
+        @Override
+        void append(final char[] text, final int start, final int length) {
+            this.add(Double.parseDouble(new String(text, start, length)));
+        }
+
+        @Override
+        void append(final EntityProperty property) {
+            this.add(Double.parseDouble(property.getValueAsString()));
+        }
+
+        @Override
+        void appendDefault() {
+            this.add(Double.NaN);
+        }
+
+        /**
+         * Appends the specified value.
+         * 
+         * @param value
+         *            the value.
+         */
+        private void add(final double value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+
+    /**
+     * Represents a column of <code>String</code> values, which stores the text of a property of any type. Null values
+     * are stored as <code>null</code>.
+     */
+    public static final class StringColumn extends Column {
+        /**
+         * Holds the values.
+         */
+        private final ArrayList<String> values = new ArrayList<String>();
+
+        /**
+         * Creates a column.
+         * 
+         * @param name
+         *            the name of the property stored in the column.
+         */
+        StringColumn(final String name) {
+            super(name);
+        }
+
+        /**
+         * Returns the value of the specified row.
+         * 
+         * @param row
+         *            The index of the row.
+         * @return The value, or <code>null</code> if the value is null.
+         */
+        public String get(final int row) {
+            this.checkRow(row);
+            return this.values.get(row);
+        }
+
+        /**
+         * @return a <code>String</code> array containing the value of each row, with <code>null</code> for null
+         *         values.
+         */
+        public String[] toArray() {
+            return this.values.toArray(new String[this.size]);
+        }
+
+        @Override
+        void append(final char[] text, final int start, final int length) {
+            this.values.add(new String(text, start, length));
+            this.size++;
+        }
+
+        @Override
+        void append(final EntityProperty property) {
+            this.values.add(property.getValueAsString());
+            this.size++;
+        }
+
+        @Override
+        void appendDefault() {
+            this.values.add(null);
+            this.size++;
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            this.values.clear();
+        }
+    }
+
+    /**
+     * Holds the columns by property name, in registration order.
+     */
+    private final LinkedHashMap<String, Column> columns = new LinkedHashMap<String, Column>();
+
+    /**
+     * Holds the number of rows collected.
+     */
+    private int rowCount;
+
+    /**
+     * Registers a column of <code>double</code> values for the specified property.
+     * 
+     * @param name
+     *            A <code>String</code> containing the name of the property.
+     * @return The {@link DoubleColumn} the values of the property are collected into.
+     */
+    public DoubleColumn addDoubleColumn(final String name) {
+        return this.addColumn(new DoubleColumn(name));
+    }
+
+    /**
+     * Registers a column of <code>long</code> values for the specified property.
+     * 
+     * @param name
+     *            A <code>String</code> containing the name of the property.
+     * @return The {@link LongColumn} the values of the property are collected into.
+     */
+    public LongColumn addLongColumn(final String name) {
+        return this.addColumn(new LongColumn(name));
+    }
+
+    /**
+     * Registers a column of <code>String</code> values for the specified property.
+     * 
+     * @param name
+     *            A <code>String</code> containing the name of the property.
+     * @return The {@link StringColumn} the values of the property are collected into.
+     */
+    public StringColumn addStringColumn(final String name) {
+        return this.addColumn(new StringColumn(name));
+    }
+
+    /**
+     * Removes every row from the columns, keeping the columns registered.
+     */
+    public void clear() {
+        for (final Column column : this.columns.values()) {
+            column.clear();
+        }
+        this.rowCount = 0;
+    }
+
+    /**
+     * @return a <code>String</code> array containing the names of the registered properties, to pass to
+     *         {@link TableQuery#select(String[])}.
+     */
+    public String[] getColumnNames() {
+        return this.columns.keySet().toArray(new String[this.columns.size()]);
+    }
+
+    /**
+     * @return the number of rows collected.
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Appends an entity that was parsed into a property map to the columns. Queries executed with this resolver write
+     * into the columns while parsing instead, and only other operations, such as retrieve operations, call this
+     * method.
+     * 
+     * @return <code>null</code>.
+     */
+    @Override
+    public Void resolve(final String partitionKey, final String rowKey, final Date timeStamp,
+            final HashMap<String, EntityProperty> properties, final String etag) throws StorageException {
+        for (final Column column : this.columns.values()) {
+            EntityProperty property = properties.get(column.getName());
+            if (property == null && column.getName().equals(TableConstants.PARTITION_KEY) && partitionKey != null) {
+                property = new EntityProperty(partitionKey);
+            }
+            else if (property == null && column.getName().equals(TableConstants.ROW_KEY) && rowKey != null) {
+                property = new EntityProperty(rowKey);
+            }
+            else if (property == null && column.getName().equals(TableConstants.TIMESTAMP) && timeStamp != null) {
+                property = new EntityProperty(timeStamp);
+            }
+
+            if (property == null || property.getIsNull()) {
+                column.appendNull();
+            }
+            else {
+                column.append(property);
+            }
+        }
+        this.rowCount++;
+        return null;
+    }
+
+    /**
+     * Returns the column registered for the specified property.
+     * 
+     * @param name
+     *            the name of the property.
+     * @return the column, or <code>null</code> if the property is not collected.
+     */
+    Column getColumn(final String name) {
+        return this.columns.get(name);
+    }
+
+    /**
+     * Completes the row of an entity written by the response parser, storing a null value in each column the entity
+     * has no value for.
+     */
+    void endRow() {
+        this.rowCount++;
+        for (final Column column : this.columns.values()) {
+            if (column.size < this.rowCount) {
+                column.appendNull();
+            }
+        }
+    }
+
+    /**
+     * Registers the specified column.
+     * 
+     * @param column
+     *            the column to register.
+     * @return the column.
+     */
+    private <C extends Column> C addColumn(final C column) {
+        if (this.rowCount > 0) {
+            throw new IllegalStateException("Columns must be registered before rows are collected.");
+        }
+
+        if (this.columns.containsKey(column.getName())) {
+            throw new IllegalArgumentException(String.format("A column is already registered for property %s.",
+                    column.getName()));
+        }
+
+        this.columns.put(column.getName(), column);
+        return column;
+    }
+}
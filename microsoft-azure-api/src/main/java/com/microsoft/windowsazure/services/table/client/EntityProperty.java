@@ -186,6 +186,19 @@ public final class EntityProperty {
         this.isNull = true;
     }
 
+    /**
+     * Reserved for internal use. Constructs an {@link EntityProperty} instance that is a copy of the specified
+     * property.
+     * 
+     * @param other
+     *            The {@link EntityProperty} to copy.
+     */
+    EntityProperty(final EntityProperty other) {
+        this.value = other.value;
+        this.edmType = other.edmType;
+        this.isNull = other.isNull;
+    }
+
     /**
      * Gets the {@link EdmType} storage data type for the {@link EntityProperty}.
      * 
@@ -25,7 +25,6 @@ import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
@@ -34,6 +33,7 @@ import com.microsoft.windowsazure.services.core.storage.OperationContext;
 import com.microsoft.windowsazure.services.core.storage.StorageErrorCodeStrings;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 
 /**
  * Reserved for internal use. A class used to read and write MIME requests and responses.
@@ -499,8 +499,7 @@ class MimeHelper {
     protected static String writeStringForOperation(final TableOperation operation, final OperationContext opContext)
             throws StorageException, XMLStreamException {
         final StringWriter outWriter = new StringWriter();
-        final XMLOutputFactory xmlOutFactoryInst = XMLOutputFactory.newInstance();
-        final XMLStreamWriter xmlw = xmlOutFactoryInst.createXMLStreamWriter(outWriter);
+        final XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(outWriter);
 
         AtomPubParser.writeSingleEntityToStream(operation.getEntity(), false, xmlw, opContext);
         outWriter.write("\r\n");
@@ -0,0 +1,427 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.client;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.RequestResult;
+import com.microsoft.windowsazure.services.core.storage.ResultContinuation;
+import com.microsoft.windowsazure.services.core.storage.ResultSegment;
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.microsoft.windowsazure.services.table.client.TableQuery.Operators;
+import com.microsoft.windowsazure.services.table.client.TableQuery.QueryComparisons;
+
+/**
+ * RESERVED FOR INTERNAL USE. Retrieves a set of entities, possibly from several partitions, with as few requests as
+ * possible.
+ * <p>
+ * The row keys requested in each partition are sorted and split into groups of adjacent keys, that is keys which only
+ * differ in their last character, by a small gap. A group of adjacent keys is retrieved with a single query that
+ * bounds the row key range of the group, so that the service only scans that range, and lists the keys of the group,
+ * so that only the requested entities are returned. Keys that are not adjacent to another requested key are each
+ * retrieved with a point request, which is served from the entity cache of the client when it is enabled, rather than
+ * with a query whose range could span many entities that were not requested. The requests are dispatched
+ * concurrently, and the results are returned in the order of the retrieve operations.
+ */
+final class MultiRetrieveOperation {
+    /**
+     * The maximum number of row keys retrieved by one query. The service accepts at most 15 comparisons in a filter,
+     * three of which bound the partition key and the row key range.
+     */
+    static final int MAX_KEYS_PER_QUERY = 12;
+
+    /**
+     * The largest difference between the last characters of two row keys that are retrieved by the same query.
+     */
+    static final int MAX_ADJACENT_KEY_GAP = 16;
+
+    /**
+     * Orders keys by Unicode code point, which is the order in which the service compares them.
+     */
+    private static final Comparator<String> CODE_POINT_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(final String left, final String right) {
+            final int length = Math.min(left.length(), right.length());
+            for (int i = 0; i < length;) {
+                final int leftCodePoint = left.codePointAt(i);
+                final int rightCodePoint = right.codePointAt(i);
+                if (leftCodePoint != rightCodePoint) {
+                    return leftCodePoint < rightCodePoint ? -1 : 1;
+                }
+                i += Character.charCount(leftCodePoint);
+            }
+            return left.length() - right.length();
+        }
+    };
+
+    /**
+     * Represents a group of adjacent row keys in one partition, and the entities retrieved for them.
+     */
+    private static final class KeyGroup {
+        /**
+         * Holds the PartitionKey value of the entities.
+         */
+        private final String partitionKey;
+
+        /**
+         * Holds the RowKey values of the entities, in code point order.
+         */
+        private final List<String> rowKeys;
+
+        /**
+         * Holds the retrieved entities by RowKey value. Keys without an entry do not exist.
+         */
+        private final HashMap<String, TableEntityCache.Entry> entries = new HashMap<String, TableEntityCache.Entry>();
+
+        /**
+         * Holds the operation context the requests of the group are tracked in.
+         */
+        private final OperationContext opContext = new OperationContext();
+
+        /**
+         * Creates a group of row keys.
+         * 
+         * @param partitionKey
+         *            the PartitionKey value of the entities.
+         * @param rowKeys
+         *            the RowKey values of the entities, in code point order.
+         */
+        KeyGroup(final String partitionKey, final List<String> rowKeys) {
+            this.partitionKey = partitionKey;
+            this.rowKeys = rowKeys;
+        }
+    }
+
+    /**
+     * Executes the specified retrieve operations.
+     * 
+     * @param client
+     *            the client to execute the operations with.
+     * @param tableName
+     *            the name of the table.
+     * @param operations
+     *            the retrieve operations.
+     * @param options
+     *            the request options, or <code>null</code>.
+     * @param opContext
+     *            the operation context, or <code>null</code>.
+     * @return the {@link TableResult} of each operation, in the order of the operations.
+     * @throws StorageException
+     *             if an error occurs accessing the storage service.
+     */
+    static ArrayList<TableResult> execute(final CloudTableClient client, final String tableName,
+            final List<TableOperation> operations, TableRequestOptions options, OperationContext opContext)
+            throws StorageException {
+        Utility.assertNotNullOrEmpty("TableName", tableName);
+        Utility.assertNotNull("operations", operations);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new TableRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(client);
+
+        final LinkedHashMap<String, ArrayList<String>> partitions = new LinkedHashMap<String, ArrayList<String>>();
+        for (final TableOperation operation : operations) {
+            if (!(operation instanceof QueryTableOperation)) {
+                throw new IllegalArgumentException("Only retrieve operations can be executed as a multiple retrieve.");
+            }
+
+            final QueryTableOperation retrieve = (QueryTableOperation) operation;
+            if (retrieve.getRowKey() == null) {
+                throw new IllegalArgumentException("A retrieve operation must specify a row key.");
+            }
+
+            ArrayList<String> rowKeys = partitions.get(retrieve.getPartitionKey());
+            if (rowKeys == null) {
+                rowKeys = new ArrayList<String>();
+                partitions.put(retrieve.getPartitionKey(), rowKeys);
+            }
+            rowKeys.add(retrieve.getRowKey());
+        }
+
+        final ArrayList<KeyGroup> groups = new ArrayList<KeyGroup>();
+        for (final Map.Entry<String, ArrayList<String>> partition : partitions.entrySet()) {
+            final ArrayList<String> rowKeys = partition.getValue();
+            Collections.sort(rowKeys, CODE_POINT_ORDER);
+
+            // Drop duplicate keys; each is retrieved once and materialized for every operation that requests it.
+            int distinct = 0;
+            for (int i = 0; i < rowKeys.size(); i++) {
+                if (distinct == 0 || !rowKeys.get(i).equals(rowKeys.get(distinct - 1))) {
+                    rowKeys.set(distinct++, rowKeys.get(i));
+                }
+            }
+
+            // Split the keys into runs of adjacent keys; a key that is not adjacent to its neighbours is a run of one.
+            int start = 0;
+            for (int end = 1; end <= distinct; end++) {
+                if (end == distinct || end - start == MAX_KEYS_PER_QUERY
+                        || !isAdjacent(rowKeys.get(end - 1), rowKeys.get(end))) {
+                    groups.add(new KeyGroup(partition.getKey(), rowKeys.subList(start, end)));
+                    start = end;
+                }
+            }
+        }
+
+        runGroups(client, tableName, groups, options, opContext);
+
+        final HashMap<String, HashMap<String, TableEntityCache.Entry>> entries =
+                new HashMap<String, HashMap<String, TableEntityCache.Entry>>();
+        for (final KeyGroup group : groups) {
+            HashMap<String, TableEntityCache.Entry> partitionEntries = entries.get(group.partitionKey);
+            if (partitionEntries == null) {
+                partitionEntries = new HashMap<String, TableEntityCache.Entry>();
+                entries.put(group.partitionKey, partitionEntries);
+            }
+            partitionEntries.putAll(group.entries);
+
+            for (final RequestResult result : group.opContext.getRequestResults()) {
+                opContext.appendRequestResult(result);
+            }
+        }
+
+        final TableEntityCache.Entry missing = new TableEntityCache.Entry(null, null, null);
+        final ArrayList<TableResult> results = new ArrayList<TableResult>(operations.size());
+        for (final TableOperation operation : operations) {
+            final QueryTableOperation retrieve = (QueryTableOperation) operation;
+            final TableEntityCache.Entry entry = entries.get(retrieve.getPartitionKey()).get(retrieve.getRowKey());
+            results.add((entry == null ? missing : entry).toResult(retrieve, opContext));
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the entities of the specified groups, concurrently if the request options allow it.
+     * 
+     * @param client
+     *            the client to execute the requests with.
+     * @param tableName
+     *            the name of the table.
+     * @param groups
+     *            the groups to retrieve.
+     * @param options
+     *            the request options.
+     * @param opContext
+     *            the operation context whose event handlers the requests share.
+     * @throws StorageException
+     *             if an error occurs accessing the storage service.
+     */
+    private static void runGroups(final CloudTableClient client, final String tableName,
+            final ArrayList<KeyGroup> groups, final TableRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        final int threadCount = Math.min(options.getConcurrentRequestCount(), groups.size());
+        if (threadCount <= 1) {
+            for (final KeyGroup group : groups) {
+                retrieveGroup(client, tableName, group, options, opContext);
+            }
+            return;
+        }
+
+        final ExecutorService threadExecutor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final CompletionService<Void> completionService = new ExecutorCompletionService<Void>(threadExecutor);
+            for (final KeyGroup group : groups) {
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws StorageException {
+                        retrieveGroup(client, tableName, group, options, opContext);
+                        return null;
+                    }
+                });
+            }
+
+            for (int i = 0; i < groups.size(); i++) {
+                try {
+                    completionService.take().get();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw Utility.generateNewUnexpectedStorageException(e);
+                }
+                catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof StorageException) {
+                        throw (StorageException) cause;
+                    }
+                    else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+
+                    throw Utility.generateNewUnexpectedStorageException((Exception) cause);
+                }
+            }
+        }
+        finally {
+            threadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Retrieves the entities of the specified group, with a point request for a single key and a query otherwise.
+     * 
+     * @param client
+     *            the client to execute the requests with.
+     * @param tableName
+     *            the name of the table.
+     * @param group
+     *            the group to retrieve.
+     * @param options
+     *            the request options.
+     * @param opContext
+     *            the operation context whose event handlers the requests share.
+     * @throws StorageException
+     *             if an error occurs accessing the storage service.
+     */
+    private static void retrieveGroup(final CloudTableClient client, final String tableName, final KeyGroup group,
+            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+        group.opContext.setSendingRequestEventHandler(opContext.getSendingRequestEventHandler());
+        group.opContext.setResponseReceivedEventHandler(opContext.getResponseReceivedEventHandler());
+
+        final EntityResolver<Void> resolver = new EntityResolver<Void>() {
+            @Override
+            public Void resolve(final String partitionKey, final String rowKey, final Date timeStamp,
+                    final HashMap<String, EntityProperty> properties, final String etag) {
+                group.entries.put(rowKey, new TableEntityCache.Entry(timeStamp, etag, properties));
+                return null;
+            }
+        };
+
+        if (group.rowKeys.size() == 1) {
+            final String rowKey = group.rowKeys.get(0);
+            final QueryTableOperation retrieve = new QueryTableOperation(group.partitionKey, rowKey);
+            retrieve.setResolver(resolver);
+
+            // The cache, when enabled, materializes the entity through the resolver itself.
+            retrieve.execute(client, tableName, options, group.opContext);
+            return;
+        }
+
+        final TableQuery<TableServiceEntity> query = TableQuery.from(tableName, TableServiceEntity.class).where(
+                getFilter(group.partitionKey, group.rowKeys));
+        ResultContinuation continuationToken = null;
+        try {
+            do {
+                final ResultSegment<Void> segment = client.executeSegmented(query, resolver, continuationToken,
+                        options, group.opContext);
+                continuationToken = segment.getContinuationToken();
+            } while (continuationToken != null);
+        }
+        catch (final IOException e) {
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+        catch (final URISyntaxException e) {
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+    }
+
+    /**
+     * Returns the filter of a query that retrieves the specified entities of one partition.
+     * 
+     * @param partitionKey
+     *            the PartitionKey value of the entities.
+     * @param rowKeys
+     *            the RowKey values of the entities, in code point order.
+     * @return the filter.
+     */
+    static String getFilter(final String partitionKey, final List<String> rowKeys) {
+        final String rowKeyRange = TableQuery.combineFilters(
+                TableQuery.generateFilterCondition(TableConstants.ROW_KEY, QueryComparisons.GREATER_THAN_OR_EQUAL,
+                        escape(rowKeys.get(0))),
+                Operators.AND,
+                TableQuery.generateFilterCondition(TableConstants.ROW_KEY, QueryComparisons.LESS_THAN_OR_EQUAL,
+                        escape(rowKeys.get(rowKeys.size() - 1))));
+
+        String rowKeyList = null;
+        for (final String rowKey : rowKeys) {
+            final String condition = TableQuery.generateFilterCondition(TableConstants.ROW_KEY,
+                    QueryComparisons.EQUAL, escape(rowKey));
+            rowKeyList = rowKeyList == null ? condition : String.format("%s %s %s", rowKeyList, Operators.OR,
+                    condition);
+        }
+
+        return TableQuery.combineFilters(TableQuery.generateFilterCondition(TableConstants.PARTITION_KEY,
+                QueryComparisons.EQUAL, escape(partitionKey)), Operators.AND, TableQuery.combineFilters(rowKeyRange,
+                Operators.AND, rowKeyList));
+    }
+
+    /**
+     * Returns whether two row keys are close enough to be retrieved by the same query: they must only differ in their
+     * last character, and those characters must be at most {@link #MAX_ADJACENT_KEY_GAP} code points apart, so that
+     * the range between them is unlikely to hold many entities that were not requested.
+     * 
+     * @param left
+     *            the lower row key.
+     * @param right
+     *            the higher row key.
+     * @return <code>true</code> if the keys are adjacent.
+     */
+    static boolean isAdjacent(final String left, final String right) {
+        if (left.length() == 0 || right.length() == 0) {
+            return false;
+        }
+
+        final int prefixLength = left.offsetByCodePoints(left.length(), -1);
+        if (prefixLength != right.offsetByCodePoints(right.length(), -1)
+                || !left.regionMatches(0, right, 0, prefixLength)) {
+            return false;
+        }
+
+        return Math.abs(right.codePointAt(prefixLength) - left.codePointAt(prefixLength)) <= MAX_ADJACENT_KEY_GAP;
+    }
+
+    /**
+     * Escapes the single quotes of a string value of a filter.
+     * 
+     * @param value
+     *            the value to escape.
+     * @return the escaped value.
+     */
+    private static String escape(final String value) {
+        return value.replace("'", "''");
+    }
+
+    /**
+     * Private Default Constructor.
+     */
+    private MultiRetrieveOperation() {
+        // No op
+    }
+}
@@ -108,6 +108,80 @@ public class QueryTableOperation extends TableOperation {
         return this.clazzType;
     }
 
+    /**
+     * Reserved for internal use. Executes this retrieve operation on the specified table, through the entity cache of
+     * the client if it is enabled.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint, storage account
+     *            credentials, and any additional query parameters.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A {@link TableResult} containing the results of executing the operation.
+     * 
+     * @throws StorageException
+     *             if an error occurs in the storage operation.
+     */
+    @Override
+    protected TableResult execute(final CloudTableClient client, final String tableName, TableRequestOptions options,
+            OperationContext opContext) throws StorageException {
+        final TableEntityCache cache = client.getEntityCache();
+        if (cache == null || TableConstants.TABLES_SERVICE_TABLES_NAME.equals(tableName) || this.rowKey == null) {
+            return super.execute(client, tableName, options, opContext);
+        }
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new TableRequestOptions();
+        }
+
+        Utility.assertNotNullOrEmpty("TableName", tableName);
+        if (this.getClazzType() != null) {
+            Utility.checkNullaryCtor(this.getClazzType());
+        }
+        else {
+            Utility.assertNotNull("Query requires a valid class type or resolver.", this.getResolver());
+        }
+
+        return cache.retrieve(this, client, tableName, options, opContext);
+    }
+
+    /**
+     * Reserved for internal use. Executes this retrieve operation on the specified table without going through the
+     * entity cache of the client.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint, storage account
+     *            credentials, and any additional query parameters.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A {@link TableResult} containing the results of executing the operation.
+     * 
+     * @throws StorageException
+     *             if an error occurs in the storage operation.
+     */
+    TableResult executeUncached(final CloudTableClient client, final String tableName,
+            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+        return super.execute(client, tableName, options, opContext);
+    }
+
     /**
      * Reserved for internal use. Parses the query table operation response into a {@link TableResult} to return.
      * 
@@ -143,10 +217,10 @@ public class QueryTableOperation extends TableOperation {
     }
 
     /**
-     * Reserved for internal use. Performs a retrieve operation on the specified table, using the specified
+     * Reserved for internal use. Creates a retrieve operation on the specified table, using the specified
      * {@link TableRequestOptions} and {@link OperationContext}.
      * <p>
-     * This method will invoke the Storage Service REST API to execute this table operation, using the Table service
+     * The operation will invoke the Storage Service REST API to execute this table operation, using the Table service
      * endpoint and storage account credentials in the {@link CloudTableClient} object.
      * 
      * @param client
@@ -161,13 +235,14 @@ public class QueryTableOperation extends TableOperation {
      *            An {@link OperationContext} object for tracking the current operation.
      * 
      * @return
-     *         A {@link TableResult} containing the results of executing the query operation.
+     *         A {@link StorageOperation} that executes the operation when passed to the {@link ExecutionEngine}.
      * 
      * @throws StorageException
      *             if an error occurs in the storage operation.
      */
-    protected TableResult performRetrieve(final CloudTableClient client, final String tableName,
-            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+    protected StorageOperation<CloudTableClient, TableOperation, TableResult> retrieveImpl(
+            final CloudTableClient client, final String tableName, final TableRequestOptions options,
+            final OperationContext opContext) throws StorageException {
         final boolean isTableEntry = TableConstants.TABLES_SERVICE_TABLES_NAME.equals(tableName);
         if (this.getClazzType() != null) {
             Utility.checkNullaryCtor(this.getClazzType());
@@ -176,11 +251,12 @@ public class QueryTableOperation extends TableOperation {
             Utility.assertNotNull("Query requires a valid class type or resolver.", this.getResolver());
         }
 
-        final StorageOperation<CloudTableClient, QueryTableOperation, TableResult> impl = new StorageOperation<CloudTableClient, QueryTableOperation, TableResult>(
+        final StorageOperation<CloudTableClient, TableOperation, TableResult> impl = new StorageOperation<CloudTableClient, TableOperation, TableResult>(
                 options) {
             @Override
-            public TableResult execute(final CloudTableClient client, final QueryTableOperation operation,
+            public TableResult execute(final CloudTableClient client, final TableOperation tableOperation,
                     final OperationContext opContext) throws Exception {
+                final QueryTableOperation operation = (QueryTableOperation) tableOperation;
 
                 final HttpURLConnection request = TableRequest.query(client.getTransformedEndPoint(opContext),
                         tableName, generateRequestIdentity(isTableEntry, operation.getPartitionKey(), false),
@@ -219,7 +295,7 @@ public class QueryTableOperation extends TableOperation {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(client, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
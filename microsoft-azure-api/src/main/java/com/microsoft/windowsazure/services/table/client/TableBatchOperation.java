@@ -383,6 +383,61 @@ public class TableBatchOperation extends ArrayList<TableOperation> {
             throw new IllegalArgumentException("Cannot Execute an empty batch operation");
         }
 
+        final TableEntityCache cache = client.getEntityCache();
+        if (cache == null) {
+            return this.executeCore(client, tableName, options, opContext);
+        }
+
+        // Invalidate before and after, so that a concurrent retrieve cannot cache an entity as it was before the
+        // batch. A failed batch may still have been applied by the service.
+        this.invalidate(cache, tableName);
+        try {
+            return this.executeCore(client, tableName, options, opContext);
+        }
+        finally {
+            this.invalidate(cache, tableName);
+        }
+    }
+
+    /**
+     * Reserved for internal use. Removes the entities modified by the operations of this batch from the specified
+     * entity cache.
+     * 
+     * @param cache
+     *            The {@link TableEntityCache} to remove the entities from.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     */
+    private void invalidate(final TableEntityCache cache, final String tableName) {
+        for (final TableOperation operation : this) {
+            cache.invalidate(tableName, operation);
+        }
+    }
+
+    /**
+     * Reserved for internal use. Executes this batch operation on the specified table, without regard to the entity
+     * cache of the client.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint and storage account
+     *            credentials to use.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         An <code>ArrayList</code> of {@link TableResult} containing the results of executing the operation.
+     * 
+     * @throws StorageException
+     *             if an error occurs in the storage operation.
+     */
+    private ArrayList<TableResult> executeCore(final CloudTableClient client, final String tableName,
+            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+
         final StorageOperation<CloudTableClient, TableBatchOperation, ArrayList<TableResult>> impl = new StorageOperation<CloudTableClient, TableBatchOperation, ArrayList<TableResult>>(
                 options) {
             @Override
@@ -396,8 +451,8 @@ public class TableBatchOperation extends ArrayList<TableOperation> {
 
                 client.getCredentials().signRequestLite(request, -1L, opContext);
 
-                MimeHelper.writeBatchToStream(request.getOutputStream(), tableName, batch, batchID, changeSet,
-                        opContext);
+                MimeHelper.writeBatchToStream(ExecutionEngine.getOutputStream(request, opContext), tableName, batch,
+                        batchID, changeSet, opContext);
 
                 final InputStream streamRef = ExecutionEngine.getInputStream(request, opContext);
                 ArrayList<MimePart> responseParts = null;
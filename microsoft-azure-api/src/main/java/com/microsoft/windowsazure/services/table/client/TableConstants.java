@@ -64,6 +64,16 @@ public final class TableConstants {
         public static final String MAX_DATA_SERVICE_VERSION_VALUE = "2.0;NetFx";
     }
 
+    /**
+     * Default number of requests sent concurrently by an operation that retrieves multiple entities.
+     */
+    public static final int DEFAULT_CONCURRENT_REQUEST_COUNT = 4;
+
+    /**
+     * The maximum number of entities the service returns in response to one query request.
+     */
+    public static final int MAX_TAKE_COUNT = 1000;
+
     /**
      * Default client side timeout, in milliseconds, for table clients.
      */
@@ -0,0 +1,469 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.client;
+
+import java.net.HttpURLConnection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+
+/**
+ * Represents a bounded, least-recently-used read-through cache of table entities retrieved by partition key and row
+ * key.
+ * <p>
+ * When the cache is enabled on a {@link CloudTableClient}, retrieve operations executed synchronously through the
+ * client return a cached copy of the entity, including its ETag, during the time to live of the entry. Concurrent
+ * retrieves of an entity that is not cached are coalesced into a single request to the service, whose result is
+ * shared by all of the callers. Entities that do not exist are cached as well, so that repeated lookups of a missing
+ * entity do not reach the service.
+ * <p>
+ * Entries are invalidated when an insert, update, merge or delete operation on the entity is executed through the same
+ * client, individually or in a batch. Changes made through other clients are only observed once the entry expires.
+ * Asynchronous retrieve operations are not served from the cache.
+ * 
+ * @see CloudTableClient#enableEntityCache(int, long)
+ */
+public final class TableEntityCache {
+    /**
+     * Represents the cached result of retrieving one entity.
+     */
+    static final class Entry {
+        /**
+         * Holds the entity's timestamp.
+         */
+        private final Date timestamp;
+
+        /**
+         * Holds the entity's ETag.
+         */
+        private final String etag;
+
+        /**
+         * Holds the entity's properties, or <code>null</code> if the entity does not exist.
+         */
+        private final HashMap<String, EntityProperty> properties;
+
+        /**
+         * Holds the time, in nanoseconds, at which the entry expires.
+         */
+        private long expiryNanos;
+
+        /**
+         * Creates an entry for an entity.
+         * 
+         * @param timestamp
+         *            the entity's timestamp.
+         * @param etag
+         *            the entity's ETag.
+         * @param properties
+         *            the entity's properties, or <code>null</code> if the entity does not exist.
+         */
+        Entry(final Date timestamp, final String etag, final HashMap<String, EntityProperty> properties) {
+            this.timestamp = timestamp;
+            this.etag = etag;
+            this.properties = copyProperties(properties);
+        }
+
+        /**
+         * @return <code>true</code> if the entry has not yet expired.
+         */
+        boolean isFresh() {
+            return System.nanoTime() - this.expiryNanos < 0;
+        }
+
+        /**
+         * Creates the result of the specified retrieve operation from the cached entity. Each call materializes a new
+         * entity, so that callers never share mutable objects.
+         * 
+         * @param operation
+         *            the retrieve operation whose class type or resolver to use.
+         * @param opContext
+         *            an {@link OperationContext} object for the current operation.
+         * @return the {@link TableResult} of the operation.
+         * @throws StorageException
+         *             if the entity could not be materialized.
+         */
+        TableResult toResult(final QueryTableOperation operation, final OperationContext opContext)
+                throws StorageException {
+            if (this.properties == null) {
+                return new TableResult(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+
+            final TableResult res = new TableResult(HttpURLConnection.HTTP_OK);
+            res.setEtag(this.etag);
+            res.setProperties(copyProperties(this.properties));
+
+            final Date timestampCopy = this.timestamp == null ? null : new Date(this.timestamp.getTime());
+            try {
+                if (operation.getResolver() != null) {
+                    res.setResult(operation.getResolver().resolve(operation.getPartitionKey(),
+                            operation.getRowKey(), timestampCopy, res.getProperties(), this.etag));
+                }
+                else {
+                    final TableEntity entity = operation.getClazzType().newInstance();
+                    entity.setEtag(this.etag);
+                    entity.setPartitionKey(operation.getPartitionKey());
+                    entity.setRowKey(operation.getRowKey());
+                    entity.setTimestamp(timestampCopy);
+                    entity.readEntity(res.getProperties(), opContext);
+                    res.setResult(entity);
+                }
+            }
+            catch (final StorageException e) {
+                throw e;
+            }
+            catch (final Exception e) {
+                throw Utility.generateNewUnexpectedStorageException(e);
+            }
+
+            return res;
+        }
+
+        /**
+         * Returns a deep copy of the specified properties.
+         * 
+         * @param properties
+         *            the properties to copy, or <code>null</code>.
+         * @return the copy, or <code>null</code>.
+         */
+        private static HashMap<String, EntityProperty> copyProperties(final HashMap<String, EntityProperty> properties) {
+            if (properties == null) {
+                return null;
+            }
+
+            final HashMap<String, EntityProperty> copy = new HashMap<String, EntityProperty>(properties.size() * 2);
+            for (final Map.Entry<String, EntityProperty> property : properties.entrySet()) {
+                copy.put(property.getKey(), new EntityProperty(property.getValue()));
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Represents a request to the service that concurrent retrieves of the same entity wait for.
+     */
+    private static final class Flight {
+        /**
+         * Released when the request completes.
+         */
+        private final CountDownLatch completion = new CountDownLatch(1);
+
+        /**
+         * Holds the retrieved entry.
+         */
+        private Entry entry;
+
+        /**
+         * Holds the exception that failed the request.
+         */
+        private StorageException exception;
+
+        /**
+         * Indicates whether the entity was invalidated while the request was in flight, so that its result must not be
+         * cached.
+         */
+        private boolean invalidated;
+    }
+
+    /**
+     * Projects a retrieved entity into a cache entry.
+     */
+    private static final EntityResolver<Entry> ENTRY_RESOLVER = new EntityResolver<Entry>() {
+        @Override
+        public Entry resolve(final String partitionKey, final String rowKey, final Date timeStamp,
+                final HashMap<String, EntityProperty> properties, final String etag) {
+            return new Entry(timeStamp, etag, properties);
+        }
+    };
+
+    /**
+     * Holds the maximum number of entries to keep.
+     */
+    private final int maxEntries;
+
+    /**
+     * Holds the time to live of an entry, in milliseconds.
+     */
+    private final long timeToLiveInMs;
+
+    /**
+     * Holds the entries, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Holds the requests in flight, by key.
+     */
+    private final HashMap<String, Flight> flights = new HashMap<String, Flight>();
+
+    /**
+     * Holds the number of retrieves served from a cached entry.
+     */
+    private long hitCount;
+
+    /**
+     * Holds the number of retrieves that sent a request to the service.
+     */
+    private long missCount;
+
+    /**
+     * Holds the number of retrieves that waited for the request of a concurrent retrieve.
+     */
+    private long coalescedCount;
+
+    /**
+     * Creates an instance of the <code>TableEntityCache</code> class.
+     * 
+     * @param maxEntries
+     *            the maximum number of entries to keep.
+     * @param timeToLiveInMs
+     *            the time, in milliseconds, during which an entry is used.
+     */
+    TableEntityCache(final int maxEntries, final long timeToLiveInMs) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries");
+        }
+
+        if (timeToLiveInMs < 0) {
+            throw new IllegalArgumentException("timeToLiveInMs");
+        }
+
+        this.maxEntries = maxEntries;
+        this.timeToLiveInMs = timeToLiveInMs;
+        this.entries = new LinkedHashMap<String, TableEntityCache.Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, TableEntityCache.Entry> eldest) {
+                return this.size() > TableEntityCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Removes all entries from the cache. Requests in flight are not cached when they complete.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        for (final Flight flight : this.flights.values()) {
+            flight.invalidated = true;
+        }
+        this.flights.clear();
+    }
+
+    /**
+     * @return the number of retrieves that waited for the request of a concurrent retrieve of the same entity.
+     */
+    public synchronized long getCoalescedCount() {
+        return this.coalescedCount;
+    }
+
+    /**
+     * @return the number of retrieves served from a cached entry.
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * @return the maximum number of entries to keep.
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * @return the number of retrieves that sent a request to the service.
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return the time, in milliseconds, during which an entry is used.
+     */
+    public long getTimeToLiveInMs() {
+        return this.timeToLiveInMs;
+    }
+
+    /**
+     * Removes the entry of the specified entity, so that it is next retrieved from the service.
+     * 
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param partitionKey
+     *            A <code>String</code> containing the PartitionKey value of the entity.
+     * @param rowKey
+     *            A <code>String</code> containing the RowKey value of the entity.
+     */
+    public void invalidate(final String tableName, final String partitionKey, final String rowKey) {
+        this.invalidate(getKey(tableName, partitionKey, rowKey));
+    }
+
+    /**
+     * @return the number of entries in the cache.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes the entry of the entity targeted by the specified operation, if it modifies an entity.
+     * 
+     * @param tableName
+     *            the name of the table.
+     * @param operation
+     *            the operation.
+     */
+    void invalidate(final String tableName, final TableOperation operation) {
+        if (operation.getOperationType() == TableOperationType.RETRIEVE || operation.getEntity() == null) {
+            return;
+        }
+
+        this.invalidate(getKey(tableName, operation.getEntity().getPartitionKey(), operation.getEntity().getRowKey()));
+    }
+
+    /**
+     * Executes the specified retrieve operation, from the cache if it holds a fresh entry for the entity, otherwise
+     * by sending a request or waiting for the request of a concurrent retrieve of the same entity.
+     * 
+     * @param operation
+     *            the retrieve operation.
+     * @param client
+     *            the client to execute the operation with.
+     * @param tableName
+     *            the name of the table.
+     * @param options
+     *            the request options.
+     * @param opContext
+     *            the operation context.
+     * @return the {@link TableResult} of the operation.
+     * @throws StorageException
+     *             if an error occurs accessing the storage service.
+     */
+    TableResult retrieve(final QueryTableOperation operation, final CloudTableClient client, final String tableName,
+            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+        final String key = getKey(tableName, operation.getPartitionKey(), operation.getRowKey());
+
+        Entry entry;
+        Flight flight;
+        boolean leader = false;
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry != null && entry.isFresh()) {
+                this.hitCount++;
+                flight = null;
+            }
+            else {
+                flight = this.flights.get(key);
+                if (flight == null) {
+                    flight = new Flight();
+                    this.flights.put(key, flight);
+                    leader = true;
+                    this.missCount++;
+                }
+                else {
+                    this.coalescedCount++;
+                }
+            }
+        }
+
+        if (flight == null) {
+            return entry.toResult(operation, opContext);
+        }
+
+        if (leader) {
+            try {
+                final QueryTableOperation request = new QueryTableOperation(operation.getPartitionKey(),
+                        operation.getRowKey());
+                request.setResolver(ENTRY_RESOLVER);
+
+                final TableResult result = request.executeUncached(client, tableName, options, opContext);
+                entry = result.getHttpStatusCode() == HttpURLConnection.HTTP_NOT_FOUND ? new Entry(null, null, null)
+                        : (Entry) result.getResult();
+                entry.expiryNanos = System.nanoTime() + this.timeToLiveInMs * 1000000L;
+            }
+            catch (final StorageException e) {
+                flight.exception = e;
+            }
+            catch (final RuntimeException e) {
+                flight.exception = Utility.generateNewUnexpectedStorageException(e);
+            }
+            finally {
+                synchronized (this) {
+                    flight.entry = entry;
+                    if (this.flights.get(key) == flight) {
+                        this.flights.remove(key);
+                    }
+                    if (flight.exception == null && !flight.invalidated && this.timeToLiveInMs > 0) {
+                        this.entries.put(key, entry);
+                    }
+                }
+                flight.completion.countDown();
+            }
+        }
+        else {
+            try {
+                flight.completion.await();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Utility.generateNewUnexpectedStorageException(e);
+            }
+        }
+
+        if (flight.exception != null) {
+            throw flight.exception;
+        }
+
+        return flight.entry.toResult(operation, opContext);
+    }
+
+    /**
+     * Removes the entry with the specified key, and prevents requests in flight for it from being cached.
+     * 
+     * @param key
+     *            the key of the entry.
+     */
+    private synchronized void invalidate(final String key) {
+        this.entries.remove(key);
+        final Flight flight = this.flights.remove(key);
+        if (flight != null) {
+            flight.invalidated = true;
+        }
+    }
+
+    /**
+     * Returns the key under which an entity is cached. Table names are not case-sensitive.
+     * 
+     * @param tableName
+     *            the name of the table.
+     * @param partitionKey
+     *            the PartitionKey value of the entity.
+     * @param rowKey
+     *            the RowKey value of the entity.
+     * @return the key.
+     */
+    private static String getKey(final String tableName, final String partitionKey, final String rowKey) {
+        return tableName.toLowerCase(Locale.US) + '\n' + partitionKey + '\n' + rowKey;
+    }
+}
@@ -24,7 +24,9 @@ import javax.xml.stream.XMLStreamReader;
 
 import com.microsoft.windowsazure.services.core.storage.Constants;
 import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
 import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
 import com.microsoft.windowsazure.services.core.storage.utils.Utility;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.ExecutionEngine;
 import com.microsoft.windowsazure.services.core.storage.utils.implementation.StorageOperation;
@@ -214,10 +216,10 @@ public class TableOperation {
     }
 
     /**
-     * Reserved for internal use. Performs a delete operation on the specified table, using the specified
+     * Reserved for internal use. Creates a delete operation on the specified table, using the specified
      * {@link TableRequestOptions} and {@link OperationContext}.
      * <p>
-     * This method will invoke the <a href="http://msdn.microsoft.com/en-us/library/windowsazure/dd135727.aspx">Delete
+     * The operation will invoke the <a href="http://msdn.microsoft.com/en-us/library/windowsazure/dd135727.aspx">Delete
      * Entity</a> REST API to execute this table operation, using the Table service endpoint and storage account
      * credentials in the {@link CloudTableClient} object.
      * 
@@ -233,13 +235,14 @@ public class TableOperation {
      *            An {@link OperationContext} object for tracking the current operation.
      * 
      * @return
-     *         A {@link TableResult} containing the results of executing the operation.
+     *         A {@link StorageOperation} that executes the operation when passed to the {@link ExecutionEngine}.
      * 
      * @throws StorageException
      *             if an error occurs in the storage operation.
      */
-    private TableResult performDelete(final CloudTableClient client, final String tableName,
-            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+    private StorageOperation<CloudTableClient, TableOperation, TableResult> deleteImpl(final CloudTableClient client,
+            final String tableName, final TableRequestOptions options, final OperationContext opContext)
+            throws StorageException {
         final boolean isTableEntry = TableConstants.TABLES_SERVICE_TABLES_NAME.equals(tableName);
         final String tableIdentity = isTableEntry ? this.getEntity().writeEntity(opContext)
                 .get(TableConstants.TABLE_NAME).getValueAsString() : null;
@@ -279,14 +282,14 @@ public class TableOperation {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(client, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
-     * Reserved for internal use. Performs an insert operation on the specified table, using the specified
+     * Reserved for internal use. Creates an insert operation on the specified table, using the specified
      * {@link TableRequestOptions} and {@link OperationContext}.
      * <p>
-     * This method will invoke the Insert Entity REST API to execute this table operation, using the Table service
+     * The operation will invoke the Insert Entity REST API to execute this table operation, using the Table service
      * endpoint and storage account credentials in the {@link CloudTableClient} object.
      * 
      * @param client
@@ -301,13 +304,14 @@ public class TableOperation {
      *            An {@link OperationContext} object for tracking the current operation.
      * 
      * @return
-     *         A {@link TableResult} containing the results of executing the operation.
+     *         A {@link StorageOperation} that executes the operation when passed to the {@link ExecutionEngine}.
      * 
      * @throws StorageException
      *             if an error occurs in the storage operation.
      */
-    private TableResult performInsert(final CloudTableClient client, final String tableName,
-            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+    private StorageOperation<CloudTableClient, TableOperation, TableResult> insertImpl(final CloudTableClient client,
+            final String tableName, final TableRequestOptions options, final OperationContext opContext)
+            throws StorageException {
         final boolean isTableEntry = TableConstants.TABLES_SERVICE_TABLES_NAME.equals(tableName);
         final String tableIdentity = isTableEntry ? this.getEntity().writeEntity(opContext)
                 .get(TableConstants.TABLE_NAME).getValueAsString() : null;
@@ -330,8 +334,8 @@ public class TableOperation {
 
                 client.getCredentials().signRequestLite(request, -1L, opContext);
 
-                AtomPubParser.writeSingleEntityToStream(operation.getEntity(), isTableEntry, request.getOutputStream(),
-                        opContext);
+                AtomPubParser.writeSingleEntityToStream(operation.getEntity(), isTableEntry,
+                        ExecutionEngine.getOutputStream(request, opContext), opContext);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
                 if (operation.opType == TableOperationType.INSERT) {
@@ -371,14 +375,14 @@ public class TableOperation {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(client, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
-     * Reserved for internal use. Perform a merge operation on the specified table, using the specified
+     * Reserved for internal use. Creates a merge operation on the specified table, using the specified
      * {@link TableRequestOptions} and {@link OperationContext}.
      * <p>
-     * This method will invoke the Merge Entity REST API to execute this table operation, using the Table service
+     * The operation will invoke the Merge Entity REST API to execute this table operation, using the Table service
      * endpoint and storage account credentials in the {@link CloudTableClient} object.
      * 
      * @param client
@@ -393,13 +397,14 @@ public class TableOperation {
      *            An {@link OperationContext} object for tracking the current operation.
      * 
      * @return
-     *         A {@link TableResult} containing the results of executing the operation.
+     *         A {@link StorageOperation} that executes the operation when passed to the {@link ExecutionEngine}.
      * 
      * @throws StorageException
      *             if an error occurs in the storage operation.
      */
-    private TableResult performMerge(final CloudTableClient client, final String tableName,
-            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+    private StorageOperation<CloudTableClient, TableOperation, TableResult> mergeImpl(final CloudTableClient client,
+            final String tableName, final TableRequestOptions options, final OperationContext opContext)
+            throws StorageException {
         Utility.assertNotNullOrEmpty("Merge requires a valid ETag", this.getEntity().getEtag());
         Utility.assertNotNullOrEmpty("Merge requires a valid PartitionKey", this.getEntity().getPartitionKey());
         Utility.assertNotNullOrEmpty("Merge requires a valid RowKey", this.getEntity().getRowKey());
@@ -416,8 +421,8 @@ public class TableOperation {
 
                 client.getCredentials().signRequestLite(request, -1L, opContext);
 
-                AtomPubParser.writeSingleEntityToStream(operation.getEntity(), false, request.getOutputStream(),
-                        opContext);
+                AtomPubParser.writeSingleEntityToStream(operation.getEntity(), false,
+                        ExecutionEngine.getOutputStream(request, opContext), opContext);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
@@ -438,14 +443,14 @@ public class TableOperation {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(client, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
-     * Reserved for internal use. Perform an update operation on the specified table, using the specified
+     * Reserved for internal use. Creates an update operation on the specified table, using the specified
      * {@link TableRequestOptions} and {@link OperationContext}.
      * <p>
-     * This method will invoke the Storage Service REST API to execute this table operation, using the Table service
+     * The operation will invoke the Storage Service REST API to execute this table operation, using the Table service
      * endpoint and storage account credentials in the {@link CloudTableClient} object.
      * 
      * @param client
@@ -460,13 +465,14 @@ public class TableOperation {
      *            An {@link OperationContext} object for tracking the current operation.
      * 
      * @return
-     *         A {@link TableResult} containing the results of executing the operation.
+     *         A {@link StorageOperation} that executes the operation when passed to the {@link ExecutionEngine}.
      * 
      * @throws StorageException
      *             if an error occurs in the storage operation.
      */
-    private TableResult performUpdate(final CloudTableClient client, final String tableName,
-            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+    private StorageOperation<CloudTableClient, TableOperation, TableResult> updateImpl(final CloudTableClient client,
+            final String tableName, final TableRequestOptions options, final OperationContext opContext)
+            throws StorageException {
         Utility.assertNotNullOrEmpty("Update requires a valid ETag", this.getEntity().getEtag());
         Utility.assertNotNullOrEmpty("Update requires a valid PartitionKey", this.getEntity().getPartitionKey());
         Utility.assertNotNullOrEmpty("Update requires a valid RowKey", this.getEntity().getRowKey());
@@ -482,8 +488,8 @@ public class TableOperation {
 
                 client.getCredentials().signRequestLite(request, -1L, opContext);
 
-                AtomPubParser.writeSingleEntityToStream(operation.getEntity(), false, request.getOutputStream(),
-                        opContext);
+                AtomPubParser.writeSingleEntityToStream(operation.getEntity(), false,
+                        ExecutionEngine.getOutputStream(request, opContext), opContext);
 
                 this.setResult(ExecutionEngine.processRequest(request, opContext));
 
@@ -504,7 +510,7 @@ public class TableOperation {
             }
         };
 
-        return ExecutionEngine.executeWithRetry(client, this, impl, options.getRetryPolicyFactory(), opContext);
+        return impl;
     }
 
     /**
@@ -545,22 +551,120 @@ public class TableOperation {
         options.applyDefaults(client);
         Utility.assertNotNullOrEmpty("TableName", tableName);
 
+        final TableEntityCache cache = client.getEntityCache();
+        if (cache == null) {
+            return ExecutionEngine.executeWithRetry(client, this, this.generateImpl(client, tableName, options,
+                    opContext), options.getRetryPolicyFactory(), opContext);
+        }
+
+        // Invalidate before and after, so that a concurrent retrieve cannot cache the entity as it was before the
+        // change. A failed operation may still have been applied by the service.
+        cache.invalidate(tableName, this);
+        try {
+            return ExecutionEngine.executeWithRetry(client, this, this.generateImpl(client, tableName, options,
+                    opContext), options.getRetryPolicyFactory(), opContext);
+        }
+        finally {
+            cache.invalidate(tableName, this);
+        }
+    }
+
+    /**
+     * Reserved for internal use. Execute this table operation asynchronously on the specified table, using the
+     * specified {@link TableRequestOptions} and {@link OperationContext}. Retries are scheduled on a timer rather than
+     * blocking a thread during their back-off interval.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint, storage account
+     *            credentials, and any additional query parameters.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A {@link StorageFuture} that completes with the {@link TableResult} of executing the operation.
+     * 
+     * @throws StorageException
+     *             if the operation could not be prepared.
+     */
+    protected StorageFuture<TableResult> executeAsync(final CloudTableClient client, final String tableName,
+            TableRequestOptions options, OperationContext opContext) throws StorageException {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        if (options == null) {
+            options = new TableRequestOptions();
+        }
+
+        opContext.initialize();
+        options.applyDefaults(client);
+        Utility.assertNotNullOrEmpty("TableName", tableName);
+
+        final TableEntityCache cache = client.getEntityCache();
+        if (cache != null) {
+            cache.invalidate(tableName, this);
+        }
+
+        final StorageFuture<TableResult> future = ExecutionEngine.executeWithRetryAsync(client, this,
+                this.generateImpl(client, tableName, options, opContext), options.getRetryPolicyFactory(), opContext);
+
+        if (cache != null) {
+            future.addCompletionListener(new StorageEvent<StorageFuture<TableResult>>() {
+                @Override
+                public void eventOccurred(final StorageFuture<TableResult> eventArg) {
+                    cache.invalidate(tableName, TableOperation.this);
+                }
+            });
+        }
+
+        return future;
+    }
+
+    /**
+     * Reserved for internal use. Creates the storage operation that executes this table operation, based on its
+     * operation type.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint, storage account
+     *            credentials, and any additional query parameters.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A {@link StorageOperation} that executes the operation when passed to the {@link ExecutionEngine}.
+     * 
+     * @throws StorageException
+     *             if an error occurs preparing the operation.
+     */
+    private StorageOperation<CloudTableClient, TableOperation, TableResult> generateImpl(final CloudTableClient client,
+            final String tableName, final TableRequestOptions options, final OperationContext opContext)
+            throws StorageException {
         if (this.getOperationType() == TableOperationType.INSERT
                 || this.getOperationType() == TableOperationType.INSERT_OR_MERGE
                 || this.getOperationType() == TableOperationType.INSERT_OR_REPLACE) {
-            return this.performInsert(client, tableName, options, opContext);
+            return this.insertImpl(client, tableName, options, opContext);
         }
         else if (this.getOperationType() == TableOperationType.DELETE) {
-            return this.performDelete(client, tableName, options, opContext);
+            return this.deleteImpl(client, tableName, options, opContext);
         }
         else if (this.getOperationType() == TableOperationType.MERGE) {
-            return this.performMerge(client, tableName, options, opContext);
+            return this.mergeImpl(client, tableName, options, opContext);
         }
         else if (this.getOperationType() == TableOperationType.REPLACE) {
-            return this.performUpdate(client, tableName, options, opContext);
+            return this.updateImpl(client, tableName, options, opContext);
         }
         else if (this.getOperationType() == TableOperationType.RETRIEVE) {
-            return ((QueryTableOperation) this).performRetrieve(client, tableName, options, opContext);
+            return ((QueryTableOperation) this).retrieveImpl(client, tableName, options, opContext);
         }
         else {
             throw new IllegalArgumentException("Unknown table operation");
@@ -441,6 +441,7 @@ public class TableQuery<T extends TableEntity> {
     private String sourceTableName = null;
     private String[] columns = null;
     private Integer takeCount;
+    private Integer limit;
     private String filterString = null;
 
     /**
@@ -545,6 +546,19 @@ public class TableQuery<T extends TableEntity> {
         return this.takeCount;
     }
 
+    /**
+     * Gets the maximum total number of entities the query returns when it is executed lazily, across all of the
+     * requests made to the service. The number of entities requested in each request is bounded by the take count
+     * and by the number of entities that remain under this limit.
+     * 
+     * @return
+     *         The maximum total number of entities for the table query to return, or <code>null</code> if the total
+     *         is not limited.
+     */
+    public Integer getLimit() {
+        return this.limit;
+    }
+
     /**
      * Defines the property names of the table entity properties to return when the table query is executed. The
      * <code>select</code> clause is optional on a table query, used to limit the table properties returned from the
@@ -656,6 +670,24 @@ public class TableQuery<T extends TableEntity> {
         this.takeCount = takeCount;
     }
 
+    /**
+     * Sets the maximum total number of entities the query returns when it is executed lazily with
+     * {@link CloudTableClient#execute(TableQuery)} or one of its overloads. Unlike the take count, which bounds the
+     * number of entities in each request, the limit bounds the total across requests: no request asks for more
+     * entities than remain under the limit, and no request is made once it is reached.
+     * 
+     * @param limit
+     *            The maximum total number of entities for the table query to return, or <code>null</code> to not limit
+     *            the total.
+     */
+    public void setLimit(final Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive and greater than 0.");
+        }
+
+        this.limit = limit;
+    }
+
     /**
      * Defines the upper bound for the number of entities the query returns. If this value is not specified in a table
      * query, by default a maximum of 1,000 entries will be returned.
@@ -676,6 +708,23 @@ public class TableQuery<T extends TableEntity> {
         return this;
     }
 
+    /**
+     * Defines the maximum total number of entities the query returns when it is executed lazily with
+     * {@link CloudTableClient#execute(TableQuery)} or one of its overloads, across all of the requests made to the
+     * service.
+     * 
+     * @param limit
+     *            The maximum total number of entities for the table query to return, or <code>null</code> to not limit
+     *            the total.
+     * 
+     * @return
+     *         A reference to the {@link TableQuery} instance with the total number of entities to return set.
+     */
+    public TableQuery<T> limit(final Integer limit) {
+        this.setLimit(limit);
+        return this;
+    }
+
     /**
      * Defines a filter expression for the table query. Only entities that satisfy the specified filter expression will
      * be returned by the query. Setting a filter expression is optional; by default, all entities in the table are
@@ -717,13 +766,28 @@ public class TableQuery<T extends TableEntity> {
      *             if an error occurs in adding or encoding the query parameters.
      */
     protected UriQueryBuilder generateQueryBuilder() throws StorageException {
+        return this.generateQueryBuilder(this.takeCount);
+    }
+
+    /**
+     * Reserved for internal use. Creates a {@link UriQueryBuilder} object representing the table query, requesting the
+     * specified number of entities in place of the take count.
+     * 
+     * @param top
+     *            The number of entities to request, or <code>null</code> to use the service default.
+     * @return
+     *         A {@link UriQueryBuilder} object representing the table query.
+     * @throws StorageException
+     *             if an error occurs in adding or encoding the query parameters.
+     */
+    UriQueryBuilder generateQueryBuilder(final Integer top) throws StorageException {
         final UriQueryBuilder builder = new UriQueryBuilder();
         if (!Utility.isNullOrEmpty(this.filterString)) {
             builder.add(TableConstants.FILTER, this.filterString);
         }
 
-        if (this.takeCount != null) {
-            builder.add(TableConstants.TOP, this.takeCount.toString());
+        if (top != null) {
+            builder.add(TableConstants.TOP, top.toString());
         }
 
         if (this.columns != null && this.columns.length > 0) {
@@ -21,15 +21,40 @@ import com.microsoft.windowsazure.services.core.storage.RequestOptions;
  * Represents a set of timeout and retry policy options that may be specified for a table operation request.
  */
 public class TableRequestOptions extends RequestOptions {
+    /**
+     * Represents the number of requests an operation that retrieves multiple entities sends concurrently. If it's null,
+     * it will be set to {@link TableConstants#DEFAULT_CONCURRENT_REQUEST_COUNT}.
+     */
+    private Integer concurrentRequestCount = null;
+
     /**
      * Reserved for internal use. Initializes the timeout and retry policy for this <code>TableRequestOptions</code>
      * instance, if they are currently <code>null</code>, using the values specified in the {@link CloudTableClient}
-     * parameter.
+     * parameter, and sets the concurrent request count to its default value if it is <code>null</code>.
      * 
      * @param client
      *            The {@link CloudTableClient} client object to copy the timeout and retry policy from.
      */
     protected void applyDefaults(final CloudTableClient client) {
         super.applyBaseDefaults(client);
+
+        if (this.getConcurrentRequestCount() == null) {
+            this.setConcurrentRequestCount(TableConstants.DEFAULT_CONCURRENT_REQUEST_COUNT);
+        }
+    }
+
+    /**
+     * @return the concurrentRequestCount
+     */
+    public Integer getConcurrentRequestCount() {
+        return this.concurrentRequestCount;
+    }
+
+    /**
+     * @param concurrentRequestCount
+     *            the concurrentRequestCount to set
+     */
+    public void setConcurrentRequestCount(final Integer concurrentRequestCount) {
+        this.concurrentRequestCount = concurrentRequestCount;
     }
 }
@@ -16,12 +16,15 @@ package com.microsoft.windowsazure.services.table.implementation;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 
 import javax.inject.Inject;
 import javax.xml.stream.XMLStreamConstants;
@@ -140,27 +143,79 @@ public class AtomReaderWriter {
     }
 
     public List<Entity> parseEntityEntries(InputStream stream) {
+        List<Entity> result = new ArrayList<Entity>();
+        Iterator<Entity> entries = iterateEntityEntries(stream);
+        while (entries.hasNext()) {
+            result.add(entries.next());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an iterator that parses the entries of an entity feed one at a time, as they are read from the stream,
+     * rather than materializing the whole feed. The stream is closed once the end of the feed is reached.
+     */
+    public Iterator<Entity> iterateEntityEntries(final InputStream stream) {
         try {
-            XMLStreamReader xmlr = xmlStreamFactory.getReader(stream);
+            final XMLStreamReader xmlr = xmlStreamFactory.getReader(stream);
 
             expect(xmlr, XMLStreamConstants.START_DOCUMENT);
             expect(xmlr, XMLStreamConstants.START_ELEMENT, "feed");
 
-            List<Entity> result = new ArrayList<Entity>();
-            while (!isEndElement(xmlr, "feed")) {
-                // Process "entry" elements only
-                if (isStartElement(xmlr, "entry")) {
-                    result.add(parseEntityEntry(xmlr));
-                }
-                else {
-                    nextSignificant(xmlr);
+            return new Iterator<Entity>() {
+                private boolean finished;
+
+                @Override
+                public boolean hasNext() {
+                    if (finished) {
+                        return false;
+                    }
+
+                    try {
+                        while (!isEndElement(xmlr, "feed")) {
+                            // Process "entry" elements only
+                            if (isStartElement(xmlr, "entry")) {
+                                return true;
+                            }
+                            nextSignificant(xmlr);
+                        }
+
+                        expect(xmlr, XMLStreamConstants.END_ELEMENT, "feed");
+                        expect(xmlr, XMLStreamConstants.END_DOCUMENT);
+
+                        finished = true;
+                        xmlr.close();
+                        stream.close();
+                        return false;
+                    }
+                    catch (XMLStreamException e) {
+                        throw new RuntimeException(e);
+                    }
+                    catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
                 }
-            }
 
-            expect(xmlr, XMLStreamConstants.END_ELEMENT, "feed");
-            expect(xmlr, XMLStreamConstants.END_DOCUMENT);
+                @Override
+                public Entity next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
 
-            return result;
+                    try {
+                        return parseEntityEntry(xmlr);
+                    }
+                    catch (XMLStreamException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
         catch (XMLStreamException e) {
             throw new RuntimeException(e);
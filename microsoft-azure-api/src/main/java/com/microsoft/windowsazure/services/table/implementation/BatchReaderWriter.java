@@ -0,0 +1,367 @@
+/**
+ * Copyright 2012 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.implementation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import com.sun.jersey.core.header.InBoundHeaders;
+
+/**
+ * Writes and reads the "multipart/mixed" bodies of entity group transactions, without going through an intermediate
+ * MIME object model. Requests are written into a single buffer, and responses are parsed directly from the response
+ * stream, one part at a time.
+ */
+public class BatchReaderWriter {
+
+    @Inject
+    public BatchReaderWriter() {
+    }
+
+    public RequestBody createRequestBody() {
+        return new RequestBody(String.format("batch_%s", UUID.randomUUID().toString()), String.format(
+                "changeset_%s", UUID.randomUUID().toString()));
+    }
+
+    public List<ResponsePart> parseResponseParts(InputStream entityInputStream, String contentType)
+            throws IOException {
+        PartReader reader = new PartReader(entityInputStream);
+        String batchBoundary = getBoundary(contentType);
+        reader.skipToBoundary(batchBoundary);
+
+        InBoundHeaders batchHeaders = new InBoundHeaders();
+        reader.readHeaders(batchHeaders);
+        String batchPartType = batchHeaders.getFirst("Content-Type");
+
+        List<ResponsePart> result = new ArrayList<ResponsePart>();
+        if (batchPartType != null && batchPartType.toLowerCase().startsWith("multipart/")) {
+            String changeSetBoundary = getBoundary(batchPartType);
+            reader.skipToBoundary(changeSetBoundary);
+
+            byte[] delimiter = getDelimiter(changeSetBoundary);
+            while (true) {
+                reader.readHeaders(new InBoundHeaders());
+                result.add(parseResponsePart(reader.readBody(delimiter)));
+
+                String rest = reader.readLine();
+                if (rest == null || rest.startsWith("--")) {
+                    break;
+                }
+            }
+        }
+        else {
+            // Errors affecting the whole batch are returned without a change set
+            result.add(parseResponsePart(reader.readBody(getDelimiter(batchBoundary))));
+        }
+
+        return result;
+    }
+
+    private static String getBoundary(String contentType) throws IOException {
+        int index = contentType == null ? -1 : contentType.toLowerCase().indexOf("boundary=");
+        if (index < 0) {
+            throw new IOException(String.format("Content type '%s' does not specify a boundary", contentType));
+        }
+
+        String boundary = contentType.substring(index + "boundary=".length());
+        int end = boundary.indexOf(';');
+        if (end >= 0) {
+            boundary = boundary.substring(0, end);
+        }
+        boundary = boundary.trim();
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary;
+    }
+
+    private static byte[] getDelimiter(String boundary) {
+        return getBytes("\r\n--" + boundary);
+    }
+
+    private static byte[] getBytes(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ResponsePart parseResponsePart(byte[] bytes) throws IOException {
+        int offset = 0;
+        int lineEnd = findLineEnd(bytes, offset);
+        String statusLine = new String(bytes, offset, lineEnd - offset, "ISO-8859-1");
+        offset = skipLineBreak(bytes, lineEnd);
+
+        if (!statusLine.startsWith("HTTP/1.1 ")) {
+            throw new IOException(String.format("Expected 'HTTP/1.1', found '%s' instead", statusLine));
+        }
+        int statusEnd = statusLine.indexOf(' ', "HTTP/1.1 ".length());
+        if (statusEnd < 0) {
+            statusEnd = statusLine.length();
+        }
+
+        ResponsePart part = new ResponsePart();
+        try {
+            part.status = Integer.parseInt(statusLine.substring("HTTP/1.1 ".length(), statusEnd));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid status line '%s'", statusLine));
+        }
+        part.reason = statusEnd < statusLine.length() ? statusLine.substring(statusEnd + 1) : "";
+
+        String name = null;
+        StringBuilder value = null;
+        while (offset < bytes.length) {
+            lineEnd = findLineEnd(bytes, offset);
+            String line = new String(bytes, offset, lineEnd - offset, "ISO-8859-1");
+            offset = skipLineBreak(bytes, lineEnd);
+
+            if (line.length() == 0) {
+                break;
+            }
+
+            if ((line.charAt(0) == ' ' || line.charAt(0) == '\t') && name != null) {
+                value.append(' ').append(line.trim());
+                continue;
+            }
+
+            if (name != null) {
+                part.headers.add(name, value.toString());
+            }
+
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                throw new IOException(String.format("Invalid header line '%s'", line));
+            }
+            name = line.substring(0, colon).trim();
+            value = new StringBuilder(line.substring(colon + 1).trim());
+        }
+        if (name != null) {
+            part.headers.add(name, value.toString());
+        }
+
+        part.content = new ByteArrayInputStream(bytes, offset, bytes.length - offset);
+        return part;
+    }
+
+    private static int findLineEnd(byte[] bytes, int offset) {
+        int index = offset;
+        while (index < bytes.length && bytes[index] != '\r' && bytes[index] != '\n') {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipLineBreak(byte[] bytes, int index) {
+        if (index < bytes.length && bytes[index] == '\r') {
+            index++;
+        }
+        if (index < bytes.length && bytes[index] == '\n') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Accumulates the operations of an entity group transaction into a "multipart/mixed" request body.
+     */
+    public class RequestBody {
+        private final String batchBoundary;
+        private final String changeSetBoundary;
+        private final ByteArrayOutputStream stream;
+        private byte[] bytes;
+
+        RequestBody(String batchBoundary, String changeSetBoundary) {
+            this.batchBoundary = batchBoundary;
+            this.changeSetBoundary = changeSetBoundary;
+            this.stream = new ByteArrayOutputStream(4096);
+
+            write("--" + batchBoundary + "\r\n");
+            write("Content-Type: multipart/mixed; boundary=" + changeSetBoundary + "\r\n");
+            write("\r\n");
+        }
+
+        public String getContentType() {
+            return "multipart/mixed; boundary=" + batchBoundary;
+        }
+
+        public void appendOperation(String verb, URI uri, Map<String, String> headers, byte[] entity) {
+            if (bytes != null) {
+                throw new IllegalStateException("The request body has already been completed");
+            }
+
+            write("--" + changeSetBoundary + "\r\n");
+            write("Content-Type: application/http\r\n");
+            write("Content-Transfer-Encoding: binary\r\n");
+            write("\r\n");
+
+            write(verb + " " + uri + " HTTP/1.1\r\n");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                write(header.getKey() + ": " + header.getValue() + "\r\n");
+            }
+            write("\r\n");
+
+            if (entity != null) {
+                stream.write(entity, 0, entity.length);
+            }
+            write("\r\n");
+        }
+
+        public byte[] toByteArray() {
+            if (bytes == null) {
+                write("--" + changeSetBoundary + "--\r\n");
+                write("\r\n--" + batchBoundary + "--\r\n");
+                bytes = stream.toByteArray();
+            }
+            return bytes;
+        }
+
+        private void write(String value) {
+            byte[] data = getBytes(value);
+            stream.write(data, 0, data.length);
+        }
+    }
+
+    /**
+     * Represents the HTTP response of one operation of an entity group transaction.
+     */
+    public class ResponsePart {
+        private int status;
+        private String reason;
+        private final InBoundHeaders headers = new InBoundHeaders();
+        private ByteArrayInputStream content;
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public InBoundHeaders getHeaders() {
+            return headers;
+        }
+
+        /**
+         * @return the content of the response, which can be read again after calling <code>reset</code>.
+         */
+        public ByteArrayInputStream getContent() {
+            return content;
+        }
+    }
+
+    private static class PartReader {
+        private final InputStream stream;
+
+        public PartReader(InputStream stream) {
+            this.stream = new BufferedInputStream(stream, 8192);
+        }
+
+        public String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(80);
+            int ch = stream.read();
+            if (ch == -1) {
+                return null;
+            }
+            while (ch != -1 && ch != '\n') {
+                line.write(ch);
+                ch = stream.read();
+            }
+
+            byte[] bytes = line.toByteArray();
+            int length = bytes.length;
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, "ISO-8859-1");
+        }
+
+        public void skipToBoundary(String boundary) throws IOException {
+            String delimiter = "--" + boundary;
+            while (true) {
+                String line = readLine();
+                if (line == null) {
+                    throw new IOException(String.format("Boundary '%s' not found", boundary));
+                }
+                // Delimiter lines may be followed by transport padding
+                if (line.trim().equals(delimiter)) {
+                    return;
+                }
+            }
+        }
+
+        public void readHeaders(InBoundHeaders headers) throws IOException {
+            while (true) {
+                String line = readLine();
+                if (line == null || line.length() == 0) {
+                    return;
+                }
+
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+            }
+        }
+
+        /**
+         * Reads the body of a part, up to and including the specified delimiter. The line break preceding the body has
+         * already been consumed with the headers, and counts as the start of the delimiter for an empty body.
+         */
+        public byte[] readBody(byte[] delimiter) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+            int matched = 2;
+            int virtual = 2;
+            while (matched < delimiter.length) {
+                int ch = stream.read();
+                if (ch == -1) {
+                    throw new IOException("Unexpected end of stream in multipart body");
+                }
+
+                if (ch == (delimiter[matched] & 0xff)) {
+                    matched++;
+                    continue;
+                }
+
+                // The delimiter only contains a line break at its start, so a mismatch can only start a new match
+                // at the current byte.
+                body.write(delimiter, virtual, matched - virtual);
+                virtual = 0;
+                matched = 0;
+                if (ch == (delimiter[0] & 0xff)) {
+                    matched = 1;
+                }
+                else {
+                    body.write(ch);
+                }
+            }
+            return body.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2012 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.implementation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.windowsazure.services.core.ServiceException;
+import com.microsoft.windowsazure.services.core.utils.ServiceExceptionFactory;
+import com.microsoft.windowsazure.services.table.models.Entity;
+import com.microsoft.windowsazure.services.table.models.QueryEntitiesOptions;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.UniformInterfaceException;
+
+/**
+ * Lazily iterates the entities returned by a query, requesting each page of results as the previous one is consumed
+ * and, if the options request it, prefetching the next page while the current one is parsed.
+ */
+class EntityQueryIterable implements Iterable<Entity> {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ExecutorService prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "table-query-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final TableRestProxy proxy;
+    private final String table;
+    private final QueryEntitiesOptions options;
+
+    public EntityQueryIterable(TableRestProxy proxy, String table, QueryEntitiesOptions options) {
+        this.proxy = proxy;
+        this.table = table;
+        this.options = options;
+    }
+
+    @Override
+    public Iterator<Entity> iterator() {
+        return new EntityIterator();
+    }
+
+    static class Page {
+        private final String nextPartitionKey;
+        private final String nextRowKey;
+        private final Iterator<Entity> entities;
+        private final InputStream stream;
+
+        public Page(String nextPartitionKey, String nextRowKey, Iterator<Entity> entities, InputStream stream) {
+            this.nextPartitionKey = nextPartitionKey;
+            this.nextRowKey = nextRowKey;
+            this.entities = entities;
+            this.stream = stream;
+        }
+
+        public boolean hasContinuation() {
+            return nextPartitionKey != null || nextRowKey != null;
+        }
+
+        public void close() {
+            try {
+                stream.close();
+            }
+            catch (IOException e) {
+                // The page is abandoned, there is nothing left to read from it.
+            }
+        }
+    }
+
+    private class EntityIterator implements Iterator<Entity>, Closeable {
+        private final Integer top = options.getTop();
+        private int returned;
+        private Page page;
+        private Future<Page> prefetch;
+        private volatile boolean closed;
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+
+            if (top != null && returned >= top) {
+                close();
+                return false;
+            }
+
+            if (page == null) {
+                page = fetch(options.getNextPartitionKey(), options.getNextRowKey());
+            }
+
+            while (!page.entities.hasNext()) {
+                if (!page.hasContinuation()) {
+                    close();
+                    return false;
+                }
+                page = nextPage();
+            }
+
+            return true;
+        }
+
+        @Override
+        public Entity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            returned++;
+            return page.entities.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (page != null) {
+                page.close();
+            }
+
+            if (prefetch != null && !prefetch.cancel(false)) {
+                try {
+                    prefetch.get().close();
+                }
+                catch (Exception e) {
+                    // The prefetched page failed, and is not going to be read.
+                }
+            }
+        }
+
+        private Page fetch(String nextPartitionKey, String nextRowKey) {
+            return schedulePrefetch(requestPage(nextPartitionKey, nextRowKey));
+        }
+
+        private Page nextPage() {
+            if (prefetch == null) {
+                return fetch(page.nextPartitionKey, page.nextRowKey);
+            }
+
+            Future<Page> pending = prefetch;
+            prefetch = null;
+            try {
+                return schedulePrefetch(pending.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        private Page schedulePrefetch(final Page current) {
+            if (options.isPrefetchNextPage() && current.hasContinuation()) {
+                prefetch = prefetchExecutor.submit(new Callable<Page>() {
+                    @Override
+                    public Page call() {
+                        Page next = requestPage(current.nextPartitionKey, current.nextRowKey);
+                        if (closed) {
+                            // The iterator was closed while the request was in flight.
+                            next.close();
+                        }
+                        return next;
+                    }
+                });
+            }
+            return current;
+        }
+
+        private Page requestPage(String nextPartitionKey, String nextRowKey) {
+            try {
+                return proxy.queryEntitiesPage(table, options, nextPartitionKey, nextRowKey);
+            }
+            catch (UniformInterfaceException e) {
+                throw new RuntimeException(ServiceExceptionFactory.process("table", new ServiceException(e)));
+            }
+            catch (ClientHandlerException e) {
+                throw new RuntimeException(ServiceExceptionFactory.process("table", new ServiceException(e)));
+            }
+        }
+    }
+}
@@ -436,6 +436,19 @@ public class TableExceptionProcessor implements TableContract {
         }
     }
 
+    @Override
+    public Iterable<Entity> iterateEntities(String table, QueryEntitiesOptions options) throws ServiceException {
+        try {
+            return service.iterateEntities(table, options);
+        }
+        catch (UniformInterfaceException e) {
+            throw processCatch(new ServiceException(e));
+        }
+        catch (ClientHandlerException e) {
+            throw processCatch(new ServiceException(e));
+        }
+    }
+
     @Override
     public BatchResult batch(BatchOperations operations) throws ServiceException {
         try {
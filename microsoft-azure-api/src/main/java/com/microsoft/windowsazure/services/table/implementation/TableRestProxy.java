@@ -14,7 +14,6 @@
  */
 package com.microsoft.windowsazure.services.table.implementation;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,19 +22,12 @@ import java.net.URI;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.Enumeration;
-import java.util.Formatter;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
-import javax.activation.DataSource;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.mail.Header;
-import javax.mail.internet.InternetHeaders;
-import javax.mail.internet.MimeMultipart;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
@@ -43,6 +35,7 @@ import com.microsoft.windowsazure.services.blob.implementation.ISO8601DateConver
 import com.microsoft.windowsazure.services.blob.implementation.RFC1123DateConverter;
 import com.microsoft.windowsazure.services.core.ServiceException;
 import com.microsoft.windowsazure.services.core.ServiceFilter;
+import com.microsoft.windowsazure.services.core.storage.utils.XMLFactoryProvider;
 import com.microsoft.windowsazure.services.core.utils.CommaStringBuilder;
 import com.microsoft.windowsazure.services.core.utils.DateFactory;
 import com.microsoft.windowsazure.services.core.utils.ServiceExceptionFactory;
@@ -51,7 +44,6 @@ import com.microsoft.windowsazure.services.core.utils.pipeline.HttpURLConnection
 import com.microsoft.windowsazure.services.core.utils.pipeline.PipelineHelpers;
 import com.microsoft.windowsazure.services.table.TableConfiguration;
 import com.microsoft.windowsazure.services.table.TableContract;
-import com.microsoft.windowsazure.services.table.implementation.HttpReaderWriter.StatusLine;
 import com.microsoft.windowsazure.services.table.models.BatchOperations;
 import com.microsoft.windowsazure.services.table.models.BatchOperations.DeleteEntityOperation;
 import com.microsoft.windowsazure.services.table.models.BatchOperations.InsertEntityOperation;
@@ -66,31 +58,26 @@ import com.microsoft.windowsazure.services.table.models.BatchResult.Entry;
 import com.microsoft.windowsazure.services.table.models.BatchResult.Error;
 import com.microsoft.windowsazure.services.table.models.BatchResult.InsertEntity;
 import com.microsoft.windowsazure.services.table.models.BatchResult.UpdateEntity;
-import com.microsoft.windowsazure.services.table.models.BinaryFilter;
-import com.microsoft.windowsazure.services.table.models.ConstantFilter;
 import com.microsoft.windowsazure.services.table.models.DeleteEntityOptions;
 import com.microsoft.windowsazure.services.table.models.Entity;
 import com.microsoft.windowsazure.services.table.models.Filter;
+import com.microsoft.windowsazure.services.table.models.FilterTemplate;
 import com.microsoft.windowsazure.services.table.models.GetEntityResult;
 import com.microsoft.windowsazure.services.table.models.GetServicePropertiesResult;
 import com.microsoft.windowsazure.services.table.models.GetTableResult;
 import com.microsoft.windowsazure.services.table.models.InsertEntityResult;
-import com.microsoft.windowsazure.services.table.models.PropertyNameFilter;
 import com.microsoft.windowsazure.services.table.models.QueryEntitiesOptions;
 import com.microsoft.windowsazure.services.table.models.QueryEntitiesResult;
-import com.microsoft.windowsazure.services.table.models.QueryStringFilter;
 import com.microsoft.windowsazure.services.table.models.QueryTablesOptions;
 import com.microsoft.windowsazure.services.table.models.QueryTablesResult;
 import com.microsoft.windowsazure.services.table.models.ServiceProperties;
 import com.microsoft.windowsazure.services.table.models.TableServiceOptions;
-import com.microsoft.windowsazure.services.table.models.UnaryFilter;
 import com.microsoft.windowsazure.services.table.models.UpdateEntityResult;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.WebResource.Builder;
 import com.sun.jersey.core.header.InBoundHeaders;
-import com.sun.jersey.core.util.ReaderWriter;
 
 public class TableRestProxy implements TableContract {
     private static final String API_VERSION = "2011-08-18";
@@ -102,13 +89,12 @@ public class TableRestProxy implements TableContract {
     private final ServiceFilter[] filters;
     private final SharedKeyFilter filter;
     private final AtomReaderWriter atomReaderWriter;
-    private final MimeReaderWriter mimeReaderWriter;
-    private final HttpReaderWriter httpReaderWriter;
+    private final BatchReaderWriter batchReaderWriter;
 
     @Inject
     public TableRestProxy(HttpURLConnectionClient channel, @Named(TableConfiguration.URI) String url,
             SharedKeyFilter filter, DateFactory dateFactory, ISO8601DateConverter iso8601DateConverter,
-            AtomReaderWriter atomReaderWriter, MimeReaderWriter mimeReaderWriter, HttpReaderWriter httpReaderWriter) {
+            AtomReaderWriter atomReaderWriter, BatchReaderWriter batchReaderWriter) {
 
         this.channel = channel;
         this.url = url;
@@ -118,15 +104,13 @@ public class TableRestProxy implements TableContract {
         this.filters = new ServiceFilter[0];
         this.dateFactory = dateFactory;
         this.atomReaderWriter = atomReaderWriter;
-        this.mimeReaderWriter = mimeReaderWriter;
-        this.httpReaderWriter = httpReaderWriter;
+        this.batchReaderWriter = batchReaderWriter;
         channel.addFilter(filter);
     }
 
     public TableRestProxy(HttpURLConnectionClient channel, ServiceFilter[] filters, String url, SharedKeyFilter filter,
-            DateFactory dateFactory, AtomReaderWriter atomReaderWriter, MimeReaderWriter mimeReaderWriter,
-            HttpReaderWriter httpReaderWriter, RFC1123DateConverter dateMapper,
-            ISO8601DateConverter iso8601DateConverter) {
+            DateFactory dateFactory, AtomReaderWriter atomReaderWriter, BatchReaderWriter batchReaderWriter,
+            RFC1123DateConverter dateMapper, ISO8601DateConverter iso8601DateConverter) {
 
         this.channel = channel;
         this.filters = filters;
@@ -134,8 +118,7 @@ public class TableRestProxy implements TableContract {
         this.filter = filter;
         this.dateFactory = dateFactory;
         this.atomReaderWriter = atomReaderWriter;
-        this.mimeReaderWriter = mimeReaderWriter;
-        this.httpReaderWriter = httpReaderWriter;
+        this.batchReaderWriter = batchReaderWriter;
         this.dateMapper = dateMapper;
         this.iso8601DateConverter = iso8601DateConverter;
     }
@@ -145,8 +128,7 @@ public class TableRestProxy implements TableContract {
         ServiceFilter[] newFilters = Arrays.copyOf(filters, filters.length + 1);
         newFilters[filters.length] = filter;
         return new TableRestProxy(this.channel, newFilters, this.url, this.filter, this.dateFactory,
-                this.atomReaderWriter, this.mimeReaderWriter, this.httpReaderWriter, this.dateMapper,
-                this.iso8601DateConverter);
+                this.atomReaderWriter, this.batchReaderWriter, this.dateMapper, this.iso8601DateConverter);
     }
 
     private void ThrowIfError(ClientResponse r) {
@@ -213,83 +195,7 @@ public class TableRestProxy implements TableContract {
     }
 
     private String buildFilterExpression(Filter filter) {
-        StringBuilder sb = new StringBuilder();
-        buildFilterExpression(filter, sb);
-        return sb.toString();
-    }
-
-    private void buildFilterExpression(Filter filter, StringBuilder sb) {
-        if (filter == null)
-            return;
-
-        if (filter instanceof PropertyNameFilter) {
-            sb.append(((PropertyNameFilter) filter).getPropertyName());
-        }
-        else if (filter instanceof ConstantFilter) {
-            Object value = ((ConstantFilter) filter).getValue();
-            if (value == null) {
-                sb.append("null");
-            }
-            else if (value.getClass() == Long.class) {
-                sb.append(value);
-                sb.append("L");
-            }
-            else if (value.getClass() == Date.class) {
-                ISO8601DateConverter dateConverter = new ISO8601DateConverter();
-                sb.append("datetime'");
-                sb.append(dateConverter.format((Date) value));
-                sb.append("'");
-            }
-            else if (value.getClass() == UUID.class) {
-                sb.append("(guid'");
-                sb.append(value);
-                sb.append("')");
-            }
-            else if (value.getClass() == String.class) {
-                sb.append("'");
-                sb.append(((String) value).replace("'", "''"));
-                sb.append("'");
-            }
-            else if (value.getClass() == byte[].class) {
-                sb.append("X'");
-                byte[] byteArray = (byte[]) value;
-                Formatter formatter = new Formatter(sb);
-                for (byte b : byteArray) {
-                    formatter.format("%02x", b);
-                }
-                sb.append("'");
-            }
-            else if (value.getClass() == Byte[].class) {
-                sb.append("X'");
-                Byte[] byteArray = (Byte[]) value;
-                Formatter formatter = new Formatter(sb);
-                for (Byte b : byteArray) {
-                    formatter.format("%02x", b);
-                }
-                sb.append("'");
-            }
-            else {
-                sb.append(value);
-            }
-        }
-        else if (filter instanceof UnaryFilter) {
-            sb.append(((UnaryFilter) filter).getOperator());
-            sb.append("(");
-            buildFilterExpression(((UnaryFilter) filter).getOperand(), sb);
-            sb.append(")");
-        }
-        else if (filter instanceof BinaryFilter) {
-            sb.append("(");
-            buildFilterExpression(((BinaryFilter) filter).getLeft(), sb);
-            sb.append(" ");
-            sb.append(((BinaryFilter) filter).getOperator());
-            sb.append(" ");
-            buildFilterExpression(((BinaryFilter) filter).getRight(), sb);
-            sb.append(")");
-        }
-        else if (filter instanceof QueryStringFilter) {
-            sb.append(((QueryStringFilter) filter).getQueryString());
-        }
+        return FilterTemplate.compile(filter).format();
     }
 
     private Builder addOptionalHeader(Builder builder, String name, Object value) {
@@ -620,11 +526,44 @@ public class TableRestProxy implements TableContract {
         if (options == null)
             options = new QueryEntitiesOptions();
 
+        ClientResponse response = getQueryEntitiesResponse(table, options, options.getNextPartitionKey(),
+                options.getNextRowKey());
+
+        QueryEntitiesResult result = new QueryEntitiesResult();
+        result.setNextPartitionKey(response.getHeaders().getFirst("x-ms-continuation-NextPartitionKey"));
+        result.setNextRowKey(response.getHeaders().getFirst("x-ms-continuation-NextRowKey"));
+        result.setEntities(atomReaderWriter.parseEntityEntries(response.getEntityInputStream()));
+
+        return result;
+    }
+
+    @Override
+    public Iterable<Entity> iterateEntities(String table, QueryEntitiesOptions options) throws ServiceException {
+        if (table == null)
+            throw new NullPointerException();
+
+        if (options == null)
+            options = new QueryEntitiesOptions();
+
+        return new EntityQueryIterable(this, table, options);
+    }
+
+    EntityQueryIterable.Page queryEntitiesPage(String table, QueryEntitiesOptions options, String nextPartitionKey,
+            String nextRowKey) {
+        ClientResponse response = getQueryEntitiesResponse(table, options, nextPartitionKey, nextRowKey);
+
+        InputStream stream = response.getEntityInputStream();
+        return new EntityQueryIterable.Page(response.getHeaders().getFirst("x-ms-continuation-NextPartitionKey"),
+                response.getHeaders().getFirst("x-ms-continuation-NextRowKey"),
+                atomReaderWriter.iterateEntityEntries(stream), stream);
+    }
+
+    private ClientResponse getQueryEntitiesResponse(String table, QueryEntitiesOptions options,
+            String nextPartitionKey, String nextRowKey) {
         WebResource webResource = getResource(options).path(table);
         webResource = addOptionalQueryEntitiesOptions(webResource, options);
-        webResource = addOptionalQueryParam(webResource, "NextPartitionKey",
-                encodeODataURIValue(options.getNextPartitionKey()));
-        webResource = addOptionalQueryParam(webResource, "NextRowKey", encodeODataURIValue(options.getNextRowKey()));
+        webResource = addOptionalQueryParam(webResource, "NextPartitionKey", encodeODataURIValue(nextPartitionKey));
+        webResource = addOptionalQueryParam(webResource, "NextRowKey", encodeODataURIValue(nextRowKey));
 
         WebResource.Builder builder = webResource.getRequestBuilder();
         builder = addTableRequestHeaders(builder);
@@ -632,12 +571,7 @@ public class TableRestProxy implements TableContract {
         ClientResponse response = builder.get(ClientResponse.class);
         ThrowIfError(response);
 
-        QueryEntitiesResult result = new QueryEntitiesResult();
-        result.setNextPartitionKey(response.getHeaders().getFirst("x-ms-continuation-NextPartitionKey"));
-        result.setNextRowKey(response.getHeaders().getFirst("x-ms-continuation-NextRowKey"));
-        result.setEntities(atomReaderWriter.parseEntityEntries(response.getEntityInputStream()));
-
-        return result;
+        return response;
     }
 
     @Override
@@ -652,10 +586,10 @@ public class TableRestProxy implements TableContract {
         WebResource.Builder builder = webResource.getRequestBuilder();
         builder = addTableRequestHeaders(builder);
 
-        MimeMultipart entity = createBatchRequestBody(operations);
+        BatchReaderWriter.RequestBody entity = createBatchRequestBody(operations);
         builder = builder.type(entity.getContentType());
 
-        ClientResponse response = builder.post(ClientResponse.class, entity);
+        ClientResponse response = builder.post(ClientResponse.class, entity.toByteArray());
         ThrowIfError(response);
 
         BatchResult result = new BatchResult();
@@ -670,59 +604,54 @@ public class TableRestProxy implements TableContract {
         return result;
     }
 
-    private MimeMultipart createBatchRequestBody(BatchOperations operations) {
-        List<DataSource> bodyPartContents = new ArrayList<DataSource>();
+    private BatchReaderWriter.RequestBody createBatchRequestBody(BatchOperations operations) {
+        BatchReaderWriter.RequestBody body = batchReaderWriter.createRequestBody();
         int contentId = 1;
         for (Operation operation : operations.getOperations()) {
 
-            DataSource bodyPartContent = null;
             if (operation instanceof InsertEntityOperation) {
                 InsertEntityOperation op = (InsertEntityOperation) operation;
-                bodyPartContent = createBatchInsertOrUpdateEntityPart(op.getTable(), op.getEntity(), "POST",
+                createBatchInsertOrUpdateEntityPart(body, op.getTable(), op.getEntity(), "POST",
                         false/*includeEtag*/, contentId);
                 contentId++;
             }
             else if (operation instanceof UpdateEntityOperation) {
                 UpdateEntityOperation op = (UpdateEntityOperation) operation;
-                bodyPartContent = createBatchInsertOrUpdateEntityPart(op.getTable(), op.getEntity(), "PUT",
+                createBatchInsertOrUpdateEntityPart(body, op.getTable(), op.getEntity(), "PUT",
                         true/*includeEtag*/, contentId);
                 contentId++;
             }
             else if (operation instanceof MergeEntityOperation) {
                 MergeEntityOperation op = (MergeEntityOperation) operation;
-                bodyPartContent = createBatchInsertOrUpdateEntityPart(op.getTable(), op.getEntity(), "MERGE",
+                createBatchInsertOrUpdateEntityPart(body, op.getTable(), op.getEntity(), "MERGE",
                         true/*includeEtag*/, contentId);
                 contentId++;
             }
             else if (operation instanceof InsertOrReplaceEntityOperation) {
                 InsertOrReplaceEntityOperation op = (InsertOrReplaceEntityOperation) operation;
-                bodyPartContent = createBatchInsertOrUpdateEntityPart(op.getTable(), op.getEntity(), "PUT",
+                createBatchInsertOrUpdateEntityPart(body, op.getTable(), op.getEntity(), "PUT",
                         false/*includeEtag*/, contentId);
                 contentId++;
             }
             else if (operation instanceof InsertOrMergeEntityOperation) {
                 InsertOrMergeEntityOperation op = (InsertOrMergeEntityOperation) operation;
-                bodyPartContent = createBatchInsertOrUpdateEntityPart(op.getTable(), op.getEntity(), "MERGE",
+                createBatchInsertOrUpdateEntityPart(body, op.getTable(), op.getEntity(), "MERGE",
                         false/*includeEtag*/, contentId);
                 contentId++;
             }
             else if (operation instanceof DeleteEntityOperation) {
                 DeleteEntityOperation op = (DeleteEntityOperation) operation;
-                bodyPartContent = createBatchDeleteEntityPart(op.getTable(), op.getPartitionKey(), op.getRowKey(),
+                createBatchDeleteEntityPart(body, op.getTable(), op.getPartitionKey(), op.getRowKey(),
                         op.getEtag(), contentId);
                 contentId++;
             }
-
-            if (bodyPartContent != null) {
-                bodyPartContents.add(bodyPartContent);
-            }
         }
 
-        return mimeReaderWriter.getMimeMultipart(bodyPartContents);
+        return body;
     }
 
-    private DataSource createBatchInsertOrUpdateEntityPart(String table, Entity entity, String verb,
-            boolean includeEtag, int contentId) {
+    private void createBatchInsertOrUpdateEntityPart(BatchReaderWriter.RequestBody body, String table,
+            Entity entity, String verb, boolean includeEtag, int contentId) {
 
         URI path;
         if ("POST".equals(verb)) {
@@ -740,60 +669,43 @@ public class TableRestProxy implements TableContract {
         byte[] bytes = inputStreamToByteArray(stream);
 
         //
-        // Create body of MIME part as the HTTP request
+        // Append body of MIME part as the HTTP request
         //
-        InternetHeaders headers = new InternetHeaders();
-        headers.addHeader("Content-ID", Integer.toString(contentId));
-        headers.addHeader("Content-Type", "application/atom+xml;type=entry");
-        headers.addHeader("Content-Length", Integer.toString(bytes.length));
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-ID", Integer.toString(contentId));
+        headers.put("Content-Type", "application/atom+xml;type=entry");
+        headers.put("Content-Length", Integer.toString(bytes.length));
         if (includeEtag) {
-            headers.addHeader("If-Match", entity.getEtag());
+            headers.put("If-Match", entity.getEtag());
         }
 
-        //TODO: Review code to make sure encoding is correct 
-        ByteArrayOutputStream httpRequest = new ByteArrayOutputStream();
-        httpReaderWriter.appendMethod(httpRequest, verb, path);
-        httpReaderWriter.appendHeaders(httpRequest, headers);
-        httpReaderWriter.appendEntity(httpRequest, new ByteArrayInputStream(bytes));
-
-        DataSource bodyPartContent = new InputStreamDataSource(new ByteArrayInputStream(httpRequest.toByteArray()),
-                "application/http");
-        return bodyPartContent;
+        body.appendOperation(verb, path, headers, bytes);
     }
 
-    private DataSource createBatchDeleteEntityPart(String table, String partitionKey, String rowKey, String etag,
-            int contentId) {
+    private void createBatchDeleteEntityPart(BatchReaderWriter.RequestBody body, String table, String partitionKey,
+            String rowKey, String etag, int contentId) {
 
         URI path = channel.resource(url).path(getEntityPath(table, partitionKey, rowKey)).getURI();
 
         //
-        // Create body of MIME part as the HTTP request
+        // Append body of MIME part as the HTTP request
         //
-        InternetHeaders headers = new InternetHeaders();
-        headers.addHeader("Content-ID", Integer.toString(contentId));
-        headers.addHeader("If-Match", etag == null ? "*" : etag);
-
-        //TODO: Review code to make sure encoding is correct 
-        ByteArrayOutputStream httpRequest = new ByteArrayOutputStream();
-        httpReaderWriter.appendMethod(httpRequest, "DELETE", path);
-        httpReaderWriter.appendHeaders(httpRequest, headers);
-        httpReaderWriter.appendEntity(httpRequest, new ByteArrayInputStream(new byte[0]));
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-ID", Integer.toString(contentId));
+        headers.put("If-Match", etag == null ? "*" : etag);
 
-        DataSource bodyPartContent = new InputStreamDataSource(new ByteArrayInputStream(httpRequest.toByteArray()),
-                "application/http");
-        return bodyPartContent;
+        body.appendOperation("DELETE", path, headers, null);
     }
 
     private List<Entry> parseBatchResponse(ClientResponse response, BatchOperations operations) throws IOException {
-        // Default stream cannot be reset, but it is needed by multiple parts of this method.
-        // Replace the default response stream with one that can be read multiple times.
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        List<BatchReaderWriter.ResponsePart> parts;
         InputStream inputStream = response.getEntityInputStream();
-        ReaderWriter.writeTo(inputStream, byteArrayOutputStream);
-        response.setEntityInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
-
-        List<DataSource> parts = mimeReaderWriter.parseParts(response.getEntityInputStream(), response.getHeaders()
-                .getFirst("Content-Type"));
+        try {
+            parts = batchReaderWriter.parseResponseParts(inputStream, response.getHeaders().getFirst("Content-Type"));
+        }
+        finally {
+            inputStream.close();
+        }
 
         if (parts.size() == 0 || parts.size() > operations.getOperations().size()) {
             throw new UniformInterfaceException(String.format(
@@ -804,28 +716,15 @@ public class TableRestProxy implements TableContract {
 
         Entry[] entries = new Entry[operations.getOperations().size()];
         for (int i = 0; i < parts.size(); i++) {
-            DataSource ds = parts.get(i);
+            BatchReaderWriter.ResponsePart part = parts.get(i);
             Operation operation = operations.getOperations().get(i);
 
-            StatusLine status = httpReaderWriter.parseStatusLine(ds);
-            InternetHeaders headers = httpReaderWriter.parseHeaders(ds);
-            InputStream content = httpReaderWriter.parseEntity(ds);
-            ByteArrayOutputStream contentByteArrayOutputStream = new ByteArrayOutputStream();
-            ReaderWriter.writeTo(content, contentByteArrayOutputStream);
-            content = new ByteArrayInputStream(contentByteArrayOutputStream.toByteArray());
+            InBoundHeaders headers = part.getHeaders();
+            InputStream content = part.getContent();
 
-            if (status.getStatus() >= 400) {
+            if (part.getStatus() >= 400) {
                 // Create dummy client response with status, headers and content
-                InBoundHeaders inBoundHeaders = new InBoundHeaders();
-
-                @SuppressWarnings("unchecked")
-                Enumeration<Header> e = headers.getAllHeaders();
-                while (e.hasMoreElements()) {
-                    Header header = e.nextElement();
-                    inBoundHeaders.putSingle(header.getName(), header.getValue());
-                }
-
-                ClientResponse dummyResponse = new ClientResponse(status.getStatus(), inBoundHeaders, content, null);
+                ClientResponse dummyResponse = new ClientResponse(part.getStatus(), headers, content, null);
 
                 // Wrap into a ServiceException
                 UniformInterfaceException exception = new UniformInterfaceException(dummyResponse);
@@ -835,9 +734,8 @@ public class TableRestProxy implements TableContract {
 
                 // Parse the message to find which operation caused this error.
                 try {
-                    XMLInputFactory xmlStreamFactory = XMLInputFactory.newFactory();
                     content.reset();
-                    XMLStreamReader xmlStreamReader = xmlStreamFactory.createXMLStreamReader(content);
+                    XMLStreamReader xmlStreamReader = XMLFactoryProvider.createXMLStreamReader(content);
 
                     while (xmlStreamReader.hasNext()) {
                         xmlStreamReader.next();
@@ -866,7 +764,7 @@ public class TableRestProxy implements TableContract {
             else if ((operation instanceof UpdateEntityOperation) || (operation instanceof MergeEntityOperation)
                     || (operation instanceof InsertOrReplaceEntityOperation)
                     || (operation instanceof InsertOrMergeEntityOperation)) {
-                UpdateEntity opResult = new UpdateEntity().setEtag(headers.getHeader("ETag", null));
+                UpdateEntity opResult = new UpdateEntity().setEtag(headers.getFirst("ETag"));
                 entries[i] = opResult;
             }
             else if (operation instanceof DeleteEntityOperation) {
@@ -228,6 +228,20 @@ public class Filter {
         return new PropertyNameFilter(value);
     }
 
+    /**
+     * A static factory method that creates a named parameter to use as an operand in a {@link BinaryFilter} expression
+     * compiled into a {@link FilterTemplate}. The parameter takes the place of a constant value, which is supplied each
+     * time values are bound to the template.
+     * 
+     * @param name
+     *            A {@link String} containing the name of the parameter.
+     * @return
+     *         A {@link ParameterFilter} instance containing the parameter for use in a filter expression.
+     */
+    public static ParameterFilter parameter(String name) {
+        return new ParameterFilter(name);
+    }
+
     /**
      * A static factory method that creates a table query filter string from the contents of the <em>value</em>
      * parameter.
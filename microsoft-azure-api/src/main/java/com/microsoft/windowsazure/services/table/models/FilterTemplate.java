@@ -0,0 +1,264 @@
+/**
+ * Copyright 2012 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.microsoft.windowsazure.services.blob.implementation.ISO8601DateConverter;
+import com.microsoft.windowsazure.services.table.TableContract;
+
+/**
+ * Represents a table query filter expression compiled once into a reusable template, to which values are bound for
+ * each query.
+ * <p>
+ * Use the {@link FilterTemplate#compile(Filter)} static factory method to create a {@link FilterTemplate} from a filter
+ * expression in which {@link ParameterFilter} placeholders, created with {@link Filter#parameter(String)}, take the
+ * place of the constant values that change between queries. Compiling renders the property names, operators, constants
+ * and query strings of the expression once; binding values only formats the values and concatenates them with the
+ * rendered text. For example, a range lookup can be compiled once:
+ * <p>
+ * <code>FilterTemplate range = FilterTemplate.compile(Filter.and(<br>
+ * &nbsp&nbsp&nbsp&nbspFilter.eq(Filter.propertyName("PartitionKey"), Filter.parameter("pk")),<br>
+ * &nbsp&nbsp&nbsp&nbspFilter.ge(Filter.propertyName("RowKey"), Filter.parameter("from"))));</code>
+ * <p>
+ * and executed with {@link TableContract#queryEntities(String, QueryEntitiesOptions)} using
+ * <code>new QueryEntitiesOptions().setFilter(range.bind("Channel_19", "1"))</code>. The string returned by
+ * {@link #format(Object...)} is an equivalent filter string that may be passed to the <code>where</code> method of a
+ * <code>TableQuery</code> executed with a <code>CloudTableClient</code>.
+ * <p>
+ * Bound values are formatted like the values of {@link ConstantFilter} instances. {@link FilterTemplate} instances are
+ * immutable, and may be shared between threads.
+ */
+public final class FilterTemplate {
+    private final String[] fragments;
+    private final int[] slots;
+    private final List<String> parameterNames;
+    private final int renderedLength;
+
+    private FilterTemplate(String[] fragments, int[] slots, List<String> parameterNames) {
+        this.fragments = fragments;
+        this.slots = slots;
+        this.parameterNames = parameterNames;
+
+        int length = 0;
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        this.renderedLength = length;
+    }
+
+    /**
+     * Compiles the specified filter expression into a template.
+     * 
+     * @param filter
+     *            A {@link Filter} instance containing the filter expression to compile, in which
+     *            {@link ParameterFilter} instances stand for the values bound to the template.
+     * @return
+     *         A {@link FilterTemplate} instance whose parameters are the distinct parameter names of the expression,
+     *         in order of first appearance.
+     */
+    public static FilterTemplate compile(Filter filter) {
+        Compiler compiler = new Compiler();
+        compiler.append(filter);
+        return compiler.toTemplate();
+    }
+
+    /**
+     * Gets the names of the parameters of this template, in the order in which values are bound to them.
+     * 
+     * @return
+     *         An unmodifiable {@link List} of {@link String} containing the parameter names.
+     */
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Binds the specified values to the parameters of this template, in order, and returns the resulting filter.
+     * 
+     * @param values
+     *            The values of the parameters, in the order returned by {@link #getParameterNames()}.
+     * @return
+     *         A {@link QueryStringFilter} instance containing the filter expression with the values bound.
+     * @throws IllegalArgumentException
+     *             if the number of values does not match the number of parameters.
+     */
+    public QueryStringFilter bind(Object... values) {
+        return new QueryStringFilter(format(values));
+    }
+
+    /**
+     * Binds the specified named values to the parameters of this template, and returns the resulting filter.
+     * 
+     * @param values
+     *            A {@link Map} of the parameter names to their values.
+     * @return
+     *         A {@link QueryStringFilter} instance containing the filter expression with the values bound.
+     * @throws IllegalArgumentException
+     *             if a parameter of the template has no value in the map.
+     */
+    public QueryStringFilter bind(Map<String, ?> values) {
+        Object[] ordered = new Object[parameterNames.size()];
+        for (int i = 0; i < ordered.length; i++) {
+            String name = parameterNames.get(i);
+            if (!values.containsKey(name)) {
+                throw new IllegalArgumentException(String.format("No value for parameter '%s'", name));
+            }
+            ordered[i] = values.get(name);
+        }
+        return new QueryStringFilter(format(ordered));
+    }
+
+    /**
+     * Binds the specified values to the parameters of this template, in order, and returns the resulting table query
+     * filter string.
+     * 
+     * @param values
+     *            The values of the parameters, in the order returned by {@link #getParameterNames()}.
+     * @return
+     *         A {@link String} containing the filter expression with the values bound.
+     * @throws IllegalArgumentException
+     *             if the number of values does not match the number of parameters.
+     */
+    public String format(Object... values) {
+        int count = values == null ? 0 : values.length;
+        if (count != parameterNames.size()) {
+            throw new IllegalArgumentException(String.format("Expected %d parameter values (%s), received %d",
+                    parameterNames.size(), parameterNames, count));
+        }
+
+        if (slots.length == 0) {
+            return fragments[0];
+        }
+
+        StringBuilder sb = new StringBuilder(renderedLength + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(fragments[i]);
+            appendConstant(values[slots[i]], sb);
+        }
+        sb.append(fragments[slots.length]);
+        return sb.toString();
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static void appendConstant(Object value, StringBuilder sb) {
+        if (value == null) {
+            sb.append("null");
+        }
+        else if (value.getClass() == Long.class) {
+            sb.append(value);
+            sb.append("L");
+        }
+        else if (value.getClass() == Date.class) {
+            ISO8601DateConverter dateConverter = new ISO8601DateConverter();
+            sb.append("datetime'");
+            sb.append(dateConverter.format((Date) value));
+            sb.append("'");
+        }
+        else if (value.getClass() == UUID.class) {
+            sb.append("(guid'");
+            sb.append(value);
+            sb.append("')");
+        }
+        else if (value.getClass() == String.class) {
+            sb.append("'");
+            sb.append(((String) value).replace("'", "''"));
+            sb.append("'");
+        }
+        else if (value.getClass() == byte[].class) {
+            sb.append("X'");
+            for (byte b : (byte[]) value) {
+                sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            sb.append("'");
+        }
+        else if (value.getClass() == Byte[].class) {
+            sb.append("X'");
+            for (Byte b : (Byte[]) value) {
+                sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            sb.append("'");
+        }
+        else {
+            sb.append(value);
+        }
+    }
+
+    private static class Compiler {
+        private final List<String> fragments = new ArrayList<String>();
+        private final List<Integer> slots = new ArrayList<Integer>();
+        private final List<String> parameterNames = new ArrayList<String>();
+        private StringBuilder current = new StringBuilder();
+
+        public void append(Filter filter) {
+            if (filter == null)
+                return;
+
+            if (filter instanceof PropertyNameFilter) {
+                current.append(((PropertyNameFilter) filter).getPropertyName());
+            }
+            else if (filter instanceof ConstantFilter) {
+                appendConstant(((ConstantFilter) filter).getValue(), current);
+            }
+            else if (filter instanceof ParameterFilter) {
+                String name = ((ParameterFilter) filter).getName();
+                int slot = parameterNames.indexOf(name);
+                if (slot < 0) {
+                    slot = parameterNames.size();
+                    parameterNames.add(name);
+                }
+                fragments.add(current.toString());
+                slots.add(slot);
+                current = new StringBuilder();
+            }
+            else if (filter instanceof UnaryFilter) {
+                current.append(((UnaryFilter) filter).getOperator());
+                current.append("(");
+                append(((UnaryFilter) filter).getOperand());
+                current.append(")");
+            }
+            else if (filter instanceof BinaryFilter) {
+                current.append("(");
+                append(((BinaryFilter) filter).getLeft());
+                current.append(" ");
+                current.append(((BinaryFilter) filter).getOperator());
+                current.append(" ");
+                append(((BinaryFilter) filter).getRight());
+                current.append(")");
+            }
+            else if (filter instanceof QueryStringFilter) {
+                current.append(((QueryStringFilter) filter).getQueryString());
+            }
+        }
+
+        public FilterTemplate toTemplate() {
+            fragments.add(current.toString());
+
+            int[] slotArray = new int[slots.size()];
+            for (int i = 0; i < slotArray.length; i++) {
+                slotArray[i] = slots.get(i);
+            }
+
+            return new FilterTemplate(fragments.toArray(new String[fragments.size()]), slotArray,
+                    Collections.unmodifiableList(parameterNames));
+        }
+    }
+}
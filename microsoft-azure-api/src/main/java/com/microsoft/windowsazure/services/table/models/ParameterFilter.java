@@ -0,0 +1,52 @@
+/**
+ * Copyright 2012 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.models;
+
+/**
+ * Represents a named parameter used as a placeholder for a constant value in a {@link FilterTemplate}.
+ * <p>
+ * Use the static factory method in the {@link Filter} class to create a {@link ParameterFilter}, rather than
+ * constructing one directly.
+ * <p>
+ * A {@link ParameterFilter} takes the place of a {@link ConstantFilter} in a filter expression that is compiled once
+ * with {@link FilterTemplate#compile(Filter)} and then executed with different values. A filter expression containing
+ * a parameter cannot be used directly as a query filter; bind values to the compiled template instead.
+ */
+public class ParameterFilter extends Filter {
+    private final String name;
+
+    /**
+     * Creates a table query filter parameter from the <em>name</em> parameter.
+     * <p>
+     * Use the static factory method in the {@link Filter} class to create a {@link ParameterFilter}, rather than
+     * constructing one directly.
+     * 
+     * @param name
+     *            A {@link String} containing the name of the parameter.
+     */
+    public ParameterFilter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the parameter set in this {@link ParameterFilter} instance.
+     * 
+     * @return
+     *         A {@link String} containing the name of the parameter.
+     */
+    public String getName() {
+        return name;
+    }
+}
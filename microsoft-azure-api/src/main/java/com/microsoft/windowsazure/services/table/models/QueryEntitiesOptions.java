@@ -33,6 +33,7 @@ public class QueryEntitiesOptions extends TableServiceOptions {
     private Filter filter;
     private List<String> orderByFields = new ArrayList<String>();
     private Integer top;
+    private boolean prefetchNextPage;
 
     public String nextPartitionKey;
     public String nextRowKey;
@@ -270,4 +271,33 @@ public class QueryEntitiesOptions extends TableServiceOptions {
         this.top = top;
         return this;
     }
+
+    /**
+     * Gets whether the next page of results is requested while the current one is consumed, when iterating the
+     * entities with {@link TableContract#iterateEntities(String, QueryEntitiesOptions) iterateEntities}.
+     * 
+     * @return
+     *         <code>true</code> if the next page of results is prefetched.
+     */
+    public boolean isPrefetchNextPage() {
+        return prefetchNextPage;
+    }
+
+    /**
+     * Sets whether the next page of results is requested while the current one is consumed, when iterating the
+     * entities with {@link TableContract#iterateEntities(String, QueryEntitiesOptions) iterateEntities}. Prefetching
+     * hides the latency of each continuation request at the cost of a second open connection.
+     * <p>
+     * This value only affects calls made on methods where this {@link QueryEntitiesOptions} instance is passed as a
+     * parameter.
+     * 
+     * @param prefetchNextPage
+     *            <code>true</code> to prefetch the next page of results.
+     * @return
+     *         A reference to this {@link QueryEntitiesOptions} instance.
+     */
+    public QueryEntitiesOptions setPrefetchNextPage(boolean prefetchNextPage) {
+        this.prefetchNextPage = prefetchNextPage;
+        return this;
+    }
 }
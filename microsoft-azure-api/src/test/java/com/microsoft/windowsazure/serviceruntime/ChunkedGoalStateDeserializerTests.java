@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.serviceruntime;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ChunkedGoalStateDeserializerTests {
+    private static String goalState(int incarnation, String expectedState) {
+        return "<?xml version=\"1.0\" encoding=\"utf-8\"?>" + "<GoalState>" + "<Incarnation>" + incarnation
+                + "</Incarnation>" + "<ExpectedState>" + expectedState + "</ExpectedState>"
+                + "<RoleEnvironmentPath>envpath</RoleEnvironmentPath>"
+                + "<CurrentStateEndpoint>statepath</CurrentStateEndpoint>"
+                + "<Deadline>2011-03-08T03:27:44.0Z</Deadline>" + "</GoalState>";
+    }
+
+    @Test
+    public void deserializeReadsConsecutiveChunks() {
+        InputChannel channel = new MockInputChannel(new String[] { goalState(1, "Started"), goalState(2, "Stopped") });
+        ChunkedGoalStateDeserializer deserializer = new ChunkedGoalStateDeserializer();
+
+        deserializer.initialize(channel.getInputStream(null));
+
+        GoalState first = deserializer.deserialize();
+        GoalState second = deserializer.deserialize();
+
+        assertThat(first.getIncarnation().intValue(), is(1));
+        assertThat(first.getExpectedState(), is(ExpectedState.STARTED));
+        assertThat(first.getEnvironmentPath(), is("envpath"));
+        assertThat(first.getCurrentStateEndpoint(), is("statepath"));
+        assertThat(first.getDeadline(), notNullValue());
+        assertThat(second.getIncarnation().intValue(), is(2));
+        assertThat(second.getExpectedState(), is(ExpectedState.STOPPED));
+        assertThat(deserializer.deserialize(), nullValue());
+    }
+
+    @Test
+    public void deserializeHandlesPartialReads() {
+        InputChannel channel = new MockInputChannel(new String[] { goalState(3, "Started"), goalState(4, "Started") });
+        ChunkedGoalStateDeserializer deserializer = new ChunkedGoalStateDeserializer();
+
+        deserializer.initialize(new TricklingInputStream(channel.getInputStream(null)));
+
+        assertThat(deserializer.deserialize().getIncarnation().intValue(), is(3));
+        assertThat(deserializer.deserialize().getIncarnation().intValue(), is(4));
+        assertThat(deserializer.deserialize(), nullValue());
+    }
+
+    /**
+     * Returns at most one byte from every bulk read, as a pipe delivering data slowly would.
+     */
+    private static class TricklingInputStream extends FilterInputStream {
+        public TricklingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 1));
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.serviceruntime;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class RoleEnvironmentChangeCalculatorTests {
+    private static final int ROLE_COUNT = 20;
+    private static final int INSTANCE_COUNT = 250;
+
+    @Test
+    public void identicalTopologiesProduceNoChanges() {
+        RoleEnvironmentData current = createData(createRoles(ROLE_COUNT, INSTANCE_COUNT), createSettings());
+        RoleEnvironmentData newData = createData(createRoles(ROLE_COUNT, INSTANCE_COUNT), createSettings());
+
+        List<RoleEnvironmentChange> changes = calculate(current, newData);
+
+        assertThat(changes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void changedEndpointIsReportedForOwningRoleOnly() {
+        RoleEnvironmentData current = createData(createRoles(ROLE_COUNT, INSTANCE_COUNT), createSettings());
+        Map<String, Role> roles = createRoles(ROLE_COUNT, INSTANCE_COUNT);
+        Map<String, RoleInstanceEndpoint> endpoints = roles.get("role7").getInstances().get("role7_IN_42")
+                .getInstanceEndpoints();
+        endpoints.put("http", new RoleInstanceEndpoint("tcp", new InetSocketAddress("10.0.7.42", 8081)));
+        RoleEnvironmentData newData = createData(roles, createSettings());
+
+        assertThat(topologyChanges(calculate(current, newData)), equalTo(setOf("role7")));
+    }
+
+    @Test
+    public void addedAndRemovedInstancesAreReported() {
+        RoleEnvironmentData current = createData(createRoles(ROLE_COUNT, INSTANCE_COUNT), createSettings());
+        Map<String, Role> roles = createRoles(ROLE_COUNT, INSTANCE_COUNT);
+        roles.get("role3").getInstances().remove("role3_IN_0");
+        roles.get("role11").getInstances().put("role11_IN_new",
+                createInstance("role11_IN_new", 0, 0, new HashMap<String, RoleInstanceEndpoint>()));
+        RoleEnvironmentData newData = createData(roles, createSettings());
+
+        assertThat(topologyChanges(calculate(current, newData)), equalTo(setOf("role3", "role11")));
+    }
+
+    @Test
+    public void changedDomainsAreReported() {
+        RoleEnvironmentData current = createData(createRoles(ROLE_COUNT, INSTANCE_COUNT), createSettings());
+        Map<String, Role> roles = createRoles(ROLE_COUNT, INSTANCE_COUNT);
+        RoleInstance instance = roles.get("role5").getInstances().get("role5_IN_9");
+        roles.get("role5").getInstances().put(instance.getId(),
+                createInstance(instance.getId(), instance.getFaultDomain(), instance.getUpdateDomain() + 1,
+                        instance.getInstanceEndpoints()));
+        RoleEnvironmentData newData = createData(roles, createSettings());
+
+        assertThat(topologyChanges(calculate(current, newData)), equalTo(setOf("role5")));
+    }
+
+    @Test
+    public void addedAndRemovedRolesAreReported() {
+        RoleEnvironmentData current = createData(createRoles(ROLE_COUNT, INSTANCE_COUNT), createSettings());
+        Map<String, Role> roles = createRoles(ROLE_COUNT + 1, INSTANCE_COUNT);
+        roles.remove("role0");
+        RoleEnvironmentData newData = createData(roles, createSettings());
+
+        assertThat(topologyChanges(calculate(current, newData)), equalTo(setOf("role0", "role" + ROLE_COUNT)));
+    }
+
+    @Test
+    public void configurationSettingChangesAreReported() {
+        RoleEnvironmentData current = createData(createRoles(1, 1), createSettings());
+        Map<String, String> settings = createSettings();
+        settings.put("setting1", "changed");
+        settings.remove("setting2");
+        settings.put("added", "value");
+        RoleEnvironmentData newData = createData(createRoles(1, 1), settings);
+
+        Set<String> changed = new HashSet<String>();
+
+        for (RoleEnvironmentChange change : calculate(current, newData)) {
+            assertThat(change, instanceOf(RoleEnvironmentConfigurationSettingChange.class));
+            changed.add(((RoleEnvironmentConfigurationSettingChange) change).getConfigurationSettingName());
+        }
+
+        assertThat(changed, equalTo(setOf("setting1", "setting2", "added")));
+    }
+
+    @Test
+    public void fingerprintsAreComputedOncePerSnapshot() {
+        RoleEnvironmentData data = createData(createRoles(2, 2), createSettings());
+
+        assertThat(data.getRoleFingerprints(), sameInstance(data.getRoleFingerprints()));
+    }
+
+    private static List<RoleEnvironmentChange> calculate(RoleEnvironmentData current, RoleEnvironmentData newData) {
+        List<RoleEnvironmentChange> changes = new LinkedList<RoleEnvironmentChange>();
+
+        RoleEnvironmentChangeCalculator.calculateChanges(current, newData, changes);
+
+        return changes;
+    }
+
+    private static Set<String> topologyChanges(List<RoleEnvironmentChange> changes) {
+        Set<String> roles = new HashSet<String>();
+
+        for (RoleEnvironmentChange change : changes) {
+            assertThat(change, instanceOf(RoleEnvironmentTopologyChange.class));
+            assertThat(roles.add(((RoleEnvironmentTopologyChange) change).getRoleName()), is(true));
+        }
+
+        return roles;
+    }
+
+    private static Set<String> setOf(String... values) {
+        Set<String> set = new HashSet<String>();
+
+        for (String value : values) {
+            set.add(value);
+        }
+
+        return set;
+    }
+
+    private static RoleEnvironmentData createData(Map<String, Role> roles, Map<String, String> settings) {
+        RoleInstance currentInstance = roles.values().iterator().next().getInstances().values().iterator().next();
+
+        return new RoleEnvironmentData("deployment", settings, new HashMap<String, LocalResource>(), currentInstance,
+                roles, false);
+    }
+
+    private static Map<String, String> createSettings() {
+        Map<String, String> settings = new HashMap<String, String>();
+
+        for (int i = 0; i < 10; i++) {
+            settings.put("setting" + i, "value" + i);
+        }
+
+        return settings;
+    }
+
+    private static Map<String, Role> createRoles(int roleCount, int instanceCount) {
+        Map<String, Role> roles = new HashMap<String, Role>();
+
+        for (int r = 0; r < roleCount; r++) {
+            String roleName = "role" + r;
+            Map<String, RoleInstance> instances = new HashMap<String, RoleInstance>();
+
+            for (int i = 0; i < instanceCount; i++) {
+                Map<String, RoleInstanceEndpoint> endpoints = new HashMap<String, RoleInstanceEndpoint>();
+                String address = "10.0." + r + "." + i;
+
+                endpoints.put("http", new RoleInstanceEndpoint("tcp", new InetSocketAddress(address, 8080)));
+                endpoints.put("internal", new RoleInstanceEndpoint("tcp", new InetSocketAddress(address, 9000)));
+
+                String id = roleName + "_IN_" + i;
+                instances.put(id, createInstance(id, i % 2, i % 5, endpoints));
+            }
+
+            roles.put(roleName, new Role(roleName, instances));
+        }
+
+        return roles;
+    }
+
+    private static RoleInstance createInstance(String id, int faultDomain, int updateDomain,
+            Map<String, RoleInstanceEndpoint> endpoints) {
+        return new RoleInstance(id, faultDomain, updateDomain, endpoints);
+    }
+}
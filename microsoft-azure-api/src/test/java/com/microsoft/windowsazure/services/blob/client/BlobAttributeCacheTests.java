@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.AccessCondition;
+
+public class BlobAttributeCacheTests {
+    private static final URI endpoint = URI.create("http://account.blob.core.windows.net");
+
+    private static final CloudBlobClient client = new CloudBlobClient(endpoint);
+
+    private static CloudBlockBlob blob(String name, String snapshotID, String etag) throws Exception {
+        CloudBlockBlob blob = new CloudBlockBlob(endpoint.resolve("/container/" + name), snapshotID, client);
+        blob.properties.setEtag(etag);
+        blob.metadata.put("name", name);
+        return blob;
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntry() throws Exception {
+        BlobAttributeCache cache = new BlobAttributeCache(2, 60000);
+        CloudBlockBlob a = blob("a", null, "0x1");
+        CloudBlockBlob b = blob("b", null, "0x2");
+        CloudBlockBlob c = blob("c", null, "0x3");
+
+        cache.put(a);
+        cache.put(b);
+        assertNotNull(cache.get(a));
+        cache.put(c);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+    }
+
+    @Test
+    public void keysEntriesBySnapshot() throws Exception {
+        BlobAttributeCache cache = new BlobAttributeCache(10, 60000);
+        CloudBlockBlob base = blob("a", null, "0x1");
+        CloudBlockBlob snapshot = blob("a", "2012-01-01T00:00:00.0000000Z", "0x2");
+
+        cache.put(base);
+        assertNull(cache.get(snapshot));
+
+        cache.put(snapshot);
+        assertEquals("0x1", cache.get(base).getEtag());
+        assertEquals("0x2", cache.get(snapshot).getEtag());
+
+        cache.invalidate(base.getUri(), null);
+        assertNull(cache.get(base));
+        assertNotNull(cache.get(snapshot));
+    }
+
+    @Test
+    public void freshEntriesAreAppliedWithoutRequest() throws Exception {
+        try {
+            client.enableAttributeCache(10, 60000).put(blob("a", null, "0x1"));
+
+            CloudBlockBlob reference = new CloudBlockBlob(endpoint.resolve("/container/a"), client);
+            reference.downloadAttributes();
+            assertEquals("0x1", reference.getProperties().getEtag());
+            assertEquals("a", reference.getMetadata().get("name"));
+
+            // The blob's attributes are a copy of the cached ones.
+            reference.getMetadata().put("name", "changed");
+            assertTrue(reference.exists());
+            assertEquals("a", reference.getMetadata().get("name"));
+        }
+        finally {
+            client.disableAttributeCache();
+        }
+    }
+
+    @Test
+    public void blobsWithPendingCopyAreNotCached() throws Exception {
+        BlobAttributeCache cache = new BlobAttributeCache(10, 60000);
+        CloudBlockBlob a = blob("a", null, "0x1");
+        cache.put(a);
+
+        a.copyState = new CopyState();
+        a.copyState.setStatus(CopyStatus.PENDING);
+        cache.put(a);
+        assertNull(cache.get(a));
+
+        a.copyState.setStatus(CopyStatus.SUCCESS);
+        cache.put(a);
+        assertEquals(CopyStatus.SUCCESS, cache.get(a).getCopyStatus());
+    }
+
+    @Test
+    public void expiredEntriesAreNotFresh() throws Exception {
+        BlobAttributeCache cache = new BlobAttributeCache(10, 0);
+        CloudBlockBlob a = blob("a", null, "0x1");
+        cache.put(a);
+
+        assertFalse(cache.get(a).isFresh());
+        assertNotNull(a.getCachedAttributes(cache, null));
+        assertNull(a.getCachedAttributes(cache, new AccessCondition()));
+    }
+}
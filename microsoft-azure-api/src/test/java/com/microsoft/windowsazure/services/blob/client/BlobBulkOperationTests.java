@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Exercises bulk operations against a local server that lists a fixed set of blobs, with actions that do not send
+ * requests.
+ */
+public class BlobBulkOperationTests {
+    private StubStorageServer server;
+    private CloudBlobContainer container;
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StubStorageServer.respond(exchange, 200, "application/xml", StubStorageServer
+                        .blobListing(StubStorageServer.blob("a") + StubStorageServer.blob("b")
+                                + StubStorageServer.blob("c")));
+            }
+        });
+        container = server.createBlobClient().getContainerReference("container");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void failingListenerDoesNotAbortTheOperation() throws Exception {
+        // Arrange
+        final AtomicInteger notified = new AtomicInteger();
+        BlobBulkOperation operation = new BlobBulkOperation(container, new BlobBulkAction() {
+            @Override
+            public void execute(CloudBlob blob, BlobRequestOptions options, OperationContext opContext)
+                    throws Exception {
+                if (blob.getName().equals("b")) {
+                    throw new IOException("b");
+                }
+            }
+        });
+        operation.setProgressListener(new StorageEvent<BlobBulkProgressEvent>() {
+            @Override
+            public void eventOccurred(BlobBulkProgressEvent eventArg) {
+                notified.incrementAndGet();
+                throw new IllegalStateException("listener");
+            }
+        });
+
+        // Act
+        BlobBulkReport report = operation.execute();
+
+        // Assert
+        assertEquals(3, notified.get());
+        assertEquals(3, report.getProcessedCount());
+        assertEquals(1, report.getFailedCount());
+        assertEquals(2, report.getSucceededCount());
+        assertEquals("b", report.getFailures().get("b").getMessage());
+    }
+
+    @Test
+    public void reportCountsEveryFailureButRecordsOnlyUpToTheCap() throws Exception {
+        // Arrange
+        BlobBulkReport report = new BlobBulkReport(2);
+        CloudBlob blob = container.getBlockBlobReference("blob");
+
+        // Act
+        report.record("ok", null, blob);
+        report.record("first", new IOException("1"), blob);
+        report.record("second", new IOException("2"), blob);
+        BlobBulkProgressEvent last = report.record("third", new IOException("3"), blob);
+
+        // Assert
+        assertEquals(4, report.getProcessedCount());
+        assertEquals(3, report.getFailedCount());
+        assertEquals(1, report.getSucceededCount());
+        assertEquals(2, report.getFailures().size());
+        assertArrayEquals(new String[] { "first", "second" }, report.getFailures().keySet().toArray());
+        assertEquals(4, last.getProcessedCount());
+        assertEquals(3, last.getFailedCount());
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.StorageCredentialsAccountAndKey;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
+
+/**
+ * Exercises how the copy orchestrator acts on copy states, without sending requests.
+ */
+public class BlobCopyOrchestratorTests {
+    private static final long START_NANOS = 1000000000L;
+    private static final long MS = 1000000L;
+
+    private BlobCopyOrchestrator orchestrator;
+    private BlobBulkReport report;
+    private BlobCopyOrchestrator.CopyTask task;
+
+    @Before
+    public void setUp() throws Exception {
+        CloudBlobClient client = new CloudBlobClient(new URI("http://127.0.0.1/account"),
+                new StorageCredentialsAccountAndKey("account", new byte[] { 0 }));
+        orchestrator = new BlobCopyOrchestrator();
+        orchestrator.setMinPollIntervalInMs(1000);
+        orchestrator.setMaxPollIntervalInMs(60000);
+        report = new BlobBulkReport(10);
+        task = new BlobCopyOrchestrator.CopyTask(new CloudBlockBlob(new URI(
+                "http://127.0.0.1/account/container/source"), client), new CloudBlockBlob(new URI(
+                "http://127.0.0.1/account/container/destination"), client));
+        task.attempts = 1;
+    }
+
+    private void setCopyState(CopyStatus status, long bytesCopied, long totalBytes) {
+        CopyState state = new CopyState();
+        state.setCopyId("copy");
+        state.setStatus(status);
+        state.setBytesCopied(bytesCopied);
+        state.setTotalBytes(totalBytes);
+        task.destination.copyState = state;
+    }
+
+    @Test
+    public void pollIntervalFollowsTheCopyRate() {
+        // A new copy is first polled at the minimum interval.
+        setCopyState(CopyStatus.PENDING, 0, 1000);
+        orchestrator.processCopyState(task, START_NANOS, report);
+        assertEquals(1000, task.pollIntervalInMs);
+        assertEquals(START_NANOS + 1000 * MS, task.nextPollNanos);
+
+        // 100 bytes per second leaves 9 seconds to completion, so the copy is polled again after half of that.
+        setCopyState(CopyStatus.PENDING, 100, 1000);
+        orchestrator.processCopyState(task, START_NANOS + 1000 * MS, report);
+        assertEquals(4500, task.pollIntervalInMs);
+
+        // Without progress the interval doubles, up to the maximum.
+        orchestrator.processCopyState(task, START_NANOS + 5500 * MS, report);
+        assertEquals(9000, task.pollIntervalInMs);
+        for (int i = 0; i < 4; i++) {
+            orchestrator.processCopyState(task, START_NANOS + (6000 + i) * MS, report);
+        }
+        assertEquals(60000, task.pollIntervalInMs);
+        assertEquals(0, orchestrator.getQueuedCount());
+        assertEquals(0, report.getProcessedCount());
+    }
+
+    @Test
+    public void stalledCopyIsAbortedAndRestarted() {
+        // Arrange
+        orchestrator.setStallTimeoutInMs(5000);
+        setCopyState(CopyStatus.PENDING, 10, 1000);
+        orchestrator.processCopyState(task, START_NANOS, report);
+
+        // Act
+        orchestrator.processCopyState(task, START_NANOS + 4999 * MS, report);
+        assertEquals(0, orchestrator.getQueuedCount());
+        orchestrator.processCopyState(task, START_NANOS + 5000 * MS, report);
+
+        // Assert
+        assertEquals(0, task.nextPollNanos);
+        assertEquals("copy", task.abortCopyId);
+        assertEquals(0, task.pollIntervalInMs);
+        assertEquals(0, task.lastBytesCopied);
+        assertEquals(1, orchestrator.getQueuedCount());
+        assertEquals(0, report.getProcessedCount());
+    }
+
+    @Test
+    public void failedCopyIsRestartedUntilItsAttemptsAreUsed() {
+        // Arrange
+        orchestrator.setMaxAttempts(2);
+        setCopyState(CopyStatus.FAILED, 0, 1000);
+
+        // Act
+        orchestrator.processCopyState(task, START_NANOS, report);
+        task.attempts++;
+        orchestrator.processCopyState(task, START_NANOS + 1000 * MS, report);
+
+        // Assert
+        assertEquals(1, orchestrator.getQueuedCount());
+        assertEquals(1, report.getFailedCount());
+        assertTrue(report.getFailures().containsKey("destination"));
+    }
+
+    @Test
+    public void failingListenerDoesNotStopTheOrchestration() {
+        // Arrange
+        orchestrator.setProgressListener(new StorageEvent<BlobBulkProgressEvent>() {
+            @Override
+            public void eventOccurred(BlobBulkProgressEvent eventArg) {
+                throw new IllegalStateException();
+            }
+        });
+        setCopyState(CopyStatus.SUCCESS, 1000, 1000);
+
+        // Act
+        orchestrator.processCopyState(task, START_NANOS, report);
+
+        // Assert
+        assertEquals(1, report.getSucceededCount());
+    }
+
+    @Test
+    public void successfulCopyIsRecordedWithItsBytes() {
+        // Arrange
+        setCopyState(CopyStatus.SUCCESS, 1000, 1000);
+
+        // Act
+        orchestrator.processCopyState(task, START_NANOS, report);
+
+        // Assert
+        assertEquals(0, task.nextPollNanos);
+        assertEquals(1000, orchestrator.getBytesCopied());
+        assertEquals(1, report.getSucceededCount());
+        assertEquals(0, orchestrator.getQueuedCount());
+    }
+}
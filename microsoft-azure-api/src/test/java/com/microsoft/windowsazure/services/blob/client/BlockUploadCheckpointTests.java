@@ -0,0 +1,97 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockUploadCheckpointTests {
+    private File sourceFile;
+    private File checkpointFile;
+
+    @Before
+    public void createFiles() throws IOException {
+        sourceFile = File.createTempFile("source", ".dat");
+        FileOutputStream out = new FileOutputStream(sourceFile);
+        out.write(new byte[1024]);
+        out.close();
+
+        checkpointFile = File.createTempFile("upload", ".checkpoint");
+        checkpointFile.delete();
+    }
+
+    @After
+    public void deleteFiles() {
+        sourceFile.delete();
+        checkpointFile.delete();
+    }
+
+    @Test
+    public void recordedBlocksAreLoadedOnReopen() throws IOException {
+        BlockUploadCheckpoint checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 256);
+        assertNull(checkpoint.getBlockMD5(0));
+        checkpoint.recordBlock(0, "md5-0");
+        checkpoint.recordBlock(2, "md5-2");
+        checkpoint.close();
+
+        checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 256);
+        assertEquals("md5-0", checkpoint.getBlockMD5(0));
+        assertNull(checkpoint.getBlockMD5(1));
+        assertEquals("md5-2", checkpoint.getBlockMD5(2));
+        checkpoint.close();
+    }
+
+    @Test
+    public void checkpointForDifferentBlockSizeIsDiscarded() throws IOException {
+        BlockUploadCheckpoint checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 256);
+        checkpoint.recordBlock(0, "md5-0");
+        checkpoint.close();
+
+        checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 512);
+        assertNull(checkpoint.getBlockMD5(0));
+        checkpoint.close();
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws IOException {
+        BlockUploadCheckpoint checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 256);
+        checkpoint.recordBlock(1, "md5-1");
+        checkpoint.close();
+
+        FileWriter writer = new FileWriter(checkpointFile, true);
+        writer.write("3");
+        writer.close();
+
+        checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 256);
+        assertEquals("md5-1", checkpoint.getBlockMD5(1));
+        assertNull(checkpoint.getBlockMD5(3));
+        checkpoint.recordBlock(4, "md5-4");
+        checkpoint.close();
+
+        checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, 256);
+        assertEquals("md5-4", checkpoint.getBlockMD5(4));
+        assertNull(checkpoint.getBlockMD5(34));
+        checkpoint.delete();
+        assertFalse(checkpointFile.exists());
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.RequestResult;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Exercises the asynchronous block upload, range download and attribute download against a local server that stores
+ * the uploaded block and returns it for ranged reads.
+ */
+public class CloudBlobAsyncTests {
+    private StubStorageServer server;
+    private CloudBlobClient client;
+    private volatile byte[] stored;
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("PUT".equals(exchange.getRequestMethod())) {
+                    stored = StubStorageServer.readBody(exchange);
+                    exchange.sendResponseHeaders(201, -1);
+                }
+                else if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().add("x-ms-blob-type", "BlockBlob");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                else {
+                    String[] range = exchange.getRequestHeaders().getFirst("x-ms-range").substring(6).split("-");
+                    int start = Integer.parseInt(range[0]);
+                    int length = Integer.parseInt(range[1]) - start + 1;
+                    exchange.getResponseHeaders().add("x-ms-blob-type", "BlockBlob");
+                    exchange.sendResponseHeaders(206, length);
+                    OutputStream output = exchange.getResponseBody();
+                    output.write(stored, start, length);
+                    output.close();
+                }
+                exchange.close();
+            }
+        });
+        client = server.createBlobClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void uploadsBlockAndDownloadsRangeAsynchronously() throws Exception {
+        // Arrange
+        CloudBlockBlob blob = client.getContainerReference("container").getBlockBlobReference("blob");
+        byte[] data = "0123456789".getBytes("UTF-8");
+        byte[] buffer = new byte[6];
+
+        // Act
+        StorageFuture<Void> upload = blob.uploadBlockAsync("AAAA", new ByteArrayInputStream(data), data.length,
+                null, null, null);
+        upload.getResult();
+        StorageFuture<Void> download = blob.downloadRangeAsync(2, 4, buffer, 1, null, null, null);
+        download.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertArrayEquals(data, stored);
+        assertEquals("\u00002345\u0000", new String(buffer, "UTF-8"));
+    }
+
+    @Test
+    public void downloadAttributesAsyncInitializesAReusedContext() throws Exception {
+        // Arrange
+        CloudBlockBlob blob = client.getContainerReference("container").getBlockBlobReference("blob");
+        OperationContext opContext = new OperationContext();
+        opContext.appendRequestResult(new RequestResult());
+
+        // Act
+        blob.downloadAttributesAsync(null, null, opContext).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(1, opContext.getRequestResults().size());
+        assertEquals(200, opContext.getLastResult().getStatusCode());
+        assertEquals(BlobType.BLOCK_BLOB, blob.getProperties().getBlobType());
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.Constants;
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.microsoft.windowsazure.services.core.storage.utils.Base64;
+import com.microsoft.windowsazure.services.core.storage.utils.Utility;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Exercises file uploads against a local server that records the uploaded blocks and the committed block list.
+ */
+public class CloudBlockBlobUploadTests {
+    private final Map<String, Integer> blockSizes = new ConcurrentHashMap<String, Integer>();
+    private final List<String> committedIds = new ArrayList<String>();
+    private final AtomicInteger putBlockCount = new AtomicInteger();
+    private final AtomicInteger getBlockListCount = new AtomicInteger();
+    private final Map<String, Integer> uncommittedBlocks = new LinkedHashMap<String, Integer>();
+    private volatile int failingPutBlock;
+    private volatile String committedMD5;
+    private StubStorageServer server;
+    private CloudBlockBlob blob;
+    private File sourceFile;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getRawQuery();
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    getBlockListCount.incrementAndGet();
+                    StringBuilder list = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?><BlockList>"
+                            + "<CommittedBlocks /><UncommittedBlocks>");
+                    for (Map.Entry<String, Integer> block : uncommittedBlocks.entrySet()) {
+                        list.append("<Block><Name>" + block.getKey() + "</Name><Size>" + block.getValue()
+                                + "</Size></Block>");
+                    }
+                    StubStorageServer.respond(exchange, 200, "application/xml",
+                            list.append("</UncommittedBlocks></BlockList>").toString());
+                    return;
+                }
+
+                byte[] body = StubStorageServer.readBody(exchange);
+                int status = 201;
+                if (query.contains("comp=block&") || query.endsWith("comp=block")) {
+                    Matcher id = Pattern.compile("blockid=([^&]*)").matcher(query);
+                    id.find();
+                    if (putBlockCount.incrementAndGet() == failingPutBlock) {
+                        status = 400;
+                    }
+                    else {
+                        blockSizes.put(URLDecoder.decode(id.group(1), "UTF-8"), body.length);
+                    }
+                }
+                else {
+                    committedMD5 = exchange.getRequestHeaders().getFirst("x-ms-blob-content-md5");
+                    Matcher id = Pattern.compile("<Uncommitted>([^<]*)</Uncommitted>").matcher(
+                            new String(body, "UTF-8"));
+                    while (id.find()) {
+                        committedIds.add(id.group(1));
+                    }
+                }
+
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+            }
+        });
+
+        CloudBlobClient client = server.createBlobClient();
+        client.setSingleBlobPutThresholdInBytes(Constants.MB);
+        client.setWriteBlockSizeInBytes(Constants.MB);
+        client.setConcurrentRequestCount(2);
+        blob = client.getContainerReference("container").getBlockBlobReference("blob");
+
+        content = new byte[5 * Constants.MB / 2];
+        new Random(1).nextBytes(content);
+        sourceFile = File.createTempFile("source", ".dat");
+        FileOutputStream out = new FileOutputStream(sourceFile);
+        out.write(content);
+        out.close();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        sourceFile.delete();
+    }
+
+    @Test
+    public void fileIsSplitIntoBlocksCommittedInOrderWithItsMD5() throws Exception {
+        // Arrange
+        BlobRequestOptions options = new BlobRequestOptions();
+        options.setStoreBlobContentMD5(true);
+
+        // Act
+        blob.uploadFromFile(sourceFile, null, options, null);
+
+        // Assert
+        assertEquals(3, committedIds.size());
+        assertEquals(Integer.valueOf(Constants.MB), blockSizes.get(committedIds.get(0)));
+        assertEquals(Integer.valueOf(Constants.MB), blockSizes.get(committedIds.get(1)));
+        assertEquals(Integer.valueOf(Constants.MB / 2), blockSizes.get(committedIds.get(2)));
+        assertEquals(Base64.encode(MessageDigest.getInstance("MD5").digest(content)), committedMD5);
+        assertEquals(committedMD5, blob.getProperties().getContentMD5());
+    }
+
+    @Test
+    public void failedBlockFailsTheUploadWithoutCommitting() throws Exception {
+        // Arrange
+        failingPutBlock = 2;
+
+        // Act
+        try {
+            blob.uploadFromFile(sourceFile);
+            fail();
+        }
+        catch (StorageException e) {
+            // Assert
+            assertEquals(400, e.getHttpStatusCode());
+        }
+
+        assertTrue(committedIds.isEmpty());
+    }
+
+    @Test
+    public void resumedUploadSkipsOnlyBlocksThatStillMatchTheirRecordedMD5() throws Exception {
+        // Arrange
+        File checkpointFile = File.createTempFile("upload", ".checkpoint");
+        checkpointFile.delete();
+        BlockUploadCheckpoint checkpoint = BlockUploadCheckpoint.open(checkpointFile, sourceFile, Constants.MB);
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update(content, 0, Constants.MB);
+        checkpoint.recordBlock(0, Base64.encode(digest.digest()));
+        checkpoint.recordBlock(1, "changed");
+        checkpoint.close();
+        String firstId = Base64.encode(Utility.getBytesFromLong(0));
+        String secondId = Base64.encode(Utility.getBytesFromLong(Constants.MB));
+        uncommittedBlocks.put(firstId, Constants.MB);
+        uncommittedBlocks.put(secondId, Constants.MB);
+
+        // Act
+        try {
+            blob.uploadFromFile(sourceFile, checkpointFile);
+        }
+        finally {
+            checkpointFile.delete();
+        }
+
+        // Assert
+        assertEquals(1, getBlockListCount.get());
+        assertEquals(2, putBlockCount.get());
+        assertFalse(blockSizes.containsKey(firstId));
+        assertTrue(blockSizes.containsKey(secondId));
+        assertEquals(3, committedIds.size());
+        assertEquals(firstId, committedIds.get(0));
+    }
+
+    @Test
+    public void freshCheckpointDoesNotListBlocks() throws Exception {
+        // Arrange
+        File checkpointFile = File.createTempFile("upload", ".checkpoint");
+        checkpointFile.delete();
+
+        // Act
+        blob.uploadFromFile(sourceFile, checkpointFile);
+
+        // Assert
+        assertEquals(0, getBlockListCount.get());
+        assertEquals(3, putBlockCount.get());
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void blockCountIsLimited() {
+        assertEquals(3, CloudBlockBlob.getBlockCount(5 * Constants.MB / 2, Constants.MB));
+        assertEquals(BlobConstants.MAX_BLOCK_COUNT,
+                CloudBlockBlob.getBlockCount((long) BlobConstants.MAX_BLOCK_COUNT * Constants.MB, Constants.MB));
+
+        try {
+            CloudBlockBlob.getBlockCount((long) BlobConstants.MAX_BLOCK_COUNT * Constants.MB + 1, Constants.MB);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
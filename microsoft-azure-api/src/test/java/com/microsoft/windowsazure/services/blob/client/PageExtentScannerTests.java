@@ -0,0 +1,99 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageExtentScannerTests {
+    private static final int PAGE = BlobConstants.PAGE_SIZE;
+
+    private File imageFile;
+    private RandomAccessFile image;
+
+    @Before
+    public void createImage() throws IOException {
+        imageFile = File.createTempFile("sparse", ".vhd");
+        image = new RandomAccessFile(imageFile, "rw");
+    }
+
+    @After
+    public void deleteImage() throws IOException {
+        image.close();
+        imageFile.delete();
+    }
+
+    private void writePage(long pageIndex) throws IOException {
+        image.seek(pageIndex * PAGE + 17);
+        image.write(1);
+    }
+
+    private List<String> scan(long length, long maxExtentSize) throws IOException {
+        image.setLength(length);
+        PageExtentScanner scanner = new PageExtentScanner(image.getChannel(), length, maxExtentSize);
+        List<String> extents = new ArrayList<String>();
+        for (PageRange extent = scanner.next(); extent != null; extent = scanner.next()) {
+            extents.add(extent.toString());
+        }
+        return extents;
+    }
+
+    @Test
+    public void emptyImageHasNoExtents() throws IOException {
+        assertTrue(scan(8 * 1024 * 1024, 4 * 1024 * 1024).isEmpty());
+    }
+
+    @Test
+    public void adjacentPagesAreCoalesced() throws IOException {
+        writePage(0);
+        writePage(1);
+        writePage(5);
+        // Straddles the boundary of the scan buffer.
+        writePage(2047);
+        writePage(2048);
+        writePage(4095);
+
+        List<String> extents = scan(4096 * PAGE, 4 * 1024 * 1024);
+
+        assertEquals(4, extents.size());
+        assertEquals("bytes=0-1023", extents.get(0));
+        assertEquals("bytes=2560-3071", extents.get(1));
+        assertEquals(String.format("bytes=%d-%d", 2047 * PAGE, 2049 * PAGE - 1), extents.get(2));
+        assertEquals(String.format("bytes=%d-%d", 4095 * PAGE, 4096 * PAGE - 1), extents.get(3));
+    }
+
+    @Test
+    public void extentsAreSplitAtMaximumSize() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            writePage(i);
+        }
+
+        List<String> extents = scan(16 * PAGE, 4 * PAGE);
+
+        assertEquals(3, extents.size());
+        assertEquals(String.format("bytes=0-%d", 4 * PAGE - 1), extents.get(0));
+        assertEquals(String.format("bytes=%d-%d", 4 * PAGE, 8 * PAGE - 1), extents.get(1));
+        assertEquals(String.format("bytes=%d-%d", 8 * PAGE, 10 * PAGE - 1), extents.get(2));
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PageRangeDiffTests {
+    private static List<PageRange> ranges(long... bounds) {
+        List<PageRange> ranges = new ArrayList<PageRange>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            ranges.add(new PageRange(bounds[i], bounds[i + 1]));
+        }
+        return ranges;
+    }
+
+    private static String describe(List<PageRange> ranges) {
+        return Arrays.toString(ranges.toArray());
+    }
+
+    @Test
+    public void differenceRemovesCoveredPages() {
+        List<PageRange> previous = ranges(0, 2047, 4096, 5119, 8192, 9215);
+        List<PageRange> current = ranges(512, 1023, 4096, 5119, 9216, 10239);
+
+        assertEquals("[bytes=0-511, bytes=1024-2047, bytes=8192-9215]",
+                describe(PageRangeDiff.difference(previous, current)));
+    }
+
+    @Test
+    public void differenceHandlesUnsortedInputAndSpanningCuts() {
+        List<PageRange> previous = ranges(3072, 4095, 0, 1023);
+        List<PageRange> current = ranges(512, 3583);
+
+        assertEquals("[bytes=0-511, bytes=3584-4095]", describe(PageRangeDiff.difference(previous, current)));
+        assertTrue(PageRangeDiff.difference(current, ranges(0, 4095)).isEmpty());
+    }
+
+    @Test
+    public void splitLimitsRangeSize() {
+        assertEquals("[bytes=0-1023, bytes=1024-2047, bytes=2048-2559, bytes=4096-4607]",
+                describe(PageRangeDiff.split(ranges(0, 2559, 4096, 4607), 1024)));
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.blob.client;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.SendingRequestEvent;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Exercises parallel listings against a local server that lists a blob and a directory at the root, and a blob in the
+ * directory.
+ */
+public class ParallelBlobListingTests {
+    private StubStorageServer server;
+    private CloudBlobContainer container;
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                String items = query.contains("prefix=dir/") ? StubStorageServer.blob("dir/b") : StubStorageServer
+                        .blob("a") + StubStorageServer.blobPrefix("dir/");
+                StubStorageServer.respond(exchange, 200, "application/xml", StubStorageServer.blobListing(items));
+            }
+        });
+        container = server.createBlobClient().getContainerReference("container");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void walksDirectoriesOnDaemonThreads() throws Exception {
+        // Arrange
+        final Set<Boolean> daemon = new HashSet<Boolean>();
+        OperationContext opContext = new OperationContext();
+        opContext.getSendingRequestEventHandler().addListener(new StorageEvent<SendingRequestEvent>() {
+            @Override
+            public void eventOccurred(SendingRequestEvent eventArg) {
+                synchronized (daemon) {
+                    daemon.add(Thread.currentThread().isDaemon());
+                }
+            }
+        });
+
+        // Act
+        Set<String> names = new HashSet<String>();
+        for (ListBlobItem item : container.listBlobsParallel(null, EnumSet.noneOf(BlobListingDetails.class), null,
+                opContext)) {
+            names.add(((CloudBlob) item).getName());
+        }
+
+        // Assert
+        assertEquals(new HashSet<String>(Arrays.asList("a", "dir/b")), names);
+        assertEquals(Collections.singleton(Boolean.TRUE), daemon);
+    }
+
+    @Test(timeout = 10000)
+    public void errorOnAWorkerEndsTheEnumeration() throws Exception {
+        // Arrange
+        final Error error = new Error("worker");
+        OperationContext opContext = new OperationContext();
+        opContext.getSendingRequestEventHandler().addListener(new StorageEvent<SendingRequestEvent>() {
+            @Override
+            public void eventOccurred(SendingRequestEvent eventArg) {
+                throw error;
+            }
+        });
+        ParallelBlobListing.ParallelBlobIterator iterator = container.listBlobsParallel(null, null, null, opContext)
+                .iterator();
+
+        // Act
+        try {
+            iterator.hasNext();
+            fail();
+        }
+        catch (NoSuchElementException e) {
+            // Assert
+            assertSame(error, e.getCause());
+        }
+        finally {
+            iterator.close();
+        }
+    }
+}
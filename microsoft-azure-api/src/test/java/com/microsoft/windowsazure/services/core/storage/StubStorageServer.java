@@ -0,0 +1,169 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.microsoft.windowsazure.services.blob.client.CloudBlobClient;
+import com.microsoft.windowsazure.services.table.client.CloudTableClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that stands in for the storage service in unit tests, with helpers for the canned responses the
+ * tests return. Requests are handled concurrently by the specified handler.
+ */
+public final class StubStorageServer {
+    /**
+     * The namespace declarations of an AtomPub table response.
+     */
+    public static final String TABLE_NAMESPACES = " xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\""
+            + " xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\""
+            + " xmlns=\"http://www.w3.org/2005/Atom\"";
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\"?>";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private StubStorageServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server on a free local port.
+     */
+    public static StubStorageServer start(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        server.createContext("/", handler);
+        server.setExecutor(executor);
+        server.start();
+        return new StubStorageServer(server, executor);
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return the URI of the account the server stands in for.
+     */
+    public URI getAccountUri() throws URISyntaxException {
+        return new URI("http://127.0.0.1:" + this.server.getAddress().getPort() + "/account");
+    }
+
+    public CloudBlobClient createBlobClient() throws URISyntaxException {
+        return new CloudBlobClient(this.getAccountUri(), new StorageCredentialsAccountAndKey("account", "AAAA"));
+    }
+
+    public CloudTableClient createTableClient() throws URISyntaxException {
+        return new CloudTableClient(this.getAccountUri(), new StorageCredentialsAccountAndKey("account", "AAAA"));
+    }
+
+    public static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream input = exchange.getRequestBody();
+        byte[] buffer = new byte[64 * 1024];
+        for (int count = input.read(buffer); count != -1; count = input.read(buffer)) {
+            body.write(buffer, 0, count);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Sends a response with the specified status and body, and closes the exchange.
+     */
+    public static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream stream = exchange.getResponseBody();
+        stream.write(bytes);
+        stream.close();
+    }
+
+    /**
+     * @return a blob listing response holding the specified items, without a continuation.
+     */
+    public static String blobListing(String items) {
+        return blobListing(items, "");
+    }
+
+    /**
+     * @return a blob listing response holding the specified items, continued at the specified marker if it is not
+     *         empty.
+     */
+    public static String blobListing(String items, String nextMarker) {
+        return XML_DECLARATION + "<EnumerationResults><Blobs>" + items + "</Blobs><NextMarker>" + nextMarker
+                + "</NextMarker></EnumerationResults>";
+    }
+
+    /**
+     * @return a block blob item of a blob listing in the container named "container".
+     */
+    public static String blob(String name) {
+        return "<Blob><Name>" + name + "</Name><Url>http://127.0.0.1/account/container/" + name
+                + "</Url><Properties><BlobType>BlockBlob</BlobType></Properties></Blob>";
+    }
+
+    /**
+     * @return a directory item of a blob listing.
+     */
+    public static String blobPrefix(String name) {
+        return "<BlobPrefix><Name>" + name + "</Name></BlobPrefix>";
+    }
+
+    /**
+     * @return a query response feed holding the specified entries.
+     */
+    public static String feed(String entries) {
+        return XML_DECLARATION + "<feed" + TABLE_NAMESPACES + "><id>feed</id>" + entries + "</feed>";
+    }
+
+    /**
+     * @return an entity, as an entry of a feed, with the specified keys and additional properties.
+     */
+    public static String entry(String partitionKey, String rowKey, String properties) {
+        return entry(partitionKey, rowKey, properties, "");
+    }
+
+    /**
+     * @return a point retrieve response holding the specified entity.
+     */
+    public static String entryDocument(String partitionKey, String rowKey, String properties) {
+        return XML_DECLARATION + entry(partitionKey, rowKey, properties, TABLE_NAMESPACES);
+    }
+
+    private static String entry(String partitionKey, String rowKey, String properties, String namespaces) {
+        return "<entry" + namespaces + " m:etag=\"W/&quot;datetime'2012-01-01T00%3A00%3A00.0000000Z'&quot;\">"
+                + "<id>entity</id><content type=\"application/xml\"><m:properties><d:PartitionKey>" + partitionKey
+                + "</d:PartitionKey><d:RowKey>" + rowKey + "</d:RowKey>"
+                + "<d:Timestamp m:type=\"Edm.DateTime\">2012-01-01T00:00:00.0000000Z</d:Timestamp>" + properties
+                + "</m:properties></content></entry>";
+    }
+}
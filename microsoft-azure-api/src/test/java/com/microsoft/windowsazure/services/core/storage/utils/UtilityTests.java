@@ -0,0 +1,72 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class UtilityTests {
+    private static byte[] randomData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void readToBufferHashesDataInSinglePass() throws Exception {
+        byte[] data = randomData(20000);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        MessageDigest digest = Utility.getMD5Digest();
+
+        long read = Utility.readToBuffer(new ByteArrayInputStream(data), buffer, -1, 65536, digest);
+
+        assertEquals(data.length, read);
+        assertTrue(Arrays.equals(data, buffer.toByteArray()));
+        assertTrue(Arrays.equals(MessageDigest.getInstance("MD5").digest(data), digest.digest()));
+    }
+
+    @Test
+    public void readToBufferStopsAtReadLength() throws Exception {
+        byte[] data = randomData(20000);
+        ByteArrayInputStream source = new ByteArrayInputStream(data);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        long read = Utility.readToBuffer(source, buffer, 10000, 65536, null);
+
+        assertEquals(10000, read);
+        assertTrue(Arrays.equals(Arrays.copyOf(data, 10000), buffer.toByteArray()));
+        assertEquals(10000, source.available());
+    }
+
+    @Test
+    public void readToBufferReadsOneBytePastMaxLength() throws Exception {
+        byte[] data = randomData(20000);
+        ByteArrayInputStream source = new ByteArrayInputStream(data);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        long read = Utility.readToBuffer(source, buffer, -1, 8192, null);
+
+        assertEquals(8193, read);
+        assertEquals(8193, buffer.size());
+        assertEquals(data.length - 8193, source.available());
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class XMLFactoryProviderTests {
+    private static final String LISTING = "<?xml version=\"1.0\" encoding=\"utf-8\"?><EnumerationResults><Blobs>"
+            + "<Blob><Name>a&amp;b</Name></Blob><Blob><Name>c</Name></Blob><Blob><Name><![CDATA[d]]>e</Name></Blob>"
+            + "</Blobs></EnumerationResults>";
+
+    @After
+    public void restoreDefaults() {
+        XMLFactoryProvider.setInputFactory(null);
+        XMLFactoryProvider.setOutputFactory(null);
+    }
+
+    @Test
+    public void factoriesAreCreatedOnce() {
+        assertSame(XMLFactoryProvider.getInputFactory(), XMLFactoryProvider.getInputFactory());
+        assertSame(XMLFactoryProvider.getOutputFactory(), XMLFactoryProvider.getOutputFactory());
+    }
+
+    @Test
+    public void installedInputFactoryIsConfigured() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        XMLFactoryProvider.setInputFactory(factory);
+
+        assertSame(factory, XMLFactoryProvider.getInputFactory());
+        assertEquals(Boolean.TRUE, factory.getProperty(XMLInputFactory.IS_COALESCING));
+        assertEquals(Boolean.FALSE, factory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES));
+
+        XMLFactoryProvider.setInputFactory(null);
+        assertNotSame(factory, XMLFactoryProvider.getInputFactory());
+    }
+
+    @Test
+    public void writtenDocumentCanBeReadBack() throws Exception {
+        StringWriter out = new StringWriter();
+        XMLStreamWriter xmlw = XMLFactoryProvider.createXMLStreamWriter(out);
+        xmlw.writeStartDocument();
+        xmlw.writeStartElement("BlockList");
+        xmlw.writeStartElement("Latest");
+        xmlw.writeCharacters("AAAA");
+        xmlw.writeEndElement();
+        xmlw.writeEndElement();
+        xmlw.writeEndDocument();
+        xmlw.close();
+
+        XMLStreamReader xmlr = XMLFactoryProvider.createXMLStreamReader(new StringReader(out.toString()));
+        xmlr.nextTag();
+        xmlr.nextTag();
+        assertEquals("Latest", xmlr.getLocalName());
+        assertEquals("AAAA", xmlr.getElementText());
+    }
+
+    @Test
+    public void listingsParseConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws Exception {
+                        return readNames(LISTING.getBytes("UTF-8"));
+                    }
+                }));
+            }
+
+            for (Future<List<String>> result : results) {
+                List<String> names = result.get();
+                assertEquals(3, names.size());
+                assertEquals("a&b", names.get(0));
+                assertEquals("c", names.get(1));
+                assertEquals("de", names.get(2));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> readNames(byte[] listing) throws Exception {
+        List<String> names = new ArrayList<String>();
+        XMLStreamReader xmlr = XMLFactoryProvider.createXMLStreamReader(new ByteArrayInputStream(listing));
+
+        while (xmlr.hasNext()) {
+            if (xmlr.next() == XMLStreamConstants.START_ELEMENT && "Name".equals(xmlr.getLocalName())) {
+                xmlr.next();
+                names.add(xmlr.getText());
+            }
+        }
+
+        xmlr.close();
+        return names;
+    }
+}
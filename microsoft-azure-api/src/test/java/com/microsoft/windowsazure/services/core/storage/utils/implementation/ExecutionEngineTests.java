@@ -0,0 +1,317 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage.utils.implementation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.OperationCompletedEvent;
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.OperationMetrics;
+import com.microsoft.windowsazure.services.core.storage.OperationMetricsRegistry;
+import com.microsoft.windowsazure.services.core.storage.RequestOptions;
+import com.microsoft.windowsazure.services.core.storage.RequestResult;
+import com.microsoft.windowsazure.services.core.storage.RetryPolicy;
+import com.microsoft.windowsazure.services.core.storage.RetryPolicyFactory;
+import com.microsoft.windowsazure.services.core.storage.RetryResult;
+import com.microsoft.windowsazure.services.core.storage.ServiceClient;
+import com.microsoft.windowsazure.services.core.storage.StorageEvent;
+import com.microsoft.windowsazure.services.core.storage.StorageCredentialsAccountAndKey;
+import com.microsoft.windowsazure.services.core.storage.StorageException;
+import com.microsoft.windowsazure.services.core.storage.StorageFuture;
+import com.microsoft.windowsazure.services.queue.client.CloudQueueClient;
+
+public class ExecutionEngineTests {
+    private final List<OperationCompletedEvent> events = new ArrayList<OperationCompletedEvent>();
+
+    private ServiceClient createClient() throws Exception {
+        ServiceClient client = new CloudQueueClient(new URI("http://127.0.0.1:10001/devstoreaccount1"),
+                new StorageCredentialsAccountAndKey("devstoreaccount1", new byte[] { 0 }));
+
+        client.getOperationCompletedEventHandler().addListener(new StorageEvent<OperationCompletedEvent>() {
+            @Override
+            public void eventOccurred(OperationCompletedEvent eventArg) {
+                events.add(eventArg);
+            }
+        });
+
+        return client;
+    }
+
+    @Test
+    public void operationCompletedEventReportsRetries() throws Exception {
+        ServiceClient client = createClient();
+        OperationContext opContext = new OperationContext();
+
+        String result = ExecutionEngine.executeWithRetry(client, null, new FailingOperation(2),
+                new FixedRetry(0, 3), opContext);
+
+        assertEquals("done", result);
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).isSuccessful());
+        assertEquals(2, events.get(0).getRetryCount());
+        assertTrue(events.get(0).getTotalNanos() > 0);
+    }
+
+    @Test
+    public void operationCompletedEventReportsFailure() throws Exception {
+        ServiceClient client = createClient();
+        OperationContext opContext = new OperationContext();
+
+        try {
+            ExecutionEngine.executeWithRetry(client, null, new FailingOperation(5), new FixedRetry(0, 1),
+                    opContext);
+            fail();
+        }
+        catch (StorageException e) {
+            assertEquals(1, events.size());
+            assertFalse(events.get(0).isSuccessful());
+            assertSame(e, events.get(0).getException());
+            assertEquals(1, events.get(0).getRetryCount());
+        }
+    }
+
+    @Test
+    public void failingCompletionListenerDoesNotReplaceTheOutcome() throws Exception {
+        ServiceClient client = createClient();
+        client.getOperationCompletedEventHandler().addListener(new StorageEvent<OperationCompletedEvent>() {
+            @Override
+            public void eventOccurred(OperationCompletedEvent eventArg) {
+                throw new IllegalStateException("listener");
+            }
+        });
+
+        assertEquals("done", ExecutionEngine.executeWithRetry(client, null, new FailingOperation(0),
+                new FixedRetry(0, 1), new OperationContext()));
+
+        try {
+            ExecutionEngine.executeWithRetry(client, null, new FailingOperation(5), new FixedRetry(0, 1),
+                    new OperationContext());
+            fail();
+        }
+        catch (StorageException e) {
+            assertEquals(2, events.size());
+            assertSame(e, events.get(1).getException());
+        }
+    }
+
+    @Test
+    public void operationMetricsRecordCompletedOperations() throws Exception {
+        ServiceClient client = createClient();
+        OperationMetricsRegistry registry = client.enableOperationMetrics();
+
+        ExecutionEngine.executeWithRetry(client, null, new FailingOperation(1), new FixedRetry(0, 3),
+                new OperationContext());
+        ExecutionEngine.executeWithRetry(client, null, new FailingOperation(0), new FixedRetry(0, 3),
+                new OperationContext());
+
+        assertEquals(1, registry.getMetrics().size());
+
+        OperationMetrics metrics = registry.getMetrics().get(0);
+        assertEquals(2, metrics.getCount());
+        assertEquals(0, metrics.getFailureCount());
+        assertEquals(1, metrics.getRetryCount());
+        assertSame(metrics, registry.getMetrics(metrics.getOperationName(), metrics.getStatusCode()));
+
+        client.disableOperationMetrics();
+        ExecutionEngine.executeWithRetry(client, null, new FailingOperation(0), new FixedRetry(0, 3),
+                new OperationContext());
+
+        assertNull(client.getOperationMetrics());
+        assertEquals(2, metrics.getCount());
+    }
+
+    @Test
+    public void asyncOperationCompletesAfterScheduledRetries() throws Exception {
+        ServiceClient client = createClient();
+        final CountDownLatch listenerCalled = new CountDownLatch(1);
+
+        StorageFuture<String> future = ExecutionEngine.executeWithRetryAsync(client, null, new FailingOperation(2),
+                new FixedRetry(10, 3), new OperationContext());
+        future.addCompletionListener(new StorageEvent<StorageFuture<String>>() {
+            @Override
+            public void eventOccurred(StorageFuture<String> eventArg) {
+                listenerCalled.countDown();
+            }
+        });
+
+        assertEquals("done", future.get(5, TimeUnit.SECONDS));
+        assertTrue(listenerCalled.await(5, TimeUnit.SECONDS));
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0).getRetryCount());
+    }
+
+    @Test
+    public void asyncOperationReportsFailure() throws Exception {
+        ServiceClient client = createClient();
+
+        StorageFuture<String> future = ExecutionEngine.executeWithRetryAsync(client, null, new FailingOperation(5),
+                new FixedRetry(0, 1), new OperationContext());
+
+        try {
+            future.getResult();
+            fail();
+        }
+        catch (StorageException e) {
+            assertSame(e, future.getException());
+            assertFalse(events.get(0).isSuccessful());
+        }
+    }
+
+    @Test
+    public void asyncRetryBackOffDoesNotHoldExecutorThread() throws Exception {
+        ServiceClient client = createClient();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        client.setAsyncExecutor(executor);
+
+        try {
+            StorageFuture<String> retrying = ExecutionEngine.executeWithRetryAsync(client, null, new FailingOperation(
+                    1), new FixedRetry(500, 1), new OperationContext());
+            StorageFuture<String> immediate = ExecutionEngine.executeWithRetryAsync(client, null,
+                    new FailingOperation(0), new FixedRetry(0, 1), new OperationContext());
+
+            assertEquals("done", immediate.get(250, TimeUnit.MILLISECONDS));
+            assertFalse(retrying.isDone());
+            assertEquals("done", retrying.get(5, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledAsyncOperationIsNotRetried() throws Exception {
+        // Arrange
+        ServiceClient client = createClient();
+        final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+        client.setAsyncExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        });
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+        StorageOperation<ServiceClient, Void, String> operation = new StorageOperation<ServiceClient, Void, String>(
+                new RequestOptions()) {
+            @Override
+            public String execute(ServiceClient client, Void parentObject, OperationContext opContext)
+                    throws Exception {
+                attempts.incrementAndGet();
+                started.countDown();
+                release.await();
+                throw new IOException("transient");
+            }
+        };
+
+        StorageFuture<String> future = ExecutionEngine.executeWithRetryAsync(client, null, operation,
+                new FixedRetry(0, 3), new OperationContext());
+        Thread firstAttempt = new Thread(queue.take());
+        firstAttempt.start();
+
+        // Act
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        release.countDown();
+        firstAttempt.join(5000);
+
+        // The failed attempt queues its retry before returning; run it and anything it queues.
+        for (Runnable next = queue.poll(); next != null; next = queue.poll()) {
+            next.run();
+        }
+
+        // Assert
+        assertFalse(firstAttempt.isAlive());
+        assertEquals(1, attempts.get());
+        assertTrue(future.isCancelled());
+        assertFalse(future.cancel(false));
+    }
+
+    @Test
+    public void boundedOperationContextKeepsMostRecentResults() {
+        OperationContext opContext = new OperationContext();
+        opContext.setMaxRequestResults(2);
+
+        RequestResult previous = null;
+        RequestResult last = null;
+
+        for (int i = 0; i < 5; i++) {
+            previous = last;
+            last = new RequestResult();
+            opContext.appendRequestResult(last);
+        }
+
+        List<RequestResult> results = opContext.getRequestResults();
+        assertEquals(2, results.size());
+        assertSame(previous, results.get(0));
+        assertSame(last, results.get(1));
+        assertSame(last, opContext.getLastResult());
+
+        // The returned list is a copy, so changing it does not change the operation's results.
+        results.clear();
+        assertEquals(2, opContext.getRequestResults().size());
+        opContext.initialize();
+        assertNull(opContext.getLastResult());
+    }
+
+    private static class FailingOperation extends StorageOperation<ServiceClient, Void, String> {
+        private int failuresLeft;
+
+        public FailingOperation(int failures) {
+            super(new RequestOptions());
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        public String execute(ServiceClient client, Void parentObject, OperationContext opContext) throws Exception {
+            if (this.failuresLeft-- > 0) {
+                throw new IOException("transient");
+            }
+
+            return "done";
+        }
+    }
+
+    private static class FixedRetry extends RetryPolicy implements RetryPolicyFactory {
+        public FixedRetry(int backOffInMs, int maxAttempts) {
+            super(backOffInMs, maxAttempts);
+        }
+
+        @Override
+        public RetryPolicy createInstance(OperationContext opContext) {
+            return this;
+        }
+
+        @Override
+        public RetryResult shouldRetry(int currentRetryCount, int statusCode, Exception lastException,
+                OperationContext opContext) {
+            return new RetryResult(this.deltaBackoffIntervalInMs, currentRetryCount < this.maximumAttempts);
+        }
+    }
+}
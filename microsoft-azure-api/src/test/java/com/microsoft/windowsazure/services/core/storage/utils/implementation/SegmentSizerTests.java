@@ -0,0 +1,231 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.core.storage.utils.implementation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.blob.client.BlobRequestOptions;
+import com.microsoft.windowsazure.services.blob.client.ListBlobItem;
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+import com.microsoft.windowsazure.services.core.storage.RequestOptions;
+import com.microsoft.windowsazure.services.core.storage.ResultContinuation;
+import com.microsoft.windowsazure.services.core.storage.ResultSegment;
+import com.microsoft.windowsazure.services.core.storage.RetryNoRetry;
+import com.microsoft.windowsazure.services.core.storage.ServiceClient;
+import com.microsoft.windowsazure.services.core.storage.StorageCredentialsAccountAndKey;
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.microsoft.windowsazure.services.queue.client.CloudQueueClient;
+import com.microsoft.windowsazure.services.table.client.DynamicTableEntity;
+import com.microsoft.windowsazure.services.table.client.TableQuery;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class SegmentSizerTests {
+    /**
+     * Returns the integer value of a query parameter of a request, or <code>null</code> if it is not present.
+     */
+    private static Integer getParameter(HttpExchange exchange, String name) {
+        Matcher matcher = Pattern.compile("(?:^|&)" + Pattern.quote(name) + "=(\\d+)").matcher(
+                exchange.getRequestURI().getQuery());
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+
+    /**
+     * Starts a table service stub that answers every query with as many entities as requested, and a continuation.
+     */
+    private static StubStorageServer startTableServer(final List<Integer> requestedTops) throws IOException {
+        return StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Integer top = getParameter(exchange, "$top");
+                synchronized (requestedTops) {
+                    requestedTops.add(top);
+                }
+
+                StringBuilder entries = new StringBuilder();
+                for (int i = 0; i < (top == null ? 1000 : top); i++) {
+                    entries.append(StubStorageServer.entry("pk", "rk" + i, ""));
+                }
+                exchange.getResponseHeaders().add("x-ms-continuation-NextPartitionKey", "pk");
+                exchange.getResponseHeaders().add("x-ms-continuation-NextRowKey", "next");
+                StubStorageServer.respond(exchange, 200, "application/atom+xml;charset=utf-8",
+                        StubStorageServer.feed(entries.toString()));
+            }
+        });
+    }
+
+    @Test
+    public void adaptiveSizerGrowsForFastConsumersAndShrinksForSlowOnes() {
+        SegmentSizer sizer = new SegmentSizer(100, 1000, null);
+        assertEquals(100, sizer.getNextSegmentSize());
+
+        // A consumer much faster than the round trip doubles the segment size, up to the maximum.
+        sizer.segmentRetrieved(100, 50000000L);
+        sizer.segmentConsumed(100, 1000L);
+        assertEquals(200, sizer.getNextSegmentSize());
+        for (int i = 0; i < 5; i++) {
+            sizer.segmentRetrieved(sizer.getNextSegmentSize(), 50000000L);
+            sizer.segmentConsumed(sizer.getNextSegmentSize(), 1000L);
+        }
+        assertEquals(1000, sizer.getNextSegmentSize());
+
+        // A consumer that takes 1ms per result covers a 50ms round trip with 50 results, bounded by the initial size.
+        sizer.segmentRetrieved(1000, 50000000L);
+        sizer.segmentConsumed(1000, 1000000000L);
+        assertEquals(100, sizer.getNextSegmentSize());
+    }
+
+    @Test
+    public void iteratorRequestsNoMoreThanTheLimit() throws Exception {
+        // Arrange
+        ServiceClient client = new CloudQueueClient(new URI("http://127.0.0.1:10001/devstoreaccount1"),
+                new StorageCredentialsAccountAndKey("devstoreaccount1", new byte[] { 0 }));
+        final List<Integer> requestedSizes = new ArrayList<Integer>();
+        SegmentedStorageOperation<ServiceClient, Void, ResultSegment<Integer>> generator;
+        generator = new SegmentedStorageOperation<ServiceClient, Void, ResultSegment<Integer>>(new RequestOptions()) {
+            @Override
+            public ResultSegment<Integer> execute(ServiceClient client, Void parentObject, OperationContext opContext) {
+                requestedSizes.add(this.getSegmentSize());
+                ArrayList<Integer> results = new ArrayList<Integer>();
+                for (int i = 0; i < this.getSegmentSize(); i++) {
+                    results.add(i);
+                }
+                return new ResultSegment<Integer>(results, this.getSegmentSize(), new ResultContinuation());
+            }
+        };
+        Iterable<Integer> iterable = new LazySegmentedIterable<ServiceClient, Void, Integer>(generator, client, null,
+                RetryNoRetry.getInstance(), new OperationContext(), new SegmentSizer(40, 100));
+
+        // Act
+        int count = 0;
+        for (Integer result : iterable) {
+            assertNotNull(result);
+            count++;
+        }
+
+        // Assert
+        assertEquals(100, count);
+        assertEquals(Arrays.asList(40, 40, 20), requestedSizes);
+    }
+
+    @Test
+    public void tableQueryRequestsNoMoreThanItsLimit() throws Exception {
+        // Arrange
+        List<Integer> requestedTops = new ArrayList<Integer>();
+        StubStorageServer server = startTableServer(requestedTops);
+        try {
+            TableQuery<DynamicTableEntity> limited = TableQuery.from("table", DynamicTableEntity.class).limit(250);
+            TableQuery<DynamicTableEntity> paged = TableQuery.from("table", DynamicTableEntity.class).take(100)
+                    .limit(250);
+
+            // Act
+            int limitedCount = 0;
+            for (DynamicTableEntity entity : server.createTableClient().execute(limited)) {
+                assertNotNull(entity);
+                limitedCount++;
+            }
+            List<Integer> limitedTops = new ArrayList<Integer>(requestedTops);
+            requestedTops.clear();
+
+            int pagedCount = 0;
+            for (DynamicTableEntity entity : server.createTableClient().execute(paged)) {
+                assertNotNull(entity);
+                pagedCount++;
+            }
+
+            // Assert
+            assertEquals(250, limitedCount);
+            assertEquals(Arrays.asList(250), limitedTops);
+            assertEquals(250, pagedCount);
+            assertEquals(Arrays.asList(100, 100, 50), requestedTops);
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void clearingTheLimitOfATableQuery() {
+        TableQuery<DynamicTableEntity> query = TableQuery.from("table", DynamicTableEntity.class).limit(5);
+        assertNull(query.limit(null).getLimit());
+    }
+
+    @Test
+    public void adaptiveBlobListingRequestsMaxResults() throws Exception {
+        // Arrange
+        final List<Integer> requestedMaxResults = new ArrayList<Integer>();
+        StubStorageServer server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Integer maxResults = getParameter(exchange, "maxresults");
+                boolean first;
+                synchronized (requestedMaxResults) {
+                    first = requestedMaxResults.isEmpty();
+                    requestedMaxResults.add(maxResults);
+                }
+
+                StringBuilder blobs = new StringBuilder();
+                for (int i = 0; i < (maxResults == null ? 50 : maxResults); i++) {
+                    blobs.append(StubStorageServer.blob((first ? "a" : "b") + i));
+                }
+                StubStorageServer.respond(exchange, 200, "application/xml",
+                        StubStorageServer.blobListing(blobs.toString(), first ? "marker" : ""));
+            }
+        });
+        try {
+            BlobRequestOptions options = new BlobRequestOptions();
+            options.setUseAdaptiveSegmentSizing(true);
+
+            // Act
+            int adaptiveCount = 0;
+            for (ListBlobItem item : server.createBlobClient().getContainerReference("container")
+                    .listBlobs("", true, null, options, null)) {
+                assertNotNull(item);
+                adaptiveCount++;
+            }
+            List<Integer> adaptiveMaxResults = new ArrayList<Integer>(requestedMaxResults);
+            requestedMaxResults.clear();
+
+            int fixedCount = 0;
+            for (ListBlobItem item : server.createBlobClient().getContainerReference("container")
+                    .listBlobs("", true, null, null, null)) {
+                assertNotNull(item);
+                fixedCount++;
+            }
+
+            // Assert
+            assertEquals(2, adaptiveMaxResults.size());
+            assertEquals(Integer.valueOf(SegmentSizer.DEFAULT_INITIAL_SEGMENT_SIZE), adaptiveMaxResults.get(0));
+            assertTrue(adaptiveMaxResults.get(1) >= SegmentSizer.DEFAULT_INITIAL_SEGMENT_SIZE);
+            assertTrue(adaptiveMaxResults.get(1) <= 2 * SegmentSizer.DEFAULT_INITIAL_SEGMENT_SIZE);
+            assertEquals(adaptiveMaxResults.get(0) + adaptiveMaxResults.get(1), adaptiveCount);
+            assertEquals(Arrays.asList(null, null), requestedMaxResults);
+            assertEquals(100, fixedCount);
+        }
+        finally {
+            server.stop();
+        }
+    }
+}
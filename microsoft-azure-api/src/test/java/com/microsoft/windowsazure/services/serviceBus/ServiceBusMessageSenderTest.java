@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.ServiceException;
+import com.microsoft.windowsazure.services.serviceBus.models.BrokeredMessage;
+
+public class ServiceBusMessageSenderTest {
+    private static ServiceBusContract stub(final CountDownLatch allInFlight, final List<String> sent) {
+        return (ServiceBusContract) Proxy.newProxyInstance(ServiceBusContract.class.getClassLoader(),
+                new Class<?>[] { ServiceBusContract.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getName().startsWith("send")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+
+                        // Only completes once the expected number of sends are in flight together
+                        allInFlight.countDown();
+                        if (!allInFlight.await(10, TimeUnit.SECONDS)) {
+                            throw new ServiceException("sends were not concurrent");
+                        }
+
+                        BrokeredMessage message = (BrokeredMessage) args[1];
+                        if ("fail".equals(message.getMessageId())) {
+                            throw new ServiceException("failed");
+                        }
+
+                        synchronized (sent) {
+                            sent.add(method.getName() + " " + args[0] + " " + message.getMessageId());
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void messagesAreSentConcurrently() throws Exception {
+        // Arrange
+        List<String> sent = new ArrayList<String>();
+        ServiceBusMessageSender sender = new ServiceBusMessageSender(stub(new CountDownLatch(4), sent), 4, 0);
+
+        // Act
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(sender.sendQueueMessage("queue", new BrokeredMessage("body").setMessageId("m" + i)));
+        }
+        futures.add(sender.sendTopicMessage("topic", new BrokeredMessage("body").setMessageId("m3")));
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+
+        // Assert
+        assertEquals(4, sent.size());
+        assertTrue(sent.contains("sendTopicMessage topic m3"));
+        assertEquals(0, sender.getPendingCount());
+        assertTrue(sender.close(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failuresAreReportedThroughTheFuture() throws Exception {
+        // Arrange
+        List<String> sent = new ArrayList<String>();
+        ServiceBusMessageSender sender = new ServiceBusMessageSender(stub(new CountDownLatch(2), sent), 2, 2);
+
+        // Act
+        Future<Void> failed = sender.sendQueueMessage("queue", new BrokeredMessage("body").setMessageId("fail"));
+        Future<Void> succeeded = sender.sendQueueMessage("queue", new BrokeredMessage("body").setMessageId("ok"));
+
+        // Assert
+        succeeded.get();
+        try {
+            failed.get();
+            fail("expected the send to fail");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ServiceException);
+        }
+        assertEquals(1, sent.size());
+        sender.close(10, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedSenderRejectsMessages() throws Exception {
+        // Arrange
+        ServiceBusMessageSender sender = new ServiceBusMessageSender(stub(new CountDownLatch(1),
+                new ArrayList<String>()), 1, 1);
+        sender.close(10, TimeUnit.SECONDS);
+
+        // Act
+        sender.sendQueueMessage("queue", new BrokeredMessage("body"));
+    }
+}
@@ -19,6 +19,8 @@ import static org.junit.Assert.*;
 import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
 
@@ -139,4 +141,83 @@ public class CustomPropertiesMapperTest {
         assertEquals(cal.getTime().getTime(), dt.getTime(), 1000);
         //assertEquals("78;date-seconds", mapper.toString(78));
     }
+
+    @Test
+    public void ordinaryHeadersAreNotCustomPropertyValues() {
+        // Arrange
+
+        // Act
+
+        // Assert
+        assertFalse(mapper.isCustomPropertyValue("application/atom+xml;type=entry;charset=utf-8"));
+        assertFalse(mapper.isCustomPropertyValue("Fri, 04 Mar 2011 08:49:37 GMT"));
+        assertFalse(mapper.isCustomPropertyValue("https://example.servicebus.windows.net/queue/messages/1/abc"));
+        assertFalse(mapper.isCustomPropertyValue("{\"DeliveryCount\":1}"));
+        assertFalse(mapper.isCustomPropertyValue("1e"));
+        assertFalse(mapper.isCustomPropertyValue("\""));
+        assertFalse(mapper.isCustomPropertyValue(null));
+    }
+
+    @Test
+    public void customPropertyFormatsAreRecognized() {
+        // Arrange
+
+        // Act
+
+        // Assert
+        assertTrue(mapper.isCustomPropertyValue("\"Hello world\""));
+        assertTrue(mapper.isCustomPropertyValue("\"Thu, 14 Oct 1971 12:34:56 GMT\""));
+        assertTrue(mapper.isCustomPropertyValue("true"));
+        assertTrue(mapper.isCustomPropertyValue("-78"));
+        assertTrue(mapper.isCustomPropertyValue("78.5"));
+        assertTrue(mapper.isCustomPropertyValue("-1.5E-3"));
+        assertTrue(mapper.isCustomPropertyValue(".5"));
+    }
+
+    @Test
+    public void integersOutsideIntRangeAreParsedAsDouble() throws ParseException {
+        // Arrange
+
+        // Act
+        Object max = mapper.fromString("2147483647");
+        Object larger = mapper.fromString("2147483648");
+
+        // Assert
+        assertEquals(Integer.MAX_VALUE, max);
+        assertEquals(2147483648.0, larger);
+        assertEquals(Integer.MIN_VALUE, mapper.fromString("-2147483648"));
+    }
+
+    @Test
+    public void quotedTextThatIsNotADateStaysText() throws ParseException {
+        // Arrange
+
+        // Act
+        Object value = mapper.fromString("\"Xyz, 14 Oct 1971 12:34:56 GMT\"");
+
+        // Assert
+        assertEquals("Xyz, 14 Oct 1971 12:34:56 GMT", value);
+    }
+
+    @Test
+    public void receivedPropertiesAreDecodedOnFirstRead() {
+        // Arrange
+        CustomPropertiesMap properties = new CustomPropertiesMap(mapper);
+        properties.putEncoded("count", "5");
+        properties.putEncoded("name", "\"value\"");
+
+        // Act
+        Object count = properties.get("count");
+
+        // Assert
+        assertEquals(5, count);
+        assertEquals(2, properties.size());
+        assertTrue(properties.containsKey("name"));
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("count", 5);
+        expected.put("name", "value");
+        assertEquals(expected, new HashMap<String, Object>(properties));
+        assertEquals("value", properties.remove("name"));
+        assertEquals(1, properties.size());
+    }
 }
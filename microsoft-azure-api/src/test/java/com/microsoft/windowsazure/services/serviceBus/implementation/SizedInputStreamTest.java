@@ -0,0 +1,97 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoft.windowsazure.services.serviceBus.implementation;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class SizedInputStreamTest {
+    @Test
+    public void bufferBodyIsReadFromCurrentPositionWithoutMovingIt() throws Exception {
+        // Arrange
+        ByteBuffer buffer = ByteBuffer.wrap("xxhello".getBytes("UTF-8"));
+        buffer.position(2);
+
+        // Act
+        SizedInputStream stream = SizedInputStream.fromByteBuffer(buffer);
+        byte[] read = new byte[10];
+        int count = stream.read(read, 0, read.length);
+
+        // Assert
+        assertEquals(5, stream.getLength());
+        assertEquals(5, count);
+        assertEquals("hello", new String(read, 0, count, "UTF-8"));
+        assertEquals(-1, stream.read());
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void resetRewindsAfterWritingTheBody() throws Exception {
+        // Arrange
+        SizedInputStream stream = SizedInputStream.fromByteBuffer(ByteBuffer.wrap("body".getBytes("UTF-8")));
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+
+        // Act
+        stream.mark(Integer.MAX_VALUE);
+        stream.writeTo(first);
+        long remainingAfterWrite = stream.getRemainingLength();
+        stream.reset();
+        stream.writeTo(second);
+
+        // Assert
+        assertEquals(0, remainingAfterWrite);
+        assertEquals("body", first.toString("UTF-8"));
+        assertEquals("body", second.toString("UTF-8"));
+    }
+
+    @Test
+    public void fileBodyIsStreamedFromTheFile() throws Exception {
+        // Arrange
+        File file = File.createTempFile("body", ".bin");
+        file.deleteOnExit();
+        byte[] content = new byte[200000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content);
+        out.close();
+
+        // Act
+        SizedInputStream stream = SizedInputStream.fromFile(file);
+        int first = stream.read();
+        stream.mark(0);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        stream.writeTo(written);
+        stream.reset();
+        long remainingAfterReset = stream.getRemainingLength();
+        stream.close();
+
+        // Assert
+        assertEquals(content.length, stream.getLength());
+        assertEquals(0, first);
+        assertEquals(content.length - 1, written.size());
+        assertEquals((byte) 1, written.toByteArray()[0]);
+        assertEquals((byte) (content.length - 1), written.toByteArray()[content.length - 2]);
+        assertEquals(content.length - 1, remainingAfterReset);
+    }
+}
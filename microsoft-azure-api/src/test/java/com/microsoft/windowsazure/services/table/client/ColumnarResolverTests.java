@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.client;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.OperationContext;
+
+public class ColumnarResolverTests {
+    private static String entry(String rowKey, String properties) {
+        return "<entry m:etag=\"W/&quot;datetime'2012-01-01T00%3A00%3A00.0000000Z'&quot;\"><id>" + rowKey
+                + "</id><content type=\"application/xml\"><m:properties><d:PartitionKey>pk</d:PartitionKey>"
+                + "<d:RowKey>" + rowKey + "</d:RowKey>" + properties + "</m:properties></content></entry>";
+    }
+
+    @Test
+    public void parserWritesSelectedPropertiesIntoColumns() throws Exception {
+        // Arrange
+        String feed = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\"?><feed"
+                + " xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\""
+                + " xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\""
+                + " xmlns=\"http://www.w3.org/2005/Atom\"><id>feed</id>"
+                + entry("a", "<d:Count m:type=\"Edm.Int64\">-42</d:Count><d:Price m:type=\"Edm.Double\">1.5</d:Price>"
+                        + "<d:Ignored>x</d:Ignored>")
+                + entry("b", "<d:Price m:type=\"Edm.Double\">2.25</d:Price>")
+                + entry("c", "<d:Count m:type=\"Edm.Int64\">9223372036854775807</d:Count>") + "</feed>";
+        ColumnarResolver resolver = new ColumnarResolver();
+        ColumnarResolver.StringColumn rowKeys = resolver.addStringColumn("RowKey");
+        ColumnarResolver.LongColumn counts = resolver.addLongColumn("Count");
+        ColumnarResolver.DoubleColumn prices = resolver.addDoubleColumn("Price");
+
+        // Act
+        ODataPayload<?> payload = AtomPubParser.parseResponse(new ByteArrayInputStream(feed.getBytes("UTF-8")),
+                DynamicTableEntity.class, resolver, new OperationContext());
+
+        // Assert
+        assertEquals(3, payload.results.size());
+        assertEquals(3, resolver.getRowCount());
+        assertArrayEquals(new String[] { "RowKey", "Count", "Price" }, resolver.getColumnNames());
+        assertArrayEquals(new String[] { "a", "b", "c" }, rowKeys.toArray());
+        assertArrayEquals(new long[] { -42, 0, Long.MAX_VALUE }, counts.toArray());
+        assertTrue(counts.isNull(1));
+        assertFalse(counts.isNull(2));
+        assertEquals(1.5, prices.get(0), 0);
+        assertEquals(2.25, prices.get(1), 0);
+        assertTrue(Double.isNaN(prices.get(2)));
+        assertTrue(prices.isNull(2));
+    }
+
+    @Test
+    public void parserReadsEmptyPropertiesAsEmptyStrings() throws Exception {
+        // Arrange
+        String feed = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\"?><feed"
+                + " xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\""
+                + " xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\""
+                + " xmlns=\"http://www.w3.org/2005/Atom\"><id>feed</id>"
+                + entry("", "<d:Name></d:Name><d:Note m:null=\"true\" />") + entry("b", "<d:Name /><d:Note>x</d:Note>")
+                + "</feed>";
+        ColumnarResolver resolver = new ColumnarResolver();
+        ColumnarResolver.StringColumn rowKeys = resolver.addStringColumn("RowKey");
+        ColumnarResolver.StringColumn names = resolver.addStringColumn("Name");
+        ColumnarResolver.StringColumn notes = resolver.addStringColumn("Note");
+
+        // Act
+        AtomPubParser.parseResponse(new ByteArrayInputStream(feed.getBytes("UTF-8")), DynamicTableEntity.class,
+                resolver, new OperationContext());
+
+        // Assert
+        assertArrayEquals(new String[] { "", "b" }, rowKeys.toArray());
+        assertFalse(rowKeys.isNull(0));
+        assertArrayEquals(new String[] { "", "" }, names.toArray());
+        assertFalse(names.isNull(0));
+        assertFalse(names.isNull(1));
+        assertArrayEquals(new String[] { null, "x" }, notes.toArray());
+        assertTrue(notes.isNull(0));
+    }
+
+    @Test
+    public void resolveAppendsPropertyMaps() throws Exception {
+        // Arrange
+        ColumnarResolver resolver = new ColumnarResolver();
+        ColumnarResolver.StringColumn partitionKeys = resolver.addStringColumn("PartitionKey");
+        ColumnarResolver.LongColumn counts = resolver.addLongColumn("Count");
+        HashMap<String, EntityProperty> properties = new HashMap<String, EntityProperty>();
+        properties.put("Count", new EntityProperty(7L));
+
+        // Act
+        resolver.resolve("pk", "rk", new Date(), properties, null);
+        resolver.resolve("pk2", "rk", new Date(), new HashMap<String, EntityProperty>(), null);
+
+        // Assert
+        assertArrayEquals(new String[] { "pk", "pk2" }, partitionKeys.toArray());
+        assertEquals(7, counts.get(0));
+        assertTrue(counts.isNull(1));
+
+        resolver.clear();
+        assertEquals(0, resolver.getRowCount());
+        assertEquals(0, counts.size());
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.client;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Exercises multiple retrieves against a local server that answers queries with a feed and point retrieves with an
+ * entry.
+ */
+public class MultiRetrieveOperationTests {
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final AtomicInteger pointCount = new AtomicInteger();
+    private StubStorageServer server;
+    private CloudTableClient client;
+
+    private static String name(String rowKey) {
+        return "<d:Name>" + rowKey + "</d:Name>";
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body;
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null && query.contains("$filter")) {
+                    queryCount.incrementAndGet();
+                    body = StubStorageServer.feed(StubStorageServer.entry("a", "r1", name("r1"))
+                            + StubStorageServer.entry("a", "r3", name("r3")));
+                }
+                else {
+                    pointCount.incrementAndGet();
+                    body = StubStorageServer.entryDocument("b", "x", name("x"));
+                }
+
+                StubStorageServer.respond(exchange, 200, "application/atom+xml;charset=utf-8", body);
+            }
+        });
+        client = server.createTableClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void retrievesGroupsConcurrentlyInInputOrder() throws Exception {
+        // Arrange
+        List<TableOperation> operations = new ArrayList<TableOperation>();
+        operations.add(TableOperation.retrieve("a", "r3", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("b", "x", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("a", "r1", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("a", "r2", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("a", "r3", DynamicTableEntity.class));
+
+        // Act
+        ArrayList<TableResult> results = client.retrieveMultiple("table", operations);
+
+        // Assert
+        assertEquals(1, queryCount.get());
+        assertEquals(1, pointCount.get());
+        assertEquals(5, results.size());
+        assertEquals("r3", ((DynamicTableEntity) results.get(0).getResult()).getRowKey());
+        assertEquals("x", ((DynamicTableEntity) results.get(1).getResult()).getRowKey());
+        assertEquals("r1", ((DynamicTableEntity) results.get(2).getResult()).getProperties().get("Name")
+                .getValueAsString());
+        assertEquals(404, results.get(3).getHttpStatusCode());
+        assertNull(results.get(3).getResult());
+        // Operations that request the same entity receive their own copy.
+        assertNotSame(results.get(0).getResult(), results.get(4).getResult());
+    }
+
+    @Test
+    public void sparseKeysAreRetrievedWithPointRequests() throws Exception {
+        // Arrange
+        List<TableOperation> operations = new ArrayList<TableOperation>();
+        operations.add(TableOperation.retrieve("a", "apple", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("a", "mango", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("a", "r1", DynamicTableEntity.class));
+        operations.add(TableOperation.retrieve("a", "zebra", DynamicTableEntity.class));
+
+        // Act
+        ArrayList<TableResult> results = client.retrieveMultiple("table", operations);
+
+        // Assert
+        assertEquals(0, queryCount.get());
+        assertEquals(4, pointCount.get());
+        assertEquals(4, results.size());
+    }
+
+    @Test
+    public void onlyKeysDifferingInTheirLastCharacterByASmallGapAreAdjacent() {
+        assertTrue(MultiRetrieveOperation.isAdjacent("r1", "r3"));
+        assertTrue(MultiRetrieveOperation.isAdjacent("order-0041", "order-0049"));
+        assertFalse(MultiRetrieveOperation.isAdjacent("r9", "r10"));
+        assertFalse(MultiRetrieveOperation.isAdjacent("r1", "s1"));
+        assertFalse(MultiRetrieveOperation.isAdjacent("ra", "rz"));
+        assertFalse(MultiRetrieveOperation.isAdjacent("a", "a1"));
+        assertFalse(MultiRetrieveOperation.isAdjacent("", "a"));
+    }
+
+    @Test
+    public void filterBoundsTheRangeAndListsTheKeys() {
+        // Act
+        String filter = MultiRetrieveOperation.getFilter("o'p", Arrays.asList("a", "c"));
+
+        // Assert
+        assertEquals("(PartitionKey eq 'o''p') and (((RowKey ge 'a') and (RowKey le 'c')) and "
+                + "(RowKey eq 'a' or RowKey eq 'c'))", filter);
+    }
+}
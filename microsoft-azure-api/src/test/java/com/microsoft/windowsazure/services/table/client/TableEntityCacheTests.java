@@ -0,0 +1,122 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.client;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.core.storage.StubStorageServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Exercises the entity cache against a local server that counts the retrieve requests it receives.
+ */
+public class TableEntityCacheTests {
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private StubStorageServer server;
+    private CloudTableClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubStorageServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                try {
+                    // Keep the request in flight long enough for concurrent retrieves to join it
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                StubStorageServer.respond(exchange, 200, "application/atom+xml;charset=utf-8",
+                        StubStorageServer.entryDocument("pk", "rk", "<d:Name>value</d:Name>"));
+            }
+        });
+        client = server.createTableClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void concurrentRetrievesShareOneRequest() throws Exception {
+        final TableEntityCache cache = client.enableEntityCache(10, 60000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<DynamicTableEntity>> results = new ArrayList<Future<DynamicTableEntity>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<DynamicTableEntity>() {
+                    @Override
+                    public DynamicTableEntity call() throws Exception {
+                        return client.execute("table",
+                                TableOperation.retrieve("pk", "rk", DynamicTableEntity.class))
+                                .getResultAsType();
+                    }
+                }));
+            }
+
+            List<DynamicTableEntity> entities = new ArrayList<DynamicTableEntity>();
+            for (Future<DynamicTableEntity> result : results) {
+                entities.add(result.get());
+            }
+
+            assertEquals(1, requestCount.get());
+            assertEquals(1, cache.getMissCount());
+            assertEquals(4, cache.getMissCount() + cache.getCoalescedCount() + cache.getHitCount());
+            assertEquals("value", entities.get(0).getProperties().get("Name").getValueAsString());
+            // Each caller receives its own entity.
+            assertNotSame(entities.get(0), entities.get(1));
+            assertNotSame(entities.get(0).getProperties().get("Name"), entities.get(1).getProperties().get("Name"));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cachedEntitiesAreServedUntilInvalidated() throws Exception {
+        TableEntityCache cache = client.enableEntityCache(10, 60000);
+        TableOperation retrieve = TableOperation.retrieve("pk", "rk", DynamicTableEntity.class);
+
+        client.execute("table", retrieve);
+        DynamicTableEntity entity = client.execute("Table", retrieve).getResultAsType();
+
+        assertEquals(1, requestCount.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals("pk", entity.getPartitionKey());
+        assertEquals("W/\"datetime'2012-01-01T00%3A00%3A00.0000000Z'\"", entity.getEtag());
+
+        cache.invalidate("table", "pk", "rk");
+        client.execute("table", retrieve);
+        assertEquals(2, requestCount.get());
+    }
+}
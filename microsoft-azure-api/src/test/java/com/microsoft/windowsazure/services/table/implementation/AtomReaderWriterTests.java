@@ -18,6 +18,7 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Test;
@@ -25,6 +26,7 @@ import org.junit.Test;
 import com.microsoft.windowsazure.services.blob.implementation.ISO8601DateConverter;
 import com.microsoft.windowsazure.services.core.utils.DefaultDateFactory;
 import com.microsoft.windowsazure.services.table.IntegrationTestBase;
+import com.microsoft.windowsazure.services.table.models.Entity;
 import com.microsoft.windowsazure.services.table.models.TableEntry;
 
 public class AtomReaderWriterTests extends IntegrationTestBase {
@@ -77,4 +79,50 @@ public class AtomReaderWriterTests extends IntegrationTestBase {
         assertEquals("sdktest1", entries.get(0).getName());
         assertEquals("sdktest10", entries.get(1).getName());
     }
+
+    @Test
+    public void iterateEntityEntriesParsesLazily() throws Exception {
+        // Arrange
+        AtomReaderWriter atom = new AtomReaderWriter(new DefaultXMLStreamFactory(), new DefaultDateFactory(),
+                new ISO8601DateConverter(), new DefaultEdmValueConterter(new ISO8601DateConverter()));
+        String feed = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\"?>\r\n"
+                + "<feed xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\" xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\" xmlns=\"http://www.w3.org/2005/Atom\">\r\n"
+                + "  <title type=\"text\">test</title>\r\n"
+                + "  <entry m:etag=\"W/&quot;1&quot;\">\r\n"
+                + "    <content type=\"application/xml\">\r\n"
+                + "      <m:properties>\r\n"
+                + "        <d:PartitionKey>p</d:PartitionKey>\r\n"
+                + "        <d:RowKey>1</d:RowKey>\r\n"
+                + "      </m:properties>\r\n"
+                + "    </content>\r\n"
+                + "  </entry>\r\n"
+                + "  <entry m:etag=\"W/&quot;2&quot;\">\r\n"
+                + "    <content type=\"application/xml\">\r\n"
+                + "      <m:properties>\r\n"
+                + "        <d:PartitionKey>p</d:PartitionKey>\r\n"
+                + "        <d:RowKey>2</d:RowKey>\r\n"
+                + "      </m:properties>\r\n"
+                + "    </content>\r\n"
+                + "  </entry>\r\n"
+                + "</feed>\r\n";
+        final boolean[] closed = new boolean[1];
+        InputStream stream = new ByteArrayInputStream(feed.getBytes("UTF-8")) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        // Act
+        Iterator<Entity> entities = atom.iterateEntityEntries(stream);
+
+        // Assert
+        assertTrue(entities.hasNext());
+        assertEquals("1", entities.next().getRowKey());
+        assertFalse(closed[0]);
+        assertTrue(entities.hasNext());
+        assertEquals("2", entities.next().getRowKey());
+        assertFalse(entities.hasNext());
+        assertTrue(closed[0]);
+    }
 }
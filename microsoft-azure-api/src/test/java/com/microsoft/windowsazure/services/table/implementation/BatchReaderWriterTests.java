@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.implementation;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.microsoft.windowsazure.services.table.implementation.BatchReaderWriter.RequestBody;
+import com.microsoft.windowsazure.services.table.implementation.BatchReaderWriter.ResponsePart;
+
+public class BatchReaderWriterTests {
+    @Test
+    public void parseResponsePartsWorks() throws Exception {
+        // Arrange
+        //@formatter:off
+        String s = "--batchresponse_dc0fea8c-ed83-4aa8-ac9b-bf56a2d46dfb \r\n"
+                + "Content-Type: multipart/mixed; boundary=changesetresponse_8a28b620-b4bb-458c-a177-0959fb14c977\r\n"
+                + "\r\n"
+                + "--changesetresponse_8a28b620-b4bb-458c-a177-0959fb14c977\r\n"
+                + "Content-Type: application/http\r\n"
+                + "Content-Transfer-Encoding: binary\r\n"
+                + "\r\n"
+                + "HTTP/1.1 201 Created\r\n"
+                + "Content-ID: 1\r\n"
+                + "Content-Type: application/atom+xml;charset=utf-8\r\n"
+                + "ETag: W/\"datetime'2009-04-30T20%3A44%3A09.5789464Z'\"\r\n"
+                + "\r\n"
+                + "<entry>\r\n"
+                + "--\r\n"
+                + "</entry>\r\n"
+                + "--changesetresponse_8a28b620-b4bb-458c-a177-0959fb14c977\r\n"
+                + "Content-Type: application/http\r\n"
+                + "Content-Transfer-Encoding: binary\r\n"
+                + "\r\n"
+                + "HTTP/1.1 204 No Content\r\n"
+                + "Content-ID: 2\r\n"
+                + "etag: W/\"datetime'2009-04-30T20%3A44%3A10.0019041Z'\"\r\n"
+                + "\r\n"
+                + "--changesetresponse_8a28b620-b4bb-458c-a177-0959fb14c977--\r\n"
+                + "--batchresponse_dc0fea8c-ed83-4aa8-ac9b-bf56a2d46dfb--\r\n";
+        //@formatter:on
+
+        // Act
+        List<ResponsePart> parts = new BatchReaderWriter().parseResponseParts(
+                new ByteArrayInputStream(s.getBytes("UTF-8")),
+                "multipart/mixed; boundary=batchresponse_dc0fea8c-ed83-4aa8-ac9b-bf56a2d46dfb");
+
+        // Assert
+        assertEquals(2, parts.size());
+        assertEquals(201, parts.get(0).getStatus());
+        assertEquals("Created", parts.get(0).getReason());
+        assertEquals("1", parts.get(0).getHeaders().getFirst("Content-ID"));
+        assertEquals("<entry>\r\n--\r\n</entry>", read(parts.get(0).getContent()));
+        assertEquals(204, parts.get(1).getStatus());
+        assertEquals("W/\"datetime'2009-04-30T20%3A44%3A10.0019041Z'\"", parts.get(1).getHeaders().getFirst("ETag"));
+        assertEquals("", read(parts.get(1).getContent()));
+    }
+
+    @Test
+    public void requestBodyRoundTrips() throws Exception {
+        // Arrange
+        BatchReaderWriter batchReaderWriter = new BatchReaderWriter();
+        RequestBody body = batchReaderWriter.createRequestBody();
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-ID", "1");
+        headers.put("Content-Length", "7");
+
+        // Act
+        body.appendOperation("POST", new URI("http://account.table.core.windows.net/table"), headers,
+                "<entry>".getBytes("UTF-8"));
+        headers.put("Content-ID", "2");
+        body.appendOperation("DELETE", new URI("http://account.table.core.windows.net/table(PartitionKey='a')"),
+                headers, null);
+        String written = new String(body.toByteArray(), "UTF-8");
+
+        // Assert
+        assertTrue(body.getContentType().startsWith("multipart/mixed; boundary=batch_"));
+        assertTrue(written.contains("POST http://account.table.core.windows.net/table HTTP/1.1\r\n"
+                + "Content-ID: 1\r\nContent-Length: 7\r\n\r\n<entry>\r\n--changeset_"));
+        assertTrue(written.endsWith("--\r\n"));
+
+        // The request body uses the same layout as responses, with request lines instead of status lines.
+        String response = written.replace("POST http://account.table.core.windows.net/table HTTP/1.1",
+                "HTTP/1.1 201 Created").replace(
+                "DELETE http://account.table.core.windows.net/table(PartitionKey='a') HTTP/1.1", "HTTP/1.1 204 No Content");
+        List<ResponsePart> parts = batchReaderWriter.parseResponseParts(
+                new ByteArrayInputStream(response.getBytes("UTF-8")), body.getContentType());
+        assertEquals(2, parts.size());
+        assertEquals("<entry>", read(parts.get(0).getContent()));
+        assertEquals("2", parts.get(1).getHeaders().getFirst("Content-ID"));
+    }
+
+    private static String read(ByteArrayInputStream stream) throws Exception {
+        byte[] bytes = new byte[stream.available()];
+        stream.read(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011 Microsoft Corporation
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.windowsazure.services.table.models;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FilterTemplateTests {
+    @Test
+    public void formatBindsValuesToParameters() {
+        // Arrange
+        FilterTemplate template = FilterTemplate.compile(Filter.and(
+                Filter.eq(Filter.propertyName("PartitionKey"), Filter.parameter("pk")),
+                Filter.and(Filter.ge(Filter.propertyName("RowKey"), Filter.parameter("from")),
+                        Filter.lt(Filter.propertyName("Size"), Filter.constant(10L)))));
+
+        // Act
+        String result = template.format("O'Brien", new byte[] { 0x01, (byte) 0xfe });
+
+        // Assert
+        assertEquals(Arrays.asList("pk", "from"), template.getParameterNames());
+        assertEquals("((PartitionKey eq 'O''Brien') and ((RowKey ge X'01fe') and (Size lt 10L)))", result);
+    }
+
+    @Test
+    public void repeatedParametersShareTheirValue() {
+        // Arrange
+        FilterTemplate template = FilterTemplate.compile(Filter.or(
+                Filter.eq(Filter.propertyName("a"), Filter.parameter("x")),
+                Filter.eq(Filter.propertyName("b"), Filter.parameter("x"))));
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("x", 5);
+
+        // Act
+        QueryStringFilter result = template.bind(values);
+
+        // Assert
+        assertEquals(1, template.getParameterNames().size());
+        assertEquals("((a eq 5) or (b eq 5))", result.getQueryString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void formatRejectsMissingValues() {
+        FilterTemplate.compile(Filter.eq(Filter.propertyName("a"), Filter.parameter("x"))).format();
+    }
+}